@@ -1,5 +1,6 @@
 package data;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -27,6 +28,16 @@ public final class DigitalSignature {
         return signature != null ? signature.clone() : null;
     }
 
+    /**
+     * Returns a read-only view of the signature, without copying it.
+     * Each call returns an independent buffer positioned at the first byte.
+     *
+     * @return a read-only buffer over the signature bytes, or null if not set
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return signature != null ? ByteBuffer.wrap(signature).asReadOnlyBuffer() : null;
+    }
+
     /**
      * Checks if the signature is valid (not null and not empty).
      *
@@ -6,24 +6,52 @@ import exceptions.IncorrectParametersException;
  * The personal identifying code in the National Health Service.
  */
 public final class HealthCardID {
+    private static final IdCache<HealthCardID> CACHE = new IdCache<>(4096, 16, 16, HealthCardID::new,
+            new IdCache.PackedKey<>() {
+                public long high(HealthCardID id) { return id.packedHigh; }
+                public long low(HealthCardID id) { return id.packedLow; }
+            });
+
+    // Thrown for every blank code read, so it is shared and stackless
+    private static final IncorrectParametersException EMPTY_CODE =
+            IncorrectParametersException.stackless("HealthCardID cannot be null or empty.");
+
     private final String personalID;
 
+    // Packed form of the code, for cheap equals and hashCode
+    private final long packedHigh;
+    private final long packedLow;
+
     public HealthCardID(String code) throws IncorrectParametersException {
         // Validate that code is not null and not empty
         if(code == null || code.trim().isEmpty()){
-            throw new IncorrectParametersException("HealthCardID cannot be null or empty.");
+            throw EMPTY_CODE;
         }
 
         // Validate that code contains 16 alphanumeric characters
         if(!isValidFormat(code)){
-            throw new IncorrectParametersException("HealthCardID has an invalid format: " + code);
+            throw IncorrectParametersException.stackless("HealthCardID has an invalid format: " + code);
         }
 
         this.personalID = code;
+        this.packedHigh = IdCodec.packHigh(code);
+        this.packedLow = IdCodec.packLow(code);
+    }
+
+    /**
+     * Returns the canonical instance for a code, from a bounded interning cache.
+     * Frequently used codes then share one instance and compare by reference.
+     *
+     * @param code the code
+     * @return an instance equal to new HealthCardID(code)
+     * @throws IncorrectParametersException if the code is not valid
+     */
+    public static HealthCardID of(String code) throws IncorrectParametersException {
+        return CACHE.intern(code);
     }
 
     private boolean isValidFormat(String code){
-        return code.length() == 16 && code.matches("^[a-zA-Z0-9]{16}$");
+        return code.length() == 16 && IdCodec.isAlphanumeric(code);
     }
 
     public String getPersonalID() {
@@ -35,12 +63,12 @@ public final class HealthCardID {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         HealthCardID that = (HealthCardID) o;
-        return personalID.equals(that.personalID);
+        return packedHigh == that.packedHigh && packedLow == that.packedLow;
     }
 
     @Override
     public int hashCode() {
-        return personalID.hashCode();
+        return IdCodec.hash(packedHigh, packedLow);
     }
 
     @Override
@@ -0,0 +1,67 @@
+package data;
+
+import exceptions.IncorrectParametersException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded interning cache of identifiers, indexed by their packed code.
+ * Direct-mapped and lock-free: a lookup probes one slot and, on a miss, the new
+ * instance replaces whatever the slot held. Hits allocate nothing.
+ */
+final class IdCache<T> {
+
+    /**
+     * Creates an identifier, validating its code.
+     */
+    interface Factory<T> {
+        T create(String code) throws IncorrectParametersException;
+    }
+
+    /**
+     * Reads the packed code of a cached identifier.
+     */
+    interface PackedKey<T> {
+        long high(T id);
+        long low(T id);
+    }
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final int minLength;
+    private final int maxLength;
+    private final Factory<T> factory;
+    private final PackedKey<T> key;
+
+    IdCache(int size, int minLength, int maxLength, Factory<T> factory, PackedKey<T> key) {
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.factory = factory;
+        this.key = key;
+    }
+
+    /**
+     * Returns the canonical instance for a code, creating it if not cached.
+     *
+     * @throws IncorrectParametersException if the code is not valid
+     */
+    T intern(String code) throws IncorrectParametersException {
+        if (code == null || !IdCodec.isValidCode(code, minLength, maxLength)) {
+            // Let the constructor report the exact problem
+            return factory.create(code);
+        }
+        long high = IdCodec.packHigh(code);
+        long low = IdCodec.packLow(code);
+        int index = IdCodec.hash(high, low) & mask;
+
+        T cached = slots.get(index);
+        if (cached != null && key.high(cached) == high && key.low(cached) == low) {
+            return cached;
+        }
+        T created = factory.create(code);
+        slots.lazySet(index, created);
+        return created;
+    }
+}
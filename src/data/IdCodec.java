@@ -0,0 +1,154 @@
+package data;
+
+/**
+ * Fast validation and packing of the alphanumeric codes used by the identifiers.
+ *
+ * Validation is a plain ASCII scan instead of a regular expression. Codes of up to 16
+ * characters are packed into two longs at 6 bits per character: the low long holds
+ * characters 0-9 and the high long holds the length and characters 10-15. Two codes are
+ * equal if and only if their packed longs are equal.
+ */
+public final class IdCodec {
+
+    public static final int MAX_PACKED_LENGTH = 16;
+
+    private static final int LOW_CHARS = 10;
+
+    private IdCodec() {
+    }
+
+    /**
+     * Checks that every character of the text is an ASCII letter or digit.
+     *
+     * @param text the text to check
+     * @return true if the text is non-empty and alphanumeric, false otherwise
+     */
+    public static boolean isAlphanumeric(CharSequence text) {
+        return isAlphanumeric(text, 0, text.length());
+    }
+
+    /**
+     * Checks that every character of a region is an ASCII letter or digit.
+     *
+     * @param text the text containing the region
+     * @param from index of the first character of the region
+     * @param to index after the last character of the region
+     * @return true if the region is non-empty and alphanumeric, false otherwise
+     */
+    public static boolean isAlphanumeric(CharSequence text, int from, int to) {
+        if (from >= to) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (toSixBit(text.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that the text is an alphanumeric code with a length in the given range.
+     *
+     * @param text the text to check
+     * @param minLength minimum accepted length
+     * @param maxLength maximum accepted length
+     * @return true if valid, false otherwise
+     */
+    public static boolean isValidCode(CharSequence text, int minLength, int maxLength) {
+        int length = text.length();
+        return length >= minLength && length <= maxLength && isAlphanumeric(text, 0, length);
+    }
+
+    /**
+     * Maps an ASCII letter or digit to its 6-bit code: 0-9, then A-Z, then a-z.
+     *
+     * @param c the character
+     * @return the 6-bit code, or -1 if the character is not alphanumeric
+     */
+    public static int toSixBit(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'A' && c <= 'Z') return c - 'A' + 10;
+        if (c >= 'a' && c <= 'z') return c - 'a' + 36;
+        return -1;
+    }
+
+    /**
+     * Maps a 6-bit code back to its character.
+     *
+     * @param code the 6-bit code, between 0 and 61
+     * @return the character
+     */
+    public static char fromSixBit(int code) {
+        if (code < 0 || code > 61) {
+            throw new IllegalArgumentException("Invalid 6-bit character code: " + code);
+        }
+        if (code < 10) return (char) ('0' + code);
+        if (code < 36) return (char) ('A' + code - 10);
+        return (char) ('a' + code - 36);
+    }
+
+    /**
+     * Packs the first 10 characters of a valid code.
+     *
+     * @param code a valid alphanumeric code of up to 16 characters
+     * @return the low long of the packed code
+     */
+    public static long packLow(CharSequence code) {
+        int end = Math.min(code.length(), LOW_CHARS);
+        long packed = 0;
+        for (int i = 0; i < end; i++) {
+            packed |= (long) toSixBit(code.charAt(i)) << (6 * i);
+        }
+        return packed;
+    }
+
+    /**
+     * Packs the length and the characters after the 10th of a valid code.
+     *
+     * @param code a valid alphanumeric code of up to 16 characters
+     * @return the high long of the packed code
+     */
+    public static long packHigh(CharSequence code) {
+        int length = code.length();
+        long packed = (long) length << 36;
+        for (int i = LOW_CHARS; i < length; i++) {
+            packed |= (long) toSixBit(code.charAt(i)) << (6 * (i - LOW_CHARS));
+        }
+        return packed;
+    }
+
+    /**
+     * Rebuilds a code from its packed longs.
+     *
+     * @param high the high long of the packed code
+     * @param low the low long of the packed code
+     * @return the code
+     */
+    public static String unpack(long high, long low) {
+        int length = (int) (high >>> 36);
+        if (length > MAX_PACKED_LENGTH) {
+            throw new IllegalArgumentException("Invalid packed code length: " + length);
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            long bits = i < LOW_CHARS ? low >>> (6 * i) : high >>> (6 * (i - LOW_CHARS));
+            chars[i] = fromSixBit((int) (bits & 0x3F));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Hash of a packed code, well spread over the low bits.
+     *
+     * @param high the high long of the packed code
+     * @param low the low long of the packed code
+     * @return the hash
+     */
+    public static int hash(long high, long low) {
+        long h = low * 0x9E3779B97F4A7C15L + high;
+        h ^= h >>> 32;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 29));
+    }
+}
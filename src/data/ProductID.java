@@ -8,29 +8,57 @@ import exceptions.IncorrectParametersException;
  * Common formats: UPC-12, EAN-13, GTIN-14, etc.
  */
 public final class ProductID {
+    private static final IdCache<ProductID> CACHE = new IdCache<>(4096, 12, 16, ProductID::new,
+            new IdCache.PackedKey<>() {
+                public long high(ProductID id) { return id.packedHigh; }
+                public long low(ProductID id) { return id.packedLow; }
+            });
+
+    // Invalid codes are expected when importing data: their failures carry no stack trace
+    private static final IncorrectParametersException EMPTY_CODE =
+            IncorrectParametersException.stackless("ProductID cannot be null or empty.");
+
     private final String code;
 
+    // Packed form of the code, for cheap equals and hashCode
+    private final long packedHigh;
+    private final long packedLow;
+
     public ProductID(String code) throws IncorrectParametersException {
         // Validate that code is not null and not empty
         if(code == null || code.trim().isEmpty()){
-            throw new IncorrectParametersException("ProductID cannot be null or empty.");
+            throw EMPTY_CODE;
         }
 
         // Validate that code contains 12-16 alphanumeric characters
         if(!isValidFormat(code)){
-            throw new IncorrectParametersException(
+            throw IncorrectParametersException.stackless(
                     "ProductID has an invalid format: " + code +
                             ". Expected 12-16 alphanumeric characters.");
         }
 
         this.code = code;
+        this.packedHigh = IdCodec.packHigh(code);
+        this.packedLow = IdCodec.packLow(code);
+    }
+
+    /**
+     * Returns the canonical instance for a code, from a bounded interning cache.
+     * Frequently used codes then share one instance and compare by reference.
+     *
+     * @param code the code
+     * @return an instance equal to new ProductID(code)
+     * @throws IncorrectParametersException if the code is not valid
+     */
+    public static ProductID of(String code) throws IncorrectParametersException {
+        return CACHE.intern(code);
     }
 
     private boolean isValidFormat(String code){
         // Accept product codes between 12 and 16 alphanumeric characters
         // Common formats: UPC-12, EAN-13, GTIN-14, etc.
         int length = code.length();
-        return length >= 12 && length <= 16 && code.matches("^[a-zA-Z0-9]+$");
+        return length >= 12 && length <= 16 && IdCodec.isAlphanumeric(code);
     }
 
 
@@ -38,17 +66,35 @@ public final class ProductID {
         return code;
     }
 
+    /**
+     * Returns the length and the characters after the 10th of the code, packed.
+     * @return the high long of the packed code
+     * @see IdCodec
+     */
+    public long getPackedHigh() {
+        return packedHigh;
+    }
+
+    /**
+     * Returns the first 10 characters of the code, packed.
+     * @return the low long of the packed code
+     * @see IdCodec
+     */
+    public long getPackedLow() {
+        return packedLow;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
-        ProductID productID = (ProductID) o;
-        return code.equals(productID.code);
+        ProductID that = (ProductID) o;
+        return packedHigh == that.packedHigh && packedLow == that.packedLow;
     }
 
     @Override
     public int hashCode() {
-        return code.hashCode();
+        return IdCodec.hash(packedHigh, packedLow);
     }
 
     @Override
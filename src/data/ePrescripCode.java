@@ -6,24 +6,51 @@ import exceptions.IncorrectParametersException;
  * The electronic prescription code.
  */
 public final class ePrescripCode {
+    private static final IdCache<ePrescripCode> CACHE = new IdCache<>(4096, 16, 16, ePrescripCode::new,
+            new IdCache.PackedKey<>() {
+                public long high(ePrescripCode id) { return id.packedHigh; }
+                public long low(ePrescripCode id) { return id.packedLow; }
+            });
+
+    private static final IncorrectParametersException EMPTY_CODE =
+            IncorrectParametersException.stackless("ePrescriptionCode cannot be null or empty.");
+
     private final String code;
 
+    // Packed form of the code, for cheap equals and hashCode
+    private final long packedHigh;
+    private final long packedLow;
+
     public ePrescripCode(String code) throws IncorrectParametersException {
         // Validate that code is not null and not empty
         if(code == null || code.trim().isEmpty()){
-            throw new IncorrectParametersException("ePrescriptionCode cannot be null or empty.");
+            throw EMPTY_CODE;
         }
 
         // Validate that code contains 16 alphanumeric characters
         if(!isValidFormat(code)){
-            throw new IncorrectParametersException("ePrescriptionCode has an invalid format: " + code);
+            throw IncorrectParametersException.stackless("ePrescriptionCode has an invalid format: " + code);
         }
 
         this.code = code;
+        this.packedHigh = IdCodec.packHigh(code);
+        this.packedLow = IdCodec.packLow(code);
+    }
+
+    /**
+     * Returns the canonical instance for a code, from a bounded interning cache.
+     * Frequently used codes then share one instance and compare by reference.
+     *
+     * @param code the code
+     * @return an instance equal to new ePrescripCode(code)
+     * @throws IncorrectParametersException if the code is not valid
+     */
+    public static ePrescripCode of(String code) throws IncorrectParametersException {
+        return CACHE.intern(code);
     }
 
     private boolean isValidFormat(String code){
-        return code.length() == 16 && code.matches("^[a-zA-Z0-9]{16}$");
+        return code.length() == 16 && IdCodec.isAlphanumeric(code);
     }
 
 
@@ -36,12 +63,12 @@ public final class ePrescripCode {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ePrescripCode that = (ePrescripCode) o;
-        return code.equals(that.code);
+        return packedHigh == that.packedHigh && packedLow == that.packedLow;
     }
 
     @Override
     public int hashCode() {
-        return code.hashCode();
+        return IdCodec.hash(packedHigh, packedLow);
     }
 
     @Override
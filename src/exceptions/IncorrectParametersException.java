@@ -7,4 +7,21 @@ public class IncorrectParametersException extends Exception {
     public IncorrectParametersException(String message) {
         super(message);
     }
+
+    /**
+     * @param message the detail message
+     * @param writableStackTrace whether the stack trace is filled in
+     */
+    protected IncorrectParametersException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+
+    /**
+     * @param message the detail message
+     * @return an exception without stack trace, for expected failures
+     * @see ProceduralException#stackless(String)
+     */
+    public static IncorrectParametersException stackless(String message) {
+        return new IncorrectParametersException(message, false);
+    }
 }
@@ -12,4 +12,21 @@ public class IncorrectTakingGuidelinesException extends Exception {
     public IncorrectTakingGuidelinesException(String message) {
         super(message);
     }
-}
\ No newline at end of file
+
+    /**
+     * @param message the detail message
+     * @param writableStackTrace whether the stack trace is filled in
+     */
+    protected IncorrectTakingGuidelinesException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+
+    /**
+     * @param message the detail message
+     * @return an exception without stack trace, for expected failures
+     * @see ProceduralException#stackless(String)
+     */
+    public static IncorrectTakingGuidelinesException stackless(String message) {
+        return new IncorrectTakingGuidelinesException(message, false);
+    }
+}
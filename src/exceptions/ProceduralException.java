@@ -18,4 +18,26 @@ public class ProceduralException extends Exception {
   public ProceduralException(String message) {
     super(message);
   }
-}
\ No newline at end of file
+
+  /**
+   * Creates an exception that may skip filling in its stack trace.
+   *
+   * @param message the detail message
+   * @param writableStackTrace false for expected failures, which need no stack trace
+   */
+  protected ProceduralException(String message, boolean writableStackTrace) {
+    super(message, null, false, writableStackTrace);
+  }
+
+  /**
+   * Creates an exception without stack trace nor suppressed exceptions, for failures
+   * the caller expects and handles. Such an instance is immutable, so it can be kept
+   * in a constant and thrown many times.
+   *
+   * @param message the detail message
+   * @return the stackless exception
+   */
+  public static ProceduralException stackless(String message) {
+    return new ProceduralException(message, false);
+  }
+}
@@ -12,4 +12,21 @@ public class ProductAlreadyInPrescriptionException extends Exception {
   public ProductAlreadyInPrescriptionException(String message) {
     super(message);
   }
-}
\ No newline at end of file
+
+  /**
+   * @param message the detail message
+   * @param writableStackTrace whether the stack trace is filled in
+   */
+  protected ProductAlreadyInPrescriptionException(String message, boolean writableStackTrace) {
+    super(message, null, false, writableStackTrace);
+  }
+
+  /**
+   * @param message the detail message
+   * @return an exception without stack trace, for expected failures
+   * @see ProceduralException#stackless(String)
+   */
+  public static ProductAlreadyInPrescriptionException stackless(String message) {
+    return new ProductAlreadyInPrescriptionException(message, false);
+  }
+}
@@ -0,0 +1,145 @@
+package medicalconsultation;
+
+import exceptions.BadPromptException;
+import services.DecisionMakingAI;
+import services.DecisionMakingAIPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * AI session leased from a DecisionMakingAIPool by a prescription edition.
+ *
+ * The edition releases the lease when it no longer needs the AI, but streams of
+ * suggestions still running keep the session until they end: it only goes back to the
+ * pool once the lease is released and no stream reads from it. A session that failed
+ * is invalidated instead, so the pool replaces it.
+ */
+final class AILease {
+
+    private final DecisionMakingAIPool pool;
+    private final DecisionMakingAI ai;
+
+    // Streams reading from the session, and whether the edition released it; guarded by this
+    private int streams;
+    private boolean released;
+    private volatile boolean broken;
+
+    AILease(DecisionMakingAIPool pool, DecisionMakingAI ai) {
+        this.pool = pool;
+        this.ai = ai;
+    }
+
+    DecisionMakingAI ai() {
+        return ai;
+    }
+
+    /**
+     * Keeps the session for a new stream.
+     *
+     * @return false if the lease was already released
+     */
+    synchronized boolean retain() {
+        if (released) {
+            return false;
+        }
+        streams++;
+        return true;
+    }
+
+    /**
+     * Reports that a call to the session failed: it is invalidated once given back.
+     */
+    void fail() {
+        this.broken = true;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    /**
+     * Releases the edition's hold on the session.
+     */
+    void release() {
+        synchronized (this) {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (streams > 0) {
+                return;
+            }
+        }
+        giveBack();
+    }
+
+    /**
+     * Wraps the subscriber of a stream that retained the session, so the session is
+     * let go when the stream completes, fails or is cancelled. A failure other than a
+     * BadPromptException marks the session as broken.
+     */
+    Flow.Subscriber<String> holdUntilEnd(Flow.Subscriber<? super String> downstream) {
+        return new Flow.Subscriber<>() {
+            private final AtomicBoolean ended = new AtomicBoolean();
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                downstream.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                        subscription.request(n);
+                    }
+
+                    @Override
+                    public void cancel() {
+                        subscription.cancel();
+                        end();
+                    }
+                });
+            }
+
+            @Override
+            public void onNext(String chunk) {
+                downstream.onNext(chunk);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                if (!(throwable instanceof BadPromptException)) {
+                    fail();
+                }
+                end();
+                downstream.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                end();
+                downstream.onComplete();
+            }
+
+            private void end() {
+                if (ended.compareAndSet(false, true)) {
+                    endStream();
+                }
+            }
+        };
+    }
+
+    private void endStream() {
+        synchronized (this) {
+            if (--streams > 0 || !released) {
+                return;
+            }
+        }
+        giveBack();
+    }
+
+    private void giveBack() {
+        if (broken) {
+            pool.invalidate(ai);
+        } else {
+            pool.release(ai);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package medicalconsultation;
+
+import data.HealthCardID;
+import java.util.Date;
+
+/**
+ * An appointment from the doctor's schedule: the patient, the illness to review and
+ * when the consultation starts.
+ */
+public final class Appointment {
+    private final HealthCardID cip;
+    private final String illness;
+    private final Date time;
+
+    public Appointment(HealthCardID cip, String illness, Date time) {
+        if (cip == null || illness == null || illness.trim().isEmpty() || time == null) {
+            throw new IllegalArgumentException("CIP, illness and time cannot be null or empty");
+        }
+        this.cip = cip;
+        this.illness = illness;
+        this.time = new Date(time.getTime());
+    }
+
+    public HealthCardID getCip() {
+        return cip;
+    }
+
+    public String getIllness() {
+        return illness;
+    }
+
+    public Date getTime() {
+        return new Date(time.getTime());
+    }
+
+    public long getTimeMillis() {
+        return time.getTime();
+    }
+
+    @Override
+    public String toString() {
+        return "Appointment{cip=" + cip + ", illness='" + illness + "', time=" + time + '}';
+    }
+}
@@ -0,0 +1,116 @@
+package medicalconsultation;
+
+import data.DigitalSignature;
+import data.ProductID;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents the changes made during a revision to the data downloaded by initRevision.
+ * Sent to the Health National Service instead of the full history and prescription.
+ *
+ * The base version identifies the downloaded state the delta applies to. Added lines
+ * include lines removed and entered again during the revision, which replace the stored
+ * line of the same product.
+ *
+ * The delta also carries the header of the uploaded data whatever the revision changed:
+ * the doctor of the history, and the dates and signature of the prescription. Applied
+ * to its base, it gives the same history and prescription as the full upload.
+ */
+public final class ConsultationDelta {
+    private final String baseVersion;
+    private final int membShipNumb;
+    private final Date prescDate;
+    private final Date endDate;
+    private final DigitalSignature eSign;
+    private final List<HistoryAnnotation> newAnnotations;
+    private final List<MedicalPrescriptionLine> addedLines;
+    private final List<ProductID> removedProducts;
+    private final Map<ProductID, Float> modifiedDoses;
+
+    /**
+     * @param membShipNumb the doctor of the history
+     * @param prescDate the prescription date, or null if not set
+     * @param endDate the treatment ending date, or null if not set
+     * @param eSign the doctor's signature on the prescription, or null if not signed
+     */
+    public ConsultationDelta(String baseVersion, int membShipNumb, Date prescDate, Date endDate,
+                             DigitalSignature eSign, List<HistoryAnnotation> newAnnotations,
+                             List<MedicalPrescriptionLine> addedLines, List<ProductID> removedProducts,
+                             Map<ProductID, Float> modifiedDoses) {
+        if (baseVersion == null || newAnnotations == null || addedLines == null
+                || removedProducts == null || modifiedDoses == null) {
+            throw new IllegalArgumentException("Delta components cannot be null");
+        }
+        this.baseVersion = baseVersion;
+        this.membShipNumb = membShipNumb;
+        this.prescDate = prescDate != null ? new Date(prescDate.getTime()) : null;
+        this.endDate = endDate != null ? new Date(endDate.getTime()) : null;
+        this.eSign = eSign;
+        this.newAnnotations = Collections.unmodifiableList(newAnnotations);
+        this.addedLines = Collections.unmodifiableList(addedLines);
+        this.removedProducts = Collections.unmodifiableList(removedProducts);
+        this.modifiedDoses = Collections.unmodifiableMap(modifiedDoses);
+    }
+
+    public String getBaseVersion() {
+        return baseVersion;
+    }
+
+    public int getMembShipNumb() {
+        return membShipNumb;
+    }
+
+    public Date getPrescDate() {
+        return prescDate != null ? new Date(prescDate.getTime()) : null;
+    }
+
+    public Date getEndDate() {
+        return endDate != null ? new Date(endDate.getTime()) : null;
+    }
+
+    public DigitalSignature geteSign() {
+        return eSign;
+    }
+
+    public List<HistoryAnnotation> getNewAnnotations() {
+        return newAnnotations;
+    }
+
+    public List<MedicalPrescriptionLine> getAddedLines() {
+        return addedLines;
+    }
+
+    public List<ProductID> getRemovedProducts() {
+        return removedProducts;
+    }
+
+    public Map<ProductID, Float> getModifiedDoses() {
+        return modifiedDoses;
+    }
+
+    /**
+     * Checks if the revision changed neither the history annotations nor the
+     * prescription lines. The header is sent in any case.
+     * @return true if there is nothing to apply, false otherwise
+     */
+    public boolean hasNoChanges() {
+        return newAnnotations.isEmpty() && addedLines.isEmpty()
+                && removedProducts.isEmpty() && modifiedDoses.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ConsultationDelta{" +
+                "baseVersion='" + baseVersion + '\'' +
+                ", membShipNumb=" + membShipNumb +
+                ", signed=" + (eSign != null) +
+                ", newAnnotations=" + newAnnotations.size() +
+                ", addedLines=" + addedLines.size() +
+                ", removedProducts=" + removedProducts.size() +
+                ", modifiedDoses=" + modifiedDoses.size() +
+                '}';
+    }
+}
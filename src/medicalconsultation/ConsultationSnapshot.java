@@ -0,0 +1,112 @@
+package medicalconsultation;
+
+import data.ProductID;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Internal record of the history and prescription as downloaded by initRevision.
+ * Used by the terminal to compute the ConsultationDelta sent to the HNS.
+ *
+ * Lines are edited in place, so the snapshot keeps a copy of every guideline and the
+ * diff compares their fields.
+ */
+final class ConsultationSnapshot {
+    private final int annotationCount;
+    private final Map<ProductID, TakingGuideline> guidelines;
+    private final String version;
+
+    private ConsultationSnapshot(int annotationCount, Map<ProductID, TakingGuideline> guidelines, String version) {
+        this.annotationCount = annotationCount;
+        this.guidelines = guidelines;
+        this.version = version;
+    }
+
+    /**
+     * Captures the current state of a history and a prescription.
+     *
+     * The HNS assigns no version to the data it serves, so the base version of the deltas
+     * is the SHA-256 of the WireCodec encodings of the history and the prescription: any
+     * change to either one, however small, gives another version.
+     */
+    static ConsultationSnapshot capture(MedicalHistory history, MedicalPrescription prescription) {
+        Map<ProductID, TakingGuideline> guidelines = new HashMap<>();
+        for (MedicalPrescriptionLine line : prescription.getLines().values()) {
+            TakingGuideline guideline = line.getTakingGuideline();
+            Posology posology = guideline.getPosology();
+            guidelines.put(line.getProductID(), new TakingGuideline(guideline.getdMoment(), guideline.getDuration(),
+                    posology.getDose(), posology.getFreq(), posology.getFreqUnit(), guideline.getInstructions()));
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        digest.update(WireCodec.encode(history));
+        digest.update(WireCodec.encode(prescription));
+        String version = HexFormat.of().formatHex(digest.digest());
+        return new ConsultationSnapshot(history.getAnnotationCount(), guidelines, version);
+    }
+
+    /**
+     * Computes the changes made since the snapshot was captured, along with the current
+     * header of the history and the prescription.
+     */
+    ConsultationDelta diff(MedicalHistory history, MedicalPrescription prescription) {
+        List<HistoryAnnotation> annotations = history.getAnnotations();
+        List<HistoryAnnotation> newAnnotations =
+                new ArrayList<>(annotations.subList(annotationCount, annotations.size()));
+
+        List<MedicalPrescriptionLine> added = new ArrayList<>();
+        List<ProductID> removed = new ArrayList<>();
+        Map<ProductID, Float> modified = new LinkedHashMap<>();
+
+        Map<ProductID, MedicalPrescriptionLine> current = prescription.getLines();
+        for (MedicalPrescriptionLine line : current.values()) {
+            ProductID prodID = line.getProductID();
+            TakingGuideline original = guidelines.get(prodID);
+            TakingGuideline guideline = line.getTakingGuideline();
+            if (original == null || !onlyDoseDiffers(original, guideline)) {
+                // New product, or a line changed beyond its dose: sent in full
+                added.add(line);
+            } else {
+                float dose = guideline.getPosology().getDose();
+                if (Float.compare(dose, original.getPosology().getDose()) != 0) {
+                    modified.put(prodID, dose);
+                }
+            }
+        }
+        for (ProductID prodID : guidelines.keySet()) {
+            if (!current.containsKey(prodID)) {
+                removed.add(prodID);
+            }
+        }
+        return new ConsultationDelta(version, history.getMembShipNumb(), prescription.getPrescDate(),
+                prescription.getEndDate(), prescription.geteSign(), newAnnotations, added, removed, modified);
+    }
+
+    /**
+     * @return true if two guidelines are equal in every field but, possibly, the dose
+     */
+    static boolean onlyDoseDiffers(TakingGuideline a, TakingGuideline b) {
+        return a.getdMoment() == b.getdMoment()
+                && Float.compare(a.getDuration(), b.getDuration()) == 0
+                && Float.compare(a.getPosology().getFreq(), b.getPosology().getFreq()) == 0
+                && a.getPosology().getFreqUnit() == b.getPosology().getFreqUnit()
+                && Objects.equals(a.getInstructions(), b.getInstructions());
+    }
+
+    String getVersion() {
+        return version;
+    }
+}
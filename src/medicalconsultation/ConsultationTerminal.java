@@ -3,9 +3,21 @@ package medicalconsultation;
 import data.*;
 import exceptions.*;
 import services.*;
+import java.io.IOException;
 import java.net.ConnectException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Facade Controller for the "Supervise Treatment" use case.
@@ -16,10 +28,71 @@ import java.util.List;
  */
 public class ConsultationTerminal {
 
+    // Precondition failures are expected (e.g. UI polling): shared and stackless
+    private static final ProceduralException ASSESS_NO_REVISION =
+            ProceduralException.stackless("Cannot enter assessment: revision not initialized");
+    private static final ProceduralException EDITION_NO_REVISION =
+            ProceduralException.stackless("Cannot init prescription edition: revision not initialized");
+    private static final ProceduralException CALL_AI_NO_EDITION =
+            ProceduralException.stackless("Cannot call AI: prescription edition not initialized");
+    private static final ProceduralException ASK_AI_NO_EDITION =
+            ProceduralException.stackless("Cannot ask AI: prescription edition not initialized");
+    private static final ProceduralException ASK_AI_NOT_INITIALIZED =
+            ProceduralException.stackless("Cannot ask AI: AI system not initialized. "
+                    + "Call callDecisionMakingAI() first");
+    private static final ProceduralException EXTRACT_NO_EDITION =
+            ProceduralException.stackless("Cannot extract guidelines: prescription edition not initialized");
+    private static final ProceduralException EXTRACT_NO_RESPONSE =
+            ProceduralException.stackless("Cannot extract guidelines: AI has not provided a response yet");
+    private static final ProceduralException ADD_NO_EDITION =
+            ProceduralException.stackless("Cannot add medicine: prescription edition not initialized");
+    private static final ProceduralException MODIFY_DOSE_NO_EDITION =
+            ProceduralException.stackless("Cannot modify dose: prescription edition not initialized");
+    private static final ProceduralException REMOVE_NO_EDITION =
+            ProceduralException.stackless("Cannot remove line: prescription edition not initialized");
+    private static final ProceduralException APPLY_NO_EDITION =
+            ProceduralException.stackless("Cannot apply suggestions: prescription edition not initialized");
+    private static final ProceduralException ENDING_DATE_NO_EDITION =
+            ProceduralException.stackless("Cannot set ending date: prescription edition not initialized");
+    private static final ProceduralException FINISH_NO_EDITION =
+            ProceduralException.stackless("Cannot finish edition: prescription edition not initialized");
+    private static final ProceduralException STAMP_NO_EDITION =
+            ProceduralException.stackless("Cannot stamp signature: prescription edition not initialized");
+    private static final ProceduralException STAMP_NO_ENDING_DATE =
+            ProceduralException.stackless("Cannot stamp signature: treatment ending date not set. "
+                    + "Call enterTreatmentEndingDate() first");
+    private static final ProceduralException SEND_NO_EDITION =
+            ProceduralException.stackless("Cannot send data: prescription edition not initialized");
+    private static final ProceduralException SEND_NO_ENDING_DATE =
+            ProceduralException.stackless("Cannot send data: treatment ending date not set");
+    private static final ProceduralException SEND_NO_SIGNATURE =
+            ProceduralException.stackless("Cannot send data: electronic signature not stamped. "
+                    + "Call stampeeSignature() first");
+
     // External services (injected via setters)
     private HealthNationalService healthNationalService;
     private DecisionMakingAI decisionMakingAI;
 
+    // Pool of initialized AI sessions, and the session leased for the current edition
+    // (read by the streams of suggestions when they are subscribed)
+    private DecisionMakingAIPool aiPool;
+    private long aiLeaseTimeoutMillis;
+    private volatile AILease aiLease;
+
+    // Parallel download mode (disabled while no executor is injected)
+    private ExecutorService fetchExecutor;
+    private long fetchDeadlineMillis;
+
+    // Signer of the doctor's prescriptions (placeholder signatures while none is injected)
+    private PrescriptionSigner prescriptionSigner;
+
+    // Outbox of sendHistoryAndPrescriptionAsync (none: asynchronous sending unavailable)
+    private PrescriptionOutbox prescriptionOutbox;
+
+    // Delta upload mode and the state downloaded by initRevision
+    private boolean deltaUploadEnabled;
+    private ConsultationSnapshot baseSnapshot;
+
     // Current session state
     private MedicalHistory currentMedicalHistory;
     private MedicalPrescription currentPrescription;
@@ -29,7 +102,12 @@ public class ConsultationTerminal {
     private boolean revisionInitialized;
     private boolean prescriptionEditionMode;
     private boolean aiInitialized;
-    private String lastAIResponse;
+    private volatile String lastAIResponse;
+
+    // Prompts sent to the AI; a stream only stores its answer if it was the last one sent.
+    // Guarded by aiResponseLock, like the writes of lastAIResponse.
+    private final Object aiResponseLock = new Object();
+    private long aiRequests;
     private boolean treatmentDatesSet;
     private boolean signatureStamped;
 
@@ -62,19 +140,87 @@ public class ConsultationTerminal {
         this.decisionMakingAI = ai;
     }
 
+    /**
+     * Takes the AI from a pool of initialized sessions instead of the injected DecisionMakingAI.
+     * callDecisionMakingAI() then leases a ready session, which is given back to the pool when
+     * the prescription edition finishes or a new revision starts.
+     * Passing a null pool restores the injected DecisionMakingAI.
+     *
+     * @param pool the pool of AI sessions, or null
+     * @param leaseTimeoutMillis maximum time to wait for a session, in milliseconds
+     */
+    public void setDecisionMakingAIPool(DecisionMakingAIPool pool, long leaseTimeoutMillis) {
+        if (pool != null && leaseTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Lease timeout must be greater than 0");
+        }
+        releaseAI();
+        this.aiPool = pool;
+        this.aiLeaseTimeoutMillis = leaseTimeoutMillis;
+    }
+
+    /**
+     * Enables the parallel download mode of initRevision.
+     * The medical history and the prescription are then requested at the same time on the
+     * given executor, and both calls must complete within a shared deadline.
+     * Passing a null executor restores the sequential mode.
+     *
+     * @param executor the executor running the HNS calls, or null for sequential mode
+     * @param deadlineMillis maximum time to wait for both downloads, in milliseconds
+     */
+    public void setParallelFetchExecutor(ExecutorService executor, long deadlineMillis) {
+        if (executor != null && deadlineMillis <= 0) {
+            throw new IllegalArgumentException("Deadline must be greater than 0");
+        }
+        this.fetchExecutor = executor;
+        this.fetchDeadlineMillis = deadlineMillis;
+    }
+
+    /**
+     * Enables or disables the delta upload mode of sendHistoryAndPrescription.
+     * In delta mode only the changes made since initRevision are sent, together with
+     * the version of the downloaded data; the HNS falls back to a full upload if needed.
+     * Revisions initialized while the mode was disabled are always uploaded in full.
+     *
+     * @param enabled true to send deltas, false to send the full history and prescription
+     */
+    public void setDeltaUpload(boolean enabled) {
+        this.deltaUploadEnabled = enabled;
+    }
+
+    /**
+     * Injects the signer holding the doctor's key, used by stampeeSignature().
+     * Passing null restores the placeholder signatures.
+     *
+     * @param signer the prescription signer, or null
+     */
+    public void setPrescriptionSigner(PrescriptionSigner signer) {
+        this.prescriptionSigner = signer;
+    }
+
+    /**
+     * Injects the outbox that sendHistoryAndPrescriptionAsync() stores uploads in.
+     *
+     * @param outbox the prescription outbox, or null to disable asynchronous sending
+     */
+    public void setPrescriptionOutbox(PrescriptionOutbox outbox) {
+        this.prescriptionOutbox = outbox;
+    }
+
     // ========== STATE MANAGEMENT METHODS ==========
 
     /**
      * Resets the terminal state after completing a revision.
      */
     private void resetState() {
+        releaseAI();
         this.currentMedicalHistory = null;
         this.currentPrescription = null;
         this.currentIllness = null;
+        this.baseSnapshot = null;
         this.revisionInitialized = false;
         this.prescriptionEditionMode = false;
         this.aiInitialized = false;
-        this.lastAIResponse = null;
+        clearAIResponse();
         this.treatmentDatesSet = false;
         this.signatureStamped = false;
     }
@@ -106,22 +252,35 @@ public class ConsultationTerminal {
             throw new IllegalArgumentException("CIP and illness cannot be null or empty");
         }
 
-        // Download medical history from HNS
-        this.currentMedicalHistory = healthNationalService.getMedicalHistory(cip);
+        if (fetchExecutor != null) {
+            // Download history and prescription at the same time
+            fetchInParallel(cip, illness);
+        } else {
+            // Download medical history from HNS
+            this.currentMedicalHistory = healthNationalService.getMedicalHistory(cip);
 
-        // Download medical prescription for this illness from HNS
-        this.currentPrescription = healthNationalService.getMedicalPrescription(cip, illness);
+            // Download medical prescription for this illness from HNS
+            this.currentPrescription = healthNationalService.getMedicalPrescription(cip, illness);
+        }
 
         // Store current illness
         this.currentIllness = illness;
 
+        // Remember what was downloaded to upload only the changes later
+        this.baseSnapshot = deltaUploadEnabled
+                ? ConsultationSnapshot.capture(currentMedicalHistory, currentPrescription)
+                : null;
+
         // Mark revision as initialized
         this.revisionInitialized = true;
 
+        // The AI session of a previous revision goes back to the pool
+        releaseAI();
+
         // Reset other state flags (in case of reuse)
         this.prescriptionEditionMode = false;
         this.aiInitialized = false;
-        this.lastAIResponse = null;
+        clearAIResponse();
         this.treatmentDatesSet = false;
         this.signatureStamped = false;
     }
@@ -141,7 +300,7 @@ public class ConsultationTerminal {
 
         // Check precondition: revision must be initialized
         if (!revisionInitialized) {
-            throw new ProceduralException("Cannot enter assessment: revision not initialized");
+            throw ASSESS_NO_REVISION;
         }
 
         // Validate input
@@ -167,8 +326,7 @@ public class ConsultationTerminal {
 
         // Check precondition: revision must be initialized
         if (!revisionInitialized) {
-            throw new ProceduralException(
-                    "Cannot init prescription edition: revision not initialized");
+            throw EDITION_NO_REVISION;
         }
 
         // Enter prescription edition mode
@@ -192,12 +350,24 @@ public class ConsultationTerminal {
 
         // Check precondition: prescription edition mode must be active
         if (!prescriptionEditionMode) {
-            throw new ProceduralException(
-                    "Cannot call AI: prescription edition not initialized");
+            throw CALL_AI_NO_EDITION;
         }
+        startAI();
+    }
 
-        // Initialize the AI system
-        decisionMakingAI.initDecisionMakingAI();
+    /**
+     * Internal operation: makes the AI ready, from the pool if there is one.
+     */
+    private void startAI() throws AIException {
+        if (aiPool != null) {
+            // Take an already initialized session, keeping it for the whole edition
+            if (aiLease == null) {
+                this.aiLease = new AILease(aiPool, aiPool.lease(aiLeaseTimeoutMillis));
+            }
+        } else {
+            // Initialize the AI system
+            decisionMakingAI.initDecisionMakingAI();
+        }
 
         // Mark AI as initialized and ready
         this.aiInitialized = true;
@@ -223,13 +393,12 @@ public class ConsultationTerminal {
 
         // Check preconditions
         if (!prescriptionEditionMode) {
-            throw new ProceduralException(
-                    "Cannot ask AI: prescription edition not initialized");
+            throw ASK_AI_NO_EDITION;
         }
 
+        discardBrokenAI();
         if (!aiInitialized) {
-            throw new ProceduralException(
-                    "Cannot ask AI: AI system not initialized. Call callDecisionMakingAI() first");
+            throw ASK_AI_NOT_INITIALIZED;
         }
 
         // Validate input
@@ -238,15 +407,87 @@ public class ConsultationTerminal {
         }
 
         // Send prompt to AI and get response
-        String aiResponse = decisionMakingAI.getSuggestions(prompt);
+        long request = startAIRequest();
+        String aiResponse;
+        try {
+            aiResponse = activeAI().getSuggestions(prompt, currentPrescription);
+        } catch (RuntimeException e) {
+            // The leased session broke down: the pool replaces it
+            if (aiLease != null) {
+                aiLease.fail();
+                discardBrokenAI();
+            }
+            throw e;
+        }
 
         // Store response for later parsing
-        this.lastAIResponse = aiResponse;
+        recordAIResponse(request, aiResponse);
 
         // Return response to be displayed to doctor
         return aiResponse;
     }
 
+    /**
+     * Doctor sends a prompt to the AI and reviews the suggestions while they are generated.
+     * Each suggestion is published as soon as the AI has finished writing it; the accepted
+     * ones can then be applied with applySuggestions(). Nothing is requested from the AI
+     * until a subscriber subscribes, and each subscription asks the AI again.
+     *
+     * With a pool, each subscription uses the session the edition holds when it subscribes,
+     * and keeps it until the stream ends even if the edition releases it meanwhile. A
+     * subscription made once the edition has no session fails with ProceduralException.
+     *
+     * CONTRACT:
+     * - Preconditions:
+     *   * Prescription edition mode active
+     *   * AI system initialized and ready
+     * - Postconditions: none until subscribed; a BadPromptException is delivered through onError.
+     *   Once the stream completes its answer is stored for parsing, as askAIForSuggest() does,
+     *   unless another prompt was sent to the AI meanwhile
+     *
+     * @param prompt the question or request sent to the AI
+     * @return a publisher of the suggestions of the answer
+     * @throws ProceduralException if preconditions not met
+     */
+    public Flow.Publisher<Suggestion> streamAISuggestions(String prompt) throws ProceduralException {
+
+        // Check preconditions
+        if (!prescriptionEditionMode) {
+            throw ASK_AI_NO_EDITION;
+        }
+
+        discardBrokenAI();
+        if (!aiInitialized) {
+            throw ASK_AI_NOT_INITIALIZED;
+        }
+
+        // Validate input
+        if (prompt == null || prompt.trim().isEmpty()) {
+            throw new IllegalArgumentException("Prompt cannot be null or empty");
+        }
+
+        MedicalPrescription context = currentPrescription;
+        Flow.Publisher<String> chunks;
+        if (aiPool == null) {
+            chunks = decisionMakingAI.streamSuggestions(prompt, context);
+        } else {
+            chunks = subscriber -> {
+                AILease lease = aiLease;
+                if (lease == null || !lease.retain()) {
+                    reject(subscriber, ASK_AI_NOT_INITIALIZED);
+                    return;
+                }
+                Flow.Subscriber<String> held = lease.holdUntilEnd(subscriber);
+                try {
+                    lease.ai().streamSuggestions(prompt, context).subscribe(held);
+                } catch (RuntimeException e) {
+                    reject(held, e);
+                }
+            };
+        }
+        return SuggestionStreamParser.parse(recordingAnswer(chunks));
+    }
+
     /**
      * Doctor requests to parse the AI's text response into structured suggestions.
      * The AI breaks down its response into specific actions (Insert/Eliminate/Modify)
@@ -272,17 +513,17 @@ public class ConsultationTerminal {
 
         // Check preconditions
         if (!prescriptionEditionMode) {
-            throw new ProceduralException(
-                    "Cannot extract guidelines: prescription edition not initialized");
+            throw EXTRACT_NO_EDITION;
         }
 
-        if (!aiInitialized || lastAIResponse == null) {
-            throw new ProceduralException(
-                    "Cannot extract guidelines: AI has not provided a response yet");
+        // Read once: a stream may store a new answer meanwhile
+        String response = lastAIResponse;
+        if (!aiInitialized || response == null) {
+            throw EXTRACT_NO_RESPONSE;
         }
 
         // Parse AI response into structured suggestions
-        List<Suggestion> suggestions = decisionMakingAI.parseSuggest(lastAIResponse);
+        List<Suggestion> suggestions = activeAI().parseSuggest(response);
 
         // Return parsed suggestions for doctor review
         return suggestions;
@@ -315,8 +556,7 @@ public class ConsultationTerminal {
 
         // Check precondition: prescription edition mode must be active
         if (!prescriptionEditionMode) {
-            throw new ProceduralException(
-                    "Cannot add medicine: prescription edition not initialized");
+            throw ADD_NO_EDITION;
         }
 
         // Validate input parameters
@@ -329,11 +569,8 @@ public class ConsultationTerminal {
                     "Guidelines cannot be null or empty");
         }
 
-        // Delegate to internal operation
+        // Delegate to internal operation: parses, validates and adds the line in one pass
         createMedPrescriptionLine(prodID, instruc);
-
-        // Add line to prescription (will throw exceptions if invalid)
-        currentPrescription.addLine(prodID, instruc);
     }
 
     /**
@@ -354,8 +591,7 @@ public class ConsultationTerminal {
 
         // Check precondition: prescription edition mode must be active
         if (!prescriptionEditionMode) {
-            throw new ProceduralException(
-                    "Cannot modify dose: prescription edition not initialized");
+            throw MODIFY_DOSE_NO_EDITION;
         }
 
         // Validate input parameters
@@ -390,8 +626,7 @@ public class ConsultationTerminal {
 
         // Check precondition: prescription edition mode must be active
         if (!prescriptionEditionMode) {
-            throw new ProceduralException(
-                    "Cannot remove line: prescription edition not initialized");
+            throw REMOVE_NO_EDITION;
         }
 
         // Validate input parameter
@@ -403,6 +638,65 @@ public class ConsultationTerminal {
         currentPrescription.removeLine(prodID);
     }
 
+    /**
+     * Doctor accepts a batch of AI suggestions, applying all of them or none.
+     * The whole batch is validated first against the prescription as it would be after
+     * each preceding suggestion; only then are the changes applied.
+     *
+     * - INSERT: adds a line with the complete guidelines
+     * - ELIMINATE: removes the line
+     * - MODIFY: changes the non-empty guideline fields of the line
+     *
+     * CONTRACT:
+     * - Preconditions: Prescription edition mode must be active
+     * - Postconditions: every suggestion applied in order, or the prescription unchanged
+     *
+     * @param suggestions the suggestions to apply, e.g. from extractGuidelinesFromSugg()
+     * @throws ProductAlreadyInPrescriptionException if an INSERT targets a product already prescribed
+     * @throws ProductNotInPrescriptionException if a MODIFY or ELIMINATE targets a product not prescribed
+     * @throws IncorrectTakingGuidelinesException if the guidelines of an INSERT or MODIFY are not valid
+     * @throws ProceduralException if prescription edition not active
+     */
+    public void applySuggestions(List<Suggestion> suggestions)
+            throws ProductAlreadyInPrescriptionException,
+            ProductNotInPrescriptionException,
+            IncorrectTakingGuidelinesException,
+            ProceduralException {
+
+        // Check precondition: prescription edition mode must be active
+        if (!prescriptionEditionMode) {
+            throw APPLY_NO_EDITION;
+        }
+
+        // Validate input parameter
+        if (suggestions == null) {
+            throw new IllegalArgumentException("Suggestions cannot be null");
+        }
+
+        // Validate the whole batch before touching the prescription
+        List<PlannedChange> changes = planSuggestions(suggestions);
+
+        // Apply: every change was checked against the resulting state, none can fail
+        for (PlannedChange change : changes) {
+            switch (change.action) {
+                case INSERT:
+                    currentPrescription.addValidatedLine(change.prodID, change.guideline);
+                    break;
+                case ELIMINATE:
+                    currentPrescription.removeLine(change.prodID);
+                    break;
+                case MODIFY:
+                    if (change.doseOnly) {
+                        currentPrescription.modifyDoseInLine(change.prodID, change.guideline.getPosology().getDose());
+                    } else {
+                        // In place: the line keeps its position among the others
+                        currentPrescription.replaceGuidelineInLine(change.prodID, change.guideline);
+                    }
+                    break;
+            }
+        }
+    }
+
     /**
      * Doctor enters the treatment ending date.
      * Sets both the prescription date (current date) and ending date.
@@ -422,8 +716,7 @@ public class ConsultationTerminal {
 
         // Check precondition: prescription edition mode must be active
         if (!prescriptionEditionMode) {
-            throw new ProceduralException(
-                    "Cannot set ending date: prescription edition not initialized");
+            throw ENDING_DATE_NO_EDITION;
         }
 
         // Validate input parameter
@@ -432,12 +725,30 @@ public class ConsultationTerminal {
         }
 
         // Validate that ending date is appropriate
+        String error = checkEndingDate(date);
+        if (error != null) {
+            throw new IncorrectEndingDateException(error);
+        }
+
+        // Delegate to internal operation
+        setPrescDateAndEndDate(date);
+
+        // Mark treatment dates as set
+        this.treatmentDatesSet = true;
+    }
+
+    /**
+     * Internal operation: checks that an ending date is at least one day ahead.
+     *
+     * @param date the treatment ending date
+     * @return the reason the date is incorrect, or null if it is valid
+     */
+    private static String checkEndingDate(Date date) {
         Date currentDate = new Date();
 
         // Check if date is in the past or equal to current date
         if (date.before(currentDate) || date.equals(currentDate)) {
-            throw new IncorrectEndingDateException(
-                    "Ending date cannot be in the past or equal to current date");
+            return "Ending date cannot be in the past or equal to current date";
         }
 
         // Check if date is too close (less than 1 day ahead)
@@ -445,15 +756,9 @@ public class ConsultationTerminal {
         long diffInDays = diffInMillis / (1000 * 60 * 60 * 24);
 
         if (diffInDays < 1) {
-            throw new IncorrectEndingDateException(
-                    "Ending date is too close to current date (minimum 1 day required)");
+            return "Ending date is too close to current date (minimum 1 day required)";
         }
-
-        // Delegate to internal operation
-        setPrescDateAndEndDate(date);
-
-        // Mark treatment dates as set
-        this.treatmentDatesSet = true;
+        return null;
     }
 
     /**
@@ -486,17 +791,21 @@ public class ConsultationTerminal {
 
         // Check precondition: prescription edition mode must be active
         if (!prescriptionEditionMode) {
-            throw new ProceduralException(
-                    "Cannot finish edition: prescription edition not initialized");
+            throw FINISH_NO_EDITION;
         }
 
         // Exit prescription edition mode
         this.prescriptionEditionMode = false;
+
+        // The AI session is no longer needed by this edition
+        releaseAI();
     }
 
     /**
      * Doctor stamps their electronic signature on the prescription.
-     * Incorporates the digital signature into the medical prescription.
+     * Incorporates the digital signature into the medical prescription. With a
+     * PrescriptionSigner injected, the signature covers the canonical encoding of the
+     * prescription; otherwise a placeholder signature is stamped.
      *
      * CONTRACT:
      * - Preconditions:
@@ -510,41 +819,19 @@ public class ConsultationTerminal {
     public void stampeeSignature() throws eSignatureException, ProceduralException {
 
         // Check preconditions
-        if (!prescriptionEditionMode) {
-            throw new ProceduralException(
-                    "Cannot stamp signature: prescription edition not initialized");
+        MedicalPrescription prescription = prescriptionToStamp();
+
+        DigitalSignature digitalSignature;
+        if (prescriptionSigner != null) {
+            // Sign the canonical encoding of the prescription with the doctor's key
+            digitalSignature = prescriptionSigner.sign(prescription);
+        } else {
+            // No key available: placeholder signature, not verifiable
+            byte[] signature = ("DIGITAL_SIGNATURE_" + System.currentTimeMillis()).getBytes();
+            digitalSignature = new DigitalSignature(signature);
         }
 
-        if (!treatmentDatesSet) {
-            throw new ProceduralException(
-                    "Cannot stamp signature: treatment ending date not set. " +
-                            "Call enterTreatmentEndingDate() first");
-        }
-
-        // Simulate obtaining doctor's digital signature
-        // In a real system, this would involve:
-        // 1. Reading from a smart card or certificate
-        // 2. Cryptographic signing of the prescription data
-        // 3. Hardware security module interaction
-
-        try {
-            // For now, create a simple signature representation
-            // This would be replaced with actual cryptographic signature
-            String signatureData = "DIGITAL_SIGNATURE_" + System.currentTimeMillis();
-            byte[] signature = signatureData.getBytes();
-
-            DigitalSignature digitalSignature = new DigitalSignature(signature);
-
-            // Stamp signature on prescription
-            currentPrescription.seteSign(digitalSignature);
-
-            // Mark signature as stamped
-            this.signatureStamped = true;
-
-        } catch (Exception e) {
-            throw new eSignatureException(
-                    "Error generating or stamping digital signature: " + e.getMessage());
-        }
+        stamp(digitalSignature);
     }
 
     /**
@@ -579,70 +866,587 @@ public class ConsultationTerminal {
 
         // Check preconditions
         if (!prescriptionEditionMode) {
-            throw new ProceduralException(
-                    "Cannot send data: prescription edition not initialized");
+            throw SEND_NO_EDITION;
         }
 
         if (!treatmentDatesSet) {
-            throw new ProceduralException(
-                    "Cannot send data: treatment ending date not set");
+            throw SEND_NO_ENDING_DATE;
         }
 
         if (!signatureStamped) {
-            throw new ProceduralException(
-                    "Cannot send data: electronic signature not stamped. " +
-                            "Call stampeeSignature() first");
+            throw SEND_NO_SIGNATURE;
         }
 
         // Send history and prescription to HNS for validation and storage
         // This will generate a new treatment code
-        MedicalPrescription updatedPrescription =
-                healthNationalService.sendHistoryAndPrescription(
-                        currentPrescription.getCip(),
-                        currentMedicalHistory,
-                        currentIllness,
-                        currentPrescription
-                );
+        MedicalPrescription updatedPrescription;
+        if (deltaUploadEnabled && baseSnapshot != null) {
+            // Send only what changed since initRevision
+            updatedPrescription = healthNationalService.sendHistoryAndPrescriptionDelta(
+                    currentPrescription.getCip(),
+                    currentIllness,
+                    baseSnapshot.diff(currentMedicalHistory, currentPrescription),
+                    currentMedicalHistory,
+                    currentPrescription
+            );
+        } else {
+            updatedPrescription = healthNationalService.sendHistoryAndPrescription(
+                    currentPrescription.getCip(),
+                    currentMedicalHistory,
+                    currentIllness,
+                    currentPrescription
+            );
+        }
 
         // Replace current prescription with the updated one (with new code)
         // This simulates the destruction of old instance and creation of new one
         this.currentPrescription = updatedPrescription;
 
+        // The uploaded state is the new base for later deltas
+        if (baseSnapshot != null) {
+            this.baseSnapshot = ConsultationSnapshot.capture(currentMedicalHistory, updatedPrescription);
+        }
+
         // Return the updated prescription with treatment code
         return updatedPrescription;
     }
 
+    /**
+     * Asynchronous sendHistoryAndPrescription(): stores the medical history and the signed
+     * prescription in the outbox and returns without waiting for the HNS, so the doctor
+     * can go on with the next patient.
+     *
+     * Same preconditions as sendHistoryAndPrescription(). The outbox always uploads the
+     * full data, and the current prescription keeps no treatment code: it is only reported
+     * through the returned future. Later sends of this revision upload the full data too.
+     *
+     * @return completed with the treatment code assigned by the HNS, or with the
+     *         exception that made the HNS reject the upload
+     * @throws IOException if the upload could not be stored in the outbox
+     * @throws ProceduralException if preconditions not met
+     */
+    public CompletableFuture<ePrescripCode> sendHistoryAndPrescriptionAsync()
+            throws IOException, ProceduralException {
+
+        if (!prescriptionEditionMode) {
+            throw SEND_NO_EDITION;
+        }
+        if (!treatmentDatesSet) {
+            throw SEND_NO_ENDING_DATE;
+        }
+        if (!signatureStamped) {
+            throw SEND_NO_SIGNATURE;
+        }
+        if (prescriptionOutbox == null) {
+            throw new IllegalStateException("No prescription outbox configured");
+        }
+
+        CompletableFuture<ePrescripCode> result =
+                prescriptionOutbox.submit(currentMedicalHistory, currentPrescription);
+
+        // The HNS version the delta base describes is unknown until the upload is accepted
+        this.baseSnapshot = null;
+        return result;
+    }
+
+    // ========== NON-THROWING INPUT EVENTS ==========
+    // Same contracts as the homonymous input events, for callers that meet their failures
+    // routinely (UI polling, bulk imports): expected failures are returned as a status
+    // instead of thrown, and nothing changes unless OK is returned. Invalid arguments
+    // still throw IllegalArgumentException.
+
+    /**
+     * @see #enterMedicalAssessmentInHistory(String)
+     */
+    public TerminalStatus tryEnterMedicalAssessmentInHistory(String assess) {
+        if (!revisionInitialized) {
+            return TerminalStatus.REVISION_NOT_INITIALIZED;
+        }
+        if (assess == null || assess.trim().isEmpty()) {
+            throw new IllegalArgumentException("Assessment cannot be null or empty");
+        }
+        currentMedicalHistory.addMedicalHistoryAnnotations(assess);
+        return TerminalStatus.OK;
+    }
+
+    /**
+     * @see #initMedicalPrescriptionEdition()
+     */
+    public TerminalStatus tryInitMedicalPrescriptionEdition() {
+        if (!revisionInitialized) {
+            return TerminalStatus.REVISION_NOT_INITIALIZED;
+        }
+        this.prescriptionEditionMode = true;
+        return TerminalStatus.OK;
+    }
+
+    /**
+     * @see #enterMedicineWithGuidelines(ProductID, String[])
+     */
+    public TerminalStatus tryEnterMedicineWithGuidelines(ProductID prodID, String[] instruc) {
+        if (!prescriptionEditionMode) {
+            return TerminalStatus.EDITION_NOT_INITIALIZED;
+        }
+        if (prodID == null) {
+            throw new IllegalArgumentException("ProductID cannot be null");
+        }
+        GuidelineParser.Result parsed = GuidelineParser.parse(instruc);
+        if (!parsed.isValid()) {
+            return TerminalStatus.INCORRECT_TAKING_GUIDELINES;
+        }
+        return currentPrescription.tryAddLine(prodID, parsed.getGuideline())
+                ? TerminalStatus.OK : TerminalStatus.PRODUCT_ALREADY_IN_PRESCRIPTION;
+    }
+
+    /**
+     * @see #modifyDoseInLine(ProductID, float)
+     */
+    public TerminalStatus tryModifyDoseInLine(ProductID prodID, float newDose) {
+        if (!prescriptionEditionMode) {
+            return TerminalStatus.EDITION_NOT_INITIALIZED;
+        }
+        if (prodID == null) {
+            throw new IllegalArgumentException("ProductID cannot be null");
+        }
+        if (newDose <= 0) {
+            throw new IllegalArgumentException("Dose must be greater than 0");
+        }
+        return currentPrescription.tryModifyDoseInLine(prodID, newDose)
+                ? TerminalStatus.OK : TerminalStatus.PRODUCT_NOT_IN_PRESCRIPTION;
+    }
+
+    /**
+     * @see #removeLine(ProductID)
+     */
+    public TerminalStatus tryRemoveLine(ProductID prodID) {
+        if (!prescriptionEditionMode) {
+            return TerminalStatus.EDITION_NOT_INITIALIZED;
+        }
+        if (prodID == null) {
+            throw new IllegalArgumentException("ProductID cannot be null");
+        }
+        return currentPrescription.tryRemoveLine(prodID)
+                ? TerminalStatus.OK : TerminalStatus.PRODUCT_NOT_IN_PRESCRIPTION;
+    }
 
+    /**
+     * AI failures are not expected ones and are still thrown.
+     * @see #callDecisionMakingAI()
+     */
+    public TerminalStatus tryCallDecisionMakingAI() throws AIException {
+        if (!prescriptionEditionMode) {
+            return TerminalStatus.EDITION_NOT_INITIALIZED;
+        }
+        startAI();
+        return TerminalStatus.OK;
+    }
+
+    /**
+     * Checks the preconditions of askAIForSuggest() and streamAISuggestions(), e.g. to
+     * enable the prompt box.
+     * @return OK if a prompt can be sent, or the first unmet precondition
+     */
+    public TerminalStatus checkAskAIForSuggest() {
+        if (!prescriptionEditionMode) {
+            return TerminalStatus.EDITION_NOT_INITIALIZED;
+        }
+        discardBrokenAI();
+        return aiInitialized ? TerminalStatus.OK : TerminalStatus.AI_NOT_INITIALIZED;
+    }
+
+    /**
+     * Checks the preconditions of extractGuidelinesFromSugg(), e.g. to enable the button
+     * that lists the suggestions.
+     * @return OK if there is an answer to parse, or the first unmet precondition
+     */
+    public TerminalStatus checkExtractGuidelinesFromSugg() {
+        if (!prescriptionEditionMode) {
+            return TerminalStatus.EDITION_NOT_INITIALIZED;
+        }
+        if (!aiInitialized) {
+            return TerminalStatus.AI_NOT_INITIALIZED;
+        }
+        return lastAIResponse != null ? TerminalStatus.OK : TerminalStatus.NO_AI_RESPONSE;
+    }
+
+    /**
+     * @see #enterTreatmentEndingDate(Date)
+     */
+    public TerminalStatus tryEnterTreatmentEndingDate(Date date) {
+        if (!prescriptionEditionMode) {
+            return TerminalStatus.EDITION_NOT_INITIALIZED;
+        }
+        if (date == null) {
+            throw new IllegalArgumentException("Ending date cannot be null");
+        }
+        if (checkEndingDate(date) != null) {
+            return TerminalStatus.INCORRECT_ENDING_DATE;
+        }
+        setPrescDateAndEndDate(date);
+        this.treatmentDatesSet = true;
+        return TerminalStatus.OK;
+    }
+
+    /**
+     * @see #finishMedicalPrescriptionEdition()
+     */
+    public TerminalStatus tryFinishMedicalPrescriptionEdition() {
+        if (!prescriptionEditionMode) {
+            return TerminalStatus.EDITION_NOT_INITIALIZED;
+        }
+        this.prescriptionEditionMode = false;
+        releaseAI();
+        return TerminalStatus.OK;
+    }
+
+    /**
+     * Checks the preconditions of stampeeSignature(), e.g. to enable the signing button.
+     * @return OK if the signature can be stamped, or the first unmet precondition
+     */
+    public TerminalStatus checkStampeeSignature() {
+        if (!prescriptionEditionMode) {
+            return TerminalStatus.EDITION_NOT_INITIALIZED;
+        }
+        if (!treatmentDatesSet) {
+            return TerminalStatus.ENDING_DATE_NOT_SET;
+        }
+        return TerminalStatus.OK;
+    }
+
+    /**
+     * Checks the preconditions of sendHistoryAndPrescription(), e.g. to enable the send button.
+     * @return OK if the prescription can be sent, or the first unmet precondition
+     */
+    public TerminalStatus checkSendHistoryAndPrescription() {
+        TerminalStatus status = checkStampeeSignature();
+        if (status != TerminalStatus.OK) {
+            return status;
+        }
+        return signatureStamped ? TerminalStatus.OK : TerminalStatus.SIGNATURE_NOT_STAMPED;
+    }
 
     // ========== INTERNAL OPERATIONS ==========
 
+    /**
+     * Internal operation: releases what the terminal holds when its session is discarded.
+     */
+    void close() {
+        releaseAI();
+    }
+
+    /**
+     * Internal operation: checks the preconditions of stampeeSignature().
+     *
+     * @return the prescription to sign
+     * @throws ProceduralException if preconditions not met
+     */
+    MedicalPrescription prescriptionToStamp() throws ProceduralException {
+        if (!prescriptionEditionMode) {
+            throw STAMP_NO_EDITION;
+        }
+        if (!treatmentDatesSet) {
+            throw STAMP_NO_ENDING_DATE;
+        }
+        return currentPrescription;
+    }
+
+    /**
+     * Internal operation: stamps a signature of the prescription returned by
+     * prescriptionToStamp(), e.g. one signed in a batch with other sessions.
+     */
+    void stamp(DigitalSignature signature) {
+        currentPrescription.seteSign(signature);
+        this.signatureStamped = true;
+    }
+
+    /**
+     * Internal operation: the AI serving the current edition.
+     */
+    private DecisionMakingAI activeAI() {
+        AILease lease = aiLease;
+        return lease != null ? lease.ai() : decisionMakingAI;
+    }
+
+    /**
+     * Internal operation: gives the leased AI session back to its pool, once the streams
+     * still reading from it end. The AI must be called again before asking it anything else.
+     */
+    private void releaseAI() {
+        AILease lease = aiLease;
+        if (lease != null) {
+            this.aiLease = null;
+            this.aiInitialized = false;
+            lease.release();
+        }
+    }
+
+    /**
+     * Internal operation: drops the leased AI session if a call to it failed, so the pool
+     * replaces it. The AI must be called again.
+     */
+    private void discardBrokenAI() {
+        AILease lease = aiLease;
+        if (lease != null && lease.isBroken()) {
+            releaseAI();
+        }
+    }
+
+    private long startAIRequest() {
+        synchronized (aiResponseLock) {
+            return ++aiRequests;
+        }
+    }
+
+    /**
+     * Internal operation: stores the answer to a prompt, unless a later prompt was sent.
+     */
+    private void recordAIResponse(long request, String response) {
+        synchronized (aiResponseLock) {
+            if (request == aiRequests) {
+                this.lastAIResponse = response;
+            }
+        }
+    }
+
+    /**
+     * Internal operation: forgets the last answer, and the answers of streams still running.
+     */
+    private void clearAIResponse() {
+        synchronized (aiResponseLock) {
+            aiRequests++;
+            this.lastAIResponse = null;
+        }
+    }
+
+    /**
+     * Internal operation: stores the complete answer of each subscription to a stream of
+     * chunks once it completes, as the answer of a new prompt.
+     */
+    private Flow.Publisher<String> recordingAnswer(Flow.Publisher<String> chunks) {
+        return subscriber -> {
+            long request = startAIRequest();
+            StringBuilder answer = new StringBuilder();
+            chunks.subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscriber.onSubscribe(subscription);
+                }
+
+                @Override
+                public void onNext(String chunk) {
+                    answer.append(chunk);
+                    subscriber.onNext(chunk);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    subscriber.onError(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    recordAIResponse(request, answer.toString());
+                    subscriber.onComplete();
+                }
+            });
+        };
+    }
+
+    /**
+     * Internal operation: fails a subscription before anything is requested.
+     */
+    private static void reject(Flow.Subscriber<?> subscriber, Throwable error) {
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        subscriber.onError(error);
+    }
+
+    /**
+     * A validated suggestion, ready to be applied.
+     */
+    private static final class PlannedChange {
+        private final Suggestion.Action action;
+        private final ProductID prodID;
+        private final TakingGuideline guideline;
+        private final boolean doseOnly;
+
+        private PlannedChange(Suggestion.Action action, ProductID prodID, TakingGuideline guideline, boolean doseOnly) {
+            this.action = action;
+            this.prodID = prodID;
+            this.guideline = guideline;
+            this.doseOnly = doseOnly;
+        }
+    }
+
+    /**
+     * Internal operation: validates a batch of suggestions in one pass.
+     * Tracks the guideline every product would have after each suggestion, so that
+     * conflicts inside the batch are detected as well as conflicts with the prescription.
+     *
+     * @param suggestions the suggestions to validate
+     * @return the changes to apply, in order
+     */
+    private List<PlannedChange> planSuggestions(List<Suggestion> suggestions)
+            throws ProductAlreadyInPrescriptionException,
+            ProductNotInPrescriptionException,
+            IncorrectTakingGuidelinesException {
+
+        // Guidelines of the products touched by the batch; null once eliminated
+        Map<ProductID, TakingGuideline> working = new HashMap<>();
+        List<PlannedChange> changes = new ArrayList<>(suggestions.size());
+
+        for (Suggestion suggestion : suggestions) {
+            if (suggestion == null || suggestion.getAction() == null || suggestion.getProductID() == null) {
+                throw new IllegalArgumentException("Suggestion must have an action and a ProductID");
+            }
+            ProductID prodID = suggestion.getProductID();
+            TakingGuideline current;
+            if (working.containsKey(prodID)) {
+                current = working.get(prodID);
+            } else {
+                MedicalPrescriptionLine line = currentPrescription.getLines().get(prodID);
+                current = line != null ? line.getTakingGuideline() : null;
+            }
+
+            switch (suggestion.getAction()) {
+                case INSERT: {
+                    if (current != null) {
+                        throw new ProductAlreadyInPrescriptionException();
+                    }
+                    GuidelineParser.Result parsed = GuidelineParser.parse(suggestion.getGuidelines());
+                    if (!parsed.isValid()) {
+                        throw parsed.getError().toException();
+                    }
+                    working.put(prodID, parsed.getGuideline());
+                    changes.add(new PlannedChange(Suggestion.Action.INSERT, prodID, parsed.getGuideline(), false));
+                    break;
+                }
+                case ELIMINATE: {
+                    if (current == null) {
+                        throw new ProductNotInPrescriptionException();
+                    }
+                    working.put(prodID, null);
+                    changes.add(new PlannedChange(Suggestion.Action.ELIMINATE, prodID, null, false));
+                    break;
+                }
+                case MODIFY: {
+                    if (current == null) {
+                        throw new ProductNotInPrescriptionException();
+                    }
+                    GuidelineParser.Result parsed =
+                            GuidelineParser.parseModification(current, suggestion.getGuidelines());
+                    if (!parsed.isValid()) {
+                        throw parsed.getError().toException();
+                    }
+                    TakingGuideline modified = parsed.getGuideline();
+                    working.put(prodID, modified);
+                    changes.add(new PlannedChange(Suggestion.Action.MODIFY, prodID, modified,
+                            ConsultationSnapshot.onlyDoseDiffers(current, modified)));
+                    break;
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Internal operation: downloads the medical history and the prescription concurrently.
+     * Both calls share one deadline; the first failure cancels the sibling call and is
+     * rethrown with the same exception types as the sequential download.
+     *
+     * @param cip the patient's health card ID
+     * @param illness the illness being treated
+     * @throws ConnectException if network connection fails or the deadline expires
+     * @throws HealthCardIDException if patient ID not registered in HNS
+     * @throws AnyCurrentPrescriptionException if no active prescription for this illness
+     */
+    private void fetchInParallel(HealthCardID cip, String illness)
+            throws ConnectException, HealthCardIDException, AnyCurrentPrescriptionException, IncorrectParametersException {
+
+        CompletionService<Object> completion = new ExecutorCompletionService<>(fetchExecutor);
+        Future<Object> historyCall = completion.submit(() -> healthNationalService.getMedicalHistory(cip));
+        Future<Object> prescriptionCall = completion.submit(() -> healthNationalService.getMedicalPrescription(cip, illness));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(fetchDeadlineMillis);
+        try {
+            // Take the calls in completion order so the first failure is seen immediately
+            for (int pending = 2; pending > 0; pending--) {
+                Future<Object> done = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    throw new ConnectException(
+                            "HNS did not answer within " + fetchDeadlineMillis + " ms");
+                }
+                done.get();
+            }
+
+            this.currentMedicalHistory = (MedicalHistory) historyCall.get();
+            this.currentPrescription = (MedicalPrescription) prescriptionCall.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectException("Interrupted while downloading patient data");
+        } catch (ExecutionException e) {
+            rethrowFetchFailure(e.getCause());
+        } finally {
+            // Cancel whatever is still running (no-op for completed calls)
+            historyCall.cancel(true);
+            prescriptionCall.cancel(true);
+        }
+    }
+
+    /**
+     * Internal operation: rethrows the failure of a download with its original type.
+     */
+    private static void rethrowFetchFailure(Throwable cause)
+            throws ConnectException, HealthCardIDException, AnyCurrentPrescriptionException, IncorrectParametersException {
+        if (cause instanceof ConnectException) {
+            throw (ConnectException) cause;
+        }
+        if (cause instanceof HealthCardIDException) {
+            throw (HealthCardIDException) cause;
+        }
+        if (cause instanceof AnyCurrentPrescriptionException) {
+            throw (AnyCurrentPrescriptionException) cause;
+        }
+        if (cause instanceof IncorrectParametersException) {
+            throw (IncorrectParametersException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IllegalStateException("Unexpected failure downloading patient data", cause);
+    }
+
     /**
      * Internal operation: Creates a medical prescription line with all details.
      * This method encapsulates the logic for validating and creating prescription lines.
      *
      * @param prodID the product identifier
      * @param instruc the guidelines array
+     * @throws ProductAlreadyInPrescriptionException if product already in prescription
      * @throws IncorrectTakingGuidelinesException if format is incorrect
      */
     private void createMedPrescriptionLine(ProductID prodID, String[] instruc)
-            throws IncorrectTakingGuidelinesException {
+            throws ProductAlreadyInPrescriptionException, IncorrectTakingGuidelinesException {
 
-        // Validate guidelines array has minimum required elements
-        // Expected format: [dayMoment, duration, dose, freq, freqUnit, instructions]
-        if (instruc.length < 5) {
-            throw new IncorrectTakingGuidelinesException(
-                    "Insufficient guidelines data. Expected at least 5 elements: " +
-                            "[dayMoment, duration, dose, freq, freqUnit]");
+        // Parse and validate every field of [dayMoment, duration, dose, freq, freqUnit, instructions]
+        GuidelineParser.Result parsed = GuidelineParser.parse(instruc);
+        if (!parsed.isValid()) {
+            throw parsed.getError().toException();
         }
 
-        // Validation logic for each field would go here
-        // For now, basic validation that fields are not null/empty
-        for (int i = 0; i < 5; i++) {
-            if (instruc[i] == null || instruc[i].trim().isEmpty()) {
-                throw new IncorrectTakingGuidelinesException(
-                        "Guideline field at position " + i + " cannot be null or empty");
-            }
-        }
+        // The guideline is already valid: the prescription only checks the product
+        currentPrescription.addValidatedLine(prodID, parsed.getGuideline());
     }
 
 
@@ -0,0 +1,293 @@
+package medicalconsultation;
+
+import exceptions.IncorrectTakingGuidelinesException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses and validates taking guidelines without throwing.
+ *
+ * The input is the array [dayMoment, duration, dose, freq, freqUnit, instructions] used by
+ * the prescription edition. Enumerations are resolved through lookup tables and numbers
+ * are read by hand, so invalid input is reported through the returned Result instead of
+ * through IllegalArgumentException or NumberFormatException. Failed results are shared
+ * constants: rejecting a guideline allocates nothing.
+ *
+ * Numbers are accepted as an optional sign, digits and an optional fractional part,
+ * e.g. "15", "0.5", "+2.25" or ".5". Exponents, "NaN" and "Infinity" are rejected.
+ */
+public final class GuidelineParser {
+
+    public static final int FIELD_COUNT = 6;
+
+    /**
+     * Field-level error codes of a guideline.
+     */
+    public enum FieldError {
+        MISSING_FIELDS(-1, "Incomplete taking guidelines. Expected at least 6 elements: "
+                + "[dayMoment, duration, dose, freq, freqUnit, instructions]"),
+        INVALID_DAY_MOMENT(0, "Invalid day moment"),
+        INVALID_DURATION(1, "Duration must be a number"),
+        NON_POSITIVE_DURATION(1, "Duration must be positive"),
+        INVALID_DOSE(2, "Dose must be a number"),
+        NON_POSITIVE_DOSE(2, "Dose must be positive"),
+        INVALID_FREQUENCY(3, "Frequency must be a number"),
+        NON_POSITIVE_FREQUENCY(3, "Frequency must be positive"),
+        INVALID_FREQUENCY_UNIT(4, "Invalid frequency unit"),
+        EMPTY_INSTRUCTIONS(5, "Instructions cannot be empty");
+
+        private final int field;
+        private final String message;
+        private final Result result;
+        private final IncorrectTakingGuidelinesException exception;
+
+        FieldError(int field, String message) {
+            this.field = field;
+            this.message = message;
+            this.result = new Result(null, this);
+            this.exception = IncorrectTakingGuidelinesException.stackless(message);
+        }
+
+        /**
+         * @return position of the wrong field in the guidelines array, or -1 if the array is incomplete
+         */
+        public int getField() {
+            return field;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * @return a shared, stackless exception reporting this error
+         */
+        public IncorrectTakingGuidelinesException toException() {
+            return exception;
+        }
+    }
+
+    /**
+     * Outcome of parsing a guideline: either the guideline or the error found.
+     */
+    public static final class Result {
+        private final TakingGuideline guideline;
+        private final FieldError error;
+
+        private Result(TakingGuideline guideline, FieldError error) {
+            this.guideline = guideline;
+            this.error = error;
+        }
+
+        public boolean isValid() {
+            return error == null;
+        }
+
+        /**
+         * @return the parsed guideline, or null if not valid
+         */
+        public TakingGuideline getGuideline() {
+            return guideline;
+        }
+
+        /**
+         * @return the first error found, or null if valid
+         */
+        public FieldError getError() {
+            return error;
+        }
+    }
+
+    private static final Map<String, dayMoment> DAY_MOMENTS = new HashMap<>();
+    private static final Map<String, FqUnit> FQ_UNITS = new HashMap<>();
+
+    static {
+        for (dayMoment moment : dayMoment.values()) {
+            DAY_MOMENTS.put(moment.name(), moment);
+        }
+        for (FqUnit unit : FqUnit.values()) {
+            FQ_UNITS.put(unit.name(), unit);
+        }
+    }
+
+    // Powers of ten exactly representable as float
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private GuidelineParser() {
+    }
+
+    /**
+     * Parses a guidelines array in a single pass, stopping at the first wrong field.
+     *
+     * @param instruc array with 6 elements: [dayMoment, duration, dose, freq, freqUnit, instructions]
+     * @return the parsed guideline, or the error found
+     */
+    public static Result parse(String[] instruc) {
+        if (instruc == null || instruc.length < FIELD_COUNT) {
+            return FieldError.MISSING_FIELDS.result;
+        }
+        dayMoment dM = instruc[0] == null ? null : DAY_MOMENTS.get(instruc[0]);
+        if (dM == null) {
+            return FieldError.INVALID_DAY_MOMENT.result;
+        }
+        float duration = parseFloat(instruc[1]);
+        if (Float.isNaN(duration)) {
+            return FieldError.INVALID_DURATION.result;
+        }
+        float dose = parseFloat(instruc[2]);
+        if (Float.isNaN(dose)) {
+            return FieldError.INVALID_DOSE.result;
+        }
+        float freq = parseFloat(instruc[3]);
+        if (Float.isNaN(freq)) {
+            return FieldError.INVALID_FREQUENCY.result;
+        }
+        FqUnit freqUnit = instruc[4] == null ? null : FQ_UNITS.get(instruc[4]);
+        if (freqUnit == null) {
+            return FieldError.INVALID_FREQUENCY_UNIT.result;
+        }
+
+        FieldError error = validate(dM, duration, dose, freq, freqUnit, instruc[5]);
+        if (error != null) {
+            return error.result;
+        }
+        return new Result(new TakingGuideline(dM, duration, dose, freq, freqUnit, instruc[5]), null);
+    }
+
+    /**
+     * Parses the changes of a MODIFY suggestion over an existing guideline.
+     * Empty fields keep the value of the base guideline; the base is not modified.
+     *
+     * @param base the current guideline
+     * @param changes array with 6 elements, empty where the value does not change
+     * @return the modified guideline, or the error found
+     */
+    public static Result parseModification(TakingGuideline base, String[] changes) {
+        if (changes == null || changes.length < FIELD_COUNT) {
+            return FieldError.MISSING_FIELDS.result;
+        }
+        dayMoment dM = base.getdMoment();
+        if (isChanged(changes[0])) {
+            dM = DAY_MOMENTS.get(changes[0]);
+            if (dM == null) {
+                return FieldError.INVALID_DAY_MOMENT.result;
+            }
+        }
+        float duration = base.getDuration();
+        if (isChanged(changes[1]) && Float.isNaN(duration = parseFloat(changes[1]))) {
+            return FieldError.INVALID_DURATION.result;
+        }
+        float dose = base.getPosology().getDose();
+        if (isChanged(changes[2]) && Float.isNaN(dose = parseFloat(changes[2]))) {
+            return FieldError.INVALID_DOSE.result;
+        }
+        float freq = base.getPosology().getFreq();
+        if (isChanged(changes[3]) && Float.isNaN(freq = parseFloat(changes[3]))) {
+            return FieldError.INVALID_FREQUENCY.result;
+        }
+        FqUnit freqUnit = base.getPosology().getFreqUnit();
+        if (isChanged(changes[4])) {
+            freqUnit = FQ_UNITS.get(changes[4]);
+            if (freqUnit == null) {
+                return FieldError.INVALID_FREQUENCY_UNIT.result;
+            }
+        }
+        String instructions = isChanged(changes[5]) ? changes[5] : base.getInstructions();
+
+        FieldError error = validate(dM, duration, dose, freq, freqUnit, instructions);
+        if (error != null) {
+            return error.result;
+        }
+        return new Result(new TakingGuideline(dM, duration, dose, freq, freqUnit, instructions), null);
+    }
+
+    private static boolean isChanged(String field) {
+        return field != null && !field.isBlank();
+    }
+
+    /**
+     * Checks the values of a guideline.
+     *
+     * @return the first error found, or null if the values are valid
+     */
+    static FieldError validate(dayMoment dM, float duration, float dose, float freq, FqUnit freqUnit,
+                          String instructions) {
+        if (dM == null) {
+            return FieldError.INVALID_DAY_MOMENT;
+        }
+        if (!(duration > 0) || Float.isInfinite(duration)) {
+            return FieldError.NON_POSITIVE_DURATION;
+        }
+        if (!(dose > 0) || Float.isInfinite(dose)) {
+            return FieldError.NON_POSITIVE_DOSE;
+        }
+        if (!(freq > 0) || Float.isInfinite(freq)) {
+            return FieldError.NON_POSITIVE_FREQUENCY;
+        }
+        if (freqUnit == null) {
+            return FieldError.INVALID_FREQUENCY_UNIT;
+        }
+        if (instructions == null || instructions.isBlank()) {
+            return FieldError.EMPTY_INSTRUCTIONS;
+        }
+        return null;
+    }
+
+    /**
+     * Reads a decimal number without throwing.
+     *
+     * @param text the text, optionally surrounded by whitespace
+     * @return the number, or NaN if the text is not a plain decimal number
+     */
+    static float parseFloat(String text) {
+        if (text == null) {
+            return Float.NaN;
+        }
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean fraction = false;
+        boolean exact = true;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (exact) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    exact = mantissa < (1 << 24);
+                }
+                if (fraction) {
+                    decimals++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                return Float.NaN;
+            }
+        }
+        if (digits == 0) {
+            return Float.NaN;
+        }
+        if (!exact || decimals >= FLOAT_POWERS_OF_TEN.length) {
+            // Long or very precise numbers: the grammar is already checked, this cannot throw
+            return Float.parseFloat(text.substring(start, end));
+        }
+        // Exact operands: a single correctly rounded division
+        float value = mantissa / FLOAT_POWERS_OF_TEN[decimals];
+        return negative ? -value : value;
+    }
+}
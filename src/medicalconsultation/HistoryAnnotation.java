@@ -0,0 +1,72 @@
+package medicalconsultation;
+
+import java.util.Date;
+
+/**
+ * Represents one annotation of a patient's medical history.
+ * Records when it was written and the membership number of the authoring doctor.
+ */
+public final class HistoryAnnotation {
+    private final long timestamp;
+    private final int membShipNumb;
+    private final String text;
+
+    public HistoryAnnotation(Date timestamp, int membShipNumb, String text) {
+        if (timestamp == null) {
+            throw new IllegalArgumentException("Timestamp cannot be null");
+        }
+        if (membShipNumb < 0) {
+            throw new IllegalArgumentException("Membership number cannot be negative");
+        }
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalArgumentException("Annotation cannot be null or empty");
+        }
+        this.timestamp = timestamp.getTime();
+        this.membShipNumb = membShipNumb;
+        this.text = text;
+    }
+
+    public Date getTimestamp() {
+        return new Date(timestamp);
+    }
+
+    /**
+     * Returns the timestamp without creating a Date.
+     * @return milliseconds since the epoch
+     */
+    public long getTimestampMillis() {
+        return timestamp;
+    }
+
+    public int getMembShipNumb() {
+        return membShipNumb;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        HistoryAnnotation that = (HistoryAnnotation) o;
+        return timestamp == that.timestamp && membShipNumb == that.membShipNumb && text.equals(that.text);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(timestamp);
+        result = 31 * result + membShipNumb;
+        return 31 * result + text.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryAnnotation{" +
+                "timestamp=" + getTimestamp() +
+                ", membShipNumb=" + membShipNumb +
+                ", text='" + text + '\'' +
+                '}';
+    }
+}
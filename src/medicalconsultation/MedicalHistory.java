@@ -2,13 +2,39 @@ package medicalconsultation;
 
 import data.HealthCardID;
 import exceptions.IncorrectParametersException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a patient's medical history.
+ *
+ * The history is kept as an append-only log of annotations in chronological order, each
+ * one stamped with its date and authoring doctor. The text is every annotation followed
+ * by a line break; appending never copies the existing text, and the full String is only
+ * built when getHistory() is called, and cached until the next append.
+ *
+ * Annotations are indexed by date and by doctor, so range queries do not scan the log.
  */
 public class MedicalHistory {
     private HealthCardID cip;
     private int membShipNumb;
+
+    // Append-only annotation log, with the timestamp and text end offset of every annotation
+    private final List<HistoryAnnotation> annotations;
+    private long[] timestamps;
+    private int[] annotationEnds;
+    private int length;
+
+    // Annotations written by each doctor, in chronological order
+    private final Map<Integer, List<HistoryAnnotation>> annotationsByDoctor;
+
+    // Materialized history text, null when it must be rebuilt
     private String history;
 
     public MedicalHistory(HealthCardID cip, int memberShipNum) throws IncorrectParametersException {
@@ -20,11 +46,17 @@ public class MedicalHistory {
         }
         this.cip = cip;
         this.membShipNumb = memberShipNum;
+        this.annotations = new ArrayList<>();
+        this.timestamps = new long[16];
+        this.annotationEnds = new int[16];
+        this.length = 0;
+        this.annotationsByDoctor = new HashMap<>();
         this.history = "";
     }
 
     /**
      * Adds medical history annotations.
+     * The annotation is stamped with the current date and the current doctor.
      *
      * @param annot the annotation to add
      * @throws IllegalArgumentException if annotation is null or empty
@@ -33,7 +65,51 @@ public class MedicalHistory {
         if (annot == null || annot.trim().isEmpty()) {
             throw new IllegalArgumentException("Annotation cannot be null or empty");
         }
-        this.history += annot + "\n";
+        // Keep the log ordered even if the system clock goes backwards
+        long now = System.currentTimeMillis();
+        if (!annotations.isEmpty()) {
+            now = Math.max(now, timestamps[annotations.size() - 1]);
+        }
+        append(new HistoryAnnotation(new Date(now), membShipNumb, annot));
+    }
+
+    /**
+     * Adds an annotation record, e.g. when rebuilding a history downloaded from the HNS.
+     *
+     * @param annotation the annotation to add
+     * @throws IllegalArgumentException if annotation is null or older than the last one
+     */
+    public void addAnnotation(HistoryAnnotation annotation) {
+        if (annotation == null) {
+            throw new IllegalArgumentException("Annotation cannot be null");
+        }
+        if (!annotations.isEmpty()
+                && annotation.getTimestampMillis() < timestamps[annotations.size() - 1]) {
+            throw new IllegalArgumentException("Annotations must be added in chronological order");
+        }
+        append(annotation);
+    }
+
+    /**
+     * Internal operation: appends an annotation to the log and updates the indexes.
+     */
+    private void append(HistoryAnnotation annotation) {
+        int end = length + annotation.getText().length() + 1;
+        if (end < 0) {
+            throw new IllegalStateException("Medical history exceeds the maximum supported size");
+        }
+        int n = annotations.size();
+        if (n == annotationEnds.length) {
+            annotationEnds = Arrays.copyOf(annotationEnds, n * 2);
+            timestamps = Arrays.copyOf(timestamps, n * 2);
+        }
+        annotationEnds[n] = end;
+        timestamps[n] = annotation.getTimestampMillis();
+        annotations.add(annotation);
+        annotationsByDoctor.computeIfAbsent(annotation.getMembShipNumb(), k -> new ArrayList<>())
+                .add(annotation);
+        this.length = end;
+        this.history = null;
     }
 
     /**
@@ -57,7 +133,240 @@ public class MedicalHistory {
         return membShipNumb;
     }
 
+    /**
+     * Returns the whole history text, building it if annotations were added since the last call.
+     *
+     * @return the history text, one annotation per line
+     */
     public String getHistory() {
+        if (history == null) {
+            StringBuilder text = new StringBuilder(length);
+            for (HistoryAnnotation annot : annotations) {
+                text.append(annot.getText()).append('\n');
+            }
+            history = text.toString();
+        }
         return history;
     }
+
+    /**
+     * Returns a read-only view of the history text that does not copy the annotations.
+     * The view reflects annotations added after it was created.
+     *
+     * @return the history text as a CharSequence
+     */
+    public CharSequence getHistoryView() {
+        return new HistoryView();
+    }
+
+    /**
+     * Opens a Reader that streams the history text as it is at the moment of the call.
+     *
+     * @return a Reader over the history text
+     */
+    public Reader openHistoryReader() {
+        return new HistoryReader(annotations.size());
+    }
+
+    /**
+     * Returns all the annotations in chronological order.
+     * @return an unmodifiable view of the annotation log
+     */
+    public List<HistoryAnnotation> getAnnotations() {
+        return Collections.unmodifiableList(annotations);
+    }
+
+    /**
+     * Returns the annotations written between two dates, both inclusive.
+     *
+     * @param from the first date of the range
+     * @param to the last date of the range
+     * @return the annotations in the range, in chronological order
+     */
+    public List<HistoryAnnotation> getAnnotationsBetween(Date from, Date to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Dates cannot be null");
+        }
+        int first = firstAnnotationAtOrAfter(from.getTime());
+        int last = to.getTime() == Long.MAX_VALUE ? annotations.size()
+                : firstAnnotationAtOrAfter(to.getTime() + 1);
+        if (first >= last) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(annotations.subList(first, last)));
+    }
+
+    /**
+     * Returns the annotations written by a doctor.
+     *
+     * @param mshN the membership number of the doctor
+     * @return the doctor's annotations, in chronological order
+     */
+    public List<HistoryAnnotation> getAnnotationsByDoctor(int mshN) {
+        List<HistoryAnnotation> byDoctor = annotationsByDoctor.get(mshN);
+        if (byDoctor == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(byDoctor));
+    }
+
+    /**
+     * Returns the history text written since a date, without building the older part.
+     *
+     * @param from the first date to include
+     * @return the text of the annotations written since that date
+     */
+    public String getHistorySince(Date from) {
+        if (from == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        int first = firstAnnotationAtOrAfter(from.getTime());
+        int start = first == 0 ? 0 : annotationEnds[first - 1];
+        return getHistoryView().subSequence(start, length).toString();
+    }
+
+    /**
+     * Gets the number of annotations in the history.
+     * @return the number of annotations
+     */
+    public int getAnnotationCount() {
+        return annotations.size();
+    }
+
+    /**
+     * Gets the length of the history text without building it.
+     * @return the number of characters of the history text
+     */
+    public int getHistoryLength() {
+        return length;
+    }
+
+    /**
+     * Internal operation: finds the first annotation written at or after an instant.
+     */
+    private int firstAnnotationAtOrAfter(long millis) {
+        int low = 0;
+        int high = annotations.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Internal operation: finds the annotation containing the given text offset.
+     */
+    private int annotationAt(int index) {
+        int pos = Arrays.binarySearch(annotationEnds, 0, annotations.size(), index);
+        // An exact match is the offset just after an annotation: it starts the next one
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+
+    /**
+     * Internal operation: returns the character at a text offset.
+     */
+    private char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of history length " + length);
+        }
+        int n = annotationAt(index);
+        int start = n == 0 ? 0 : annotationEnds[n - 1];
+        String annot = annotations.get(n).getText();
+        int offset = index - start;
+        return offset < annot.length() ? annot.charAt(offset) : '\n';
+    }
+
+    /**
+     * Live CharSequence view over the annotation log.
+     */
+    private final class HistoryView implements CharSequence {
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return MedicalHistory.this.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("Invalid range [" + start + ", " + end + ")");
+            }
+            StringBuilder text = new StringBuilder(end - start);
+            for (int i = start; i < end; ) {
+                int n = annotationAt(i);
+                int annotStart = n == 0 ? 0 : annotationEnds[n - 1];
+                String annot = annotations.get(n).getText();
+                int from = i - annotStart;
+                int to = Math.min(annot.length(), end - annotStart);
+                if (from < to) {
+                    text.append(annot, from, to);
+                    i += to - from;
+                }
+                if (i < end && i == annotationEnds[n] - 1) {
+                    text.append('\n');
+                    i++;
+                }
+            }
+            return text.toString();
+        }
+
+        @Override
+        public String toString() {
+            return getHistory();
+        }
+    }
+
+    /**
+     * Reader streaming the first annotations of the log, one segment at a time.
+     */
+    private final class HistoryReader extends Reader {
+        private final int count;
+        private int current;
+        private int offset;
+        private boolean closed;
+
+        private HistoryReader(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws java.io.IOException {
+            if (closed) {
+                throw new java.io.IOException("Reader closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            int read = 0;
+            while (read < len && current < count) {
+                String annot = annotations.get(current).getText();
+                if (offset < annot.length()) {
+                    int n = Math.min(len - read, annot.length() - offset);
+                    annot.getChars(offset, offset + n, cbuf, off + read);
+                    offset += n;
+                    read += n;
+                } else {
+                    cbuf[off + read++] = '\n';
+                    current++;
+                    offset = 0;
+                }
+            }
+            return read == 0 ? -1 : read;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
 }
\ No newline at end of file
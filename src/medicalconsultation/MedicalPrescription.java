@@ -3,13 +3,19 @@ package medicalconsultation;
 import data.*;
 import exceptions.*;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Represents a medical prescription for a patient.
  */
 public class MedicalPrescription {
+
+    // Expected editing failures: shared and stackless
+    private static final ProductAlreadyInPrescriptionException ALREADY_IN_PRESCRIPTION =
+            ProductAlreadyInPrescriptionException.stackless("Product already exists in the prescription");
+    private static final ProductNotInPrescriptionException NOT_IN_PRESCRIPTION =
+            ProductNotInPrescriptionException.stackless("Product not found in the prescription");
+
     private HealthCardID cip;
     private int membShipNumb;
     private String illness;
@@ -17,7 +23,7 @@ public class MedicalPrescription {
     private Date prescDate;
     private Date endDate;
     private DigitalSignature eSign;
-    private Map<ProductID, MedicalPrescriptionLine> lines;
+    private final PrescriptionLineTable lines;
 
     public MedicalPrescription(HealthCardID cip, int membShipNumb, String illness)
             throws IncorrectParametersException {
@@ -34,7 +40,7 @@ public class MedicalPrescription {
         this.cip = cip;
         this.membShipNumb = membShipNumb;
         this.illness = illness;
-        this.lines = new HashMap<>();
+        this.lines = new PrescriptionLineTable();
     }
 
     /**
@@ -47,67 +53,128 @@ public class MedicalPrescription {
      */
     public void addLine(ProductID prodID, String[] instruc)
             throws ProductAlreadyInPrescriptionException, IncorrectTakingGuidelinesException {
-        if (lines.containsKey(prodID)) {
-            throw new ProductAlreadyInPrescriptionException();
-        }
-
-        // Validate that instruc has the correct format (6 elements minimum)
-        // Format: [dayMoment, duration, dose, freq, freqUnit, instructions]
-        if (instruc == null || instruc.length < 6) {
-            throw new IncorrectTakingGuidelinesException(
-                    "Incomplete taking guidelines. Expected at least 6 elements: " +
-                            "[dayMoment, duration, dose, freq, freqUnit, instructions]");
-        }
-
-        try {
-            // Parse the instructions array to create TakingGuideline
-            dayMoment dM = dayMoment.valueOf(instruc[0]);
-            float duration = Float.parseFloat(instruc[1]);
-            float dose = Float.parseFloat(instruc[2]);
-            float freq = Float.parseFloat(instruc[3]);
-            FqUnit freqUnit = FqUnit.valueOf(instruc[4]);
-            String instructions = instruc[5];
-
-            // Validate parsed values
-            if (duration <= 0) {
-                throw new IncorrectTakingGuidelinesException("Duration must be positive");
-            }
-            if (dose <= 0) {
-                throw new IncorrectTakingGuidelinesException("Dose must be positive");
-            }
-            if (freq <= 0) {
-                throw new IncorrectTakingGuidelinesException("Frequency must be positive");
-            }
-            if (instructions == null || instructions.trim().isEmpty()) {
-                throw new IncorrectTakingGuidelinesException("Instructions cannot be empty");
-            }
-
-            TakingGuideline guideline = new TakingGuideline(dM, duration, dose, freq, freqUnit, instructions);
-            MedicalPrescriptionLine line = new MedicalPrescriptionLine(prodID, guideline);
-            lines.put(prodID, line);
-        } catch (IllegalArgumentException e) {
-            throw new IncorrectTakingGuidelinesException(
-                    "Invalid taking guidelines format: " + e.getMessage());
+        // Single probe: the insertion point stays valid while the guidelines are parsed
+        int slot = lines.find(prodID);
+        if (slot >= 0) {
+            throw ALREADY_IN_PRESCRIPTION;
+        }
+
+        GuidelineParser.Result parsed = GuidelineParser.parse(instruc);
+        if (!parsed.isValid()) {
+            throw parsed.getError().toException();
+        }
+        lines.insertAt(slot, prodID, new MedicalPrescriptionLine(prodID, parsed.getGuideline()));
+    }
+
+    /**
+     * Adds a new line with a guideline already built, e.g. with TakingGuideline.builder()
+     * or GuidelineParser. Its values are checked with the same rules as addLine().
+     *
+     * @param prodID the product identifier
+     * @param guideline the taking guideline
+     * @throws ProductAlreadyInPrescriptionException if product already exists
+     * @throws IncorrectTakingGuidelinesException if the guideline is null or not valid
+     */
+    public void addValidatedLine(ProductID prodID, TakingGuideline guideline)
+            throws ProductAlreadyInPrescriptionException, IncorrectTakingGuidelinesException {
+        if (guideline == null || guideline.getPosology() == null) {
+            throw new IncorrectTakingGuidelinesException("Taking guideline cannot be null");
+        }
+        Posology posology = guideline.getPosology();
+        GuidelineParser.FieldError error = GuidelineParser.validate(guideline.getdMoment(), guideline.getDuration(),
+                posology.getDose(), posology.getFreq(), posology.getFreqUnit(), guideline.getInstructions());
+        if (error != null) {
+            throw error.toException();
+        }
+        if (!tryAddLine(prodID, guideline)) {
+            throw ALREADY_IN_PRESCRIPTION;
         }
     }
 
     public void modifyDoseInLine(ProductID prodID, float newDose)
             throws ProductNotInPrescriptionException {
-        if (!lines.containsKey(prodID)) {
-            throw new ProductNotInPrescriptionException();
+        if (!tryModifyDoseInLine(prodID, newDose)) {
+            throw NOT_IN_PRESCRIPTION;
+        }
+    }
+
+    public void removeLine(ProductID prodID) throws ProductNotInPrescriptionException {
+        if (!tryRemoveLine(prodID)) {
+            throw NOT_IN_PRESCRIPTION;
+        }
+    }
+
+    /**
+     * Internal operation: adds a line with a validated, non-null guideline, without throwing.
+     *
+     * @return false if the product already has a line
+     */
+    boolean tryAddLine(ProductID prodID, TakingGuideline guideline) {
+        int slot = lines.find(prodID);
+        if (slot >= 0) {
+            return false;
+        }
+        lines.insertAt(slot, prodID, new MedicalPrescriptionLine(prodID, guideline));
+        return true;
+    }
+
+    /**
+     * Internal operation: changes the dose of a line, without throwing for a missing product.
+     *
+     * @return false if the product has no line
+     */
+    boolean tryModifyDoseInLine(ProductID prodID, float newDose) {
+        int slot = lines.find(prodID);
+        if (slot < 0) {
+            return false;
         }
         if (newDose <= 0) {
             throw new IllegalArgumentException("Dose must be positive");
         }
-        MedicalPrescriptionLine line = lines.get(prodID);
-        line.getTakingGuideline().getPosology().setDose(newDose);
+        lines.lineAt(slot).getTakingGuideline().getPosology().setDose(newDose);
+        return true;
     }
 
-    public void removeLine(ProductID prodID) throws ProductNotInPrescriptionException {
-        if (!lines.containsKey(prodID)) {
-            throw new ProductNotInPrescriptionException();
+    /**
+     * Internal operation: replaces the whole guideline of a line, keeping the line in its
+     * position.
+     *
+     * @throws ProductNotInPrescriptionException if the product has no line
+     */
+    void replaceGuidelineInLine(ProductID prodID, TakingGuideline guideline) throws ProductNotInPrescriptionException {
+        int slot = lines.find(prodID);
+        if (slot < 0) {
+            throw NOT_IN_PRESCRIPTION;
         }
-        lines.remove(prodID);
+        lines.lineAt(slot).setTakingGuideline(guideline);
+    }
+
+    /**
+     * Internal operation: removes a line, without throwing for a missing product.
+     *
+     * @return false if the product has no line
+     */
+    boolean tryRemoveLine(ProductID prodID) {
+        int slot = lines.find(prodID);
+        if (slot < 0) {
+            return false;
+        }
+        lines.removeAt(slot);
+        return true;
+    }
+
+    /**
+     * Internal operation: restores a complete line, e.g. when decoding a prescription.
+     *
+     * @param line the line to restore
+     * @throws ProductAlreadyInPrescriptionException if the product already has a line
+     */
+    void restoreLine(MedicalPrescriptionLine line) throws ProductAlreadyInPrescriptionException {
+        int slot = lines.find(line.getProductID());
+        if (slot >= 0) {
+            throw ALREADY_IN_PRESCRIPTION;
+        }
+        lines.insertAt(slot, line.getProductID(), line);
     }
 
     // Getters and setters
@@ -118,7 +185,12 @@ public class MedicalPrescription {
     public Date getPrescDate() { return prescDate; }
     public Date getEndDate() { return endDate; }
     public DigitalSignature geteSign() { return eSign; }
-    public Map<ProductID, MedicalPrescriptionLine> getLines() { return lines; }
+
+    /**
+     * Read-only view of the lines, in the order they were entered.
+     * @return the lines by product
+     */
+    public Map<ProductID, MedicalPrescriptionLine> getLines() { return lines.asMap(); }
 
     public void setPrescCode(ePrescripCode prescCode) { this.prescCode = prescCode; }
     public void setPrescDate(Date prescDate) { this.prescDate = prescDate; }
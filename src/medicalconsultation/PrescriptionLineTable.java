@@ -0,0 +1,284 @@
+package medicalconsultation;
+
+import data.IdCodec;
+import data.ProductID;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Line table of a prescription, keyed by the packed product code.
+ *
+ * An open-addressing table with linear probing stores the packed codes in primitive arrays
+ * and points into a dense array of lines kept in insertion order. A lookup hashes two longs
+ * and compares them in place, without touching the ProductID or its String.
+ *
+ * find() returns either the slot holding the product or the slot where it would be inserted,
+ * so a check followed by an insertion, update or removal probes the table only once.
+ * Removals use backward-shift deletion, so the probe chains never contain tombstones.
+ */
+final class PrescriptionLineTable {
+
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    // Probing table: packed code and dense index of each occupied slot
+    private int[] slots;
+    private long[] slotHigh;
+    private long[] slotLow;
+
+    // Dense storage in insertion order; removed positions are null until compacted
+    private ProductID[] keys;
+    private MedicalPrescriptionLine[] lines;
+    private int used;
+    private int size;
+    private int modCount;
+
+    private final Map<ProductID, MedicalPrescriptionLine> view = new LinesView();
+
+    PrescriptionLineTable() {
+        allocateSlots(MIN_CAPACITY);
+        this.keys = new ProductID[MIN_CAPACITY / 2];
+        this.lines = new MedicalPrescriptionLine[MIN_CAPACITY / 2];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Looks a product up.
+     *
+     * @param prodID the product
+     * @return the slot holding the product if present, otherwise -(insertion slot) - 1
+     */
+    int find(ProductID prodID) {
+        if (prodID == null) {
+            throw new IllegalArgumentException("ProductID cannot be null");
+        }
+        long high = prodID.getPackedHigh();
+        long low = prodID.getPackedLow();
+        int mask = slots.length - 1;
+        int i = IdCodec.hash(high, low) & mask;
+        while (slots[i] != EMPTY) {
+            if (slotHigh[i] == high && slotLow[i] == low) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -i - 1;
+    }
+
+    /**
+     * Returns the line stored in a slot found by find().
+     */
+    MedicalPrescriptionLine lineAt(int slot) {
+        return lines[slots[slot]];
+    }
+
+    /**
+     * Returns the line of a product, or null if it has none.
+     */
+    MedicalPrescriptionLine get(ProductID prodID) {
+        int slot = find(prodID);
+        return slot >= 0 ? lineAt(slot) : null;
+    }
+
+    /**
+     * Inserts a line at the insertion point returned by find().
+     * The table must not have been modified since that find().
+     *
+     * @param insertionPoint the negative value returned by find()
+     * @param prodID the product, as passed to find()
+     * @param line the line to insert
+     */
+    void insertAt(int insertionPoint, ProductID prodID, MedicalPrescriptionLine line) {
+        if (used == lines.length) {
+            growDense();
+        }
+        int slot = -insertionPoint - 1;
+        keys[used] = prodID;
+        lines[used] = line;
+        occupy(slot, prodID.getPackedHigh(), prodID.getPackedLow(), used);
+        used++;
+        size++;
+        modCount++;
+        if (size * 2 > slots.length) {
+            rebuild(slots.length * 2);
+        }
+    }
+
+    /**
+     * Removes the line stored in a slot found by find().
+     *
+     * @param slot the slot returned by find()
+     * @return the removed line
+     */
+    MedicalPrescriptionLine removeAt(int slot) {
+        int index = slots[slot];
+        MedicalPrescriptionLine removed = lines[index];
+        keys[index] = null;
+        lines[index] = null;
+        while (used > 0 && lines[used - 1] == null) {
+            used--;
+        }
+        size--;
+        modCount++;
+        shiftBack(slot);
+        return removed;
+    }
+
+    /**
+     * Read-only Map view of the lines, iterating in insertion order.
+     */
+    Map<ProductID, MedicalPrescriptionLine> asMap() {
+        return view;
+    }
+
+    // ========== INTERNALS ==========
+
+    private void allocateSlots(int capacity) {
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        slotHigh = new long[capacity];
+        slotLow = new long[capacity];
+    }
+
+    private void occupy(int slot, long high, long low, int index) {
+        slots[slot] = index;
+        slotHigh[slot] = high;
+        slotLow[slot] = low;
+    }
+
+    /**
+     * Closes the gap left by a removed slot by moving back the following entries
+     * of the probe chain that may legally live in it.
+     */
+    private void shiftBack(int hole) {
+        int mask = slots.length - 1;
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (slots[i] == EMPTY) {
+                break;
+            }
+            int home = IdCodec.hash(slotHigh[i], slotLow[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                occupy(hole, slotHigh[i], slotLow[i], slots[i]);
+                hole = i;
+            }
+        }
+        slots[hole] = EMPTY;
+    }
+
+    /**
+     * Makes room in the dense arrays: compacts them if many lines were removed,
+     * otherwise doubles them.
+     */
+    private void growDense() {
+        if (used - size >= lines.length / 4) {
+            rebuild(slots.length);
+        } else {
+            keys = Arrays.copyOf(keys, lines.length * 2);
+            lines = Arrays.copyOf(lines, lines.length * 2);
+        }
+    }
+
+    /**
+     * Compacts the dense arrays and rehashes every product into a table of the given capacity.
+     */
+    private void rebuild(int capacity) {
+        ProductID[] oldKeys = keys;
+        MedicalPrescriptionLine[] oldLines = lines;
+        int oldUsed = used;
+
+        allocateSlots(capacity);
+        keys = new ProductID[Math.max(capacity / 2, oldLines.length)];
+        lines = new MedicalPrescriptionLine[keys.length];
+        used = 0;
+        for (int i = 0; i < oldUsed; i++) {
+            if (oldLines[i] != null) {
+                ProductID prodID = oldKeys[i];
+                keys[used] = prodID;
+                lines[used] = oldLines[i];
+                occupy(-find(prodID) - 1, prodID.getPackedHigh(), prodID.getPackedLow(), used);
+                used++;
+            }
+        }
+    }
+
+    /**
+     * Map view over the dense arrays. Lookups go through the probing table.
+     */
+    private final class LinesView extends AbstractMap<ProductID, MedicalPrescriptionLine> {
+
+        private final Set<Entry<ProductID, MedicalPrescriptionLine>> entrySet = new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<ProductID, MedicalPrescriptionLine>> iterator() {
+                return new LinesIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+
+        @Override
+        public Set<Entry<ProductID, MedicalPrescriptionLine>> entrySet() {
+            return entrySet;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public MedicalPrescriptionLine get(Object key) {
+            return key instanceof ProductID ? PrescriptionLineTable.this.get((ProductID) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof ProductID && find((ProductID) key) >= 0;
+        }
+    }
+
+    private final class LinesIterator implements Iterator<Map.Entry<ProductID, MedicalPrescriptionLine>> {
+        private final int expectedModCount = modCount;
+        private int next = advance(0);
+
+        private int advance(int from) {
+            while (from < used && lines[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < used;
+        }
+
+        @Override
+        public Map.Entry<ProductID, MedicalPrescriptionLine> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= used) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<ProductID, MedicalPrescriptionLine> entry =
+                    new AbstractMap.SimpleImmutableEntry<>(keys[next], lines[next]);
+            next = advance(next + 1);
+            return entry;
+        }
+    }
+}
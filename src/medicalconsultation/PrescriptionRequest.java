@@ -0,0 +1,32 @@
+package medicalconsultation;
+
+import data.HealthCardID;
+
+/**
+ * Identifies a prescription to download in a batch: the patient and the illness treated.
+ */
+public final class PrescriptionRequest {
+    private final HealthCardID cip;
+    private final String illness;
+
+    public PrescriptionRequest(HealthCardID cip, String illness) {
+        if (cip == null || illness == null || illness.trim().isEmpty()) {
+            throw new IllegalArgumentException("CIP and illness cannot be null or empty");
+        }
+        this.cip = cip;
+        this.illness = illness;
+    }
+
+    public HealthCardID getCip() {
+        return cip;
+    }
+
+    public String getIllness() {
+        return illness;
+    }
+
+    @Override
+    public String toString() {
+        return "PrescriptionRequest{cip=" + cip + ", illness='" + illness + "'}";
+    }
+}
@@ -0,0 +1,44 @@
+package medicalconsultation;
+
+import data.HealthCardID;
+
+/**
+ * The arguments of one sendHistoryAndPrescription call, to be sent in a batch.
+ */
+public final class PrescriptionUpload {
+    private final HealthCardID cip;
+    private final MedicalHistory hce;
+    private final String illness;
+    private final MedicalPrescription mPresc;
+
+    public PrescriptionUpload(HealthCardID cip, MedicalHistory hce, String illness, MedicalPrescription mPresc) {
+        if (cip == null || hce == null || illness == null || mPresc == null) {
+            throw new IllegalArgumentException("Upload components cannot be null");
+        }
+        this.cip = cip;
+        this.hce = hce;
+        this.illness = illness;
+        this.mPresc = mPresc;
+    }
+
+    public HealthCardID getCip() {
+        return cip;
+    }
+
+    public MedicalHistory getHistory() {
+        return hce;
+    }
+
+    public String getIllness() {
+        return illness;
+    }
+
+    public MedicalPrescription getPrescription() {
+        return mPresc;
+    }
+
+    @Override
+    public String toString() {
+        return "PrescriptionUpload{cip=" + cip + ", illness='" + illness + "'}";
+    }
+}
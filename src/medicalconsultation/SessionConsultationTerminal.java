@@ -0,0 +1,551 @@
+package medicalconsultation;
+
+import data.*;
+import exceptions.*;
+import services.*;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Multi-session Facade Controller for the "Supervise Treatment" use case.
+ * Keeps many concurrent consultations, one per patient, each one backed by its own
+ * ConsultationTerminal that holds the workflow state of that consultation.
+ *
+ * Sessions are keyed by the patient's HealthCardID, and a patient has at most one open
+ * session. Every operation on a session runs under that session's own lock, so calls on
+ * the same session stay serialized while a slow call to the Health National Service
+ * never holds up the consultations of other patients.
+ */
+public class SessionConsultationTerminal {
+
+    private static final int DEFAULT_CONCURRENCY = 64;
+
+    // External services shared by every session (injected via setters)
+    private volatile HealthNationalService healthNationalService;
+    private volatile DecisionMakingAI decisionMakingAI;
+    private volatile DecisionMakingAIPool aiPool;
+    private volatile long aiLeaseTimeoutMillis;
+    private volatile ExecutorService fetchExecutor;
+    private volatile long fetchDeadlineMillis;
+    private volatile boolean deltaUploadEnabled;
+    private volatile PrescriptionSigner prescriptionSigner;
+    private volatile PrescriptionOutbox prescriptionOutbox;
+
+    // Session registry; each session carries its own lock
+    private final ConcurrentMap<HealthCardID, Session> sessions;
+    private final AtomicLong nextSessionId = new AtomicLong();
+
+    /**
+     * Constructor - creates a terminal sized for the default number of concurrent sessions.
+     */
+    public SessionConsultationTerminal() {
+        this(DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Constructor - creates a terminal sized for a given number of concurrent sessions.
+     *
+     * @param concurrencyLevel expected number of sessions operated at the same time
+     */
+    public SessionConsultationTerminal(int concurrencyLevel) {
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level must be greater than 0");
+        }
+        this.sessions = new ConcurrentHashMap<>(16, 0.75f, concurrencyLevel);
+    }
+
+    // ========== DEPENDENCY INJECTION SETTERS ==========
+
+    /**
+     * Injects the HealthNationalService dependency used by new sessions.
+     * @param service the health national service implementation
+     */
+    public void setHealthNationalService(HealthNationalService service) {
+        this.healthNationalService = service;
+    }
+
+    /**
+     * Injects the DecisionMakingAI dependency used by new sessions.
+     * @param ai the decision making AI implementation
+     */
+    public void setDecisionMakingAI(DecisionMakingAI ai) {
+        this.decisionMakingAI = ai;
+    }
+
+    /**
+     * Takes the AI of new sessions from a pool of initialized sessions.
+     * @see ConsultationTerminal#setDecisionMakingAIPool(DecisionMakingAIPool, long)
+     */
+    public void setDecisionMakingAIPool(DecisionMakingAIPool pool, long leaseTimeoutMillis) {
+        if (pool != null && leaseTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Lease timeout must be greater than 0");
+        }
+        this.aiPool = pool;
+        this.aiLeaseTimeoutMillis = leaseTimeoutMillis;
+    }
+
+    /**
+     * Enables the parallel download mode of initRevision for new sessions.
+     * @see ConsultationTerminal#setParallelFetchExecutor(ExecutorService, long)
+     */
+    public void setParallelFetchExecutor(ExecutorService executor, long deadlineMillis) {
+        if (executor != null && deadlineMillis <= 0) {
+            throw new IllegalArgumentException("Deadline must be greater than 0");
+        }
+        this.fetchExecutor = executor;
+        this.fetchDeadlineMillis = deadlineMillis;
+    }
+
+    /**
+     * Enables or disables the delta upload mode for new sessions.
+     * @see ConsultationTerminal#setDeltaUpload(boolean)
+     */
+    public void setDeltaUpload(boolean enabled) {
+        this.deltaUploadEnabled = enabled;
+    }
+
+    /**
+     * Injects the signer used by new sessions to stamp the doctor's signature.
+     * @see ConsultationTerminal#setPrescriptionSigner(PrescriptionSigner)
+     */
+    public void setPrescriptionSigner(PrescriptionSigner signer) {
+        this.prescriptionSigner = signer;
+    }
+
+    /**
+     * Injects the outbox used by new sessions for asynchronous sending.
+     * @see ConsultationTerminal#setPrescriptionOutbox(PrescriptionOutbox)
+     */
+    public void setPrescriptionOutbox(PrescriptionOutbox outbox) {
+        this.prescriptionOutbox = outbox;
+    }
+
+    // ========== SESSION MANAGEMENT ==========
+
+    /**
+     * Opens the consultation session of a patient.
+     * Downloads the medical history and prescription from the Health National Service.
+     *
+     * @param cip the patient's health card ID, used as session key
+     * @param illness the illness being treated
+     * @throws ConnectException if network connection fails
+     * @throws HealthCardIDException if patient ID not registered in HNS
+     * @throws AnyCurrentPrescriptionException if no active prescription for this illness
+     * @throws ProceduralException if a session is already open for the patient; it
+     *                             must be closed with closeSession() first
+     */
+    public void initRevision(HealthCardID cip, String illness)
+            throws ConnectException, HealthCardIDException, AnyCurrentPrescriptionException,
+            IncorrectParametersException, ProceduralException {
+
+        if (cip == null) {
+            throw new IllegalArgumentException("CIP and illness cannot be null or empty");
+        }
+        if (sessions.containsKey(cip)) {
+            throw new ProceduralException("A consultation session is already open for " + cip);
+        }
+
+        // Downloaded without any lock held: other sessions are not held up by the HNS
+        ConsultationTerminal terminal = newTerminal();
+        terminal.initRevision(cip, illness);
+
+        // Register only once the revision has been downloaded successfully
+        Session session = new Session(cip, terminal, nextSessionId.getAndIncrement());
+        if (sessions.putIfAbsent(cip, session) != null) {
+            // Another revision of the patient was opened during the download
+            terminal.close();
+            throw new ProceduralException("A consultation session is already open for " + cip);
+        }
+    }
+
+    /**
+     * Closes the consultation session of a patient, discarding its state.
+     *
+     * @param cip the session key
+     * @return true if a session was open, false otherwise
+     */
+    public boolean closeSession(HealthCardID cip) {
+        if (cip == null) {
+            return false;
+        }
+        Session session;
+        try {
+            session = lock(cip);
+        } catch (ProceduralException e) {
+            return false;
+        }
+        try {
+            // Waits for the call in progress, if any, before discarding the state
+            sessions.remove(cip, session);
+            session.terminal.close();
+            return true;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if a consultation session is open for the patient.
+     * @param cip the session key
+     * @return true if a session is open, false otherwise
+     */
+    public boolean hasSession(HealthCardID cip) {
+        return cip != null && sessions.containsKey(cip);
+    }
+
+    /**
+     * Gets the number of open consultation sessions.
+     * @return number of open sessions
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    // ========== INPUT EVENTS (per session) ==========
+    // Each input event takes the session key first and follows the contract of the
+    // homonymous ConsultationTerminal operation. All of them throw ProceduralException
+    // if no session is open for the given key.
+
+    public void enterMedicalAssessmentInHistory(HealthCardID cip, String assess) throws ProceduralException {
+        Session session = lock(cip);
+        try {
+            session.terminal.enterMedicalAssessmentInHistory(assess);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public void initMedicalPrescriptionEdition(HealthCardID cip) throws ProceduralException {
+        Session session = lock(cip);
+        try {
+            session.terminal.initMedicalPrescriptionEdition();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public void callDecisionMakingAI(HealthCardID cip) throws AIException, ProceduralException {
+        Session session = lock(cip);
+        try {
+            session.terminal.callDecisionMakingAI();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public String askAIForSuggest(HealthCardID cip, String prompt)
+            throws BadPromptException, ProceduralException {
+        Session session = lock(cip);
+        try {
+            return session.terminal.askAIForSuggest(prompt);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public Flow.Publisher<Suggestion> streamAISuggestions(HealthCardID cip, String prompt)
+            throws ProceduralException {
+        Session session = lock(cip);
+        try {
+            return session.terminal.streamAISuggestions(prompt);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public List<Suggestion> extractGuidelinesFromSugg(HealthCardID cip) throws ProceduralException {
+        Session session = lock(cip);
+        try {
+            return session.terminal.extractGuidelinesFromSugg();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public void enterMedicineWithGuidelines(HealthCardID cip, ProductID prodID, String[] instruc)
+            throws ProductAlreadyInPrescriptionException,
+            IncorrectTakingGuidelinesException,
+            ProceduralException {
+        Session session = lock(cip);
+        try {
+            session.terminal.enterMedicineWithGuidelines(prodID, instruc);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public void applySuggestions(HealthCardID cip, List<Suggestion> suggestions)
+            throws ProductAlreadyInPrescriptionException,
+            ProductNotInPrescriptionException,
+            IncorrectTakingGuidelinesException,
+            ProceduralException {
+        Session session = lock(cip);
+        try {
+            session.terminal.applySuggestions(suggestions);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public void modifyDoseInLine(HealthCardID cip, ProductID prodID, float newDose)
+            throws ProductNotInPrescriptionException, ProceduralException {
+        Session session = lock(cip);
+        try {
+            session.terminal.modifyDoseInLine(prodID, newDose);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public void removeLine(HealthCardID cip, ProductID prodID)
+            throws ProductNotInPrescriptionException, ProceduralException {
+        Session session = lock(cip);
+        try {
+            session.terminal.removeLine(prodID);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public void enterTreatmentEndingDate(HealthCardID cip, Date date)
+            throws IncorrectEndingDateException, ProceduralException {
+        Session session = lock(cip);
+        try {
+            session.terminal.enterTreatmentEndingDate(date);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public void finishMedicalPrescriptionEdition(HealthCardID cip) throws ProceduralException {
+        Session session = lock(cip);
+        try {
+            session.terminal.finishMedicalPrescriptionEdition();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public void stampeeSignature(HealthCardID cip) throws eSignatureException, ProceduralException {
+        Session session = lock(cip);
+        try {
+            session.terminal.stampeeSignature();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Stamps the doctor's signature on the prescriptions of many sessions at once, e.g.
+     * when renewing chronic treatments. With a PrescriptionSigner injected the whole
+     * batch costs a single asymmetric signature; see PrescriptionSigner.signBatch().
+     *
+     * Either every prescription is stamped or none: all sessions are checked first.
+     *
+     * @param cips the session keys
+     * @throws eSignatureException if there's a problem signing the batch
+     * @throws ProceduralException if a session is not open or not ready to be signed
+     */
+    public void stampeeSignatures(List<HealthCardID> cips) throws eSignatureException, ProceduralException {
+        if (cips == null || cips.isEmpty()) {
+            throw new IllegalArgumentException("Session keys cannot be null or empty");
+        }
+
+        // Lock the sessions in the order they were opened, so concurrent batches cannot deadlock.
+        // A key given twice is stamped once.
+        TreeMap<Long, Session> ordered = new TreeMap<>();
+        for (HealthCardID cip : cips) {
+            Session session = sessions.get(cip);
+            if (session == null) {
+                throw new ProceduralException("No consultation session open for " + cip);
+            }
+            ordered.put(session.id, session);
+        }
+        List<ConsultationTerminal> terminals = new ArrayList<>(ordered.size());
+        List<Session> locked = new ArrayList<>(ordered.size());
+        try {
+            for (Session session : ordered.values()) {
+                session.lock.lock();
+                locked.add(session);
+                if (sessions.get(session.cip) != session) {
+                    throw new ProceduralException("No consultation session open for " + session.cip);
+                }
+                terminals.add(session.terminal);
+            }
+
+            PrescriptionSigner signer = prescriptionSigner;
+            if (signer == null) {
+                // No key to batch with: every session stamps its placeholder signature
+                for (ConsultationTerminal terminal : terminals) {
+                    terminal.prescriptionToStamp();
+                }
+                for (ConsultationTerminal terminal : terminals) {
+                    terminal.stampeeSignature();
+                }
+                return;
+            }
+
+            List<MedicalPrescription> prescriptions = new ArrayList<>(terminals.size());
+            for (ConsultationTerminal terminal : terminals) {
+                prescriptions.add(terminal.prescriptionToStamp());
+            }
+            List<DigitalSignature> signatures = signer.signBatch(prescriptions);
+            for (int i = 0; i < terminals.size(); i++) {
+                terminals.get(i).stamp(signatures.get(i));
+            }
+        } finally {
+            for (Session session : locked) {
+                session.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Sends the history and prescription of a session to the Health National Service.
+     * The session stays open so the doctor can review the registered prescription;
+     * call closeSession() when the consultation is over.
+     *
+     * @param cip the session key
+     * @return the updated MedicalPrescription with the new treatment code
+     */
+    public MedicalPrescription sendHistoryAndPrescription(HealthCardID cip)
+            throws ConnectException, HealthCardIDException,
+            AnyCurrentPrescriptionException,
+            NotCompletedMedicalPrescriptionException,
+            ProceduralException, IncorrectParametersException {
+        Session session = lock(cip);
+        try {
+            return session.terminal.sendHistoryAndPrescription();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Input event: stores a session's upload in the outbox without waiting for the HNS.
+     * @see ConsultationTerminal#sendHistoryAndPrescriptionAsync()
+     */
+    public CompletableFuture<ePrescripCode> sendHistoryAndPrescriptionAsync(HealthCardID cip)
+            throws IOException, ProceduralException {
+        Session session = lock(cip);
+        try {
+            return session.terminal.sendHistoryAndPrescriptionAsync();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    // ========== GETTERS FOR TESTING AND STATE INSPECTION ==========
+
+    /**
+     * Gets the current medical history of a session.
+     * @param cip the session key
+     * @return the session's MedicalHistory or null if no session is open
+     */
+    public MedicalHistory getCurrentMedicalHistory(HealthCardID cip) {
+        Session session = cip != null ? lockIfOpen(cip) : null;
+        if (session == null) {
+            return null;
+        }
+        try {
+            return session.terminal.getCurrentMedicalHistory();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the current prescription of a session.
+     * @param cip the session key
+     * @return the session's MedicalPrescription or null if no session is open
+     */
+    public MedicalPrescription getCurrentPrescription(HealthCardID cip) {
+        Session session = cip != null ? lockIfOpen(cip) : null;
+        if (session == null) {
+            return null;
+        }
+        try {
+            return session.terminal.getCurrentPrescription();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    // ========== INTERNAL OPERATIONS ==========
+
+    /**
+     * Internal operation: creates the terminal that will hold a new session's state.
+     */
+    private ConsultationTerminal newTerminal() {
+        ConsultationTerminal terminal = new ConsultationTerminal();
+        terminal.setHealthNationalService(healthNationalService);
+        terminal.setDecisionMakingAI(decisionMakingAI);
+        terminal.setDecisionMakingAIPool(aiPool, aiLeaseTimeoutMillis);
+        terminal.setParallelFetchExecutor(fetchExecutor, fetchDeadlineMillis);
+        terminal.setDeltaUpload(deltaUploadEnabled);
+        terminal.setPrescriptionSigner(prescriptionSigner);
+        terminal.setPrescriptionOutbox(prescriptionOutbox);
+        return terminal;
+    }
+
+    /**
+     * Internal operation: looks up an open session and takes its lock. The caller must
+     * release the lock.
+     *
+     * @throws ProceduralException if no session is open for the key
+     */
+    private Session lock(HealthCardID cip) throws ProceduralException {
+        if (cip == null) {
+            throw new IllegalArgumentException("CIP cannot be null");
+        }
+        Session session = lockIfOpen(cip);
+        if (session == null) {
+            throw new ProceduralException("No consultation session open for " + cip);
+        }
+        return session;
+    }
+
+    /**
+     * Internal operation: like lock(), but returns null if no session is open.
+     */
+    private Session lockIfOpen(HealthCardID cip) {
+        Session session = sessions.get(cip);
+        if (session != null) {
+            session.lock.lock();
+            // Closed while waiting for the lock
+            if (sessions.get(cip) == session) {
+                return session;
+            }
+            session.lock.unlock();
+        }
+        return null;
+    }
+
+    /**
+     * Open session: its key, the terminal holding its state, the lock serializing its
+     * calls and the order it was opened in.
+     */
+    private static final class Session {
+        private final HealthCardID cip;
+        private final ConsultationTerminal terminal;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long id;
+
+        private Session(HealthCardID cip, ConsultationTerminal terminal, long id) {
+            this.cip = cip;
+            this.terminal = terminal;
+            this.id = id;
+        }
+    }
+}
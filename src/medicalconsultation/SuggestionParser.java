@@ -0,0 +1,263 @@
+package medicalconsultation;
+
+import data.IdCodec;
+import data.ProductID;
+import exceptions.IncorrectParametersException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parser of AI answers into suggestions, in a single pass over the text.
+ *
+ * Grammar of a suggestion, anywhere in the answer:
+ * - INSERT: &lt;I, ProductID, dayMoment, duration, dose, freq, freqUnit, instructions&gt;
+ * - ELIMINATE: &lt;E, ProductID&gt;
+ * - MODIFY: &lt;M, ProductID, [only changed fields, others empty]&gt;
+ * Actions may also be written INSERT, ELIMINATE and MODIFY. Whitespace around fields is
+ * ignored, and the instructions, being the last field, may contain commas. Text outside
+ * the angle brackets is ignored.
+ *
+ * Fields are located by their offsets; text is only copied when a field becomes part of
+ * a suggestion. Fragments that do not follow the grammar are reported in the result
+ * with their position, without throwing.
+ *
+ * Instances keep scratch state and are not thread-safe; parse() uses a new one per call.
+ */
+public final class SuggestionParser {
+
+    private static final int GUIDELINE_FIELDS = 6;
+    private static final int MAX_FIELDS = 2 + GUIDELINE_FIELDS;
+    private static final String EMPTY = "";
+
+    /**
+     * Reasons a fragment is malformed.
+     */
+    public enum Reason {
+        UNKNOWN_ACTION,
+        INVALID_PRODUCT_ID,
+        WRONG_FIELD_COUNT,
+        UNTERMINATED
+    }
+
+    /**
+     * A fragment of the answer that does not follow the grammar.
+     */
+    public static final class Malformed {
+        private final int start;
+        private final int end;
+        private final Reason reason;
+
+        private Malformed(int start, int end, Reason reason) {
+            this.start = start;
+            this.end = end;
+            this.reason = reason;
+        }
+
+        /**
+         * @return offset of the opening '&lt;'
+         */
+        public int getStart() { return start; }
+
+        /**
+         * @return offset after the closing '&gt;', or where the fragment was cut
+         */
+        public int getEnd() { return end; }
+
+        public Reason getReason() { return reason; }
+
+        @Override
+        public String toString() {
+            return reason + " at [" + start + ", " + end + ")";
+        }
+    }
+
+    /**
+     * Suggestions parsed from an answer, and the malformed fragments found.
+     */
+    public static final class Result {
+        private final List<Suggestion> suggestions;
+        private final List<Malformed> malformed;
+
+        private Result(List<Suggestion> suggestions, List<Malformed> malformed) {
+            this.suggestions = suggestions;
+            this.malformed = malformed;
+        }
+
+        /**
+         * @return the suggestions, in the order of the answer
+         */
+        public List<Suggestion> getSuggestions() { return suggestions; }
+
+        public List<Malformed> getMalformed() { return malformed; }
+
+        public boolean hasErrors() { return !malformed.isEmpty(); }
+    }
+
+    // Bounds of the fields of the record being parsed
+    private final int[] starts = new int[MAX_FIELDS];
+    private final int[] ends = new int[MAX_FIELDS];
+    private Reason lastReason;
+
+    SuggestionParser() {
+    }
+
+    /**
+     * Parses every suggestion of an answer.
+     *
+     * @param answer the AI's answer
+     * @return the suggestions and the malformed fragments
+     */
+    public static Result parse(CharSequence answer) {
+        if (answer == null) {
+            return new Result(new ArrayList<>(), Collections.emptyList());
+        }
+        return new SuggestionParser().parseAll(answer);
+    }
+
+    private Result parseAll(CharSequence answer) {
+        List<Suggestion> suggestions = new ArrayList<>();
+        List<Malformed> malformed = null;
+        int length = answer.length();
+        int open = -1;
+        for (int i = 0; i < length; i++) {
+            char c = answer.charAt(i);
+            if (c == '<') {
+                if (open >= 0) {
+                    malformed = report(malformed, open, i, Reason.UNTERMINATED);
+                }
+                open = i;
+            } else if (c == '>' && open >= 0) {
+                Suggestion suggestion = parseRecord(answer, open + 1, i);
+                if (suggestion != null) {
+                    suggestions.add(suggestion);
+                } else {
+                    malformed = report(malformed, open, i + 1, lastReason);
+                }
+                open = -1;
+            }
+        }
+        if (open >= 0) {
+            malformed = report(malformed, open, length, Reason.UNTERMINATED);
+        }
+        return new Result(suggestions, malformed != null ? malformed : Collections.emptyList());
+    }
+
+    private static List<Malformed> report(List<Malformed> malformed, int start, int end, Reason reason) {
+        List<Malformed> list = malformed != null ? malformed : new ArrayList<>();
+        list.add(new Malformed(start, end, reason));
+        return list;
+    }
+
+    /**
+     * Parses the text between the angle brackets of one suggestion.
+     *
+     * @param text the text containing the record
+     * @param from offset after the '&lt;'
+     * @param to offset of the '&gt;'
+     * @return the suggestion, or null if malformed; getLastReason() then tells why
+     */
+    Suggestion parseRecord(CharSequence text, int from, int to) {
+        int count = splitFields(text, from, to);
+
+        Suggestion.Action action = action(text, starts[0], ends[0]);
+        if (action == null) {
+            return fail(Reason.UNKNOWN_ACTION);
+        }
+        int expected = action == Suggestion.Action.ELIMINATE ? 2 : MAX_FIELDS;
+        if (count != expected) {
+            return fail(count < 2 ? Reason.INVALID_PRODUCT_ID : Reason.WRONG_FIELD_COUNT);
+        }
+        ProductID prodID = productID(text, starts[1], ends[1]);
+        if (prodID == null) {
+            return fail(Reason.INVALID_PRODUCT_ID);
+        }
+        lastReason = null;
+        if (action == Suggestion.Action.ELIMINATE) {
+            return new Suggestion(action, prodID);
+        }
+        String[] guidelines = new String[GUIDELINE_FIELDS];
+        for (int f = 0; f < GUIDELINE_FIELDS; f++) {
+            int s = starts[2 + f];
+            int e = ends[2 + f];
+            guidelines[f] = s == e ? EMPTY : text.subSequence(s, e).toString();
+        }
+        return new Suggestion(action, prodID, guidelines);
+    }
+
+    /**
+     * @return why the last record could not be parsed, or null if it was parsed
+     */
+    Reason getLastReason() {
+        return lastReason;
+    }
+
+    private Suggestion fail(Reason reason) {
+        lastReason = reason;
+        return null;
+    }
+
+    /**
+     * Locates the trimmed fields of a record. The last field takes the rest of the record.
+     *
+     * @return number of fields found
+     */
+    private int splitFields(CharSequence text, int from, int to) {
+        int count = 0;
+        int start = from;
+        for (int i = from; i <= to; i++) {
+            if (i == to || (text.charAt(i) == ',' && count < MAX_FIELDS - 1)) {
+                int s = start;
+                int e = i;
+                while (s < e && Character.isWhitespace(text.charAt(s))) s++;
+                while (e > s && Character.isWhitespace(text.charAt(e - 1))) e--;
+                starts[count] = s;
+                ends[count] = e;
+                count++;
+                start = i + 1;
+            }
+        }
+        return count;
+    }
+
+    private static Suggestion.Action action(CharSequence text, int from, int to) {
+        int length = to - from;
+        if (length == 0) {
+            return null;
+        }
+        char first = text.charAt(from);
+        Suggestion.Action action;
+        String word;
+        switch (first) {
+            case 'I': action = Suggestion.Action.INSERT; word = "INSERT"; break;
+            case 'E': action = Suggestion.Action.ELIMINATE; word = "ELIMINATE"; break;
+            case 'M': action = Suggestion.Action.MODIFY; word = "MODIFY"; break;
+            default: return null;
+        }
+        if (length == 1) {
+            return action;
+        }
+        if (length != word.length()) {
+            return null;
+        }
+        for (int i = 1; i < length; i++) {
+            if (text.charAt(from + i) != word.charAt(i)) {
+                return null;
+            }
+        }
+        return action;
+    }
+
+    private static ProductID productID(CharSequence text, int from, int to) {
+        int length = to - from;
+        if (length < 12 || length > 16 || !IdCodec.isAlphanumeric(text, from, to)) {
+            return null;
+        }
+        try {
+            return ProductID.of(text.subSequence(from, to).toString());
+        } catch (IncorrectParametersException e) {
+            // Not reached: the code was validated above
+            return null;
+        }
+    }
+}
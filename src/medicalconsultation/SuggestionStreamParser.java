@@ -0,0 +1,116 @@
+package medicalconsultation;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Incremental parser of streamed AI answers: receives the answer as text chunks and
+ * publishes every suggestion as soon as its closing '&gt;' arrives, so the first
+ * suggestions can be reviewed while the rest of the answer is still being generated.
+ *
+ * Suggestions follow the grammar of SuggestionParser. Records that do not follow it
+ * are skipped and counted.
+ *
+ * Requests one chunk at a time from the source and delivers the suggestions through
+ * the executor, buffering at most the given number per subscriber.
+ */
+public class SuggestionStreamParser extends SubmissionPublisher<Suggestion>
+        implements Flow.Processor<String, Suggestion> {
+
+    private final SuggestionParser recordParser = new SuggestionParser();
+    private Flow.Subscription subscription;
+
+    // Text of the record being read
+    private final StringBuilder record = new StringBuilder(64);
+    private boolean inRecord;
+    private volatile int rejected;
+
+    public SuggestionStreamParser() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    public SuggestionStreamParser(Executor executor, int maxBufferCapacity) {
+        super(executor, maxBufferCapacity);
+    }
+
+    /**
+     * Parses a stream of answer chunks. Every subscriber gets its own parser and
+     * subscribes to the chunks anew, once it is ready to receive suggestions.
+     *
+     * @param chunks the answer chunks, e.g. from DecisionMakingAI.streamSuggestions
+     * @return a publisher of the parsed suggestions
+     */
+    public static Flow.Publisher<Suggestion> parse(Flow.Publisher<String> chunks) {
+        return subscriber -> {
+            SuggestionStreamParser parser = new SuggestionStreamParser();
+            parser.subscribe(subscriber);
+            chunks.subscribe(parser);
+        };
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(String chunk) {
+        feed(chunk);
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        closeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (inRecord) {
+            // The answer ended in the middle of a suggestion
+            inRecord = false;
+            rejected++;
+        }
+        close();
+    }
+
+    /**
+     * @return number of records skipped because they did not follow the pattern
+     */
+    public int getRejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * Consumes a chunk, publishing every suggestion it completes.
+     */
+    private void feed(CharSequence chunk) {
+        int length = chunk.length();
+        for (int i = 0; i < length; i++) {
+            char c = chunk.charAt(i);
+            if (c == '<') {
+                if (inRecord) {
+                    // A new record started before the previous one was closed
+                    rejected++;
+                }
+                inRecord = true;
+                record.setLength(0);
+            } else if (inRecord) {
+                if (c == '>') {
+                    Suggestion suggestion = recordParser.parseRecord(record, 0, record.length());
+                    inRecord = false;
+                    if (suggestion != null) {
+                        submit(suggestion);
+                    } else {
+                        rejected++;
+                    }
+                } else {
+                    record.append(c);
+                }
+            }
+        }
+    }
+}
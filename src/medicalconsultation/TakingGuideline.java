@@ -1,5 +1,7 @@
 package medicalconsultation;
 
+import exceptions.IncorrectTakingGuidelinesException;
+
 /**
  * Represents the taking guidelines for a medicine.
  */
@@ -16,6 +18,14 @@ public class TakingGuideline {
         this.instructions = i;
     }
 
+    /**
+     * Starts a guideline whose values are checked when built.
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
     public dayMoment getdMoment() {
         return dMoment;
     }
@@ -47,4 +57,61 @@ public class TakingGuideline {
     public void setInstructions(String instructions) {
         this.instructions = instructions;
     }
+
+    /**
+     * Builder of validated guidelines, with the same rules as the guidelines entered
+     * as text in the prescription edition.
+     */
+    public static final class Builder {
+        private dayMoment dMoment;
+        private float duration;
+        private float dose;
+        private float freq;
+        private FqUnit freqUnit;
+        private String instructions;
+
+        private Builder() {
+        }
+
+        public Builder dayMoment(dayMoment dMoment) {
+            this.dMoment = dMoment;
+            return this;
+        }
+
+        public Builder duration(float duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        public Builder dose(float dose) {
+            this.dose = dose;
+            return this;
+        }
+
+        public Builder frequency(float freq, FqUnit freqUnit) {
+            this.freq = freq;
+            this.freqUnit = freqUnit;
+            return this;
+        }
+
+        public Builder instructions(String instructions) {
+            this.instructions = instructions;
+            return this;
+        }
+
+        /**
+         * Creates the guideline.
+         *
+         * @return the guideline
+         * @throws IncorrectTakingGuidelinesException if a value is missing or not valid
+         */
+        public TakingGuideline build() throws IncorrectTakingGuidelinesException {
+            GuidelineParser.FieldError error =
+                    GuidelineParser.validate(dMoment, duration, dose, freq, freqUnit, instructions);
+            if (error != null) {
+                throw new IncorrectTakingGuidelinesException(error.getMessage());
+            }
+            return new TakingGuideline(dMoment, duration, dose, freq, freqUnit, instructions);
+        }
+    }
 }
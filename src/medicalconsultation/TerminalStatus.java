@@ -0,0 +1,31 @@
+package medicalconsultation;
+
+/**
+ * Outcome of the non-throwing operations of ConsultationTerminal (the try* and check*
+ * methods). Every value other than OK names the expected failure that the homonymous
+ * throwing operation reports through an exception.
+ */
+public enum TerminalStatus {
+    OK,
+
+    // Workflow preconditions (ProceduralException)
+    REVISION_NOT_INITIALIZED,
+    EDITION_NOT_INITIALIZED,
+    AI_NOT_INITIALIZED,
+    NO_AI_RESPONSE,
+    ENDING_DATE_NOT_SET,
+    SIGNATURE_NOT_STAMPED,
+
+    // Prescription editing failures
+    PRODUCT_ALREADY_IN_PRESCRIPTION,
+    PRODUCT_NOT_IN_PRESCRIPTION,
+    INCORRECT_TAKING_GUIDELINES,
+    INCORRECT_ENDING_DATE;
+
+    /**
+     * @return true if the operation was performed, or its preconditions hold
+     */
+    public boolean isOk() {
+        return this == OK;
+    }
+}
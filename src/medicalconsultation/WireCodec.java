@@ -0,0 +1,471 @@
+package medicalconsultation;
+
+import data.*;
+import exceptions.IncorrectParametersException;
+import exceptions.ProductAlreadyInPrescriptionException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+
+/**
+ * Compact binary wire format for medical prescriptions and medical histories.
+ *
+ * Every message starts with the format version and a message type. Enumerations are
+ * encoded as their ordinal, identifiers as 6-bit packed alphanumeric characters, floats
+ * and dates as raw IEEE 754 / epoch milliseconds, and counts and lengths as varints.
+ *
+ * Encoding and decoding stream over a ByteBuffer: encoding throws BufferOverflowException
+ * when the buffer has no room left, and decoding throws BufferUnderflowException when the
+ * message is not complete yet. Content that cannot be decoded into valid domain objects
+ * is reported with IncorrectParametersException.
+ */
+public final class WireCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final byte TYPE_PRESCRIPTION = 1;
+    private static final byte TYPE_HISTORY = 2;
+    private static final byte TYPE_SIGNED_CONTENT = 3;
+
+    // Presence flags of the optional prescription fields
+    private static final int HAS_PRESC_CODE = 1;
+    private static final int HAS_PRESC_DATE = 1 << 1;
+    private static final int HAS_END_DATE = 1 << 2;
+    private static final int HAS_E_SIGN = 1 << 3;
+
+    private static final dayMoment[] DAY_MOMENTS = dayMoment.values();
+    private static final FqUnit[] FQ_UNITS = FqUnit.values();
+
+    private WireCodec() {
+    }
+
+    // ========== MEDICAL PRESCRIPTION ==========
+
+    /**
+     * Encodes a prescription into a new byte array.
+     *
+     * @param prescription the prescription to encode
+     * @return the encoded message
+     */
+    public static byte[] encode(MedicalPrescription prescription) {
+        int capacity = 128 + 64 * prescription.getLines().size();
+        while (true) {
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            try {
+                encode(prescription, buffer);
+                return toArray(buffer);
+            } catch (BufferOverflowException e) {
+                capacity *= 2;
+            }
+        }
+    }
+
+    /**
+     * Encodes a prescription at the buffer's position.
+     *
+     * @param prescription the prescription to encode
+     * @param buffer the destination buffer
+     * @throws BufferOverflowException if the buffer has not enough room
+     * @throws IllegalArgumentException if the prescription carries an empty signature,
+     *                                  which could not be told apart from no signature
+     */
+    public static void encode(MedicalPrescription prescription, ByteBuffer buffer) {
+        if (prescription.geteSign() != null && !prescription.geteSign().isValid()) {
+            throw new IllegalArgumentException("Cannot encode an empty electronic signature");
+        }
+        buffer.put(VERSION);
+        buffer.put(TYPE_PRESCRIPTION);
+        putId(buffer, prescription.getCip().getPersonalID());
+        putVarInt(buffer, prescription.getMembShipNumb());
+        putString(buffer, prescription.getIllness());
+
+        int flags = 0;
+        if (prescription.getPrescCode() != null) flags |= HAS_PRESC_CODE;
+        if (prescription.getPrescDate() != null) flags |= HAS_PRESC_DATE;
+        if (prescription.getEndDate() != null) flags |= HAS_END_DATE;
+        if (prescription.geteSign() != null) flags |= HAS_E_SIGN;
+        buffer.put((byte) flags);
+
+        if ((flags & HAS_PRESC_CODE) != 0) putId(buffer, prescription.getPrescCode().getCode());
+        if ((flags & HAS_PRESC_DATE) != 0) buffer.putLong(prescription.getPrescDate().getTime());
+        if ((flags & HAS_END_DATE) != 0) buffer.putLong(prescription.getEndDate().getTime());
+        if ((flags & HAS_E_SIGN) != 0) {
+            byte[] signature = prescription.geteSign().getSignature();
+            putVarInt(buffer, signature.length);
+            buffer.put(signature);
+        }
+
+        putVarInt(buffer, prescription.getLines().size());
+        for (MedicalPrescriptionLine line : prescription.getLines().values()) {
+            encodeLine(line, buffer);
+        }
+    }
+
+    /**
+     * Decodes a prescription from a byte array.
+     *
+     * @param data the encoded message
+     * @return the decoded prescription
+     * @throws IncorrectParametersException if the message is not a valid prescription
+     */
+    public static MedicalPrescription decodePrescription(byte[] data) throws IncorrectParametersException {
+        return decodePrescription(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Decodes a prescription at the buffer's position.
+     *
+     * @param buffer the source buffer
+     * @return the decoded prescription
+     * @throws IncorrectParametersException if the message is not a valid prescription
+     */
+    public static MedicalPrescription decodePrescription(ByteBuffer buffer) throws IncorrectParametersException {
+        readHeader(buffer, TYPE_PRESCRIPTION);
+        HealthCardID cip = HealthCardID.of(getId(buffer));
+        int membShipNumb = getVarInt(buffer);
+        String illness = getString(buffer);
+        MedicalPrescription prescription = new MedicalPrescription(cip, membShipNumb, illness);
+
+        int flags = buffer.get();
+        if ((flags & HAS_PRESC_CODE) != 0) prescription.setPrescCode(ePrescripCode.of(getId(buffer)));
+        if ((flags & HAS_PRESC_DATE) != 0) prescription.setPrescDate(new Date(buffer.getLong()));
+        if ((flags & HAS_END_DATE) != 0) prescription.setEndDate(new Date(buffer.getLong()));
+        if ((flags & HAS_E_SIGN) != 0) {
+            int length = getLength(buffer);
+            if (length > buffer.remaining()) {
+                // Checked before allocating: a corrupt length must not allocate a huge array
+                throw new IncorrectParametersException("Signature length exceeds the message: " + length);
+            }
+            byte[] signature = new byte[length];
+            buffer.get(signature);
+            prescription.seteSign(new DigitalSignature(signature));
+        }
+
+        int count = getLength(buffer);
+        for (int i = 0; i < count; i++) {
+            MedicalPrescriptionLine line = decodeLine(buffer);
+            try {
+                prescription.restoreLine(line);
+            } catch (ProductAlreadyInPrescriptionException e) {
+                throw new IncorrectParametersException(
+                        "Duplicated product in encoded prescription: " + line.getProductID().getCode());
+            }
+        }
+        return prescription;
+    }
+
+    // ========== SIGNED CONTENT ==========
+
+    private static final Comparator<MedicalPrescriptionLine> BY_PRODUCT =
+            Comparator.comparing(line -> line.getProductID().getCode());
+
+    /**
+     * Encodes the content of a prescription that the doctor's signature covers, in a
+     * canonical form: prescriptions with the same content always give the same bytes.
+     *
+     * Lines are sorted by product code, since the order they were entered in is not part
+     * of the prescription. The treatment code, assigned by the HNS after signing, and the
+     * signature itself are left out.
+     *
+     * @param prescription the prescription to sign or verify
+     * @return the bytes to sign
+     */
+    public static byte[] encodeSignedContent(MedicalPrescription prescription) {
+        MedicalPrescriptionLine[] lines = prescription.getLines().values()
+                .toArray(new MedicalPrescriptionLine[0]);
+        Arrays.sort(lines, BY_PRODUCT);
+
+        int capacity = 96 + 64 * lines.length;
+        while (true) {
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            try {
+                buffer.put(VERSION);
+                buffer.put(TYPE_SIGNED_CONTENT);
+                putId(buffer, prescription.getCip().getPersonalID());
+                putVarInt(buffer, prescription.getMembShipNumb());
+                putString(buffer, prescription.getIllness());
+
+                int flags = 0;
+                if (prescription.getPrescDate() != null) flags |= HAS_PRESC_DATE;
+                if (prescription.getEndDate() != null) flags |= HAS_END_DATE;
+                buffer.put((byte) flags);
+                if ((flags & HAS_PRESC_DATE) != 0) buffer.putLong(prescription.getPrescDate().getTime());
+                if ((flags & HAS_END_DATE) != 0) buffer.putLong(prescription.getEndDate().getTime());
+
+                putVarInt(buffer, lines.length);
+                for (MedicalPrescriptionLine line : lines) {
+                    encodeLine(line, buffer);
+                }
+                return toArray(buffer);
+            } catch (BufferOverflowException e) {
+                capacity *= 2;
+            }
+        }
+    }
+
+    // ========== MEDICAL HISTORY ==========
+
+    /**
+     * Encodes a medical history into a new byte array.
+     *
+     * @param history the history to encode
+     * @return the encoded message
+     */
+    public static byte[] encode(MedicalHistory history) {
+        int capacity = 64 + 2 * history.getHistoryLength() + 16 * history.getAnnotationCount();
+        while (true) {
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            try {
+                encode(history, buffer);
+                return toArray(buffer);
+            } catch (BufferOverflowException e) {
+                capacity *= 2;
+            }
+        }
+    }
+
+    /**
+     * Encodes a medical history at the buffer's position.
+     * The first timestamp is written as is, a two's complement varint that takes ten bytes
+     * if it falls before 1970. The next ones are written as increments over the previous
+     * annotation, never negative since a history keeps its annotations in order.
+     *
+     * @param history the history to encode
+     * @param buffer the destination buffer
+     * @throws BufferOverflowException if the buffer has not enough room
+     */
+    public static void encode(MedicalHistory history, ByteBuffer buffer) {
+        buffer.put(VERSION);
+        buffer.put(TYPE_HISTORY);
+        putId(buffer, history.getCip().getPersonalID());
+        putVarInt(buffer, history.getMembShipNumb());
+        putVarInt(buffer, history.getAnnotationCount());
+
+        long previous = 0;
+        for (HistoryAnnotation annotation : history.getAnnotations()) {
+            long timestamp = annotation.getTimestampMillis();
+            putVarLong(buffer, timestamp - previous);
+            putVarInt(buffer, annotation.getMembShipNumb());
+            putString(buffer, annotation.getText());
+            previous = timestamp;
+        }
+    }
+
+    /**
+     * Decodes a medical history from a byte array.
+     *
+     * @param data the encoded message
+     * @return the decoded history
+     * @throws IncorrectParametersException if the message is not a valid history
+     */
+    public static MedicalHistory decodeHistory(byte[] data) throws IncorrectParametersException {
+        return decodeHistory(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Decodes a medical history at the buffer's position.
+     *
+     * @param buffer the source buffer
+     * @return the decoded history
+     * @throws IncorrectParametersException if the message is not a valid history
+     */
+    public static MedicalHistory decodeHistory(ByteBuffer buffer) throws IncorrectParametersException {
+        readHeader(buffer, TYPE_HISTORY);
+        HealthCardID cip = HealthCardID.of(getId(buffer));
+        MedicalHistory history = new MedicalHistory(cip, getVarInt(buffer));
+
+        int count = getLength(buffer);
+        long timestamp = 0;
+        for (int i = 0; i < count; i++) {
+            long increment = getVarLong(buffer);
+            // Only the first value, the absolute timestamp, can be negative
+            if (increment < 0 && i > 0) {
+                throw new IncorrectParametersException("Annotations are not in chronological order");
+            }
+            timestamp += increment;
+            int membShipNumb = getVarInt(buffer);
+            String text = getString(buffer);
+            try {
+                history.addAnnotation(new HistoryAnnotation(new Date(timestamp), membShipNumb, text));
+            } catch (IllegalArgumentException e) {
+                throw new IncorrectParametersException("Invalid encoded annotation: " + e.getMessage());
+            }
+        }
+        return history;
+    }
+
+    // ========== LINES ==========
+
+    private static void encodeLine(MedicalPrescriptionLine line, ByteBuffer buffer) {
+        TakingGuideline guideline = line.getTakingGuideline();
+        Posology posology = guideline.getPosology();
+        putId(buffer, line.getProductID().getCode());
+        buffer.put((byte) guideline.getdMoment().ordinal());
+        buffer.putFloat(guideline.getDuration());
+        buffer.putFloat(posology.getDose());
+        buffer.putFloat(posology.getFreq());
+        buffer.put((byte) posology.getFreqUnit().ordinal());
+        putString(buffer, guideline.getInstructions());
+    }
+
+    private static MedicalPrescriptionLine decodeLine(ByteBuffer buffer) throws IncorrectParametersException {
+        ProductID prodID = ProductID.of(getId(buffer));
+        int moment = buffer.get();
+        float duration = buffer.getFloat();
+        float dose = buffer.getFloat();
+        float freq = buffer.getFloat();
+        int unit = buffer.get();
+        String instructions = getString(buffer);
+
+        if (moment < 0 || moment >= DAY_MOMENTS.length) {
+            throw new IncorrectParametersException("Invalid encoded day moment: " + moment);
+        }
+        if (unit < 0 || unit >= FQ_UNITS.length) {
+            throw new IncorrectParametersException("Invalid encoded frequency unit: " + unit);
+        }
+        TakingGuideline guideline = new TakingGuideline(
+                DAY_MOMENTS[moment], duration, dose, freq, FQ_UNITS[unit], instructions);
+        return new MedicalPrescriptionLine(prodID, guideline);
+    }
+
+    // ========== PRIMITIVES ==========
+
+    private static void readHeader(ByteBuffer buffer, byte expectedType) throws IncorrectParametersException {
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IncorrectParametersException("Unsupported wire format version: " + version);
+        }
+        byte type = buffer.get();
+        if (type != expectedType) {
+            throw new IncorrectParametersException("Unexpected message type: " + type);
+        }
+    }
+
+    /**
+     * Writes an alphanumeric identifier: its length, then 6 bits per character.
+     */
+    private static void putId(ByteBuffer buffer, String id) {
+        int length = id.length();
+        buffer.put((byte) length);
+        int acc = 0;
+        int bits = 0;
+        for (int i = 0; i < length; i++) {
+            acc = (acc << 6) | IdCodec.toSixBit(id.charAt(i));
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                buffer.put((byte) (acc >>> bits));
+            }
+        }
+        if (bits > 0) {
+            buffer.put((byte) (acc << (8 - bits)));
+        }
+    }
+
+    private static String getId(ByteBuffer buffer) throws IncorrectParametersException {
+        int length = buffer.get() & 0xFF;
+        char[] chars = new char[length];
+        int acc = 0;
+        int bits = 0;
+        for (int i = 0; i < length; i++) {
+            if (bits < 6) {
+                acc = (acc << 8) | (buffer.get() & 0xFF);
+                bits += 8;
+            }
+            bits -= 6;
+            int code = (acc >>> bits) & 0x3F;
+            if (code > 61) {
+                throw new IncorrectParametersException("Invalid encoded identifier character: " + code);
+            }
+            chars[i] = IdCodec.fromSixBit(code);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Writes a nullable String: 0 for null, otherwise the UTF-8 length plus one and the bytes.
+     */
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            putVarInt(buffer, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarInt(buffer, bytes.length + 1);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) throws IncorrectParametersException {
+        int length = getLength(buffer);
+        if (length == 0) {
+            return null;
+        }
+        length--;
+        if (length > buffer.remaining()) {
+            throw new java.nio.BufferUnderflowException();
+        }
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        putVarLong(buffer, value & 0xFFFFFFFFL);
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buffer) throws IncorrectParametersException {
+        long value = getVarLong(buffer);
+        if (value > 0xFFFFFFFFL) {
+            throw new IncorrectParametersException("Encoded value out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private static long getVarLong(ByteBuffer buffer) throws IncorrectParametersException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IncorrectParametersException("Malformed varint");
+    }
+
+    /**
+     * Reads a count or length, which must be non-negative.
+     */
+    private static int getLength(ByteBuffer buffer) throws IncorrectParametersException {
+        int length = getVarInt(buffer);
+        if (length < 0) {
+            throw new IncorrectParametersException("Invalid encoded length: " + length);
+        }
+        return length;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(data);
+        return data;
+    }
+}
@@ -0,0 +1,252 @@
+package services;
+
+import data.HealthCardID;
+import medicalconsultation.Appointment;
+import medicalconsultation.PrescriptionRequest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads the data of scheduled consultations into a CachingHealthNationalService
+ * shortly before each appointment, so initRevision() finds it already cached.
+ *
+ * Each appointment is warmed leadMillis before it starts. Appointments that fall due
+ * together are warmed together: one history download per patient not cached yet, and
+ * their prescriptions in batch downloads. At most maxConcurrency downloads run at a
+ * time, and they are spaced to stay under maxCallsPerSecond calls to the HNS.
+ *
+ * Failed downloads are not retried: the consultation downloads its data itself.
+ */
+public class AppointmentPrewarmer implements AutoCloseable {
+
+    // Prescriptions per batch download
+    private static final int MAX_BATCH = 32;
+
+    private static final Comparator<Appointment> BY_TIME = Comparator.comparingLong(Appointment::getTimeMillis);
+
+    private final CachingHealthNationalService cache;
+    private final long leadMillis;
+    private final long callIntervalNanos;
+    private final ScheduledExecutorService executor;
+
+    // Appointments not warmed yet, earliest first; guarded by this
+    private final PriorityQueue<Appointment> upcoming = new PriorityQueue<>(BY_TIME);
+
+    // Earliest System.nanoTime() the next HNS call may start at; guarded by rateLock
+    private final Object rateLock = new Object();
+    private long nextCallNanos;
+    private volatile boolean closed;
+
+    // Metrics
+    private final AtomicLong historiesWarmed = new AtomicLong();
+    private final AtomicLong prescriptionsWarmed = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * @param cache the cache initRevision() reads through; its time to live must exceed
+     *              leadMillis, or warmed data expires before the appointment
+     * @param maxConcurrency maximum downloads in flight
+     * @param maxCallsPerSecond maximum calls per second to the HNS
+     * @param leadMillis how long before each appointment its data is downloaded
+     */
+    public AppointmentPrewarmer(CachingHealthNationalService cache, int maxConcurrency,
+                                double maxCallsPerSecond, long leadMillis) {
+        if (cache == null) {
+            throw new IllegalArgumentException("Cache cannot be null");
+        }
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be greater than 0");
+        }
+        if (!(maxCallsPerSecond > 0)) {
+            throw new IllegalArgumentException("Call rate must be greater than 0");
+        }
+        if (leadMillis < 0) {
+            throw new IllegalArgumentException("Lead time cannot be negative");
+        }
+        this.cache = cache;
+        this.leadMillis = leadMillis;
+        this.callIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / maxCallsPerSecond);
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(maxConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "appointment-prewarmer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.executor = executor;
+    }
+
+    /**
+     * Plans the warm-up of upcoming appointments. Appointments already started are
+     * skipped, and those starting within the lead time are warmed right away.
+     *
+     * @param appointments the doctor's upcoming appointments
+     * @return number of appointments planned
+     */
+    public int schedule(Collection<Appointment> appointments) {
+        if (appointments == null) {
+            throw new IllegalArgumentException("Appointments cannot be null");
+        }
+        if (closed) {
+            throw new IllegalStateException("Prewarmer is closed");
+        }
+        long now = System.currentTimeMillis();
+        List<Long> delays = new ArrayList<>();
+        synchronized (this) {
+            // Queued before any warm-up runs, so the ones due now go in the same batch
+            for (Appointment appointment : appointments) {
+                if (appointment.getTimeMillis() > now) {
+                    upcoming.add(appointment);
+                    delays.add(Math.max(0, appointment.getTimeMillis() - leadMillis - now));
+                }
+            }
+        }
+        int planned = 0;
+        for (long delay : delays) {
+            try {
+                executor.schedule(this::warmDue, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Closed concurrently
+                break;
+            }
+            planned++;
+        }
+        return planned;
+    }
+
+    public synchronized int getPendingCount() {
+        return upcoming.size();
+    }
+
+    /**
+     * @return histories left in the cache; those whose patient's data was uploaded during
+     *         the download are not counted
+     */
+    public long getHistoriesWarmed() {
+        return historiesWarmed.get();
+    }
+
+    /**
+     * @return prescriptions left in the cache, counted like getHistoriesWarmed()
+     */
+    public long getPrescriptionsWarmed() {
+        return prescriptionsWarmed.get();
+    }
+
+    /**
+     * @return histories and prescriptions that could not be downloaded
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Drops the appointments not warmed yet and stops the downloads in progress.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        synchronized (this) {
+            upcoming.clear();
+        }
+    }
+
+    // ========== INTERNALS ==========
+
+    /**
+     * Warms every appointment whose warm-up time has come. Planned once per appointment,
+     * so the appointments falling due together are taken by the first run.
+     */
+    private void warmDue() {
+        List<Appointment> due = new ArrayList<>();
+        long limit = System.currentTimeMillis() + leadMillis;
+        synchronized (this) {
+            while (!upcoming.isEmpty() && upcoming.peek().getTimeMillis() <= limit) {
+                due.add(upcoming.poll());
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        Set<HealthCardID> patients = new LinkedHashSet<>();
+        for (Appointment appointment : due) {
+            if (!cache.containsHistory(appointment.getCip())) {
+                patients.add(appointment.getCip());
+            }
+        }
+        try {
+            for (HealthCardID cip : patients) {
+                executor.execute(() -> warmHistory(cip));
+            }
+            for (int from = 0; from < due.size(); from += MAX_BATCH) {
+                List<PrescriptionRequest> batch = new ArrayList<>();
+                for (Appointment appointment : due.subList(from, Math.min(from + MAX_BATCH, due.size()))) {
+                    batch.add(new PrescriptionRequest(appointment.getCip(), appointment.getIllness()));
+                }
+                executor.execute(() -> warmPrescriptions(batch));
+            }
+        } catch (RejectedExecutionException e) {
+            // Closed while planning the downloads
+        }
+    }
+
+    private void warmHistory(HealthCardID cip) {
+        if (!awaitCall()) {
+            return;
+        }
+        try {
+            if (cache.warmHistory(cip)) {
+                historiesWarmed.incrementAndGet();
+            }
+        } catch (Exception e) {
+            failures.incrementAndGet();
+        }
+    }
+
+    private void warmPrescriptions(List<PrescriptionRequest> batch) {
+        if (!awaitCall()) {
+            return;
+        }
+        for (BatchResult<Boolean> result : cache.warmPrescriptions(batch)) {
+            if (!result.isSuccess()) {
+                failures.incrementAndGet();
+            } else if (result.getValue()) {
+                prescriptionsWarmed.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Waits for the next slot of the call rate.
+     *
+     * @return false if the prewarmer was closed meanwhile
+     */
+    private boolean awaitCall() {
+        long wait;
+        synchronized (rateLock) {
+            long now = System.nanoTime();
+            long start = Math.max(now, nextCallNanos);
+            nextCallNanos = start + callIntervalNanos;
+            wait = start - now;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !closed;
+    }
+}
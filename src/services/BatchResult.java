@@ -0,0 +1,51 @@
+package services;
+
+/**
+ * Result of one item of a batch call to the Health National Service: either the value
+ * returned for the item or the exception the single-item call would have thrown.
+ *
+ * @param <T> type of the value returned for a successful item
+ */
+public final class BatchResult<T> {
+    private final T value;
+    private final Exception error;
+
+    private BatchResult(T value, Exception error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    public static <T> BatchResult<T> success(T value) {
+        return new BatchResult<>(value, null);
+    }
+
+    public static <T> BatchResult<T> failure(Exception error) {
+        if (error == null) {
+            throw new IllegalArgumentException("Error cannot be null");
+        }
+        return new BatchResult<>(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return the value returned for the item, or null if it failed
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * @return the exception of the item, or null if it succeeded
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? "BatchResult{value=" + value + '}' : "BatchResult{error=" + error + '}';
+    }
+}
@@ -0,0 +1,229 @@
+package services;
+
+import exceptions.AIException;
+import exceptions.BadPromptException;
+import medicalconsultation.MedicalPrescription;
+import medicalconsultation.MedicalPrescriptionLine;
+import medicalconsultation.Posology;
+import medicalconsultation.Suggestion;
+import medicalconsultation.TakingGuideline;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorator for the Decision Making AI that caches its answers.
+ *
+ * Answers are keyed by the normalized prompt (trimmed, single spaces) plus a content
+ * hash of the prescription being edited and its illness, so the same question about an
+ * unchanged prescription is answered without calling the AI again, while any change to
+ * the prescription asks it anew. Case is kept: prompts quote ProductID codes, which are
+ * case-sensitive. Prompts without a prescription are not cached, since nothing ties
+ * them to a patient. The cache is bounded by size (least recently used entries are
+ * evicted first) and by time to live. Failed prompts are not cached.
+ *
+ * Parsed suggestions are memoized per answer text under the same size bound; every
+ * call returns new suggestions, so callers may change them freely.
+ */
+public class CachingDecisionMakingAI implements DecisionMakingAI {
+
+    private final DecisionMakingAI delegate;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    // Access-ordered maps: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, CachedAnswer> answers;
+    private final LinkedHashMap<String, List<Suggestion>> parsedAnswers;
+
+    private long hits;
+    private long misses;
+
+    public CachingDecisionMakingAI(DecisionMakingAI delegate, int maxEntries, long ttlMillis) {
+        this(delegate, maxEntries, ttlMillis, Clock.systemUTC());
+    }
+
+    public CachingDecisionMakingAI(DecisionMakingAI delegate, int maxEntries, long ttlMillis, Clock clock) {
+        if (delegate == null || clock == null) {
+            throw new IllegalArgumentException("Delegate AI and clock cannot be null");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be greater than 0");
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("Time to live must be greater than 0");
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.answers = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedAnswer> eldest) {
+                return size() > CachingDecisionMakingAI.this.maxEntries;
+            }
+        };
+        this.parsedAnswers = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Suggestion>> eldest) {
+                return size() > CachingDecisionMakingAI.this.maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public void initDecisionMakingAI() throws AIException {
+        delegate.initDecisionMakingAI();
+    }
+
+    @Override
+    public String getSuggestions(String prompt) throws BadPromptException {
+        return getSuggestions(prompt, null);
+    }
+
+    @Override
+    public String getSuggestions(String prompt, MedicalPrescription context) throws BadPromptException {
+        if (prompt == null || context == null) {
+            return delegate.getSuggestions(prompt, context);
+        }
+        String key = key(prompt, context);
+        synchronized (this) {
+            CachedAnswer cached = answers.get(key);
+            if (cached != null) {
+                if (cached.expiresAt > clock.millis()) {
+                    hits++;
+                    return cached.answer;
+                }
+                answers.remove(key);
+            }
+            misses++;
+        }
+
+        // Ask outside the lock so other prompts are not blocked by the AI
+        String answer = delegate.getSuggestions(prompt, context);
+
+        if (answer != null) {
+            synchronized (this) {
+                answers.put(key, new CachedAnswer(answer, clock.millis() + ttlMillis));
+            }
+        }
+        return answer;
+    }
+
+    @Override
+    public List<Suggestion> parseSuggest(String aiAnswer) {
+        if (aiAnswer == null) {
+            return delegate.parseSuggest(null);
+        }
+        List<Suggestion> parsed;
+        synchronized (this) {
+            parsed = parsedAnswers.get(aiAnswer);
+        }
+        if (parsed == null) {
+            parsed = copy(delegate.parseSuggest(aiAnswer));
+            synchronized (this) {
+                parsedAnswers.put(aiAnswer, parsed);
+            }
+        }
+        return copy(parsed);
+    }
+
+    private static List<Suggestion> copy(List<Suggestion> suggestions) {
+        List<Suggestion> copy = new ArrayList<>(suggestions.size());
+        for (Suggestion suggestion : suggestions) {
+            String[] guidelines = suggestion.getGuidelines();
+            copy.add(new Suggestion(suggestion.getAction(), suggestion.getProductID(),
+                    guidelines != null ? guidelines.clone() : null));
+        }
+        return copy;
+    }
+
+    /**
+     * Removes every cached answer and parsed suggestion list.
+     */
+    public synchronized void invalidateAll() {
+        answers.clear();
+        parsedAnswers.clear();
+    }
+
+    public synchronized int size() {
+        return answers.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Cache key of a prompt about a prescription: only whitespace is normalized.
+     */
+    static String key(String prompt, MedicalPrescription context) {
+        StringBuilder key = new StringBuilder(prompt.length() + 24);
+        boolean pendingSpace = false;
+        for (int i = 0; i < prompt.length(); i++) {
+            char c = prompt.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = key.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    key.append(' ');
+                    pendingSpace = false;
+                }
+                key.append(c);
+            }
+        }
+        return key.append('#').append(Long.toHexString(contentHash(context))).toString();
+    }
+
+    /**
+     * Hash of the clinical content of a prescription: patient, illness, ending date and
+     * every line with its guidelines. Lines are combined independently of their order.
+     */
+    static long contentHash(MedicalPrescription prescription) {
+        long hash = 1125899906842597L;
+        hash = 31 * hash + prescription.getCip().hashCode();
+        hash = 31 * hash + prescription.getIllness().hashCode();
+        hash = 31 * hash + (prescription.getEndDate() != null ? prescription.getEndDate().getTime() : 0);
+
+        long lines = 0;
+        for (MedicalPrescriptionLine line : prescription.getLines().values()) {
+            TakingGuideline guideline = line.getTakingGuideline();
+            Posology posology = guideline.getPosology();
+            long h = line.getProductID().hashCode();
+            h = 31 * h + guideline.getdMoment().ordinal();
+            h = 31 * h + Float.floatToIntBits(guideline.getDuration());
+            h = 31 * h + Float.floatToIntBits(posology.getDose());
+            h = 31 * h + Float.floatToIntBits(posology.getFreq());
+            h = 31 * h + posology.getFreqUnit().ordinal();
+            h = 31 * h + guideline.getInstructions().hashCode();
+            lines += mix(h);
+        }
+        return mix(31 * hash + lines);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Cache entry: an AI answer and the instant it stops being valid.
+     */
+    private static final class CachedAnswer {
+        private final String answer;
+        private final long expiresAt;
+
+        private CachedAnswer(String answer, long expiresAt) {
+            this.answer = answer;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package services;
+
+import data.HealthCardID;
+import medicalconsultation.ConsultationDelta;
+import medicalconsultation.MedicalHistory;
+import medicalconsultation.MedicalPrescription;
+import medicalconsultation.PrescriptionRequest;
+import medicalconsultation.PrescriptionUpload;
+import medicalconsultation.WireCodec;
+import exceptions.*;
+import java.net.ConnectException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorator for the Health National Service that caches medical histories per patient.
+ * The cache is bounded by size (least recently used entries are evicted first) and
+ * by time to live. Uploading a new history for a patient invalidates its entry.
+ *
+ * The cache holds a WireCodec snapshot of each history and every hit decodes its own
+ * copy, so annotations a revision adds but never uploads stay in that revision, and
+ * concurrent revisions of the same patient never share an instance.
+ *
+ * Prescriptions are only held when downloaded ahead of a revision with
+ * warmPrescriptions(), and each one is handed out once: the revision edits it, so the
+ * next request downloads it again. They share the size bound and time to live of the
+ * histories, and are dropped with them when the patient's data is uploaded.
+ */
+public class CachingHealthNationalService implements HealthNationalService {
+
+    private final HealthNationalService delegate;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    // Access-ordered map: iteration starts at the least recently used entry
+    private final LinkedHashMap<HealthCardID, CachedHistory> histories;
+
+    // Warmed prescriptions keyed by CIP and illness, oldest first
+    private final LinkedHashMap<String, CachedPrescription> prescriptions;
+
+    // Bumped on every invalidation. A download started at an earlier generation is not
+    // cached if its patient, or the whole cache, was invalidated since.
+    private long generation;
+    private long clearedAt;
+    private final HashMap<HealthCardID, Long> invalidatedAt = new HashMap<>();
+
+    // Downloads in progress; invalidatedAt is only needed while there is one
+    private int downloads;
+
+    private long hits;
+    private long misses;
+    private long prescriptionHits;
+
+    public CachingHealthNationalService(HealthNationalService delegate, int maxEntries, long ttlMillis) {
+        this(delegate, maxEntries, ttlMillis, Clock.systemUTC());
+    }
+
+    public CachingHealthNationalService(HealthNationalService delegate, int maxEntries, long ttlMillis, Clock clock) {
+        if (delegate == null || clock == null) {
+            throw new IllegalArgumentException("Delegate service and clock cannot be null");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be greater than 0");
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("Time to live must be greater than 0");
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.histories = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<HealthCardID, CachedHistory> eldest) {
+                return size() > CachingHealthNationalService.this.maxEntries;
+            }
+        };
+        this.prescriptions = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPrescription> eldest) {
+                return size() > CachingHealthNationalService.this.maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public MedicalHistory getMedicalHistory(HealthCardID cip)
+            throws ConnectException, HealthCardIDException, IncorrectParametersException {
+
+        byte[] snapshot = null;
+        synchronized (this) {
+            CachedHistory cached = histories.get(cip);
+            if (cached != null) {
+                if (cached.expiresAt > clock.millis()) {
+                    hits++;
+                    snapshot = cached.encoded;
+                } else {
+                    histories.remove(cip);
+                }
+            }
+            if (snapshot == null) {
+                misses++;
+            }
+        }
+        if (snapshot != null) {
+            // Decoded outside the lock: each caller gets its own copy
+            return WireCodec.decodeHistory(snapshot);
+        }
+
+        // Download outside the lock so other patients are not blocked by the remote call
+        long startGeneration = startDownload();
+        try {
+            MedicalHistory history = delegate.getMedicalHistory(cip);
+            storeHistory(cip, WireCodec.encode(history), startGeneration);
+            return history;
+        } finally {
+            endDownload();
+        }
+    }
+
+    /**
+     * Downloads a history ahead of the revision that will request it.
+     *
+     * @param cip the patient's health card ID
+     * @return true if the history was cached, false if the patient's data was uploaded
+     *         during the download
+     */
+    public boolean warmHistory(HealthCardID cip)
+            throws ConnectException, HealthCardIDException, IncorrectParametersException {
+
+        long startGeneration = startDownload();
+        try {
+            return storeHistory(cip, WireCodec.encode(delegate.getMedicalHistory(cip)), startGeneration);
+        } finally {
+            endDownload();
+        }
+    }
+
+    @Override
+    public MedicalPrescription getMedicalPrescription(HealthCardID cip, String illness)
+            throws ConnectException, HealthCardIDException, AnyCurrentPrescriptionException {
+
+        synchronized (this) {
+            CachedPrescription warmed = prescriptions.remove(key(cip, illness));
+            if (warmed != null && warmed.expiresAt > clock.millis()) {
+                prescriptionHits++;
+                return warmed.prescription;
+            }
+        }
+        return delegate.getMedicalPrescription(cip, illness);
+    }
+
+    /**
+     * Downloads prescriptions ahead of the revisions that will request them, in one
+     * batch call. Each one is served once by getMedicalPrescription() before it expires.
+     *
+     * @param requests the patient and illness of each upcoming revision
+     * @return for each request, true if its prescription was cached, false if its
+     *         patient's data was uploaded during the download, or the download error
+     */
+    public List<BatchResult<Boolean>> warmPrescriptions(List<PrescriptionRequest> requests) {
+        long startGeneration = startDownload();
+        List<BatchResult<Boolean>> cached = new ArrayList<>(requests.size());
+        try {
+            List<BatchResult<MedicalPrescription>> results = delegate.getMedicalPrescriptions(requests);
+            synchronized (this) {
+                long expiresAt = clock.millis() + ttlMillis;
+                for (int i = 0; i < results.size(); i++) {
+                    BatchResult<MedicalPrescription> result = results.get(i);
+                    if (!result.isSuccess()) {
+                        cached.add(BatchResult.failure(result.getError()));
+                        continue;
+                    }
+                    // An upload during the download may have changed what was downloaded
+                    PrescriptionRequest request = requests.get(i);
+                    boolean current = isCurrent(request.getCip(), startGeneration);
+                    if (current) {
+                        prescriptions.put(key(request.getCip(), request.getIllness()),
+                                new CachedPrescription(result.getValue(), expiresAt));
+                    }
+                    cached.add(BatchResult.success(current));
+                }
+            }
+        } finally {
+            endDownload();
+        }
+        return cached;
+    }
+
+    @Override
+    public MedicalPrescription sendHistoryAndPrescription(HealthCardID cip, MedicalHistory hce,
+                                                          String illness, MedicalPrescription mPresc)
+            throws ConnectException, HealthCardIDException,
+            AnyCurrentPrescriptionException, NotCompletedMedicalPrescriptionException, IncorrectParametersException {
+
+        // The stored history is about to change: never serve the old one again
+        invalidate(cip);
+        try {
+            return delegate.sendHistoryAndPrescription(cip, hce, illness, mPresc);
+        } finally {
+            // Also drop anything a concurrent download cached during the upload
+            invalidate(cip);
+        }
+    }
+
+    @Override
+    public MedicalPrescription sendHistoryAndPrescriptionDelta(HealthCardID cip, String illness,
+                                                               ConsultationDelta delta,
+                                                               MedicalHistory hce, MedicalPrescription mPresc)
+            throws ConnectException, HealthCardIDException,
+            AnyCurrentPrescriptionException, NotCompletedMedicalPrescriptionException, IncorrectParametersException {
+
+        invalidate(cip);
+        try {
+            return delegate.sendHistoryAndPrescriptionDelta(cip, illness, delta, hce, mPresc);
+        } finally {
+            invalidate(cip);
+        }
+    }
+
+    @Override
+    public List<BatchResult<MedicalPrescription>> getMedicalPrescriptions(List<PrescriptionRequest> requests) {
+        return delegate.getMedicalPrescriptions(requests);
+    }
+
+    @Override
+    public List<BatchResult<MedicalPrescription>> sendHistoriesAndPrescriptions(List<PrescriptionUpload> uploads) {
+        for (PrescriptionUpload upload : uploads) {
+            invalidate(upload.getCip());
+        }
+        try {
+            return delegate.sendHistoriesAndPrescriptions(uploads);
+        } finally {
+            for (PrescriptionUpload upload : uploads) {
+                invalidate(upload.getCip());
+            }
+        }
+    }
+
+    @Override
+    public MedicalPrescription generateTreatmCodeAndRegister(MedicalPrescription ePresc)
+            throws ConnectException, IncorrectParametersException {
+        return delegate.generateTreatmCodeAndRegister(ePresc);
+    }
+
+    /**
+     * Removes the cached history of a patient.
+     *
+     * @param cip the patient's health card ID
+     */
+    public synchronized void invalidate(HealthCardID cip) {
+        histories.remove(cip);
+        if (!prescriptions.isEmpty()) {
+            String prefix = cip.getPersonalID() + "_";
+            prescriptions.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+        generation++;
+        if (downloads > 0) {
+            invalidatedAt.put(cip, generation);
+        }
+    }
+
+    /**
+     * Removes every cached history.
+     */
+    public synchronized void invalidateAll() {
+        histories.clear();
+        prescriptions.clear();
+        clearedAt = ++generation;
+        invalidatedAt.clear();
+    }
+
+    public synchronized int size() {
+        return histories.size();
+    }
+
+    /**
+     * @param cip the patient's health card ID
+     * @return true if the patient's history is cached and not expired
+     */
+    public synchronized boolean containsHistory(HealthCardID cip) {
+        CachedHistory cached = histories.get(cip);
+        return cached != null && cached.expiresAt > clock.millis();
+    }
+
+    /**
+     * @return number of warmed prescriptions not handed out yet
+     */
+    public synchronized int getWarmPrescriptionCount() {
+        return prescriptions.size();
+    }
+
+    public synchronized long getPrescriptionHits() {
+        return prescriptionHits;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private synchronized long startDownload() {
+        downloads++;
+        return generation;
+    }
+
+    private synchronized void endDownload() {
+        if (--downloads == 0) {
+            // No download left to compare against
+            invalidatedAt.clear();
+        }
+    }
+
+    /**
+     * Must hold this lock.
+     *
+     * @return true if the patient's data was not invalidated since the given generation
+     */
+    private boolean isCurrent(HealthCardID cip, long startGeneration) {
+        return clearedAt <= startGeneration && invalidatedAt.getOrDefault(cip, 0L) <= startGeneration;
+    }
+
+    private synchronized boolean storeHistory(HealthCardID cip, byte[] encoded, long startGeneration) {
+        if (!isCurrent(cip, startGeneration)) {
+            return false;
+        }
+        histories.put(cip, new CachedHistory(encoded, clock.millis() + ttlMillis));
+        return true;
+    }
+
+    private static String key(HealthCardID cip, String illness) {
+        return cip.getPersonalID() + "_" + illness;
+    }
+
+    /**
+     * Cache entry: the encoding of a downloaded history and the instant it stops being valid.
+     */
+    private static final class CachedHistory {
+        private final byte[] encoded;
+        private final long expiresAt;
+
+        private CachedHistory(byte[] encoded, long expiresAt) {
+            this.encoded = encoded;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Warmed prescription and the instant it stops being valid.
+     */
+    private static final class CachedPrescription {
+        private final MedicalPrescription prescription;
+        private final long expiresAt;
+
+        private CachedPrescription(MedicalPrescription prescription, long expiresAt) {
+            this.prescription = prescription;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package services;
+
+import data.HealthCardID;
+import medicalconsultation.ConsultationDelta;
+import medicalconsultation.MedicalHistory;
+import medicalconsultation.MedicalPrescription;
+import medicalconsultation.PrescriptionRequest;
+import medicalconsultation.PrescriptionUpload;
+import medicalconsultation.WireCodec;
+import exceptions.*;
+import java.net.ConnectException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Decorator for the Health National Service that coalesces concurrent identical lookups.
+ * While a download is in flight, any other request for the same data waits for it and
+ * shares its result or its exception instead of calling the HNS again.
+ *
+ * Only the remote call is shared. The leader keeps the downloaded instance, and each
+ * follower decodes its own copy from a WireCodec snapshot taken before the leader gets
+ * the data, so terminals editing the same patient's data never share an object. If the
+ * data cannot be encoded, the leader still gets it and each follower downloads its own.
+ *
+ * Histories are keyed by CIP and prescriptions by CIP plus illness. Requests arriving
+ * after a download has finished start a new one; nothing is cached.
+ */
+public class CoalescingHealthNationalService implements HealthNationalService {
+
+    private final HealthNationalService delegate;
+
+    // Downloads currently in flight, completed with the encoding of the downloaded data,
+    // or with null if it could not be encoded
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> historyCalls;
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> prescriptionCalls;
+
+    public CoalescingHealthNationalService(HealthNationalService delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Delegate service cannot be null");
+        }
+        this.delegate = delegate;
+        this.historyCalls = new ConcurrentHashMap<>();
+        this.prescriptionCalls = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public MedicalHistory getMedicalHistory(HealthCardID cip)
+            throws ConnectException, HealthCardIDException, IncorrectParametersException {
+
+        String key = cip.getPersonalID();
+        CompletableFuture<byte[]> call = new CompletableFuture<>();
+        CompletableFuture<byte[]> inFlight = historyCalls.putIfAbsent(key, call);
+
+        if (inFlight == null) {
+            // This thread leads the download; followers join its future
+            MedicalHistory history;
+            try {
+                history = delegate.getMedicalHistory(cip);
+                call.complete(snapshot(history));
+            } catch (Throwable e) {
+                call.completeExceptionally(e);
+                throw e;
+            } finally {
+                historyCalls.remove(key, call);
+            }
+            return history;
+        }
+
+        byte[] snapshot;
+        try {
+            snapshot = join(inFlight);
+        } catch (ConnectException | HealthCardIDException | IncorrectParametersException e) {
+            throw e;
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+        if (snapshot == null) {
+            // The leader's data could not be shared
+            return delegate.getMedicalHistory(cip);
+        }
+        return WireCodec.decodeHistory(snapshot);
+    }
+
+    @Override
+    public MedicalPrescription getMedicalPrescription(HealthCardID cip, String illness)
+            throws ConnectException, HealthCardIDException, AnyCurrentPrescriptionException {
+
+        String key = cip.getPersonalID() + "_" + illness;
+        CompletableFuture<byte[]> call = new CompletableFuture<>();
+        CompletableFuture<byte[]> inFlight = prescriptionCalls.putIfAbsent(key, call);
+
+        if (inFlight == null) {
+            MedicalPrescription prescription;
+            try {
+                prescription = delegate.getMedicalPrescription(cip, illness);
+                call.complete(snapshot(prescription));
+            } catch (Throwable e) {
+                call.completeExceptionally(e);
+                throw e;
+            } finally {
+                prescriptionCalls.remove(key, call);
+            }
+            return prescription;
+        }
+
+        byte[] snapshot;
+        try {
+            snapshot = join(inFlight);
+        } catch (ConnectException | HealthCardIDException | AnyCurrentPrescriptionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw unexpected(e);
+        }
+        if (snapshot == null) {
+            return delegate.getMedicalPrescription(cip, illness);
+        }
+        try {
+            return WireCodec.decodePrescription(snapshot);
+        } catch (IncorrectParametersException e) {
+            throw unexpected(e);
+        }
+    }
+
+    @Override
+    public MedicalPrescription sendHistoryAndPrescription(HealthCardID cip, MedicalHistory hce,
+                                                          String illness, MedicalPrescription mPresc)
+            throws ConnectException, HealthCardIDException,
+            AnyCurrentPrescriptionException, NotCompletedMedicalPrescriptionException, IncorrectParametersException {
+        return delegate.sendHistoryAndPrescription(cip, hce, illness, mPresc);
+    }
+
+    @Override
+    public MedicalPrescription sendHistoryAndPrescriptionDelta(HealthCardID cip, String illness,
+                                                               ConsultationDelta delta,
+                                                               MedicalHistory hce, MedicalPrescription mPresc)
+            throws ConnectException, HealthCardIDException,
+            AnyCurrentPrescriptionException, NotCompletedMedicalPrescriptionException, IncorrectParametersException {
+        return delegate.sendHistoryAndPrescriptionDelta(cip, illness, delta, hce, mPresc);
+    }
+
+    /**
+     * Batch downloads go to the HNS in one call and are not coalesced.
+     */
+    @Override
+    public List<BatchResult<MedicalPrescription>> getMedicalPrescriptions(List<PrescriptionRequest> requests) {
+        return delegate.getMedicalPrescriptions(requests);
+    }
+
+    @Override
+    public List<BatchResult<MedicalPrescription>> sendHistoriesAndPrescriptions(List<PrescriptionUpload> uploads) {
+        return delegate.sendHistoriesAndPrescriptions(uploads);
+    }
+
+    @Override
+    public MedicalPrescription generateTreatmCodeAndRegister(MedicalPrescription ePresc)
+            throws ConnectException, IncorrectParametersException {
+        return delegate.generateTreatmCodeAndRegister(ePresc);
+    }
+
+    /**
+     * Gets the number of downloads currently in flight.
+     * @return in-flight history plus prescription downloads
+     */
+    public int getInFlightCount() {
+        return historyCalls.size() + prescriptionCalls.size();
+    }
+
+    /**
+     * Internal operation: encodes the leader's history for its followers.
+     * @return the encoding, or null if the history cannot be encoded
+     */
+    private static byte[] snapshot(MedicalHistory history) {
+        try {
+            return WireCodec.encode(history);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Internal operation: encodes the leader's prescription for its followers.
+     * @return the encoding, or null if the prescription cannot be encoded
+     */
+    private static byte[] snapshot(MedicalPrescription prescription) {
+        try {
+            return WireCodec.encode(prescription);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Internal operation: waits for a shared download and unwraps its failure.
+     * Runtime exceptions and errors of the download are rethrown as they are.
+     *
+     * @throws ConnectException if the thread is interrupted while waiting; the leader
+     *                          goes on with the download
+     */
+    private static <T> T join(CompletableFuture<T> call) throws Exception {
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectException("Interrupted while waiting for a shared HNS lookup");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    private static RuntimeException unexpected(Exception e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        return new IllegalStateException("Unexpected failure in shared HNS lookup", e);
+    }
+}
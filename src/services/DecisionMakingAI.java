@@ -2,8 +2,11 @@ package services;
 
 import exceptions.AIException;
 import exceptions.BadPromptException;
+import medicalconsultation.MedicalPrescription;
 import medicalconsultation.Suggestion;
+import medicalconsultation.SuggestionParser;
 import java.util.List;
+import java.util.concurrent.Flow;
 
 /**
  * Interface for the Decision Making AI service that provides medical treatment suggestions.
@@ -28,6 +31,37 @@ public interface DecisionMakingAI {
      */
     String getSuggestions(String prompt) throws BadPromptException;
 
+    /**
+     * Sends a prompt about a specific prescription to the AI.
+     * Implementations that depend on the prescription being edited, such as caches,
+     * override this method; by default the context is not used.
+     *
+     * @param prompt the question or request sent to the AI by the doctor
+     * @param context the prescription being edited, may be null
+     * @return the AI's response as a text string to be displayed
+     * @throws BadPromptException if the prompt is unclear or inconsistent
+     */
+    default String getSuggestions(String prompt, MedicalPrescription context) throws BadPromptException {
+        return getSuggestions(prompt);
+    }
+
+    /**
+     * Sends a prompt to the AI and delivers its answer in chunks as it is generated.
+     * Chunks are arbitrary pieces of the text: a suggestion may span several of them.
+     * Feed them to a SuggestionStreamParser to receive each suggestion as soon as it is
+     * complete. A BadPromptException is delivered through onError.
+     *
+     * By default the complete answer of getSuggestions(prompt, context) is published as
+     * a single chunk; AI services able to stream should override this method.
+     *
+     * @param prompt the question or request sent to the AI by the doctor
+     * @param context the prescription being edited, may be null
+     * @return a publisher of the answer's text chunks
+     */
+    default Flow.Publisher<String> streamSuggestions(String prompt, MedicalPrescription context) {
+        return new SingleAnswerPublisher(() -> getSuggestions(prompt, context));
+    }
+
     /**
      * Parses the AI's text response into structured suggestions following a specific pattern.
      * Each suggestion represents an action on a medication line:
@@ -36,8 +70,13 @@ public interface DecisionMakingAI {
      * - M (Modify): Update specific guidelines (only changed fields provided)
      *
      * Pattern format: <ACTION, ProductID, [guidelines...]>
+     *
+     * By default the answer is parsed with SuggestionParser, skipping malformed fragments.
+     *
      * @param aiAnswer the AI's text response to parse
      * @return a list of structured Suggestion objects
      */
-    List<Suggestion> parseSuggest(String aiAnswer);
+    default List<Suggestion> parseSuggest(String aiAnswer) {
+        return SuggestionParser.parse(aiAnswer).getSuggestions();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,296 @@
+package services;
+
+import exceptions.AIException;
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pool of Decision Making AI sessions initialized ahead of time, so that consultations
+ * do not pay initDecisionMakingAI() when the doctor calls the AI.
+ *
+ * The pool keeps coreSize sessions initialized, starting them in the background with at
+ * most warmUpConcurrency initializations at a time. When every session is leased, new
+ * ones are started on demand up to maxSize. Sessions above coreSize that stay idle longer
+ * than the idle timeout are discarded. A session whose initialization fails with
+ * AIException is retried after a delay, and sessions reported broken are replaced.
+ *
+ * Idle sessions are leased most recently used first, so the surplus ones age out.
+ */
+public class DecisionMakingAIPool implements AutoCloseable {
+
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final Supplier<? extends DecisionMakingAI> factory;
+    private final int coreSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final Clock clock;
+    private final ScheduledExecutorService warmUpExecutor;
+
+    private final LinkedBlockingDeque<IdleSession> idle = new LinkedBlockingDeque<>();
+
+    // Sessions created or being initialized, leased or idle
+    private final AtomicInteger total = new AtomicInteger();
+    private volatile boolean closed;
+
+    // Metrics
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong leaseWaitNanos = new AtomicLong();
+    private final AtomicLong maxLeaseWaitNanos = new AtomicLong();
+    private final AtomicLong leaseTimeouts = new AtomicLong();
+    private final AtomicLong initFailures = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public DecisionMakingAIPool(Supplier<? extends DecisionMakingAI> factory, int coreSize, int maxSize,
+                                int warmUpConcurrency, long idleTimeoutMillis) {
+        this(factory, coreSize, maxSize, warmUpConcurrency, idleTimeoutMillis, Clock.systemUTC());
+    }
+
+    public DecisionMakingAIPool(Supplier<? extends DecisionMakingAI> factory, int coreSize, int maxSize,
+                                int warmUpConcurrency, long idleTimeoutMillis, Clock clock) {
+        if (factory == null || clock == null) {
+            throw new IllegalArgumentException("AI factory and clock cannot be null");
+        }
+        if (coreSize < 0 || maxSize <= 0 || coreSize > maxSize) {
+            throw new IllegalArgumentException("Pool sizes must satisfy 0 <= coreSize <= maxSize and maxSize > 0");
+        }
+        if (warmUpConcurrency <= 0) {
+            throw new IllegalArgumentException("Warm-up concurrency must be greater than 0");
+        }
+        if (idleTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Idle timeout must be greater than 0");
+        }
+        this.factory = factory;
+        this.coreSize = coreSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.clock = clock;
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(warmUpConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "ai-pool-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.warmUpExecutor = executor;
+
+        for (int i = 0; i < coreSize; i++) {
+            startSession(0);
+        }
+        long period = Math.max(1, idleTimeoutMillis / 2);
+        warmUpExecutor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Leases an initialized session, waiting for one if none is idle.
+     *
+     * @param timeoutMillis maximum time to wait, in milliseconds
+     * @return an initialized session, to be given back with release() or invalidate()
+     * @throws AIException if no session becomes ready in time
+     */
+    public DecisionMakingAI lease(long timeoutMillis) throws AIException {
+        if (closed) {
+            throw new AIException("AI session pool is closed");
+        }
+        long start = System.nanoTime();
+        IdleSession session = idle.pollFirst();
+        if (session == null) {
+            growIfExhausted();
+            try {
+                session = idle.pollFirst(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AIException("Interrupted while waiting for an AI session");
+            }
+        }
+        long waited = System.nanoTime() - start;
+        if (session == null) {
+            leaseTimeouts.incrementAndGet();
+            throw new AIException("No AI session became ready within " + timeoutMillis + " ms");
+        }
+        leases.incrementAndGet();
+        leaseWaitNanos.addAndGet(waited);
+        maxLeaseWaitNanos.accumulateAndGet(waited, Math::max);
+        return session.ai;
+    }
+
+    /**
+     * Gives back a leased session, ready for the next lease.
+     *
+     * @param ai the leased session
+     */
+    public void release(DecisionMakingAI ai) {
+        if (ai == null) {
+            return;
+        }
+        if (closed) {
+            total.decrementAndGet();
+            return;
+        }
+        idle.offerFirst(new IdleSession(ai, clock.millis()));
+    }
+
+    /**
+     * Discards a leased session that no longer works and starts a replacement.
+     *
+     * @param ai the leased session
+     */
+    public void invalidate(DecisionMakingAI ai) {
+        if (ai == null) {
+            return;
+        }
+        total.decrementAndGet();
+        if (!closed && total.get() < coreSize) {
+            startSession(0);
+        }
+    }
+
+    /**
+     * Discards the sessions above coreSize that have been idle longer than the idle timeout.
+     * Runs periodically in the background.
+     */
+    public void evictIdle() {
+        long limit = clock.millis() - idleTimeoutMillis;
+        // Oldest sessions are at the end of the deque
+        Iterator<IdleSession> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && total.get() > coreSize) {
+            IdleSession session = oldestFirst.next();
+            if (session.idleSince > limit) {
+                break;
+            }
+            if (idle.removeLastOccurrence(session)) {
+                total.decrementAndGet();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Stops the warm-up and discards the idle sessions. Leased sessions are discarded on release.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        warmUpExecutor.shutdownNow();
+        while (idle.pollFirst() != null) {
+            total.decrementAndGet();
+        }
+    }
+
+    // ========== INTERNALS ==========
+
+    /**
+     * Starts a new session on demand when none is idle and the pool can still grow.
+     */
+    private void growIfExhausted() {
+        while (true) {
+            int current = total.get();
+            if (current >= maxSize) {
+                return;
+            }
+            if (total.compareAndSet(current, current + 1)) {
+                initialize(0);
+                return;
+            }
+        }
+    }
+
+    private void startSession(long delayMillis) {
+        total.incrementAndGet();
+        initialize(delayMillis);
+    }
+
+    /**
+     * Initializes one counted session in the background, retrying it on AIException.
+     */
+    private void initialize(long delayMillis) {
+        if (closed) {
+            total.decrementAndGet();
+            return;
+        }
+        try {
+            warmUpExecutor.schedule(this::warmUp, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed meanwhile
+            total.decrementAndGet();
+        }
+    }
+
+    private void warmUp() {
+        DecisionMakingAI ai = factory.get();
+        try {
+            ai.initDecisionMakingAI();
+        } catch (AIException | RuntimeException e) {
+            initFailures.incrementAndGet();
+            initialize(RETRY_DELAY_MILLIS);
+            return;
+        }
+        if (closed) {
+            total.decrementAndGet();
+        } else {
+            idle.offerLast(new IdleSession(ai, clock.millis()));
+        }
+    }
+
+    // ========== METRICS ==========
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return sessions leased, idle or being initialized
+     */
+    public int getTotalCount() {
+        return total.get();
+    }
+
+    public long getLeaseCount() {
+        return leases.get();
+    }
+
+    /**
+     * @return average time a successful lease waited for a session, in nanoseconds
+     */
+    public double getAverageLeaseWaitNanos() {
+        long count = leases.get();
+        return count == 0 ? 0 : (double) leaseWaitNanos.get() / count;
+    }
+
+    public long getMaxLeaseWaitNanos() {
+        return maxLeaseWaitNanos.get();
+    }
+
+    public long getLeaseTimeouts() {
+        return leaseTimeouts.get();
+    }
+
+    public long getInitFailures() {
+        return initFailures.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * An initialized session waiting to be leased.
+     */
+    private static final class IdleSession {
+        private final DecisionMakingAI ai;
+        private final long idleSince;
+
+        private IdleSession(DecisionMakingAI ai, long idleSince) {
+            this.ai = ai;
+            this.idleSince = idleSince;
+        }
+    }
+}
@@ -1,16 +1,22 @@
 package services;
 
 import data.HealthCardID;
+import medicalconsultation.ConsultationDelta;
 import medicalconsultation.MedicalHistory;
 import medicalconsultation.MedicalPrescription;
+import medicalconsultation.PrescriptionRequest;
+import medicalconsultation.PrescriptionUpload;
 import exceptions.*;
 import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * External services for managing and storing ePrescriptions from population and IA support.
  * This interface represents the Health National Service (Sistema Nacional de Salud - SNS).
  *
- * All methods may throw ConnectException if network fails.
+ * All methods may throw ConnectException if network fails. Batch methods report every
+ * failure, network ones included, in the result of the item concerned.
  */
 public interface HealthNationalService {
 
@@ -57,6 +63,97 @@ public interface HealthNationalService {
             throws ConnectException, HealthCardIDException,
             AnyCurrentPrescriptionException, NotCompletedMedicalPrescriptionException, IncorrectParametersException;
 
+    /**
+     * Sends only the changes made during a revision to the HNS for remote storage.
+     * If successful, generates a new treatment code for the prescription.
+     *
+     * Implementations apply the delta to the stored data when its base version matches
+     * the stored one, and fall back to a full upload of hce and mPresc otherwise.
+     * The default implementation always performs the full upload.
+     *
+     * @param cip the patient's health card ID
+     * @param illness the illness associated with the prescription
+     * @param delta the changes made since the data was downloaded
+     * @param hce the updated medical history, for the full upload fallback
+     * @param mPresc the updated medical prescription, for the full upload fallback
+     * @return the MedicalPrescription with the new treatment code assigned by HNS
+     * @throws ConnectException if the network connection fails
+     * @throws HealthCardIDException if the patient ID is not registered
+     * @throws AnyCurrentPrescriptionException if no active prescription exists
+     * @throws NotCompletedMedicalPrescriptionException if the prescription is incomplete
+     */
+    default MedicalPrescription sendHistoryAndPrescriptionDelta(HealthCardID cip, String illness,
+                                                                ConsultationDelta delta,
+                                                                MedicalHistory hce, MedicalPrescription mPresc)
+            throws ConnectException, HealthCardIDException,
+            AnyCurrentPrescriptionException, NotCompletedMedicalPrescriptionException, IncorrectParametersException {
+        return sendHistoryAndPrescription(cip, hce, illness, mPresc);
+    }
+
+    /**
+     * Retrieves the prescriptions of many patients and illnesses in one call.
+     *
+     * Each item fails with the exception getMedicalPrescription() would throw for it.
+     * The default implementation calls getMedicalPrescription() once per item, and stops
+     * at the first network failure: that item and the ones after it fail with it.
+     *
+     * @param requests the patient and illness of each prescription
+     * @return one result per request, in the same order
+     */
+    default List<BatchResult<MedicalPrescription>> getMedicalPrescriptions(List<PrescriptionRequest> requests) {
+        List<BatchResult<MedicalPrescription>> results = new ArrayList<>(requests.size());
+        ConnectException down = null;
+        for (PrescriptionRequest request : requests) {
+            if (down == null) {
+                try {
+                    results.add(BatchResult.success(getMedicalPrescription(request.getCip(), request.getIllness())));
+                    continue;
+                } catch (ConnectException e) {
+                    down = e;
+                } catch (Exception e) {
+                    results.add(BatchResult.failure(e));
+                    continue;
+                }
+            }
+            results.add(BatchResult.failure(down));
+        }
+        return results;
+    }
+
+    /**
+     * Sends the histories and prescriptions of many patients for remote storage in one
+     * call. Every upload that succeeds gets its own treatment code.
+     *
+     * Each item fails with the exception sendHistoryAndPrescription() would throw for it;
+     * items failing with ConnectException were not stored and can be sent again. The
+     * default implementation calls sendHistoryAndPrescription() once per item, and stops
+     * at the first network failure: that item and the ones after it fail with it.
+     *
+     * @param uploads the arguments of each upload
+     * @return one result per upload, in the same order, holding the MedicalPrescription
+     *         with its new treatment code
+     */
+    default List<BatchResult<MedicalPrescription>> sendHistoriesAndPrescriptions(List<PrescriptionUpload> uploads) {
+        List<BatchResult<MedicalPrescription>> results = new ArrayList<>(uploads.size());
+        ConnectException down = null;
+        for (PrescriptionUpload upload : uploads) {
+            if (down == null) {
+                try {
+                    results.add(BatchResult.success(sendHistoryAndPrescription(
+                            upload.getCip(), upload.getHistory(), upload.getIllness(), upload.getPrescription())));
+                    continue;
+                } catch (ConnectException e) {
+                    down = e;
+                } catch (Exception e) {
+                    results.add(BatchResult.failure(e));
+                    continue;
+                }
+            }
+            results.add(BatchResult.failure(down));
+        }
+        return results;
+    }
+
     /**
      * Internal operation: generates a new treatment code and registers it in the system.
      *
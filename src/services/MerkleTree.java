@@ -0,0 +1,104 @@
+package services;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SHA-256 Merkle tree over the prescriptions of a signing batch.
+ *
+ * Leaves and inner nodes are hashed with distinct prefixes (0x00 and 0x01), so a leaf can
+ * never be passed off as an inner node. On levels with an odd number of nodes the last
+ * one is promoted to the next level unchanged, so an inclusion proof holds one sibling
+ * hash per level where the node has a sibling; the verifier derives which levels those
+ * are from the leaf index and the number of leaves.
+ */
+final class MerkleTree {
+
+    static final int HASH_LENGTH = 32;
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    // levels.get(0) holds the leaves, the last level holds the root
+    private final List<byte[][]> levels = new ArrayList<>();
+
+    /**
+     * @param digest a SHA-256 digest, used by the calling thread only
+     * @param leaves the leaf hashes, see hashLeaf()
+     */
+    MerkleTree(MessageDigest digest, byte[][] leaves) {
+        if (leaves.length == 0) {
+            throw new IllegalArgumentException("A Merkle tree needs at least one leaf");
+        }
+        byte[][] level = leaves;
+        levels.add(level);
+        while (level.length > 1) {
+            byte[][] next = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i + 1 < level.length; i += 2) {
+                next[i / 2] = hashNode(digest, level[i], level[i + 1]);
+            }
+            if ((level.length & 1) != 0) {
+                next[next.length - 1] = level[level.length - 1];
+            }
+            levels.add(next);
+            level = next;
+        }
+    }
+
+    byte[] getRoot() {
+        return levels.get(levels.size() - 1)[0];
+    }
+
+    /**
+     * @param index position of the leaf
+     * @return the sibling hashes from the leaf up to the root
+     */
+    byte[][] proof(int index) {
+        List<byte[]> siblings = new ArrayList<>();
+        for (int l = 0; l < levels.size() - 1; l++) {
+            byte[][] level = levels.get(l);
+            int sibling = index ^ 1;
+            if (sibling < level.length) {
+                siblings.add(level[sibling]);
+            }
+            index >>>= 1;
+        }
+        return siblings.toArray(new byte[0][]);
+    }
+
+    /**
+     * Recomputes the root from a leaf and its inclusion proof.
+     *
+     * @return the root, or null if the proof does not fit the leaf position
+     */
+    static byte[] rootFromProof(MessageDigest digest, byte[] leaf, int index, int count, byte[][] proof) {
+        byte[] hash = leaf;
+        int used = 0;
+        for (int size = count; size > 1; size = (size + 1) / 2) {
+            int sibling = index ^ 1;
+            if (sibling < size) {
+                if (used == proof.length) {
+                    return null;
+                }
+                hash = (index & 1) == 0
+                        ? hashNode(digest, hash, proof[used])
+                        : hashNode(digest, proof[used], hash);
+                used++;
+            }
+            index >>>= 1;
+        }
+        return used == proof.length ? hash : null;
+    }
+
+    static byte[] hashLeaf(MessageDigest digest, byte[] content) {
+        digest.update(LEAF_PREFIX);
+        return digest.digest(content);
+    }
+
+    private static byte[] hashNode(MessageDigest digest, byte[] left, byte[] right) {
+        digest.update(NODE_PREFIX);
+        digest.update(left);
+        return digest.digest(right);
+    }
+}
@@ -0,0 +1,420 @@
+package services;
+
+import data.ePrescripCode;
+import exceptions.IncorrectParametersException;
+import medicalconsultation.MedicalHistory;
+import medicalconsultation.MedicalPrescription;
+import medicalconsultation.PrescriptionUpload;
+import medicalconsultation.WireCodec;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Durable local outbox for the uploads of sendHistoryAndPrescription, so the doctor's
+ * terminal does not wait for the Health National Service.
+ *
+ * Every submission is written to its own file in the outbox directory (WireCodec encoding
+ * of the prescription and the history, fsynced and then renamed into place) before
+ * submit() returns. A background sender drains the outbox in submission order, sending
+ * up to batchSize uploads per sendHistoriesAndPrescriptions call, and deletes each file
+ * once the HNS has accepted it.
+ *
+ * Uploads that fail on the network (ConnectException) stay in the outbox and are retried
+ * with exponential backoff. Any other failure is final: the future fails with the HNS
+ * exception and the file is kept with the ".failed" suffix.
+ *
+ * A call that throws, or does not return one result per upload, is retried the same way.
+ * After MAX_BROKEN_CALLS such calls in a row the batch is halved, until the upload that
+ * breaks the call is sent alone; it then fails as if the HNS had rejected it, so it does
+ * not hold back the uploads queued after it.
+ *
+ * Uploads still in the outbox when the process stops are sent by the next outbox
+ * opened on the same directory, see recovered().
+ */
+public class PrescriptionOutbox implements AutoCloseable {
+
+    private static final String PENDING_SUFFIX = ".msg";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String FAILED_SUFFIX = ".failed";
+
+    // Broken calls in a row before the batch is halved, or a single upload set aside
+    private static final int MAX_BROKEN_CALLS = 3;
+
+    private final HealthNationalService service;
+    private final Path directory;
+    private final int batchSize;
+    private final long retryDelayMillis;
+    private final long maxRetryDelayMillis;
+
+    // Uploads not accepted yet, in submission order; guarded by this
+    private final ArrayDeque<Entry> pending;
+    private final List<CompletableFuture<ePrescripCode>> recovered;
+    private final Thread sender;
+
+    private long nextSequence;
+    private boolean closed;
+
+    /**
+     * Opens the outbox on a directory and starts its sender. Uploads left in the directory
+     * by a previous outbox are queued first.
+     *
+     * @param service the HNS the uploads are sent to
+     * @param directory the outbox directory, created if needed
+     * @param batchSize maximum uploads sent per pass
+     * @param retryDelayMillis delay before the first retry after a network failure
+     * @param maxRetryDelayMillis upper bound of the doubling retry delay
+     * @throws IOException if the directory cannot be created or read
+     */
+    public PrescriptionOutbox(HealthNationalService service, Path directory, int batchSize,
+                              long retryDelayMillis, long maxRetryDelayMillis) throws IOException {
+        if (service == null || directory == null) {
+            throw new IllegalArgumentException("Service and directory cannot be null");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than 0");
+        }
+        if (retryDelayMillis <= 0 || maxRetryDelayMillis < retryDelayMillis) {
+            throw new IllegalArgumentException("Retry delays must be positive and ordered");
+        }
+        this.service = service;
+        this.directory = Files.createDirectories(directory);
+        this.batchSize = batchSize;
+        this.retryDelayMillis = retryDelayMillis;
+        this.maxRetryDelayMillis = maxRetryDelayMillis;
+        this.pending = new ArrayDeque<>();
+        this.recovered = new ArrayList<>();
+        recover();
+
+        this.sender = new Thread(this::drain, "prescription-outbox-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Stores an upload in the outbox. The prescription and history are copied, so they
+     * can be changed once this method returns.
+     *
+     * @param hce the updated medical history
+     * @param mPresc the signed prescription
+     * @return completed with the treatment code assigned by the HNS, or with the
+     *         exception that made the HNS reject the upload
+     * @throws IOException if the upload could not be written to the outbox
+     */
+    public CompletableFuture<ePrescripCode> submit(MedicalHistory hce, MedicalPrescription mPresc)
+            throws IOException {
+        if (hce == null || mPresc == null) {
+            throw new IllegalArgumentException("History and prescription cannot be null");
+        }
+        byte[] prescription = WireCodec.encode(mPresc);
+        byte[] history = WireCodec.encode(hce);
+
+        Entry entry;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Outbox is closed");
+            }
+            // Written under the lock so files are named in queue order
+            Path file = write(nextSequence++, prescription, history);
+            try {
+                entry = new Entry(file, WireCodec.decodePrescription(prescription), WireCodec.decodeHistory(history));
+            } catch (IncorrectParametersException e) {
+                // Just encoded by WireCodec
+                throw new IllegalStateException(e);
+            }
+            pending.addLast(entry);
+            notifyAll();
+        }
+        return entry.result;
+    }
+
+    /**
+     * @return the results of the uploads found in the directory when the outbox was
+     *         opened, in submission order
+     */
+    public List<CompletableFuture<ePrescripCode>> recovered() {
+        return Collections.unmodifiableList(recovered);
+    }
+
+    /**
+     * @return number of uploads not accepted by the HNS yet
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Stops the sender once the batch in progress, if any, is sent. Uploads not sent yet
+     * stay in the directory and their futures fail with IllegalStateException.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            sender.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (Entry entry : pending) {
+                entry.result.completeExceptionally(
+                        new IllegalStateException("Outbox closed before the upload was sent"));
+            }
+            pending.clear();
+        }
+    }
+
+    // ========== SENDER ==========
+
+    private void drain() {
+        long delay = retryDelayMillis;
+        int limit = batchSize;
+        int brokenCalls = 0;
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (true) {
+            synchronized (this) {
+                while (pending.isEmpty() && !closed) {
+                    if (!await(Long.MAX_VALUE)) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                batch.clear();
+                for (Entry entry : pending) {
+                    if (batch.size() == limit) {
+                        break;
+                    }
+                    batch.add(entry);
+                }
+            }
+
+            boolean networkFailure;
+            try {
+                networkFailure = send(batch);
+                brokenCalls = 0;
+                limit = Math.min(limit * 2, batchSize);
+            } catch (RuntimeException e) {
+                networkFailure = true;
+                if (++brokenCalls == MAX_BROKEN_CALLS) {
+                    brokenCalls = 0;
+                    if (batch.size() > 1) {
+                        // Narrow down the upload that breaks the call
+                        limit = (batch.size() + 1) / 2;
+                    } else {
+                        reject(batch.get(0), e);
+                        networkFailure = false;
+                    }
+                }
+            }
+            synchronized (this) {
+                if (networkFailure) {
+                    // Back off before retrying the uploads left
+                    long deadline = System.currentTimeMillis() + delay;
+                    long left;
+                    while (!closed && (left = deadline - System.currentTimeMillis()) > 0) {
+                        if (!await(left)) {
+                            return;
+                        }
+                    }
+                    delay = Math.min(delay * 2, maxRetryDelayMillis);
+                } else {
+                    delay = retryDelayMillis;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a batch in one HNS call, and removes from the outbox the uploads accepted or
+     * rejected before completing their futures.
+     *
+     * @return true if some upload failed on the network and is still to be sent
+     * @throws RuntimeException if the call throws or does not return one result per upload;
+     *                          no upload is finished and the whole batch is still to be sent
+     */
+    private boolean send(List<Entry> batch) {
+        List<PrescriptionUpload> uploads = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            uploads.add(entry.upload);
+        }
+        List<BatchResult<MedicalPrescription>> results = service.sendHistoriesAndPrescriptions(uploads);
+        if (results == null || results.size() != batch.size()) {
+            // No way to tell which uploads were accepted: retried, the HNS assigns new codes
+            throw new IllegalStateException("The HNS returned " + (results == null ? "no" : results.size())
+                    + " results for " + batch.size() + " uploads");
+        }
+
+        boolean networkFailure = false;
+        for (int i = 0; i < batch.size(); i++) {
+            Entry entry = batch.get(i);
+            BatchResult<MedicalPrescription> result = results.get(i);
+            if (result.isSuccess()) {
+                deleteQuietly(entry.file);
+                finish(entry);
+                entry.result.complete(result.getValue().getPrescCode());
+            } else if (result.getError() instanceof ConnectException) {
+                networkFailure = true;
+            } else {
+                reject(entry, result.getError());
+            }
+        }
+        return networkFailure;
+    }
+
+    /**
+     * Sets an upload aside for good: its file gets the failed suffix and its future fails.
+     */
+    private void reject(Entry entry, Throwable error) {
+        moveQuietly(entry.file, FAILED_SUFFIX);
+        finish(entry);
+        entry.result.completeExceptionally(error);
+    }
+
+    private synchronized void finish(Entry entry) {
+        pending.remove(entry);
+    }
+
+    /**
+     * Waits on this outbox's monitor; must hold it.
+     *
+     * @return false if the sender was interrupted and must stop
+     */
+    private boolean await(long millis) {
+        try {
+            wait(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // ========== FILES ==========
+
+    /**
+     * Writes an upload durably: to a temporary file first, renamed once on disk, so a
+     * crash never leaves a partial upload under the pending suffix. The directory is
+     * synced after the rename, so the file is not lost with it.
+     */
+    private Path write(long sequence, byte[] prescription, byte[] history) throws IOException {
+        String name = String.format("%019d", sequence);
+        Path temp = directory.resolve(name + TEMP_SUFFIX);
+        Path file = directory.resolve(name + PENDING_SUFFIX);
+
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES).putInt(0, prescription.length);
+        ByteBuffer[] buffers = {length, ByteBuffer.wrap(prescription), ByteBuffer.wrap(history)};
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffers[2].hasRemaining()) {
+                channel.write(buffers);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+        return file;
+    }
+
+    /**
+     * Flushes the directory entries to disk. Some platforms cannot open a directory as a
+     * channel; there the rename is as durable as the file system makes it.
+     */
+    private void syncDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException | UnsupportedOperationException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Queues the uploads left in the directory and discards unfinished writes.
+     */
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(PENDING_SUFFIX)) {
+                    files.add(file);
+                } else if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.delete(file);
+                }
+            }
+        }
+        // Zero-padded sequence numbers: name order is submission order
+        Collections.sort(files);
+
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long sequence = Long.parseLong(name.substring(0, name.length() - PENDING_SUFFIX.length()));
+            nextSequence = Math.max(nextSequence, sequence + 1);
+
+            Entry entry;
+            try {
+                ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+                ByteBuffer prescription = data.slice(Integer.BYTES, data.getInt());
+                ByteBuffer history = data.slice(Integer.BYTES + prescription.limit(),
+                        data.limit() - Integer.BYTES - prescription.limit());
+                entry = new Entry(file, WireCodec.decodePrescription(prescription), WireCodec.decodeHistory(history));
+            } catch (IncorrectParametersException | RuntimeException e) {
+                // Unreadable upload: set aside, it would never be accepted
+                moveQuietly(file, FAILED_SUFFIX);
+                continue;
+            }
+            pending.addLast(entry);
+            recovered.add(entry.result);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Left behind: sent again after a restart, the HNS assigns a new code
+        }
+    }
+
+    private static void moveQuietly(Path file, String suffix) {
+        try {
+            Files.move(file, file.resolveSibling(file.getFileName() + suffix), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Left as pending: retried after a restart
+        }
+    }
+
+    private static final class Entry {
+        private final Path file;
+        private final PrescriptionUpload upload;
+        private final CompletableFuture<ePrescripCode> result;
+
+        private Entry(Path file, MedicalPrescription prescription, MedicalHistory history) {
+            this.file = file;
+            this.upload = new PrescriptionUpload(prescription.getCip(), history, prescription.getIllness(), prescription);
+            this.result = new CompletableFuture<>();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package services;
+
+import data.DigitalSignature;
+import exceptions.eSignatureException;
+import medicalconsultation.MedicalPrescription;
+import medicalconsultation.WireCodec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Signs prescriptions with the doctor's key, over the canonical encoding of
+ * WireCodec.encodeSignedContent().
+ *
+ * Ed25519 and ECDSA (SHA256withECDSA) keys are supported. The signature bytes start
+ * with a format tag, followed by the signature produced by java.security.
+ *
+ * In batch mode the prescriptions are the leaves of a Merkle tree, and only its root is
+ * signed. The signature of each prescription then holds its position in the batch, its
+ * inclusion proof and the root signature:
+ *   TAG_BATCH | index (int) | leaf count (int) | proof length (byte) | proof hashes | root signature
+ *
+ * Signature objects are not thread-safe and are costly to initialize, so the signer
+ * keeps a pool of them initialized with the key. When every pooled instance is in use,
+ * a new one is initialized instead of waiting, so concurrent terminals never serialize
+ * on one instance; the pool keeps at most poolSize of them for reuse.
+ */
+public class PrescriptionSigner {
+
+    /**
+     * Format tag of a signature over a single prescription.
+     */
+    public static final byte TAG_SINGLE = 0x01;
+
+    /**
+     * Format tag of a signature over a batch of prescriptions.
+     */
+    public static final byte TAG_BATCH = 0x02;
+
+    private final String algorithm;
+    private final PrivateKey privateKey;
+    private final BlockingQueue<Signature> signers;
+    private final PrescriptionVerifier verifier;
+
+    /**
+     * @param privateKey the doctor's private key, Ed25519 or EC
+     * @param publicKey the matching public key
+     * @param poolSize number of initialized Signature instances kept for reuse
+     * @throws eSignatureException if the key type is not supported
+     */
+    public PrescriptionSigner(PrivateKey privateKey, PublicKey publicKey, int poolSize)
+            throws eSignatureException {
+        if (privateKey == null || publicKey == null) {
+            throw new IllegalArgumentException("Keys cannot be null");
+        }
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be greater than 0");
+        }
+        this.algorithm = PrescriptionVerifier.algorithmFor(privateKey);
+        this.privateKey = privateKey;
+        this.signers = new ArrayBlockingQueue<>(poolSize);
+        this.verifier = new PrescriptionVerifier(publicKey, poolSize);
+
+        // Pre-initialize the signing instances, failing early on unusable keys
+        for (int i = 0; i < poolSize; i++) {
+            signers.add(newSigner());
+        }
+    }
+
+    /**
+     * Loads the doctor's key from a PKCS#12 keystore.
+     *
+     * @param keystore path of the .p12 file
+     * @param password password of the keystore and the key entry
+     * @param alias alias of the key entry
+     * @param poolSize number of initialized Signature instances kept for reuse
+     * @return the signer
+     * @throws eSignatureException if the keystore cannot be read or has no usable key
+     */
+    public static PrescriptionSigner fromKeyStore(Path keystore, char[] password, String alias, int poolSize)
+            throws eSignatureException {
+        if (keystore == null || alias == null) {
+            throw new IllegalArgumentException("Keystore and alias cannot be null");
+        }
+        try (InputStream in = Files.newInputStream(keystore)) {
+            KeyStore store = KeyStore.getInstance("PKCS12");
+            store.load(in, password);
+            Key key = store.getKey(alias, password);
+            Certificate certificate = store.getCertificate(alias);
+            if (!(key instanceof PrivateKey) || certificate == null) {
+                throw new eSignatureException("No private key with certificate under alias " + alias);
+            }
+            return new PrescriptionSigner((PrivateKey) key, certificate.getPublicKey(), poolSize);
+        } catch (IOException | GeneralSecurityException e) {
+            throw new eSignatureException("Cannot load signing key from " + keystore + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Signs the content of a prescription.
+     *
+     * @param prescription the prescription, with its dates and lines set
+     * @return the doctor's signature
+     * @throws eSignatureException if signing fails
+     */
+    public DigitalSignature sign(MedicalPrescription prescription) throws eSignatureException {
+        return new DigitalSignature(tagged(TAG_SINGLE, sign(WireCodec.encodeSignedContent(prescription))));
+    }
+
+    /**
+     * Signs many prescriptions with a single asymmetric signature, over the root of a
+     * Merkle tree of their canonical encodings.
+     *
+     * @param prescriptions the prescriptions, with their dates and lines set
+     * @return the signature of each prescription, in the same order
+     * @throws eSignatureException if signing fails
+     */
+    public List<DigitalSignature> signBatch(List<MedicalPrescription> prescriptions) throws eSignatureException {
+        if (prescriptions == null || prescriptions.isEmpty()) {
+            throw new IllegalArgumentException("Batch cannot be null or empty");
+        }
+        MessageDigest digest = PrescriptionVerifier.sha256();
+        int count = prescriptions.size();
+        byte[][] leaves = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            leaves[i] = MerkleTree.hashLeaf(digest, WireCodec.encodeSignedContent(prescriptions.get(i)));
+        }
+        MerkleTree tree = new MerkleTree(digest, leaves);
+        byte[] rootSignature = sign(tagged(TAG_BATCH, tree.getRoot()));
+
+        List<DigitalSignature> signatures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[][] proof = tree.proof(i);
+            ByteBuffer buffer = ByteBuffer.allocate(
+                    10 + proof.length * MerkleTree.HASH_LENGTH + rootSignature.length);
+            buffer.put(TAG_BATCH).putInt(i).putInt(count).put((byte) proof.length);
+            for (byte[] hash : proof) {
+                buffer.put(hash);
+            }
+            buffer.put(rootSignature);
+            signatures.add(new DigitalSignature(buffer.array()));
+        }
+        return signatures;
+    }
+
+    /**
+     * Checks that a signature of this signer covers the current content of a prescription,
+     * whether it was signed alone or in a batch.
+     *
+     * @see PrescriptionVerifier#verify(MedicalPrescription, DigitalSignature)
+     */
+    public boolean verify(MedicalPrescription prescription, DigitalSignature signature) {
+        return verifier.verify(prescription, signature);
+    }
+
+    /**
+     * @return a verifier of this signer's signatures, needing only the public key
+     */
+    public PrescriptionVerifier getVerifier() {
+        return verifier;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public PublicKey getPublicKey() {
+        return verifier.getPublicKey();
+    }
+
+    // ========== INTERNALS ==========
+
+    /**
+     * Signs raw content with a pooled instance.
+     */
+    byte[] sign(byte[] content) throws eSignatureException {
+        Signature signer = signers.poll();
+        try {
+            if (signer == null) {
+                signer = newSigner();
+            }
+            signer.update(content);
+            // sign() resets the instance, ready for the next signature with the same key
+            byte[] result = signer.sign();
+            signers.offer(signer);
+            return result;
+        } catch (SignatureException e) {
+            // The instance is left in an unknown state: do not pool it again
+            throw new eSignatureException("Error signing prescription: " + e.getMessage());
+        }
+    }
+
+    static byte[] tagged(byte tag, byte[] body) {
+        byte[] bytes = new byte[1 + body.length];
+        bytes[0] = tag;
+        System.arraycopy(body, 0, bytes, 1, body.length);
+        return bytes;
+    }
+
+    private Signature newSigner() throws eSignatureException {
+        try {
+            Signature signer = Signature.getInstance(algorithm);
+            signer.initSign(privateKey);
+            return signer;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new eSignatureException("Cannot initialize " + algorithm + " signer: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package services;
+
+import data.DigitalSignature;
+import medicalconsultation.MedicalPrescription;
+import medicalconsultation.WireCodec;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Verification of incoming prescription signatures on the dispensing side.
+ *
+ * Batches of prescriptions are verified in parallel on a fork-join pool. Results are
+ * cached by a SHA-256 hash of the signature bytes and the canonical content of the
+ * prescription, so prescriptions scanned again are not verified again; any change to
+ * the content or the signature misses the cache. The cache is bounded by size, least
+ * recently used entries being evicted first.
+ */
+public class PrescriptionVerificationService {
+
+    // Prescriptions per fork-join leaf task; one verification already costs ~1 ms
+    private static final int SPLIT_THRESHOLD = 2;
+
+    private final PrescriptionVerifier verifier;
+    private final ForkJoinPool pool;
+    private final int maxEntries;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<ByteBuffer, Boolean> results;
+
+    private long hits;
+    private long misses;
+
+    public PrescriptionVerificationService(PrescriptionVerifier verifier, int maxEntries) {
+        this(verifier, ForkJoinPool.commonPool(), maxEntries);
+    }
+
+    public PrescriptionVerificationService(PrescriptionVerifier verifier, ForkJoinPool pool, int maxEntries) {
+        if (verifier == null || pool == null) {
+            throw new IllegalArgumentException("Verifier and pool cannot be null");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be greater than 0");
+        }
+        this.verifier = verifier;
+        this.pool = pool;
+        this.maxEntries = maxEntries;
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest) {
+                return size() > PrescriptionVerificationService.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Verifies the signature of one prescription on the calling thread.
+     *
+     * @param prescription the prescription to dispense
+     * @return true if its signature is valid for its current content
+     */
+    public boolean verify(MedicalPrescription prescription) {
+        DigitalSignature signature = prescription.geteSign();
+        if (signature == null || !signature.isValid()) {
+            return false;
+        }
+        byte[] content = WireCodec.encodeSignedContent(prescription);
+        ByteBuffer key = key(signature, content);
+        synchronized (this) {
+            Boolean cached = results.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        // Verify outside the lock so other threads keep using the cache
+        boolean valid = verifier.verify(content, signature.asReadOnlyBuffer());
+        synchronized (this) {
+            results.put(key, valid);
+        }
+        return valid;
+    }
+
+    /**
+     * Verifies the signatures of many prescriptions in parallel.
+     *
+     * @param prescriptions the prescriptions to dispense
+     * @return whether each signature is valid, in the order of the prescriptions
+     */
+    public boolean[] verifyAll(List<MedicalPrescription> prescriptions) {
+        if (prescriptions == null) {
+            throw new IllegalArgumentException("Prescriptions cannot be null");
+        }
+        boolean[] valid = new boolean[prescriptions.size()];
+        if (!prescriptions.isEmpty()) {
+            pool.invoke(new VerifyTask(prescriptions, valid, 0, valid.length));
+        }
+        return valid;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+
+    public synchronized void invalidateAll() {
+        results.clear();
+    }
+
+    private static ByteBuffer key(DigitalSignature signature, byte[] content) {
+        MessageDigest digest = PrescriptionVerifier.sha256();
+        ByteBuffer bytes = signature.asReadOnlyBuffer();
+        digest.update((byte) (bytes.remaining() >>> 24));
+        digest.update((byte) (bytes.remaining() >>> 16));
+        digest.update((byte) (bytes.remaining() >>> 8));
+        digest.update((byte) bytes.remaining());
+        digest.update(bytes);
+        return ByteBuffer.wrap(digest.digest(content));
+    }
+
+    /**
+     * Verifies a range of the batch, splitting it in halves while it is large.
+     */
+    private final class VerifyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<MedicalPrescription> prescriptions;
+        private final boolean[] valid;
+        private final int from;
+        private final int to;
+
+        private VerifyTask(List<MedicalPrescription> prescriptions, boolean[] valid, int from, int to) {
+            this.prescriptions = prescriptions;
+            this.valid = valid;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    valid[i] = verify(prescriptions.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new VerifyTask(prescriptions, valid, from, middle),
+                    new VerifyTask(prescriptions, valid, middle, to));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package services;
+
+import data.DigitalSignature;
+import exceptions.eSignatureException;
+import medicalconsultation.MedicalPrescription;
+import medicalconsultation.WireCodec;
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Verifies the signatures made by PrescriptionSigner, with only the doctor's public key,
+ * e.g. on the dispensing side. Both single and batch signatures are accepted.
+ *
+ * Signatures are read through DigitalSignature.asReadOnlyBuffer(), so only the final
+ * asymmetric signature is copied out. Initialized Signature instances are pooled like
+ * in PrescriptionSigner; the verifier is thread-safe.
+ */
+public class PrescriptionVerifier {
+
+    private final String algorithm;
+    private final PublicKey publicKey;
+    private final BlockingQueue<Signature> verifiers;
+
+    /**
+     * @param publicKey the doctor's public key, Ed25519 or EC
+     * @param poolSize number of initialized Signature instances kept for reuse
+     * @throws eSignatureException if the key type is not supported
+     */
+    public PrescriptionVerifier(PublicKey publicKey, int poolSize) throws eSignatureException {
+        if (publicKey == null) {
+            throw new IllegalArgumentException("Public key cannot be null");
+        }
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be greater than 0");
+        }
+        this.algorithm = algorithmFor(publicKey);
+        this.publicKey = publicKey;
+        this.verifiers = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    /**
+     * Checks that a signature covers the current content of a prescription, whether it
+     * was signed alone or in a batch.
+     *
+     * @param prescription the signed prescription
+     * @param signature its signature
+     * @return true if the signature is valid for the prescription
+     */
+    public boolean verify(MedicalPrescription prescription, DigitalSignature signature) {
+        if (signature == null || !signature.isValid()) {
+            return false;
+        }
+        return verify(WireCodec.encodeSignedContent(prescription), signature.asReadOnlyBuffer());
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    // ========== INTERNALS ==========
+
+    /**
+     * Verifies the canonical encoding of a prescription against its signature bytes.
+     *
+     * @param content the output of WireCodec.encodeSignedContent()
+     * @param signature the signature bytes, from the tag on; its position is moved
+     */
+    boolean verify(byte[] content, ByteBuffer signature) {
+        if (!signature.hasRemaining()) {
+            return false;
+        }
+        switch (signature.get()) {
+            case PrescriptionSigner.TAG_SINGLE:
+                return verifyRaw(content, remaining(signature));
+            case PrescriptionSigner.TAG_BATCH:
+                return verifyBatch(content, signature);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Verifies a batch signature: recomputes the root from the inclusion proof, then
+     * checks the root signature.
+     */
+    private boolean verifyBatch(byte[] content, ByteBuffer signature) {
+        if (signature.remaining() < 9) {
+            return false;
+        }
+        int index = signature.getInt();
+        int count = signature.getInt();
+        int depth = signature.get() & 0xFF;
+        if (count <= 0 || index < 0 || index >= count
+                || signature.remaining() <= depth * MerkleTree.HASH_LENGTH) {
+            return false;
+        }
+        byte[][] proof = new byte[depth][MerkleTree.HASH_LENGTH];
+        for (byte[] hash : proof) {
+            signature.get(hash);
+        }
+        MessageDigest digest = sha256();
+        byte[] root = MerkleTree.rootFromProof(digest, MerkleTree.hashLeaf(digest, content), index, count, proof);
+        return root != null
+                && verifyRaw(PrescriptionSigner.tagged(PrescriptionSigner.TAG_BATCH, root), remaining(signature));
+    }
+
+    /**
+     * Verifies raw content against an asymmetric signature with a pooled instance.
+     */
+    private boolean verifyRaw(byte[] content, byte[] signature) {
+        Signature verifier = verifiers.poll();
+        try {
+            if (verifier == null) {
+                verifier = Signature.getInstance(algorithm);
+                verifier.initVerify(publicKey);
+            }
+            verifier.update(content);
+            boolean valid = verifier.verify(signature);
+            verifiers.offer(verifier);
+            return valid;
+        } catch (SignatureException | IllegalArgumentException e) {
+            // Malformed signature bytes
+            return false;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("Verification key no longer usable", e);
+        }
+    }
+
+    private static byte[] remaining(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the java.security signature algorithm for a key
+     * @throws eSignatureException if the key type is not supported
+     */
+    static String algorithmFor(Key key) throws eSignatureException {
+        String type = key.getAlgorithm();
+        if ("Ed25519".equals(type) || "EdDSA".equals(type)) {
+            return "Ed25519";
+        }
+        if ("EC".equals(type)) {
+            return "SHA256withECDSA";
+        }
+        throw new eSignatureException("Unsupported signing key type: " + type);
+    }
+}
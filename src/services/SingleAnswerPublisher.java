@@ -0,0 +1,64 @@
+package services;
+
+import exceptions.BadPromptException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes a complete AI answer as a single chunk, for AI services without native
+ * streaming. The answer is requested from the AI when the subscriber first asks for
+ * an item, on the subscriber's thread.
+ */
+final class SingleAnswerPublisher implements Flow.Publisher<String> {
+
+    /**
+     * Produces the complete answer.
+     */
+    @FunctionalInterface
+    interface AnswerSource {
+        String get() throws BadPromptException;
+    }
+
+    private final AnswerSource source;
+
+    SingleAnswerPublisher(AnswerSource source) {
+        this.source = source;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber cannot be null");
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            private final AtomicBoolean done = new AtomicBoolean();
+
+            @Override
+            public void request(long n) {
+                if (!done.compareAndSet(false, true)) {
+                    return;
+                }
+                if (n <= 0) {
+                    subscriber.onError(new IllegalArgumentException("Requested items must be positive: " + n));
+                    return;
+                }
+                String answer;
+                try {
+                    answer = source.get();
+                } catch (BadPromptException | RuntimeException e) {
+                    subscriber.onError(e);
+                    return;
+                }
+                if (answer != null) {
+                    subscriber.onNext(answer);
+                }
+                subscriber.onComplete();
+            }
+
+            @Override
+            public void cancel() {
+                done.set(true);
+            }
+        });
+    }
+}
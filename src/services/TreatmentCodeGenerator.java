@@ -0,0 +1,118 @@
+package services;
+
+import data.IdCodec;
+import data.ePrescripCode;
+import exceptions.IncorrectParametersException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local generator of treatment codes for the HNS, safe for concurrent registration.
+ * Codes have the format prefix + 14-digit sequence number (e.g. EP00000000000001).
+ *
+ * Each thread reserves a block of consecutive sequence numbers with a single atomic
+ * increment and then hands them out without any synchronization, so codes are unique
+ * across threads but only ordered within the block of each thread.
+ */
+public class TreatmentCodeGenerator {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    private static final long MAX_SEQUENCE = 99_999_999_999_999L;
+    private static final int SEQUENCE_DIGITS = 14;
+
+    private final char prefix0;
+    private final char prefix1;
+    private final int blockSize;
+    private final AtomicLong nextBlockStart;
+    private final ThreadLocal<Block> blocks;
+
+    public TreatmentCodeGenerator() {
+        this("EP", 1, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a generator.
+     *
+     * @param prefix two alphanumeric characters starting every code
+     * @param firstSequence first sequence number to hand out
+     * @param blockSize number of sequence numbers reserved by a thread at a time
+     */
+    public TreatmentCodeGenerator(String prefix, long firstSequence, int blockSize) {
+        if (prefix == null || prefix.length() != 2 || !IdCodec.isAlphanumeric(prefix)) {
+            throw new IllegalArgumentException("Prefix must be 2 alphanumeric characters");
+        }
+        if (firstSequence < 0 || firstSequence > MAX_SEQUENCE) {
+            throw new IllegalArgumentException("First sequence number out of range: " + firstSequence);
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be greater than 0");
+        }
+        this.prefix0 = prefix.charAt(0);
+        this.prefix1 = prefix.charAt(1);
+        this.blockSize = blockSize;
+        this.nextBlockStart = new AtomicLong(firstSequence);
+        this.blocks = ThreadLocal.withInitial(Block::new);
+    }
+
+    /**
+     * Hands out the next sequence number of the calling thread's block.
+     *
+     * @return a sequence number never returned before by this generator
+     * @throws IllegalStateException if all the 14-digit sequence numbers are used
+     */
+    public long nextSequence() {
+        Block block = blocks.get();
+        if (block.next == block.end) {
+            long start = nextBlockStart.getAndAdd(blockSize);
+            if (start > MAX_SEQUENCE || start < 0) {
+                throw new IllegalStateException("Treatment code sequence exhausted");
+            }
+            block.next = start;
+            block.end = Math.min(start + blockSize, MAX_SEQUENCE + 1);
+        }
+        return block.next++;
+    }
+
+    /**
+     * Generates the next treatment code.
+     *
+     * @return a new unique treatment code
+     * @throws IllegalStateException if all the 14-digit sequence numbers are used
+     */
+    public ePrescripCode nextCode() {
+        try {
+            return new ePrescripCode(format(nextSequence()));
+        } catch (IncorrectParametersException e) {
+            // Cannot happen: prefix and digits are always alphanumeric and 16 characters long
+            throw new IllegalStateException("Generated an invalid treatment code", e);
+        }
+    }
+
+    /**
+     * Formats a sequence number as a 16-character code, without String.format.
+     *
+     * @param sequence the sequence number
+     * @return the prefix followed by the zero-padded sequence number
+     */
+    public String format(long sequence) {
+        if (sequence < 0 || sequence > MAX_SEQUENCE) {
+            throw new IllegalArgumentException("Sequence number out of range: " + sequence);
+        }
+        char[] code = new char[2 + SEQUENCE_DIGITS];
+        code[0] = prefix0;
+        code[1] = prefix1;
+        for (int i = code.length - 1; i >= 2; i--) {
+            code[i] = (char) ('0' + (int) (sequence % 10));
+            sequence /= 10;
+        }
+        return new String(code);
+    }
+
+    /**
+     * Range of sequence numbers reserved by one thread: [next, end).
+     */
+    private static final class Block {
+        private long next;
+        private long end;
+    }
+}
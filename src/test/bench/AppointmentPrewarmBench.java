@@ -0,0 +1,88 @@
+package test.bench;
+
+import data.HealthCardID;
+import exceptions.*;
+import medicalconsultation.Appointment;
+import medicalconsultation.ConsultationTerminal;
+import medicalconsultation.MedicalHistory;
+import medicalconsultation.MedicalPrescription;
+import services.AppointmentPrewarmer;
+import services.CachingHealthNationalService;
+import test.doubles.HealthNationalServiceStubSuccess;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * initRevision against an HNS answering every call in 20 ms: cold, and after the day's
+ * appointments have been warmed by AppointmentPrewarmer.
+ */
+public class AppointmentPrewarmBench {
+
+    private static class SlowHNS extends HealthNationalServiceStubSuccess {
+        private static void delay() {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public MedicalHistory getMedicalHistory(HealthCardID cip)
+                throws ConnectException, HealthCardIDException, IncorrectParametersException {
+            delay();
+            return new MedicalHistory(cip, 12345);
+        }
+
+        @Override
+        public synchronized MedicalPrescription getMedicalPrescription(HealthCardID cip, String illness)
+                throws ConnectException, HealthCardIDException, AnyCurrentPrescriptionException {
+            delay();
+            try {
+                return new MedicalPrescription(cip, 12345, illness);
+            } catch (IncorrectParametersException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = 40;
+        List<HealthCardID> patients = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            patients.add(new HealthCardID(String.format("%016d", i)));
+        }
+
+        CachingHealthNationalService cold = new CachingHealthNationalService(new SlowHNS(), 256, 1);
+        int[] next = {0};
+        Bench.sample("initRevision, cold", 0, count, () -> {
+            ConsultationTerminal terminal = new ConsultationTerminal();
+            terminal.setHealthNationalService(cold);
+            terminal.initRevision(patients.get(next[0]++ % count), "Diabetes");
+        });
+
+        CachingHealthNationalService cache = new CachingHealthNationalService(new SlowHNS(), 256, 600_000);
+        List<Appointment> appointments = new ArrayList<>();
+        for (HealthCardID cip : patients) {
+            appointments.add(new Appointment(cip, "Diabetes", new Date(System.currentTimeMillis() + 60_000)));
+        }
+        try (AppointmentPrewarmer prewarmer = new AppointmentPrewarmer(cache, 8, 200, 120_000)) {
+            long start = System.nanoTime();
+            prewarmer.schedule(appointments);
+            while (prewarmer.getHistoriesWarmed() + prewarmer.getPrescriptionsWarmed() < 2L * count) {
+                Thread.sleep(5);
+            }
+            System.out.printf("warm-up of %d appointments: %.1f ms%n", count, (System.nanoTime() - start) / 1e6);
+
+            next[0] = 0;
+            Bench.sample("initRevision, warmed", 0, count, () -> {
+                ConsultationTerminal terminal = new ConsultationTerminal();
+                terminal.setHealthNationalService(cache);
+                terminal.initRevision(patients.get(next[0]++ % count), "Diabetes");
+            });
+        }
+    }
+}
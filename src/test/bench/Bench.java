@@ -0,0 +1,227 @@
+package test.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Minimal micro-benchmark harness for the performance checks in this package.
+ * Runs an operation for a number of warm-up iterations, then measures the average
+ * time per operation and the bytes allocated per operation by the calling thread.
+ * Sampled runs also report latency percentiles and the allocation rate.
+ *
+ * Benchmarks are plain main() programs, e.g.:
+ *   java -cp out test.bench.MedicalHistoryAppendBench
+ */
+public final class Bench {
+
+    /**
+     * A benchmarked operation.
+     */
+    @FunctionalInterface
+    public interface Op {
+        void run() throws Exception;
+    }
+
+    /**
+     * Measurement of one benchmarked operation.
+     */
+    public static final class Result {
+        private final String name;
+        private final long operations;
+        private final double nanosPerOp;
+        private final double bytesPerOp;
+
+        private Result(String name, long operations, double nanosPerOp, double bytesPerOp) {
+            this.name = name;
+            this.operations = operations;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        public String getName() { return name; }
+        public long getOperations() { return operations; }
+        public double getNanosPerOp() { return nanosPerOp; }
+        public double getBytesPerOp() { return bytesPerOp; }
+
+        public double getOpsPerSecond() {
+            return nanosPerOp > 0 ? 1_000_000_000d / nanosPerOp : 0;
+        }
+
+        /**
+         * Allocation rate of the measured thread, comparable to JMH's gc.alloc.rate.
+         * @return allocated megabytes per second
+         */
+        public double getAllocMBPerSecond() {
+            return bytesPerOp * getOpsPerSecond() / (1024 * 1024);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-50s %14.1f ns/op %14.0f ops/s %12.1f B/op",
+                    name, nanosPerOp, getOpsPerSecond(), bytesPerOp);
+        }
+    }
+
+    // Per-thread allocation counter, null if the JVM does not provide it
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+                    ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()
+                    : null;
+
+    // Sink for benchmark results so the JIT cannot drop the measured work
+    private static volatile Object sink;
+
+    private Bench() {
+    }
+
+    /**
+     * Keeps a value alive so the computation producing it is not optimized away.
+     * @param value the value produced by the benchmarked operation
+     */
+    public static void consume(Object value) {
+        sink = value;
+    }
+
+    /**
+     * Runs and measures an operation, printing the result.
+     *
+     * @param name the benchmark name
+     * @param warmup number of unmeasured iterations
+     * @param iterations number of measured iterations
+     * @param op the operation
+     * @return the measurement
+     */
+    public static Result run(String name, int warmup, int iterations, Op op) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            op.run();
+        }
+
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = allocatedBytes() - bytesBefore;
+
+        Result result = new Result(name, iterations,
+                (double) elapsed / iterations,
+                bytes < 0 ? Double.NaN : (double) bytes / iterations);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * Runs an operation timing every invocation, and prints throughput, allocation rate
+     * and latency percentiles.
+     *
+     * @param name the benchmark name
+     * @param warmup number of unmeasured iterations
+     * @param iterations number of measured iterations
+     * @param op the operation
+     * @return the measurement
+     */
+    public static Result sample(String name, int warmup, int iterations, Op op) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            op.run();
+        }
+
+        long[] latencies = new long[iterations];
+        long bytesBefore = allocatedBytes();
+        long total = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            op.run();
+            latencies[i] = System.nanoTime() - start;
+            total += latencies[i];
+        }
+        long bytes = allocatedBytes() - bytesBefore;
+
+        Result result = new Result(name, iterations,
+                (double) total / iterations,
+                bytes < 0 ? Double.NaN : (double) bytes / iterations);
+        System.out.println(result + String.format(" %8.1f MB/s  %s",
+                result.getAllocMBPerSecond(), percentiles(latencies)));
+        return result;
+    }
+
+    /**
+     * Runs an operation on several threads at once and prints the aggregate throughput
+     * and the throughput per thread. With no more threads than cores, the latter is the
+     * throughput per core.
+     *
+     * @param name the benchmark name
+     * @param threads number of threads running the operation
+     * @param warmup number of unmeasured iterations per thread
+     * @param iterations number of measured iterations per thread
+     * @param op the operation, safe to run concurrently
+     * @return the aggregate measurement
+     */
+    public static Result runConcurrent(String name, int threads, int warmup, int iterations, Op op)
+            throws Exception {
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    try {
+                        for (int i = 0; i < warmup; i++) {
+                            op.run();
+                        }
+                    } finally {
+                        ready.countDown();
+                    }
+                    go.await();
+                    for (int i = 0; i < iterations; i++) {
+                        op.run();
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, name + "-" + t);
+            workers[t].start();
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        go.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        long operations = (long) threads * iterations;
+        Result result = new Result(name, operations, (double) elapsed / operations, Double.NaN);
+        System.out.println(String.format("%-50s %14.0f ops/s %14.0f ops/s/thread (%d threads)",
+                name, result.getOpsPerSecond(), result.getOpsPerSecond() / threads, threads));
+        return result;
+    }
+
+    /**
+     * Formats the p50, p99 and maximum of a set of latencies, in microseconds.
+     * @param latencies latencies in nanoseconds; the array is sorted in place
+     * @return the formatted percentiles
+     */
+    public static String percentiles(long[] latencies) {
+        if (latencies.length == 0) {
+            return "p50=n/a p99=n/a max=n/a";
+        }
+        java.util.Arrays.sort(latencies);
+        return String.format("p50=%.1fus p99=%.1fus max=%.1fus",
+                latencies[latencies.length / 2] / 1000d,
+                latencies[(int) Math.min(latencies.length - 1, (long) latencies.length * 99 / 100)] / 1000d,
+                latencies[latencies.length - 1] / 1000d);
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or -1 if the JVM cannot tell.
+     */
+    public static long allocatedBytes() {
+        return THREAD_BEAN != null ? THREAD_BEAN.getCurrentThreadAllocatedBytes() : -1;
+    }
+}
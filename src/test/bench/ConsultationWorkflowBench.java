@@ -0,0 +1,118 @@
+package test.bench;
+
+import data.*;
+import medicalconsultation.*;
+import test.doubles.DecisionMakingAIStubSuccess;
+import test.doubles.HealthNationalServiceStubSuccess;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Drives ConsultationTerminal through the whole "Supervise Treatment" flow with in-process
+ * stand-ins for the HNS and the AI, and reports every step plus the end-to-end consultation:
+ * throughput, latency percentiles, bytes allocated per operation and allocation rate.
+ *
+ * Usage: java -cp out test.bench.ConsultationWorkflowBench [iterations]
+ */
+public class ConsultationWorkflowBench {
+
+    private static final String[] STEPS = {
+            "initRevision", "enterMedicalAssessmentInHistory", "initMedicalPrescriptionEdition",
+            "callDecisionMakingAI", "askAIForSuggest", "extractGuidelinesFromSugg",
+            "enterMedicineWithGuidelines", "enterTreatmentEndingDate", "stampeeSignature",
+            "sendHistoryAndPrescription", "END-TO-END"
+    };
+
+    private final HealthCardID cip;
+    private final ProductID productID;
+    private final String[] guidelines;
+    private final Date endDate;
+
+    // Per-step measurements of the current phase
+    private final Map<String, long[]> latencies = new LinkedHashMap<>();
+    private final Map<String, Long> bytes = new LinkedHashMap<>();
+    private int iteration;
+
+    private ConsultationWorkflowBench() throws Exception {
+        this.cip = new HealthCardID("1234567890123456");
+        this.productID = new ProductID("243516578917");
+        this.guidelines = new String[]{"BEFORELUNCH", "15", "1", "1", "DAY", "Tomar con abundante agua"};
+        this.endDate = new Date(System.currentTimeMillis() + 30L * 24 * 60 * 60 * 1000);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        ConsultationWorkflowBench bench = new ConsultationWorkflowBench();
+
+        bench.runPhase(iterations / 5);   // warm-up, discarded
+        bench.runPhase(iterations);
+        bench.report(iterations);
+    }
+
+    private void runPhase(int iterations) throws Exception {
+        latencies.clear();
+        bytes.clear();
+        for (String step : STEPS) {
+            latencies.put(step, new long[iterations]);
+            bytes.put(step, 0L);
+        }
+        for (iteration = 0; iteration < iterations; iteration++) {
+            consultation();
+        }
+    }
+
+    /**
+     * One complete consultation. Fresh stand-ins keep every iteration identical.
+     */
+    private void consultation() throws Exception {
+        ConsultationTerminal terminal = new ConsultationTerminal();
+        terminal.setHealthNationalService(new HealthNationalServiceStubSuccess());
+        terminal.setDecisionMakingAI(new DecisionMakingAIStubSuccess());
+
+        long startNanos = System.nanoTime();
+        long startBytes = Bench.allocatedBytes();
+
+        step("initRevision", () -> terminal.initRevision(cip, "Diabetes"));
+        step("enterMedicalAssessmentInHistory",
+                () -> terminal.enterMedicalAssessmentInHistory("Patient shows improvement in glucose levels"));
+        step("initMedicalPrescriptionEdition", terminal::initMedicalPrescriptionEdition);
+        step("callDecisionMakingAI", terminal::callDecisionMakingAI);
+        step("askAIForSuggest", () -> terminal.askAIForSuggest("Should I adjust the treatment?"));
+        step("extractGuidelinesFromSugg", () -> Bench.consume(terminal.extractGuidelinesFromSugg()));
+        step("enterMedicineWithGuidelines", () -> terminal.enterMedicineWithGuidelines(productID, guidelines));
+        step("enterTreatmentEndingDate", () -> terminal.enterTreatmentEndingDate(endDate));
+        step("stampeeSignature", terminal::stampeeSignature);
+        step("sendHistoryAndPrescription", () -> Bench.consume(terminal.sendHistoryAndPrescription()));
+
+        latencies.get("END-TO-END")[iteration] = System.nanoTime() - startNanos;
+        bytes.merge("END-TO-END", Bench.allocatedBytes() - startBytes, Long::sum);
+    }
+
+    private void step(String name, Bench.Op op) throws Exception {
+        long startBytes = Bench.allocatedBytes();
+        long start = System.nanoTime();
+        op.run();
+        latencies.get(name)[iteration] = System.nanoTime() - start;
+        bytes.merge(name, Bench.allocatedBytes() - startBytes, Long::sum);
+    }
+
+    private void report(int iterations) {
+        System.out.printf("%-34s %12s %12s %10s %10s  %s%n",
+                "step", "ns/op", "ops/s", "B/op", "MB/s", "latency");
+        for (String step : STEPS) {
+            long[] samples = latencies.get(step);
+            long total = 0;
+            for (long sample : samples) {
+                total += sample;
+            }
+            double nanosPerOp = (double) total / iterations;
+            double opsPerSecond = 1_000_000_000d / nanosPerOp;
+            double bytesPerOp = (double) bytes.get(step) / iterations;
+            System.out.printf("%-34s %12.1f %12.0f %10.1f %10.1f  %s%n",
+                    step, nanosPerOp, opsPerSecond, bytesPerOp,
+                    bytesPerOp * opsPerSecond / (1024 * 1024), Bench.percentiles(samples));
+        }
+    }
+}
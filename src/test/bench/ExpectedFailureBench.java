@@ -0,0 +1,76 @@
+package test.bench;
+
+import data.HealthCardID;
+import data.ProductID;
+import exceptions.IncorrectParametersException;
+import exceptions.ProceduralException;
+import exceptions.ProductAlreadyInPrescriptionException;
+import medicalconsultation.*;
+import test.doubles.HealthNationalServiceStubSuccess;
+
+/**
+ * Expected failures on hot paths: a UI polling an operation before its precondition holds,
+ * and a bulk import meeting duplicate products and malformed codes. Compares exceptions
+ * that fill in their stack trace with the shared stackless ones, and with the try* API.
+ */
+public class ExpectedFailureBench {
+
+    public static void main(String[] args) throws Exception {
+        ConsultationTerminal idle = new ConsultationTerminal();
+        ProductID prodID = new ProductID("243516578917");
+
+        Bench.run("precondition: new exception with stack trace", 20_000, 200_000, () -> {
+            try {
+                throwWithStackTrace();
+            } catch (ProceduralException e) {
+                Bench.consume(e);
+            }
+        });
+        Bench.run("precondition: shared stackless exception", 200_000, 2_000_000, () -> {
+            try {
+                idle.removeLine(prodID);
+            } catch (ProceduralException e) {
+                Bench.consume(e);
+            }
+        });
+        Bench.run("precondition: try* status", 200_000, 2_000_000,
+                () -> Bench.consume(idle.tryRemoveLine(prodID)));
+
+        ConsultationTerminal editing = new ConsultationTerminal();
+        editing.setHealthNationalService(new HealthNationalServiceStubSuccess());
+        editing.initRevision(new HealthCardID("1234567890123456"), "Diabetes");
+        editing.initMedicalPrescriptionEdition();
+        String[] guidelines = {"BEFORELUNCH", "15", "1", "1", "DAY", "Take with water"};
+        editing.enterMedicineWithGuidelines(prodID, guidelines);
+
+        Bench.run("duplicate product: shared stackless exception", 200_000, 2_000_000, () -> {
+            try {
+                editing.enterMedicineWithGuidelines(prodID, guidelines);
+            } catch (ProductAlreadyInPrescriptionException e) {
+                Bench.consume(e);
+            }
+        });
+        Bench.run("duplicate product: try* status", 200_000, 2_000_000,
+                () -> Bench.consume(editing.tryEnterMedicineWithGuidelines(prodID, guidelines)));
+
+        Bench.run("malformed code: new exception with stack trace", 20_000, 200_000, () -> {
+            try {
+                throw new IncorrectParametersException("ProductID has an invalid format: 12-34");
+            } catch (IncorrectParametersException e) {
+                Bench.consume(e);
+            }
+        });
+        Bench.run("malformed code: stackless exception", 200_000, 2_000_000, () -> {
+            try {
+                new ProductID("12-34");
+            } catch (IncorrectParametersException e) {
+                Bench.consume(e);
+            }
+        });
+    }
+
+    // The behavior before stackless exceptions: a new instance per failure
+    private static void throwWithStackTrace() throws ProceduralException {
+        throw new ProceduralException("Cannot remove line: prescription edition not initialized");
+    }
+}
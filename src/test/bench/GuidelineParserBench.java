@@ -0,0 +1,40 @@
+package test.bench;
+
+import medicalconsultation.*;
+
+/**
+ * Bulk import of taking guidelines, valid and invalid, comparing GuidelineParser with
+ * the former valueOf / parseFloat parsing that reported bad input through exceptions.
+ */
+public class GuidelineParserBench {
+
+    public static void main(String[] args) throws Exception {
+        String[] valid = {"BEFORELUNCH", "15", "1.5", "3", "DAY", "Take with water"};
+        String[] badMoment = {"NOON", "15", "1.5", "3", "DAY", "Take with water"};
+        String[] badDose = {"BEFORELUNCH", "15", "one", "3", "DAY", "Take with water"};
+
+        Bench.run("GuidelineParser valid", 200_000, 2_000_000,
+                () -> Bench.consume(GuidelineParser.parse(valid)));
+        Bench.run("GuidelineParser invalid day moment", 200_000, 2_000_000,
+                () -> Bench.consume(GuidelineParser.parse(badMoment)));
+        Bench.run("GuidelineParser invalid dose", 200_000, 2_000_000,
+                () -> Bench.consume(GuidelineParser.parse(badDose)));
+
+        Bench.run("valueOf/parseFloat valid", 200_000, 2_000_000,
+                () -> Bench.consume(throwingParse(valid)));
+        Bench.run("valueOf/parseFloat invalid day moment", 20_000, 200_000,
+                () -> Bench.consume(throwingParse(badMoment)));
+        Bench.run("valueOf/parseFloat invalid dose", 20_000, 200_000,
+                () -> Bench.consume(throwingParse(badDose)));
+    }
+
+    private static TakingGuideline throwingParse(String[] instruc) {
+        try {
+            return new TakingGuideline(dayMoment.valueOf(instruc[0]),
+                    Float.parseFloat(instruc[1]), Float.parseFloat(instruc[2]),
+                    Float.parseFloat(instruc[3]), FqUnit.valueOf(instruc[4]), instruc[5]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package test.bench;
+
+import data.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Compares identifier construction, validation and lookup before and after IdCodec:
+ * the regular expression check against the ASCII scan, new instances against the
+ * interning cache, and HashMap lookups keyed by ProductID.
+ */
+public class IdCodecBench {
+
+    private static final Pattern REGEX = Pattern.compile("^[a-zA-Z0-9]+$");
+
+    public static void main(String[] args) throws Exception {
+        String[] codes = new String[256];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = String.format("A%011dXY", i * 7919L);
+        }
+
+        int[] next = {0};
+        Bench.run("regex validation (String.matches)", 200_000, 2_000_000,
+                () -> Bench.consume(codes[next[0]++ & 255].matches("^[a-zA-Z0-9]+$")));
+        Bench.run("regex validation (precompiled Pattern)", 200_000, 2_000_000,
+                () -> Bench.consume(REGEX.matcher(codes[next[0]++ & 255]).matches()));
+        Bench.run("IdCodec.isAlphanumeric", 200_000, 2_000_000,
+                () -> Bench.consume(IdCodec.isAlphanumeric(codes[next[0]++ & 255])));
+
+        Bench.run("new ProductID", 200_000, 2_000_000,
+                () -> Bench.consume(new ProductID(codes[next[0]++ & 255])));
+        Bench.run("ProductID.of (interned)", 200_000, 2_000_000,
+                () -> Bench.consume(ProductID.of(codes[next[0]++ & 255])));
+
+        Map<ProductID, Integer> map = new HashMap<>();
+        ProductID[] keys = new ProductID[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            keys[i] = new ProductID(codes[i]);
+            map.put(new ProductID(codes[i]), i);
+        }
+        Bench.run("HashMap<ProductID> get", 200_000, 2_000_000,
+                () -> Bench.consume(map.get(keys[next[0]++ & 255])));
+    }
+}
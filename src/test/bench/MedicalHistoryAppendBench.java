@@ -0,0 +1,39 @@
+package test.bench;
+
+import data.HealthCardID;
+import medicalconsultation.MedicalHistory;
+
+/**
+ * Measures the cost of MedicalHistory.addMedicalHistoryAnnotations as the history grows.
+ * The cost per append must stay flat; the legacy String concatenation is shown as baseline.
+ */
+public class MedicalHistoryAppendBench {
+
+    private static final String ANNOTATION =
+            "Patient reports stable glucose levels, no adverse reactions to current treatment.";
+    private static final int BATCH = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        HealthCardID cip = new HealthCardID("1234567890ABCDEF");
+
+        for (int size : new int[]{1_000, 10_000, 100_000}) {
+            MedicalHistory history = new MedicalHistory(cip, 12345);
+            for (int i = 0; i < size; i++) {
+                history.addMedicalHistoryAnnotations(ANNOTATION);
+            }
+            Bench.run("append, history of " + size + " annotations", BATCH, BATCH * 10,
+                    () -> history.addMedicalHistoryAnnotations(ANNOTATION));
+            Bench.consume(history.getHistoryLength());
+        }
+
+        for (int size : new int[]{1_000, 10_000}) {
+            String[] legacy = {""};
+            for (int i = 0; i < size; i++) {
+                legacy[0] += ANNOTATION + "\n";
+            }
+            Bench.run("legacy concat, history of " + size + " annotations", 10, 100,
+                    () -> legacy[0] += ANNOTATION + "\n");
+            Bench.consume(legacy[0]);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package test.bench;
+
+import data.*;
+import medicalconsultation.*;
+
+/**
+ * Edit operations on a hospital-protocol sized prescription: each operation adds a line,
+ * modifies its dose and removes it again from a prescription holding a few hundred lines.
+ */
+public class PrescriptionLinesBench {
+
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        String[] guidelines = {"BEFORELUNCH", "15", "1", "1", "DAY", "Take with water"};
+
+        MedicalPrescription prescription =
+                new MedicalPrescription(new HealthCardID("1234567890ABCDEF"), 12345, "Protocol");
+        ProductID[] products = new ProductID[lines];
+        for (int i = 0; i < lines; i++) {
+            products[i] = new ProductID(String.format("P%011d", i));
+            prescription.addLine(products[i], guidelines);
+        }
+        ProductID extra = new ProductID("X00000000000");
+
+        int[] next = {0};
+        Bench.run("lookup of " + lines + " lines", 200_000, 2_000_000,
+                () -> Bench.consume(prescription.getLines().get(products[next[0]++ % lines])));
+        Bench.run("modifyDoseInLine of " + lines + " lines", 200_000, 2_000_000,
+                () -> prescription.modifyDoseInLine(products[next[0]++ % lines], 2.0f));
+        Bench.run("addLine + removeLine of " + lines + " lines", 100_000, 1_000_000, () -> {
+            prescription.addLine(extra, guidelines);
+            prescription.removeLine(extra);
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package test.bench;
+
+import data.DigitalSignature;
+import data.HealthCardID;
+import data.ProductID;
+import exceptions.*;
+import medicalconsultation.MedicalHistory;
+import medicalconsultation.MedicalPrescription;
+import services.PrescriptionOutbox;
+import test.doubles.HealthNationalServiceStubSuccess;
+
+import java.net.ConnectException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+/**
+ * Time the doctor's terminal waits to send a prescription to an HNS answering in 20 ms:
+ * a direct sendHistoryAndPrescription call against a submit to the outbox, which only
+ * waits for the upload to reach the disk.
+ */
+public class PrescriptionOutboxBench {
+
+    private static class SlowHNS extends HealthNationalServiceStubSuccess {
+        @Override
+        public synchronized MedicalPrescription sendHistoryAndPrescription(
+                HealthCardID cip, MedicalHistory hce, String illness, MedicalPrescription mPresc)
+                throws ConnectException, HealthCardIDException, AnyCurrentPrescriptionException,
+                NotCompletedMedicalPrescriptionException, IncorrectParametersException {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.sendHistoryAndPrescription(cip, hce, illness, mPresc);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        HealthCardID cip = new HealthCardID("1234567890123456");
+        MedicalHistory history = new MedicalHistory(cip, 12345);
+        history.addMedicalHistoryAnnotations("Stable, keep treatment");
+        MedicalPrescription prescription = new MedicalPrescription(cip, 12345, "Diabetes");
+        prescription.addLine(new ProductID("243516578917"),
+                new String[]{"BEFORELUNCH", "15", "1", "1", "DAY", "Take with water"});
+        prescription.setPrescDate(new Date());
+        prescription.setEndDate(new Date(System.currentTimeMillis() + 30L * 24 * 60 * 60 * 1000));
+        prescription.seteSign(new DigitalSignature(new byte[64]));
+
+        SlowHNS hns = new SlowHNS();
+        Bench.sample("sendHistoryAndPrescription, blocking", 5, 50,
+                () -> Bench.consume(hns.sendHistoryAndPrescription(cip, history, "Diabetes", prescription)));
+
+        Path dir = Files.createTempDirectory("outbox-bench");
+        try (PrescriptionOutbox outbox = new PrescriptionOutbox(hns, dir, 16, 10, 1000)) {
+            Bench.sample("outbox submit", 5, 50,
+                    () -> Bench.consume(outbox.submit(history, prescription)));
+            while (outbox.size() > 0) {
+                Thread.sleep(50);
+            }
+        } finally {
+            Files.deleteIfExists(dir);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package test.bench;
+
+import data.DigitalSignature;
+import data.HealthCardID;
+import data.ProductID;
+import medicalconsultation.MedicalPrescription;
+import medicalconsultation.WireCodec;
+import services.PrescriptionSigner;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Signing throughput of PrescriptionSigner, in signatures per second per core, for
+ * Ed25519 and ECDSA keys. Compares the pooled signer with a single Signature shared
+ * by every thread under a lock, Merkle batch signing per prescription, and verification.
+ */
+public class PrescriptionSignerBench {
+
+    public static void main(String[] args) throws Exception {
+        MedicalPrescription prescription = new MedicalPrescription(new HealthCardID("1234567890123456"), 7, "Diabetes");
+        for (int i = 0; i < 5; i++) {
+            prescription.addLine(new ProductID("24351657891" + i),
+                    new String[]{"BEFORELUNCH", "15", "1", "1", "DAY", "Take with water"});
+        }
+        prescription.setPrescDate(new Date());
+        prescription.setEndDate(new Date(System.currentTimeMillis() + 30L * 24 * 60 * 60 * 1000));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (String keyType : new String[]{"Ed25519", "EC"}) {
+            KeyPair keys = KeyPairGenerator.getInstance(keyType).generateKeyPair();
+            PrescriptionSigner signer = new PrescriptionSigner(keys.getPrivate(), keys.getPublic(), cores);
+
+            Bench.run(keyType + " sign, 1 thread", 2_000, 10_000,
+                    () -> Bench.consume(signer.sign(prescription)));
+            Bench.runConcurrent(keyType + " sign, pooled", cores, 1_000, 5_000,
+                    () -> Bench.consume(signer.sign(prescription)));
+
+            // Before pooling: one Signature instance serializes every terminal
+            Signature shared = Signature.getInstance(signer.getAlgorithm());
+            shared.initSign(keys.getPrivate());
+            Bench.runConcurrent(keyType + " sign, single locked Signature", cores, 1_000, 5_000, () -> {
+                byte[] content = WireCodec.encodeSignedContent(prescription);
+                synchronized (shared) {
+                    shared.update(content);
+                    Bench.consume(shared.sign());
+                }
+            });
+
+            DigitalSignature signature = signer.sign(prescription);
+            Bench.run(keyType + " verify, 1 thread", 1_000, 5_000,
+                    () -> Bench.consume(signer.verify(prescription, signature)));
+
+            // Merkle batch mode: one asymmetric signature per batch
+            for (int size : new int[]{8, 32, 128}) {
+                List<MedicalPrescription> batch = Collections.nCopies(size, prescription);
+                Bench.Result result = Bench.run(keyType + " signBatch of " + size, 50, 500,
+                        () -> Bench.consume(signer.signBatch(batch)));
+                System.out.println(String.format("%-50s %14.1f ns/prescription",
+                        "", result.getNanosPerOp() / size));
+            }
+            DigitalSignature batchSignature = signer.signBatch(Collections.nCopies(128, prescription)).get(0);
+            Bench.run(keyType + " verify batch signature, 1 thread", 1_000, 5_000,
+                    () -> Bench.consume(signer.verify(prescription, batchSignature)));
+        }
+    }
+}
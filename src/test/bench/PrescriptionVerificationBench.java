@@ -0,0 +1,63 @@
+package test.bench;
+
+import data.DigitalSignature;
+import data.HealthCardID;
+import data.ProductID;
+import medicalconsultation.MedicalPrescription;
+import services.PrescriptionSigner;
+import services.PrescriptionVerificationService;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Dispensing-side verification of a batch of 64 signed prescriptions: one by one on the
+ * calling thread, in parallel with PrescriptionVerificationService, and re-scanned with
+ * the results cached. Also compares reading the signature through getSignature(), which
+ * copies it, with asReadOnlyBuffer().
+ */
+public class PrescriptionVerificationBench {
+
+    public static void main(String[] args) throws Exception {
+        KeyPair keys = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        PrescriptionSigner signer = new PrescriptionSigner(keys.getPrivate(), keys.getPublic(), 1);
+        List<MedicalPrescription> prescriptions = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            MedicalPrescription prescription = new MedicalPrescription(new HealthCardID("1234567890123456"), i, "Diabetes");
+            prescription.addLine(new ProductID("243516578917"),
+                    new String[]{"BEFORELUNCH", "15", "1", "1", "DAY", "Take with water"});
+            prescription.setPrescDate(new Date());
+            prescription.setEndDate(new Date(System.currentTimeMillis() + 30L * 24 * 60 * 60 * 1000));
+            prescription.seteSign(signer.sign(prescription));
+            prescriptions.add(prescription);
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        Bench.run("verify 64, sequential", 5, 20, () -> {
+            for (MedicalPrescription prescription : prescriptions) {
+                Bench.consume(signer.verify(prescription, prescription.geteSign()));
+            }
+        });
+        Bench.run("verifyAll 64, parallel (" + cores + " threads), no cache hits", 5, 20, () -> {
+            PrescriptionVerificationService fresh =
+                    new PrescriptionVerificationService(signer.getVerifier(), pool, 1024);
+            Bench.consume(fresh.verifyAll(prescriptions));
+        });
+        PrescriptionVerificationService service = new PrescriptionVerificationService(signer.getVerifier(), pool, 1024);
+        service.verifyAll(prescriptions);
+        Bench.run("verifyAll 64, re-scanned (cached)", 50, 500,
+                () -> Bench.consume(service.verifyAll(prescriptions)));
+        pool.shutdown();
+
+        DigitalSignature signature = prescriptions.get(0).geteSign();
+        Bench.run("getSignature() copy", 200_000, 2_000_000,
+                () -> Bench.consume(signature.getSignature()));
+        Bench.run("asReadOnlyBuffer() view", 200_000, 2_000_000,
+                () -> Bench.consume(signature.asReadOnlyBuffer()));
+    }
+}
@@ -0,0 +1,64 @@
+package test.bench;
+
+import data.ProductID;
+import medicalconsultation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parsing of a long AI answer with about a thousand suggestions, comparing the single
+ * pass SuggestionParser with a regex match plus String.split of every record.
+ */
+public class SuggestionParserBench {
+
+    private static final Pattern RECORD = Pattern.compile("<([^<>]*)>");
+
+    public static void main(String[] args) throws Exception {
+        StringBuilder answer = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String code = String.format("%012d", 100_000_000_000L + i);
+            answer.append(i).append(". Suggested change for the treatment: ");
+            switch (i % 3) {
+                case 0: answer.append("<I, ").append(code)
+                        .append(", BEFORELUNCH, 15, 1, 1, DAY, Take with water, not juice>\n"); break;
+                case 1: answer.append("<M, ").append(code).append(", , , 3, , , >\n"); break;
+                default: answer.append("<E, ").append(code).append(">\n");
+            }
+        }
+        String text = answer.toString();
+
+        Bench.run("SuggestionParser", 200, 2_000,
+                () -> Bench.consume(SuggestionParser.parse(text).getSuggestions()));
+        Bench.run("regex + split", 200, 2_000,
+                () -> Bench.consume(regexParse(text)));
+    }
+
+    private static List<Suggestion> regexParse(String text) throws Exception {
+        List<Suggestion> suggestions = new ArrayList<>();
+        Matcher matcher = RECORD.matcher(text);
+        while (matcher.find()) {
+            String[] fields = matcher.group(1).split(",", 8);
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = fields[i].trim();
+            }
+            ProductID prodID = new ProductID(fields[1]);
+            switch (fields[0]) {
+                case "E":
+                    suggestions.add(new Suggestion(Suggestion.Action.ELIMINATE, prodID));
+                    break;
+                case "I":
+                case "M":
+                    String[] guidelines = new String[6];
+                    System.arraycopy(fields, 2, guidelines, 0, 6);
+                    suggestions.add(new Suggestion(fields[0].equals("I") ? Suggestion.Action.INSERT
+                            : Suggestion.Action.MODIFY, prodID, guidelines));
+                    break;
+                default:
+            }
+        }
+        return suggestions;
+    }
+}
@@ -0,0 +1,90 @@
+package test.bench;
+
+import data.*;
+import medicalconsultation.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Compares the size and speed of the binary WireCodec with a JSON text encoding
+ * of the same prescription, as produced by a straightforward hand-written writer.
+ */
+public class WireCodecBench {
+
+    public static void main(String[] args) throws Exception {
+        MedicalPrescription prescription = samplePrescription(50);
+        MedicalHistory history = sampleHistory(500);
+
+        byte[] binary = WireCodec.encode(prescription);
+        byte[] json = toJson(prescription).getBytes(StandardCharsets.UTF_8);
+        byte[] binaryHistory = WireCodec.encode(history);
+        System.out.printf("prescription of 50 lines: binary %d B, json %d B (%.1fx)%n",
+                binary.length, json.length, (double) json.length / binary.length);
+        System.out.printf("history of 500 annotations: binary %d B, text %d B%n",
+                binaryHistory.length, history.getHistory().getBytes(StandardCharsets.UTF_8).length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(binary.length * 2);
+        Bench.run("binary encode prescription", 20_000, 100_000, () -> {
+            buffer.clear();
+            WireCodec.encode(prescription, buffer);
+        });
+        Bench.run("binary decode prescription", 20_000, 100_000,
+                () -> Bench.consume(WireCodec.decodePrescription(binary)));
+        Bench.run("json encode prescription", 20_000, 100_000,
+                () -> Bench.consume(toJson(prescription).getBytes(StandardCharsets.UTF_8)));
+        Bench.run("binary encode history", 2_000, 10_000,
+                () -> Bench.consume(WireCodec.encode(history)));
+        Bench.run("binary decode history", 2_000, 10_000,
+                () -> Bench.consume(WireCodec.decodeHistory(binaryHistory)));
+    }
+
+    private static MedicalPrescription samplePrescription(int lines) throws Exception {
+        MedicalPrescription prescription = new MedicalPrescription(
+                new HealthCardID("1234567890ABCDEF"), 12345, "Diabetes");
+        for (int i = 0; i < lines; i++) {
+            prescription.addLine(new ProductID(String.format("P%011d", i)),
+                    new String[]{"BEFORELUNCH", "15", "1", "8", "HOUR", "Tomar con abundante agua"});
+        }
+        prescription.setPrescCode(new ePrescripCode("EP00000000000123"));
+        prescription.setPrescDate(new Date());
+        prescription.setEndDate(new Date(System.currentTimeMillis() + 86_400_000L * 30));
+        prescription.seteSign(new DigitalSignature(new byte[64]));
+        return prescription;
+    }
+
+    private static MedicalHistory sampleHistory(int annotations) throws Exception {
+        MedicalHistory history = new MedicalHistory(new HealthCardID("1234567890ABCDEF"), 12345);
+        for (int i = 0; i < annotations; i++) {
+            history.addMedicalHistoryAnnotations("Patient reports stable glucose levels, visit " + i);
+        }
+        return history;
+    }
+
+    private static String toJson(MedicalPrescription p) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"cip\":\"").append(p.getCip().getPersonalID())
+                .append("\",\"membShipNumb\":").append(p.getMembShipNumb())
+                .append(",\"illness\":\"").append(p.getIllness())
+                .append("\",\"prescCode\":\"").append(p.getPrescCode().getCode())
+                .append("\",\"prescDate\":").append(p.getPrescDate().getTime())
+                .append(",\"endDate\":").append(p.getEndDate().getTime())
+                .append(",\"eSign\":\"").append(java.util.Base64.getEncoder().encodeToString(p.geteSign().getSignature()))
+                .append("\",\"lines\":[");
+        boolean first = true;
+        for (MedicalPrescriptionLine line : p.getLines().values()) {
+            TakingGuideline g = line.getTakingGuideline();
+            if (!first) json.append(',');
+            first = false;
+            json.append("{\"productID\":\"").append(line.getProductID().getCode())
+                    .append("\",\"dayMoment\":\"").append(g.getdMoment())
+                    .append("\",\"duration\":").append(g.getDuration())
+                    .append(",\"dose\":").append(g.getPosology().getDose())
+                    .append(",\"freq\":").append(g.getPosology().getFreq())
+                    .append(",\"freqUnit\":\"").append(g.getPosology().getFreqUnit())
+                    .append("\",\"instructions\":\"").append(g.getInstructions()).append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+}
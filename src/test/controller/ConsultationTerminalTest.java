@@ -11,8 +11,22 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
 import java.net.ConnectException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -166,6 +180,150 @@ class ConsultationTerminalTest {
         });
     }
 
+    // ========== TESTS FOR initRevision (parallel download mode) ==========
+
+    @Test
+    @DisplayName("initRevision parallel - Success scenario")
+    void testInitRevisionParallel_Success() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        terminal.setHealthNationalService(hnsSuccess);
+        terminal.setParallelFetchExecutor(executor, 5000);
+
+        try {
+            // Act
+            terminal.initRevision(validCip, validIllness);
+
+            // Assert
+            assertTrue(terminal.isRevisionInitialized());
+            assertNotNull(terminal.getCurrentMedicalHistory());
+            assertNotNull(terminal.getCurrentPrescription());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("initRevision parallel - ConnectException keeps its type")
+    void testInitRevisionParallel_ConnectException() {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        HealthNationalServiceStubWithErrors hnsError =
+                (HealthNationalServiceStubWithErrors) hnsWithErrors;
+        hnsError.setThrowConnectException(true);
+        terminal.setHealthNationalService(hnsError);
+        terminal.setParallelFetchExecutor(executor, 5000);
+
+        try {
+            // Act & Assert
+            assertThrows(ConnectException.class, () -> {
+                terminal.initRevision(validCip, validIllness);
+            });
+            assertFalse(terminal.isRevisionInitialized());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("initRevision parallel - AnyCurrentPrescriptionException keeps its type")
+    void testInitRevisionParallel_AnyCurrentPrescriptionException() {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        HealthNationalServiceStubWithErrors hnsError =
+                (HealthNationalServiceStubWithErrors) hnsWithErrors;
+        hnsError.setThrowAnyCurrentPrescriptionException(true);
+        terminal.setHealthNationalService(hnsError);
+        terminal.setParallelFetchExecutor(executor, 5000);
+
+        try {
+            // Act & Assert
+            assertThrows(AnyCurrentPrescriptionException.class, () -> {
+                terminal.initRevision(validCip, validIllness);
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * HNS whose history download blocks until interrupted; its prescription download
+     * can fail right away.
+     */
+    private static class BlockingHistoryHNS extends HealthNationalServiceStubSuccess {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        volatile boolean failPrescription;
+
+        @Override
+        public MedicalHistory getMedicalHistory(HealthCardID cip)
+                throws ConnectException, HealthCardIDException, IncorrectParametersException {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new ConnectException("Interrupted");
+            }
+            return super.getMedicalHistory(cip);
+        }
+
+        @Override
+        public MedicalPrescription getMedicalPrescription(HealthCardID cip, String illness)
+                throws ConnectException, HealthCardIDException, AnyCurrentPrescriptionException {
+            if (failPrescription) {
+                throw new AnyCurrentPrescriptionException("No prescription for " + illness);
+            }
+            return super.getMedicalPrescription(cip, illness);
+        }
+    }
+
+    @Test
+    @DisplayName("initRevision parallel - An expired deadline throws ConnectException")
+    void testInitRevisionParallel_DeadlineExpires() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        BlockingHistoryHNS hns = new BlockingHistoryHNS();
+        terminal.setHealthNationalService(hns);
+        terminal.setParallelFetchExecutor(executor, 100);
+
+        try {
+            // Act
+            long start = System.nanoTime();
+            assertThrows(ConnectException.class, () -> terminal.initRevision(validCip, validIllness));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // Assert
+            assertTrue(elapsedMillis < 5000, "Waited " + elapsedMillis + " ms");
+            assertFalse(terminal.isRevisionInitialized());
+            // The call still running is cancelled
+            assertTrue(hns.interrupted.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("initRevision parallel - A failed call cancels its sibling")
+    void testInitRevisionParallel_FailureCancelsSibling() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        BlockingHistoryHNS hns = new BlockingHistoryHNS();
+        hns.failPrescription = true;
+        terminal.setHealthNationalService(hns);
+        terminal.setParallelFetchExecutor(executor, 60_000);
+
+        try {
+            // Act
+            assertThrows(AnyCurrentPrescriptionException.class, () -> terminal.initRevision(validCip, validIllness));
+
+            // Assert
+            // Well before the deadline, the blocked history download is interrupted
+            assertTrue(hns.interrupted.await(5, TimeUnit.SECONDS));
+            assertFalse(terminal.isRevisionInitialized());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     // ========== TESTS FOR enterMedicalAssessmentInHistory ==========
 
     @Test
@@ -298,6 +456,33 @@ class ConsultationTerminalTest {
         });
     }
 
+    @Test
+    @DisplayName("callDecisionMakingAI - Leases an initialized session from the pool and returns it")
+    void testCallDecisionMakingAI_FromPool() throws Exception {
+        // Arrange
+        DecisionMakingAIPool pool = new DecisionMakingAIPool(DecisionMakingAIStubSuccess::new, 1, 1, 1, 60_000);
+        try {
+            terminal.setHealthNationalService(hnsSuccess);
+            terminal.setDecisionMakingAI(aiWithErrors);
+            terminal.setDecisionMakingAIPool(pool, 5000);
+            terminal.initRevision(validCip, validIllness);
+            terminal.initMedicalPrescriptionEdition();
+
+            // Act
+            terminal.callDecisionMakingAI();
+            String response = terminal.askAIForSuggest("Should I adjust the treatment?");
+
+            // Assert
+            assertNotNull(response);
+            assertEquals(0, pool.getIdleCount());
+            terminal.finishMedicalPrescriptionEdition();
+            assertEquals(1, pool.getIdleCount());
+            assertFalse(terminal.isAiInitialized());
+        } finally {
+            pool.close();
+        }
+    }
+
     // ========== TESTS FOR askAIForSuggest ==========
 
     @Test
@@ -401,6 +586,205 @@ class ConsultationTerminalTest {
         });
     }
 
+    // ========== TESTS FOR streamAISuggestions ==========
+
+    @Test
+    @DisplayName("streamAISuggestions - ProceduralException when AI not initialized")
+    void testStreamAISuggestions_AINotInitialized() throws Exception {
+        // Arrange
+        terminal.setHealthNationalService(hnsSuccess);
+        terminal.setDecisionMakingAI(aiSuccess);
+        terminal.initRevision(validCip, validIllness);
+        terminal.initMedicalPrescriptionEdition();
+
+        // Act & Assert
+        assertThrows(ProceduralException.class, () -> terminal.streamAISuggestions("Adjust the treatment?"));
+    }
+
+    @Test
+    @DisplayName("streamAISuggestions - Nothing is asked until subscribed")
+    void testStreamAISuggestions_Lazy() throws Exception {
+        // Arrange
+        int[] calls = {0};
+        terminal.setHealthNationalService(hnsSuccess);
+        terminal.setDecisionMakingAI(new DecisionMakingAIStubSuccess() {
+            @Override
+            public String getSuggestions(String prompt) throws BadPromptException {
+                calls[0]++;
+                return "<E, 243516578917>";
+            }
+        });
+        terminal.initRevision(validCip, validIllness);
+        terminal.initMedicalPrescriptionEdition();
+        terminal.callDecisionMakingAI();
+
+        // Act
+        Flow.Publisher<Suggestion> publisher = terminal.streamAISuggestions("Adjust the treatment?");
+        assertEquals(0, calls[0]);
+        List<Suggestion> received = new CopyOnWriteArrayList<>();
+        CountDownLatch completed = new CountDownLatch(1);
+        publisher.subscribe(new Flow.Subscriber<>() {
+            public void onSubscribe(Flow.Subscription s) { s.request(Long.MAX_VALUE); }
+            public void onNext(Suggestion item) { received.add(item); }
+            public void onError(Throwable throwable) { completed.countDown(); }
+            public void onComplete() { completed.countDown(); }
+        });
+
+        // Assert
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, calls[0]);
+        assertEquals(1, received.size());
+        assertEquals(Suggestion.Action.ELIMINATE, received.get(0).getAction());
+    }
+
+    /**
+     * AI whose streamed answers are published by the test.
+     */
+    private static class StreamingAI extends DecisionMakingAIStubSuccess {
+        final SubmissionPublisher<String> chunks = new SubmissionPublisher<>();
+
+        @Override
+        public Flow.Publisher<String> streamSuggestions(String prompt, MedicalPrescription context) {
+            return chunks;
+        }
+    }
+
+    /**
+     * Subscribes to a stream of suggestions, recording what it receives.
+     */
+    private static CompletableFuture<List<Suggestion>> collect(Flow.Publisher<Suggestion> publisher) {
+        CompletableFuture<List<Suggestion>> result = new CompletableFuture<>();
+        List<Suggestion> received = new CopyOnWriteArrayList<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            public void onSubscribe(Flow.Subscription s) { s.request(Long.MAX_VALUE); }
+            public void onNext(Suggestion item) { received.add(item); }
+            public void onError(Throwable throwable) { result.completeExceptionally(throwable); }
+            public void onComplete() { result.complete(received); }
+        });
+        return result;
+    }
+
+    @Test
+    @DisplayName("streamAISuggestions - The completed answer can be extracted and applied")
+    void testStreamAISuggestions_StoresAnswer() throws Exception {
+        // Arrange
+        terminal.setHealthNationalService(hnsSuccess);
+        terminal.setDecisionMakingAI(new DecisionMakingAIStubSuccess() {
+            @Override
+            public String getSuggestions(String prompt) throws BadPromptException {
+                return "<I, 243516578917, BEFORELUNCH, 15, 1, 1, DAY, Tomar con agua>";
+            }
+        });
+        terminal.initRevision(validCip, validIllness);
+        terminal.initMedicalPrescriptionEdition();
+        terminal.callDecisionMakingAI();
+
+        // Act
+        List<Suggestion> streamed = collect(terminal.streamAISuggestions("Adjust the treatment?"))
+                .get(5, TimeUnit.SECONDS);
+        List<Suggestion> extracted = terminal.extractGuidelinesFromSugg();
+        terminal.applySuggestions(streamed);
+
+        // Assert
+        assertEquals(1, streamed.size());
+        assertEquals("<I, 243516578917, BEFORELUNCH, 15, 1, 1, DAY, Tomar con agua>", terminal.getLastAIResponse());
+        assertFalse(extracted.isEmpty());
+        assertTrue(terminal.getCurrentPrescription().getLines().containsKey(validProductID));
+    }
+
+    @Test
+    @DisplayName("streamAISuggestions - The pooled session is kept until the stream ends")
+    void testStreamAISuggestions_HoldsLease() throws Exception {
+        // Arrange
+        StreamingAI ai = new StreamingAI();
+        DecisionMakingAIPool pool = new DecisionMakingAIPool(() -> ai, 1, 1, 1, 60_000);
+        try {
+            terminal.setHealthNationalService(hnsSuccess);
+            terminal.setDecisionMakingAIPool(pool, 5000);
+            terminal.initRevision(validCip, validIllness);
+            terminal.initMedicalPrescriptionEdition();
+            terminal.callDecisionMakingAI();
+            CompletableFuture<List<Suggestion>> stream = collect(terminal.streamAISuggestions("Adjust the treatment?"));
+
+            // Act
+            terminal.finishMedicalPrescriptionEdition();
+            long idleWhileStreaming = pool.getIdleCount();
+            ai.chunks.submit("<E, 243516578917>");
+            ai.chunks.close();
+
+            // Assert
+            assertEquals(1, stream.get(5, TimeUnit.SECONDS).size());
+            assertEquals(0, idleWhileStreaming);
+            assertEquals(1, pool.getIdleCount());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    @DisplayName("streamAISuggestions - A subscription after the session is released fails")
+    void testStreamAISuggestions_SubscribedAfterRelease() throws Exception {
+        // Arrange
+        DecisionMakingAIPool pool = new DecisionMakingAIPool(StreamingAI::new, 1, 1, 1, 60_000);
+        try {
+            terminal.setHealthNationalService(hnsSuccess);
+            terminal.setDecisionMakingAIPool(pool, 5000);
+            terminal.initRevision(validCip, validIllness);
+            terminal.initMedicalPrescriptionEdition();
+            terminal.callDecisionMakingAI();
+            Flow.Publisher<Suggestion> publisher = terminal.streamAISuggestions("Adjust the treatment?");
+
+            // Act
+            terminal.finishMedicalPrescriptionEdition();
+            CompletableFuture<List<Suggestion>> stream = collect(publisher);
+
+            // Assert
+            ExecutionException error = assertThrows(ExecutionException.class, () -> stream.get(5, TimeUnit.SECONDS));
+            assertTrue(error.getCause() instanceof ProceduralException);
+            assertEquals(1, pool.getIdleCount());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    @DisplayName("askAI - A pooled session that fails is replaced, not given back")
+    void testAskAI_FailedSessionInvalidated() throws Exception {
+        // Arrange
+        AtomicInteger created = new AtomicInteger();
+        DecisionMakingAIPool pool = new DecisionMakingAIPool(() -> {
+            boolean first = created.getAndIncrement() == 0;
+            return new DecisionMakingAIStubSuccess() {
+                @Override
+                public String getSuggestions(String prompt) throws BadPromptException {
+                    if (first) {
+                        throw new IllegalStateException("Simulated AI crash");
+                    }
+                    return super.getSuggestions(prompt);
+                }
+            };
+        }, 1, 1, 1, 60_000);
+        try {
+            terminal.setHealthNationalService(hnsSuccess);
+            terminal.setDecisionMakingAIPool(pool, 5000);
+            terminal.initRevision(validCip, validIllness);
+            terminal.initMedicalPrescriptionEdition();
+            terminal.callDecisionMakingAI();
+
+            // Act
+            assertThrows(IllegalStateException.class, () -> terminal.askAIForSuggest("Adjust the treatment?"));
+            boolean initializedAfterFailure = terminal.isAiInitialized();
+            terminal.callDecisionMakingAI();
+
+            // Assert
+            assertFalse(initializedAfterFailure);
+            assertNotNull(terminal.askAIForSuggest("Adjust the treatment?"));
+            assertEquals(2, created.get());
+        } finally {
+            pool.close();
+        }
+    }
+
     // ========== TESTS FOR extractGuidelinesFromSugg ==========
 
     @Test
@@ -538,6 +922,96 @@ class ConsultationTerminalTest {
         });
     }
 
+    // ========== TESTS FOR applySuggestions ==========
+
+    @Test
+    @DisplayName("applySuggestions - Applies INSERT, MODIFY and ELIMINATE in order")
+    void testApplySuggestions_Success() throws Exception {
+        // Arrange
+        terminal.setHealthNationalService(hnsSuccess);
+        terminal.initRevision(validCip, validIllness);
+        terminal.initMedicalPrescriptionEdition();
+        ProductID modified = new ProductID("640557143200");
+        ProductID eliminated = new ProductID("789012345678");
+        terminal.enterMedicineWithGuidelines(modified, validGuidelines);
+        terminal.enterMedicineWithGuidelines(eliminated, validGuidelines);
+
+        // Act
+        terminal.applySuggestions(List.of(
+                new Suggestion(Suggestion.Action.INSERT, validProductID, validGuidelines),
+                new Suggestion(Suggestion.Action.MODIFY, modified, new String[]{"", "", "3", "", "WEEK", ""}),
+                new Suggestion(Suggestion.Action.ELIMINATE, eliminated)));
+
+        // Assert
+        MedicalPrescription prescription = terminal.getCurrentPrescription();
+        assertEquals(2, prescription.getLines().size());
+        assertTrue(prescription.getLines().containsKey(validProductID));
+        assertFalse(prescription.getLines().containsKey(eliminated));
+        TakingGuideline guideline = prescription.getLines().get(modified).getTakingGuideline();
+        assertEquals(3.0f, guideline.getPosology().getDose());
+        assertEquals(FqUnit.WEEK, guideline.getPosology().getFreqUnit());
+        assertEquals(15.0f, guideline.getDuration());
+        assertEquals("Tomar con abundante agua", guideline.getInstructions());
+    }
+
+    @Test
+    @DisplayName("applySuggestions - Suggestions can build on earlier ones of the batch")
+    void testApplySuggestions_DependentSuggestions() throws Exception {
+        // Arrange
+        terminal.setHealthNationalService(hnsSuccess);
+        terminal.initRevision(validCip, validIllness);
+        terminal.initMedicalPrescriptionEdition();
+
+        // Act
+        terminal.applySuggestions(List.of(
+                new Suggestion(Suggestion.Action.INSERT, validProductID, validGuidelines),
+                new Suggestion(Suggestion.Action.MODIFY, validProductID, new String[]{"", "", "2", "", "", ""})));
+
+        // Assert
+        assertEquals(2.0f, terminal.getCurrentPrescription().getLines().get(validProductID)
+                .getTakingGuideline().getPosology().getDose());
+    }
+
+    @Test
+    @DisplayName("applySuggestions - Conflicting batch leaves the prescription unchanged")
+    void testApplySuggestions_ConflictAppliesNothing() throws Exception {
+        // Arrange
+        terminal.setHealthNationalService(hnsSuccess);
+        terminal.initRevision(validCip, validIllness);
+        terminal.initMedicalPrescriptionEdition();
+        ProductID other = new ProductID("640557143200");
+        terminal.enterMedicineWithGuidelines(other, validGuidelines);
+
+        // Act & Assert: INSERT of a product the batch already inserted
+        assertThrows(ProductAlreadyInPrescriptionException.class, () -> terminal.applySuggestions(List.of(
+                new Suggestion(Suggestion.Action.ELIMINATE, other),
+                new Suggestion(Suggestion.Action.INSERT, validProductID, validGuidelines),
+                new Suggestion(Suggestion.Action.INSERT, validProductID, validGuidelines))));
+        // MODIFY of an eliminated product
+        assertThrows(ProductNotInPrescriptionException.class, () -> terminal.applySuggestions(List.of(
+                new Suggestion(Suggestion.Action.ELIMINATE, other),
+                new Suggestion(Suggestion.Action.MODIFY, other, new String[]{"", "", "2", "", "", ""}))));
+        // Invalid guidelines at the end of the batch
+        assertThrows(IncorrectTakingGuidelinesException.class, () -> terminal.applySuggestions(List.of(
+                new Suggestion(Suggestion.Action.INSERT, validProductID, validGuidelines),
+                new Suggestion(Suggestion.Action.MODIFY, other, new String[]{"", "", "-1", "", "", ""}))));
+
+        MedicalPrescription prescription = terminal.getCurrentPrescription();
+        assertEquals(1, prescription.getLines().size());
+        assertEquals(1.0f, prescription.getLines().get(other).getTakingGuideline().getPosology().getDose());
+    }
+
+    @Test
+    @DisplayName("applySuggestions - ProceduralException when prescription edition not active")
+    void testApplySuggestions_NoPrescriptionEdition() throws Exception {
+        // Arrange
+        terminal.setHealthNationalService(hnsSuccess);
+        terminal.initRevision(validCip, validIllness);
+
+        // Act & Assert
+        assertThrows(ProceduralException.class, () -> terminal.applySuggestions(List.of()));
+    }
+
     // ========== TESTS FOR modifyDoseInLine ==========
 
     @Test
@@ -797,6 +1271,27 @@ class ConsultationTerminalTest {
         assertNotNull(terminal.getCurrentPrescription().geteSign());
     }
 
+    @Test
+    @DisplayName("stampSignature - Signs the prescription with the injected signer")
+    void testStampSignature_WithSigner() throws Exception {
+        // Arrange
+        KeyPair keys = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        PrescriptionSigner signer = new PrescriptionSigner(keys.getPrivate(), keys.getPublic(), 1);
+        terminal.setHealthNationalService(hnsSuccess);
+        terminal.setPrescriptionSigner(signer);
+        terminal.initRevision(validCip, validIllness);
+        terminal.initMedicalPrescriptionEdition();
+        terminal.enterMedicineWithGuidelines(validProductID, validGuidelines);
+        terminal.enterTreatmentEndingDate(new Date(System.currentTimeMillis() + (30L * 24 * 60 * 60 * 1000)));
+
+        // Act
+        terminal.stampeeSignature();
+
+        // Assert
+        MedicalPrescription prescription = terminal.getCurrentPrescription();
+        assertTrue(signer.verify(prescription, prescription.geteSign()));
+    }
+
     @Test
     @DisplayName("stampSignature - ProceduralException when prescription edition not active")
     void testStampSignature_NoPrescriptionEdition() throws Exception {
@@ -932,6 +1427,343 @@ class ConsultationTerminalTest {
         });
     }
 
+    // ========== TESTS FOR sendHistoryAndPrescription (delta upload mode) ==========
+
+    /**
+     * HNS stub that records the deltas it receives and then performs the full upload.
+     * It also applies each delta to a copy of the data it served last, to be compared
+     * with the full upload.
+     */
+    private static class DeltaRecordingHNS extends HealthNationalServiceStubSuccess {
+        ConsultationDelta lastDelta;
+        byte[] servedHistory;
+        byte[] servedPrescription;
+        MedicalHistory appliedHistory;
+        MedicalPrescription appliedPrescription;
+
+        @Override
+        public MedicalHistory getMedicalHistory(HealthCardID cip)
+                throws ConnectException, HealthCardIDException, IncorrectParametersException {
+            MedicalHistory history = super.getMedicalHistory(cip);
+            servedHistory = WireCodec.encode(history);
+            return history;
+        }
+
+        @Override
+        public MedicalPrescription getMedicalPrescription(HealthCardID cip, String illness)
+                throws ConnectException, HealthCardIDException, AnyCurrentPrescriptionException {
+            MedicalPrescription prescription = super.getMedicalPrescription(cip, illness);
+            servedPrescription = WireCodec.encode(prescription);
+            return prescription;
+        }
+
+        @Override
+        public MedicalPrescription sendHistoryAndPrescriptionDelta(
+                HealthCardID cip, String illness, ConsultationDelta delta,
+                MedicalHistory hce, MedicalPrescription mPresc)
+                throws ConnectException, HealthCardIDException, AnyCurrentPrescriptionException,
+                NotCompletedMedicalPrescriptionException, IncorrectParametersException {
+            this.lastDelta = delta;
+            try {
+                appliedHistory = WireCodec.decodeHistory(servedHistory);
+                appliedHistory.setNewDoctor(delta.getMembShipNumb());
+                for (HistoryAnnotation annotation : delta.getNewAnnotations()) {
+                    appliedHistory.addAnnotation(annotation);
+                }
+                appliedPrescription = WireCodec.decodePrescription(servedPrescription);
+                for (ProductID prodID : delta.getRemovedProducts()) {
+                    appliedPrescription.removeLine(prodID);
+                }
+                for (MedicalPrescriptionLine line : delta.getAddedLines()) {
+                    // Replaces the stored line of the same product
+                    if (appliedPrescription.getLines().containsKey(line.getProductID())) {
+                        appliedPrescription.removeLine(line.getProductID());
+                    }
+                    appliedPrescription.addValidatedLine(line.getProductID(), line.getTakingGuideline());
+                }
+                for (java.util.Map.Entry<ProductID, Float> dose : delta.getModifiedDoses().entrySet()) {
+                    appliedPrescription.modifyDoseInLine(dose.getKey(), dose.getValue());
+                }
+                appliedPrescription.setPrescDate(delta.getPrescDate());
+                appliedPrescription.setEndDate(delta.getEndDate());
+                appliedPrescription.seteSign(delta.geteSign());
+            } catch (ProductNotInPrescriptionException | ProductAlreadyInPrescriptionException
+                     | IncorrectTakingGuidelinesException e) {
+                throw new IllegalStateException("Delta does not apply to the served data", e);
+            }
+            return super.sendHistoryAndPrescriptionDelta(cip, illness, delta, hce, mPresc);
+        }
+    }
+
+    /**
+     * Checks that the data rebuilt from a delta matches the full upload of the terminal.
+     * Lines are compared by product, since a replaced line may change place.
+     */
+    private static void assertDeltaReproducesUpload(DeltaRecordingHNS hns, MedicalHistory history,
+                                                    MedicalPrescription prescription) {
+        assertArrayEquals(WireCodec.encode(history), WireCodec.encode(hns.appliedHistory));
+        MedicalPrescription applied = hns.appliedPrescription;
+        assertEquals(prescription.getPrescDate(), applied.getPrescDate());
+        assertEquals(prescription.getEndDate(), applied.getEndDate());
+        assertEquals(prescription.geteSign(), applied.geteSign());
+        assertEquals(describeLines(prescription), describeLines(applied));
+    }
+
+    private static java.util.Map<ProductID, String> describeLines(MedicalPrescription prescription) {
+        java.util.Map<ProductID, String> lines = new java.util.HashMap<>();
+        for (MedicalPrescriptionLine line : prescription.getLines().values()) {
+            TakingGuideline guideline = line.getTakingGuideline();
+            Posology posology = guideline.getPosology();
+            lines.put(line.getProductID(), guideline.getdMoment() + "/" + guideline.getDuration() + "/"
+                    + posology.getDose() + "/" + posology.getFreq() + "/" + posology.getFreqUnit() + "/"
+                    + guideline.getInstructions());
+        }
+        return lines;
+    }
+
+    @Test
+    @DisplayName("sendHistoryAndPrescription delta - Sends only the changes since initRevision")
+    void testSendHistoryAndPrescriptionDelta_SendsChanges() throws Exception {
+        // Arrange
+        DeltaRecordingHNS hns = new DeltaRecordingHNS();
+        ProductID removedProduct = new ProductID("640557143200");
+        ProductID modifiedProduct = new ProductID("789012345678");
+        MedicalPrescription stored = hns.getMedicalPrescription(validCip, validIllness);
+        stored.addLine(removedProduct, validGuidelines);
+        stored.addLine(modifiedProduct, validGuidelines);
+        hns.getMedicalHistory(validCip).addMedicalHistoryAnnotations("Previous visit");
+
+        terminal.setHealthNationalService(hns);
+        terminal.setDeltaUpload(true);
+        terminal.initRevision(validCip, validIllness);
+        terminal.enterMedicalAssessmentInHistory("Patient shows improvement");
+        terminal.initMedicalPrescriptionEdition();
+        terminal.enterMedicineWithGuidelines(validProductID, validGuidelines);
+        terminal.removeLine(removedProduct);
+        terminal.modifyDoseInLine(modifiedProduct, 2.5f);
+        terminal.enterTreatmentEndingDate(new Date(System.currentTimeMillis() + 30L * 24 * 60 * 60 * 1000));
+        terminal.stampeeSignature();
+
+        // Act
+        MedicalPrescription result = terminal.sendHistoryAndPrescription();
+
+        // Assert
+        assertNotNull(result.getPrescCode());
+        ConsultationDelta delta = hns.lastDelta;
+        assertNotNull(delta);
+        assertEquals(1, delta.getNewAnnotations().size());
+        assertEquals("Patient shows improvement", delta.getNewAnnotations().get(0).getText());
+        assertEquals(1, delta.getAddedLines().size());
+        assertEquals(validProductID, delta.getAddedLines().get(0).getProductID());
+        assertEquals(List.of(removedProduct), delta.getRemovedProducts());
+        assertEquals(2.5f, delta.getModifiedDoses().get(modifiedProduct).floatValue());
+        assertFalse(delta.hasNoChanges());
+        assertNotNull(delta.getPrescDate());
+        assertNotNull(delta.getEndDate());
+        assertNotNull(delta.geteSign());
+        assertDeltaReproducesUpload(hns, terminal.getCurrentMedicalHistory(), terminal.getCurrentPrescription());
+    }
+
+    @Test
+    @DisplayName("sendHistoryAndPrescription delta - A suggested change beyond the dose edits the line in place")
+    void testSendHistoryAndPrescriptionDelta_ModifiedInPlace() throws Exception {
+        // Arrange
+        DeltaRecordingHNS hns = new DeltaRecordingHNS();
+        ProductID first = new ProductID("640557143200");
+        ProductID second = new ProductID("789012345678");
+        MedicalPrescription stored = hns.getMedicalPrescription(validCip, validIllness);
+        stored.addLine(first, validGuidelines);
+        stored.addLine(second, validGuidelines);
+        stored.addLine(validProductID, validGuidelines);
+
+        terminal.setHealthNationalService(hns);
+        terminal.setDeltaUpload(true);
+        terminal.initRevision(validCip, validIllness);
+        terminal.initMedicalPrescriptionEdition();
+
+        // Act
+        terminal.applySuggestions(List.of(
+                new Suggestion(Suggestion.Action.MODIFY, first, new String[]{"", "", "", "", "WEEK", ""}),
+                new Suggestion(Suggestion.Action.MODIFY, second, new String[]{"", "", "2", "", "", ""})));
+        List<ProductID> order = List.copyOf(terminal.getCurrentPrescription().getLines().keySet());
+        terminal.enterTreatmentEndingDate(new Date(System.currentTimeMillis() + 30L * 24 * 60 * 60 * 1000));
+        terminal.stampeeSignature();
+        terminal.sendHistoryAndPrescription();
+
+        // Assert
+        assertEquals(List.of(first, second, validProductID), order);
+        ConsultationDelta delta = hns.lastDelta;
+        assertEquals(1, delta.getAddedLines().size());
+        assertEquals(first, delta.getAddedLines().get(0).getProductID());
+        assertEquals(FqUnit.WEEK, delta.getAddedLines().get(0).getTakingGuideline().getPosology().getFreqUnit());
+        assertEquals(2.0f, delta.getModifiedDoses().get(second).floatValue());
+        assertTrue(delta.getRemovedProducts().isEmpty());
+        assertDeltaReproducesUpload(hns, terminal.getCurrentMedicalHistory(), terminal.getCurrentPrescription());
+    }
+
+    @Test
+    @DisplayName("sendHistoryAndPrescription delta - Full upload when mode disabled")
+    void testSendHistoryAndPrescriptionDelta_DisabledUsesFullUpload() throws Exception {
+        // Arrange
+        DeltaRecordingHNS hns = new DeltaRecordingHNS();
+        terminal.setHealthNationalService(hns);
+        terminal.initRevision(validCip, validIllness);
+        terminal.initMedicalPrescriptionEdition();
+        terminal.enterTreatmentEndingDate(new Date(System.currentTimeMillis() + 30L * 24 * 60 * 60 * 1000));
+        terminal.stampeeSignature();
+
+        // Act
+        terminal.sendHistoryAndPrescription();
+
+        // Assert
+        assertNull(hns.lastDelta);
+    }
+
+    // ========== TESTS FOR sendHistoryAndPrescriptionAsync ==========
+
+    @Test
+    @DisplayName("sendHistoryAndPrescriptionAsync - Returns before the HNS assigns the treatment code")
+    void testSendHistoryAndPrescriptionAsync_Success() throws Exception {
+        // Arrange
+        Path dir = Files.createTempDirectory("outbox");
+        PrescriptionOutbox outbox = new PrescriptionOutbox(hnsSuccess, dir, 4, 10, 100);
+        terminal.setHealthNationalService(hnsSuccess);
+        terminal.setPrescriptionOutbox(outbox);
+        terminal.initRevision(validCip, validIllness);
+        terminal.initMedicalPrescriptionEdition();
+        terminal.enterMedicineWithGuidelines(validProductID, validGuidelines);
+        terminal.enterTreatmentEndingDate(new Date(System.currentTimeMillis() + (30L * 24 * 60 * 60 * 1000)));
+        terminal.stampeeSignature();
+
+        try {
+            // Act
+            CompletableFuture<ePrescripCode> code = terminal.sendHistoryAndPrescriptionAsync();
+
+            // Assert
+            assertNotNull(code.get(5, TimeUnit.SECONDS));
+            assertEquals(0, outbox.size());
+        } finally {
+            outbox.close();
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    @DisplayName("sendHistoryAndPrescriptionAsync - Preconditions checked before storing the upload")
+    void testSendHistoryAndPrescriptionAsync_Preconditions() throws Exception {
+        // Arrange
+        terminal.setHealthNationalService(hnsSuccess);
+        terminal.initRevision(validCip, validIllness);
+        terminal.initMedicalPrescriptionEdition();
+        terminal.enterTreatmentEndingDate(new Date(System.currentTimeMillis() + (30L * 24 * 60 * 60 * 1000)));
+
+        // Act & Assert
+        assertThrows(ProceduralException.class, () -> terminal.sendHistoryAndPrescriptionAsync());
+        terminal.stampeeSignature();
+        assertThrows(IllegalStateException.class, () -> terminal.sendHistoryAndPrescriptionAsync());
+    }
+
+    // ========== TESTS FOR NON-THROWING INPUT EVENTS ==========
+
+    @Test
+    @DisplayName("try* - Report unmet preconditions as status without changes")
+    void testTryOperations_PreconditionsNotMet() throws Exception {
+        // Act & Assert
+        assertEquals(TerminalStatus.REVISION_NOT_INITIALIZED,
+                terminal.tryEnterMedicalAssessmentInHistory("Assessment"));
+        assertEquals(TerminalStatus.REVISION_NOT_INITIALIZED, terminal.tryInitMedicalPrescriptionEdition());
+        assertEquals(TerminalStatus.EDITION_NOT_INITIALIZED,
+                terminal.tryEnterMedicineWithGuidelines(validProductID, validGuidelines));
+        assertEquals(TerminalStatus.EDITION_NOT_INITIALIZED, terminal.tryRemoveLine(validProductID));
+        assertEquals(TerminalStatus.EDITION_NOT_INITIALIZED, terminal.checkSendHistoryAndPrescription());
+        assertFalse(terminal.isPrescriptionEditionMode());
+    }
+
+    @Test
+    @DisplayName("try* - Edit the prescription and report expected failures")
+    void testTryOperations_EditPrescription() throws Exception {
+        // Arrange
+        terminal.setHealthNationalService(hnsSuccess);
+        terminal.initRevision(validCip, validIllness);
+
+        // Act & Assert
+        assertEquals(TerminalStatus.OK, terminal.tryInitMedicalPrescriptionEdition());
+        assertEquals(TerminalStatus.OK, terminal.tryEnterMedicineWithGuidelines(validProductID, validGuidelines));
+        assertEquals(TerminalStatus.PRODUCT_ALREADY_IN_PRESCRIPTION,
+                terminal.tryEnterMedicineWithGuidelines(validProductID, validGuidelines));
+        ProductID other = new ProductID("640557143200");
+        assertEquals(TerminalStatus.INCORRECT_TAKING_GUIDELINES,
+                terminal.tryEnterMedicineWithGuidelines(other, new String[]{"NOON", "15", "1", "1", "DAY", "x"}));
+        assertEquals(TerminalStatus.PRODUCT_NOT_IN_PRESCRIPTION, terminal.tryModifyDoseInLine(other, 2));
+        assertEquals(TerminalStatus.OK, terminal.tryModifyDoseInLine(validProductID, 2));
+        assertEquals(2f, terminal.getCurrentPrescription().getLines().get(validProductID)
+                .getTakingGuideline().getPosology().getDose());
+        assertEquals(TerminalStatus.ENDING_DATE_NOT_SET, terminal.checkStampeeSignature());
+        assertEquals(TerminalStatus.OK, terminal.tryRemoveLine(validProductID));
+        assertEquals(TerminalStatus.PRODUCT_NOT_IN_PRESCRIPTION, terminal.tryRemoveLine(validProductID));
+        assertEquals(TerminalStatus.OK, terminal.tryFinishMedicalPrescriptionEdition());
+        assertFalse(terminal.isPrescriptionEditionMode());
+    }
+
+    @Test
+    @DisplayName("try*/check* - Report the AI and ending date preconditions")
+    void testTryOperations_AIAndEndingDate() throws Exception {
+        // Arrange
+        terminal.setHealthNationalService(hnsSuccess);
+        terminal.setDecisionMakingAI(aiSuccess);
+        terminal.initRevision(validCip, validIllness);
+        Date endDate = new Date(System.currentTimeMillis() + 10L * 24 * 60 * 60 * 1000);
+
+        // Act & Assert
+        assertEquals(TerminalStatus.EDITION_NOT_INITIALIZED, terminal.tryCallDecisionMakingAI());
+        assertEquals(TerminalStatus.EDITION_NOT_INITIALIZED, terminal.checkAskAIForSuggest());
+        assertEquals(TerminalStatus.EDITION_NOT_INITIALIZED, terminal.tryEnterTreatmentEndingDate(endDate));
+        terminal.initMedicalPrescriptionEdition();
+        assertEquals(TerminalStatus.AI_NOT_INITIALIZED, terminal.checkAskAIForSuggest());
+        assertEquals(TerminalStatus.AI_NOT_INITIALIZED, terminal.checkExtractGuidelinesFromSugg());
+        assertEquals(TerminalStatus.OK, terminal.tryCallDecisionMakingAI());
+        assertEquals(TerminalStatus.OK, terminal.checkAskAIForSuggest());
+        assertEquals(TerminalStatus.NO_AI_RESPONSE, terminal.checkExtractGuidelinesFromSugg());
+        terminal.askAIForSuggest("Should I adjust the treatment?");
+        assertEquals(TerminalStatus.OK, terminal.checkExtractGuidelinesFromSugg());
+
+        assertEquals(TerminalStatus.INCORRECT_ENDING_DATE,
+                terminal.tryEnterTreatmentEndingDate(new Date(System.currentTimeMillis() - 1000)));
+        assertEquals(TerminalStatus.ENDING_DATE_NOT_SET, terminal.checkStampeeSignature());
+        assertEquals(TerminalStatus.OK, terminal.tryEnterTreatmentEndingDate(endDate));
+        assertEquals(endDate, terminal.getCurrentPrescription().getEndDate());
+        assertEquals(TerminalStatus.OK, terminal.checkStampeeSignature());
+    }
+
+    @Test
+    @DisplayName("checkSendHistoryAndPrescription - Reports the missing signature")
+    void testCheckSend_SignatureNotStamped() throws Exception {
+        // Arrange
+        terminal.setHealthNationalService(hnsSuccess);
+        terminal.initRevision(validCip, validIllness);
+        terminal.initMedicalPrescriptionEdition();
+        terminal.enterTreatmentEndingDate(new Date(System.currentTimeMillis() + 10L * 24 * 60 * 60 * 1000));
+
+        // Act & Assert
+        assertEquals(TerminalStatus.OK, terminal.checkStampeeSignature());
+        assertEquals(TerminalStatus.SIGNATURE_NOT_STAMPED, terminal.checkSendHistoryAndPrescription());
+        terminal.stampeeSignature();
+        assertEquals(TerminalStatus.OK, terminal.checkSendHistoryAndPrescription());
+    }
+
+    @Test
+    @DisplayName("Precondition failures - Thrown without stack trace")
+    void testPreconditionFailure_Stackless() {
+        // Act
+        ProceduralException exception = assertThrows(ProceduralException.class,
+                () -> terminal.initMedicalPrescriptionEdition());
+
+        // Assert
+        assertEquals(0, exception.getStackTrace().length);
+        assertSame(exception, assertThrows(ProceduralException.class,
+                () -> terminal.initMedicalPrescriptionEdition()));
+    }
+
     // ========== COMPLETE USE CASE FLOW TESTS ==========
 
     @Test
@@ -0,0 +1,341 @@
+package test.controller;
+
+import data.*;
+import exceptions.*;
+import medicalconsultation.*;
+import services.PrescriptionSigner;
+import test.doubles.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.net.ConnectException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SessionConsultationTerminal class.
+ * Tests session isolation and the session registry using test doubles.
+ */
+@DisplayName("SessionConsultationTerminal - Unit Tests")
+class SessionConsultationTerminalTest {
+
+    /**
+     * HNS whose calls for one patient wait until released: its downloads, or only its
+     * uploads once downloads are let through.
+     */
+    private static class BlockingHNS extends HealthNationalServiceStubSuccess {
+        final CountDownLatch uploading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean blockDownloads = true;
+        private final HealthCardID slowCip;
+
+        BlockingHNS(HealthCardID slowCip) {
+            this.slowCip = slowCip;
+        }
+
+        private void await() {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public MedicalHistory getMedicalHistory(HealthCardID cip)
+                throws ConnectException, HealthCardIDException, IncorrectParametersException {
+            if (blockDownloads && slowCip.equals(cip)) {
+                await();
+            }
+            return super.getMedicalHistory(cip);
+        }
+
+        @Override
+        public MedicalPrescription sendHistoryAndPrescription(HealthCardID cip, MedicalHistory hce,
+                                                              String illness, MedicalPrescription mPresc)
+                throws ConnectException, HealthCardIDException, AnyCurrentPrescriptionException,
+                NotCompletedMedicalPrescriptionException, IncorrectParametersException {
+            if (slowCip.equals(cip)) {
+                uploading.countDown();
+                await();
+            }
+            return super.sendHistoryAndPrescription(cip, hce, illness, mPresc);
+        }
+    }
+
+    private SessionConsultationTerminal terminal;
+
+    private HealthCardID cip1;
+    private HealthCardID cip2;
+    private String validIllness;
+    private ProductID validProductID;
+    private String[] validGuidelines;
+
+    @BeforeEach
+    void setUp() throws IncorrectParametersException {
+        terminal = new SessionConsultationTerminal(4);
+        terminal.setHealthNationalService(new HealthNationalServiceStubSuccess());
+        terminal.setDecisionMakingAI(new DecisionMakingAIStubSuccess());
+
+        cip1 = new HealthCardID("1234567890123456");
+        cip2 = new HealthCardID("ABCDEF1234567890");
+        validIllness = "Diabetes";
+        validProductID = new ProductID("243516578917");
+        validGuidelines = new String[]{"BEFORELUNCH", "15", "1", "1", "DAY", "Tomar con abundante agua"};
+    }
+
+    @Test
+    @DisplayName("initRevision - Opens one session per patient")
+    void testInitRevision_OpensSessions() throws Exception {
+        // Act
+        terminal.initRevision(cip1, validIllness);
+        terminal.initRevision(cip2, validIllness);
+
+        // Assert
+        assertEquals(2, terminal.getSessionCount());
+        assertTrue(terminal.hasSession(cip1));
+        assertTrue(terminal.hasSession(cip2));
+        assertNotNull(terminal.getCurrentPrescription(cip1));
+    }
+
+    @Test
+    @DisplayName("Sessions - Workflow state is isolated between patients")
+    void testSessions_AreIsolated() throws Exception {
+        // Arrange
+        terminal.initRevision(cip1, validIllness);
+        terminal.initRevision(cip2, validIllness);
+
+        // Act
+        terminal.initMedicalPrescriptionEdition(cip1);
+        terminal.enterMedicineWithGuidelines(cip1, validProductID, validGuidelines);
+
+        // Assert
+        assertEquals(1, terminal.getCurrentPrescription(cip1).getLines().size());
+        assertEquals(0, terminal.getCurrentPrescription(cip2).getLines().size());
+        assertThrows(ProceduralException.class, () -> {
+            terminal.enterMedicineWithGuidelines(cip2, validProductID, validGuidelines);
+        });
+    }
+
+    @Test
+    @DisplayName("Sessions - Complete workflow on one session")
+    void testSessions_CompleteWorkflow() throws Exception {
+        // Arrange
+        terminal.initRevision(cip1, validIllness);
+        terminal.initMedicalPrescriptionEdition(cip1);
+        terminal.enterMedicineWithGuidelines(cip1, validProductID, validGuidelines);
+        terminal.enterTreatmentEndingDate(cip1, new Date(System.currentTimeMillis() + 30L * 24 * 60 * 60 * 1000));
+        terminal.stampeeSignature(cip1);
+
+        // Act
+        MedicalPrescription result = terminal.sendHistoryAndPrescription(cip1);
+
+        // Assert
+        assertNotNull(result.getPrescCode());
+    }
+
+    @Test
+    @DisplayName("Sessions - ProceduralException when no session is open")
+    void testSessions_NoSessionOpen() {
+        assertThrows(ProceduralException.class, () -> {
+            terminal.initMedicalPrescriptionEdition(cip1);
+        });
+    }
+
+    @Test
+    @DisplayName("closeSession - Removes the session state")
+    void testCloseSession() throws Exception {
+        // Arrange
+        terminal.initRevision(cip1, validIllness);
+
+        // Act & Assert
+        assertTrue(terminal.closeSession(cip1));
+        assertFalse(terminal.hasSession(cip1));
+        assertFalse(terminal.closeSession(cip1));
+        assertNull(terminal.getCurrentMedicalHistory(cip1));
+    }
+
+    @Test
+    @DisplayName("stampeeSignatures - Signs the prescriptions of many sessions in one batch")
+    void testStampeeSignatures_Batch() throws Exception {
+        // Arrange
+        KeyPair keys = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        PrescriptionSigner signer = new PrescriptionSigner(keys.getPrivate(), keys.getPublic(), 1);
+        terminal.setPrescriptionSigner(signer);
+        Date endDate = new Date(System.currentTimeMillis() + (30L * 24 * 60 * 60 * 1000));
+        for (HealthCardID cip : List.of(cip1, cip2)) {
+            terminal.initRevision(cip, validIllness);
+            terminal.initMedicalPrescriptionEdition(cip);
+            terminal.enterMedicineWithGuidelines(cip, validProductID, validGuidelines);
+            terminal.enterTreatmentEndingDate(cip, endDate);
+        }
+
+        // Act
+        terminal.stampeeSignatures(List.of(cip1, cip2));
+
+        // Assert
+        MedicalPrescription prescription1 = terminal.getCurrentPrescription(cip1);
+        MedicalPrescription prescription2 = terminal.getCurrentPrescription(cip2);
+        assertEquals(PrescriptionSigner.TAG_BATCH, prescription1.geteSign().getSignature()[0]);
+        assertTrue(signer.verify(prescription1, prescription1.geteSign()));
+        assertTrue(signer.verify(prescription2, prescription2.geteSign()));
+        assertFalse(signer.verify(prescription1, prescription2.geteSign()));
+    }
+
+    @Test
+    @DisplayName("stampeeSignatures - A session given twice is signed once")
+    void testStampeeSignatures_DuplicateKey() throws Exception {
+        // Arrange
+        KeyPair keys = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        PrescriptionSigner signer = new PrescriptionSigner(keys.getPrivate(), keys.getPublic(), 1);
+        terminal.setPrescriptionSigner(signer);
+        Date endDate = new Date(System.currentTimeMillis() + (30L * 24 * 60 * 60 * 1000));
+        for (HealthCardID cip : List.of(cip1, cip2)) {
+            terminal.initRevision(cip, validIllness);
+            terminal.initMedicalPrescriptionEdition(cip);
+            terminal.enterMedicineWithGuidelines(cip, validProductID, validGuidelines);
+            terminal.enterTreatmentEndingDate(cip, endDate);
+        }
+
+        // Act
+        terminal.stampeeSignatures(List.of(cip1, cip2, cip1));
+
+        // Assert
+        MedicalPrescription prescription1 = terminal.getCurrentPrescription(cip1);
+        MedicalPrescription prescription2 = terminal.getCurrentPrescription(cip2);
+        assertTrue(signer.verify(prescription1, prescription1.geteSign()));
+        assertTrue(signer.verify(prescription2, prescription2.geteSign()));
+        // Leaf count of the batch, after the tag and the leaf index
+        assertEquals(2, java.nio.ByteBuffer.wrap(prescription1.geteSign().getSignature(), 5, 4).getInt());
+    }
+
+    @Test
+    @DisplayName("stampeeSignatures - Stamps nothing if a session is not ready")
+    void testStampeeSignatures_AllOrNothing() throws Exception {
+        // Arrange
+        terminal.initRevision(cip1, validIllness);
+        terminal.initMedicalPrescriptionEdition(cip1);
+        terminal.enterTreatmentEndingDate(cip1, new Date(System.currentTimeMillis() + (30L * 24 * 60 * 60 * 1000)));
+        terminal.initRevision(cip2, validIllness);
+        terminal.initMedicalPrescriptionEdition(cip2);
+
+        // Act & Assert
+        assertThrows(ProceduralException.class, () -> terminal.stampeeSignatures(List.of(cip1, cip2)));
+        assertNull(terminal.getCurrentPrescription(cip1).geteSign());
+    }
+
+    @Test
+    @DisplayName("initRevision - ProceduralException if the patient's session is already open")
+    void testInitRevision_SessionAlreadyOpen() throws Exception {
+        // Arrange
+        terminal.initRevision(cip1, validIllness);
+        terminal.initMedicalPrescriptionEdition(cip1);
+        terminal.enterMedicineWithGuidelines(cip1, validProductID, validGuidelines);
+
+        // Act & Assert
+        assertThrows(ProceduralException.class, () -> terminal.initRevision(cip1, validIllness));
+        // The open session is left untouched
+        assertEquals(1, terminal.getCurrentPrescription(cip1).getLines().size());
+        terminal.enterTreatmentEndingDate(cip1, new Date(System.currentTimeMillis() + 30L * 24 * 60 * 60 * 1000));
+        terminal.stampeeSignature(cip1);
+        assertTrue(terminal.closeSession(cip1));
+        terminal.initRevision(cip1, validIllness);
+        assertTrue(terminal.hasSession(cip1));
+    }
+
+    /**
+     * Runs the whole consultation of a patient, from initRevision to the upload.
+     */
+    private MedicalPrescription consult(HealthCardID cip) throws Exception {
+        terminal.initRevision(cip, validIllness);
+        terminal.enterMedicalAssessmentInHistory(cip, "Control rutinario");
+        terminal.initMedicalPrescriptionEdition(cip);
+        terminal.enterMedicineWithGuidelines(cip, validProductID, validGuidelines);
+        terminal.enterTreatmentEndingDate(cip, new Date(System.currentTimeMillis() + 30L * 24 * 60 * 60 * 1000));
+        terminal.stampeeSignature(cip);
+        return terminal.sendHistoryAndPrescription(cip);
+    }
+
+    @Test
+    @DisplayName("Sessions - A slow HNS call of one session does not hold up the others")
+    void testSessions_RunInParallel() throws Exception {
+        // Arrange
+        // One stripe's worth of sessions: every key would have shared a lock before
+        terminal = new SessionConsultationTerminal(1);
+        BlockingHNS hns = new BlockingHNS(cip1);
+        terminal.setHealthNationalService(hns);
+        terminal.setDecisionMakingAI(new DecisionMakingAIStubSuccess());
+        List<HealthCardID> others = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            others.add(new HealthCardID(String.format("%016d", 9000000000000000L + i)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+
+            // Act
+            // The first patient's download blocks, and then its upload
+            Future<MedicalPrescription> slow = executor.submit(() -> consult(cip1));
+            List<Future<MedicalPrescription>> fast = new ArrayList<>();
+            for (HealthCardID cip : others) {
+                fast.add(executor.submit(() -> consult(cip)));
+            }
+
+            // Assert
+            for (Future<MedicalPrescription> result : fast) {
+                assertNotNull(result.get(5, TimeUnit.SECONDS).getPrescCode());
+            }
+            assertFalse(slow.isDone());
+            hns.release.countDown();
+            assertNotNull(slow.get(5, TimeUnit.SECONDS).getPrescCode());
+            assertEquals(17, terminal.getSessionCount());
+        } finally {
+            hns.release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("closeSession - Waits for the upload in progress, which holds up no other session")
+    void testCloseSession_WaitsForUpload() throws Exception {
+        // Arrange
+        terminal = new SessionConsultationTerminal(1);
+        BlockingHNS hns = new BlockingHNS(cip1);
+        hns.blockDownloads = false;
+        terminal.setHealthNationalService(hns);
+        terminal.setDecisionMakingAI(new DecisionMakingAIStubSuccess());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<MedicalPrescription> upload = executor.submit(() -> consult(cip1));
+            assertTrue(hns.uploading.await(5, TimeUnit.SECONDS));
+
+            // Act
+            MedicalPrescription other = consult(cip2);
+            Future<Boolean> close = executor.submit(() -> terminal.closeSession(cip1));
+            Thread.sleep(50);
+
+            // Assert
+            assertNotNull(other.getPrescCode());
+            assertFalse(close.isDone());
+            hns.release.countDown();
+            assertNotNull(upload.get(5, TimeUnit.SECONDS).getPrescCode());
+            assertTrue(close.get(5, TimeUnit.SECONDS));
+            assertFalse(terminal.hasSession(cip1));
+            assertTrue(terminal.hasSession(cip2));
+        } finally {
+            hns.release.countDown();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -5,6 +5,9 @@ import data.DigitalSignature;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -163,4 +166,19 @@ public class DigitalSignatureTest {
         assertTrue(text.contains("DigitalSignature"));
         assertTrue(text.contains("null"));
     }
+
+    @Test
+    @DisplayName("asReadOnlyBuffer returns a read-only view of the bytes")
+    void testAsReadOnlyBuffer() {
+        DigitalSignature signature = new DigitalSignature(new byte[]{1, 2, 3});
+
+        ByteBuffer buffer = signature.asReadOnlyBuffer();
+        buffer.get();
+
+        assertTrue(buffer.isReadOnly());
+        assertEquals(2, buffer.remaining());
+        assertEquals(3, signature.asReadOnlyBuffer().remaining());
+        assertThrows(ReadOnlyBufferException.class, () -> buffer.put(0, (byte) 9));
+        assertNull(new DigitalSignature(null).asReadOnlyBuffer());
+    }
 }
@@ -1,5 +1,6 @@
 package test.data;
 
+import data.IdCodec;
 import data.ProductID;
 
 import exceptions.IncorrectParametersException;
@@ -192,4 +193,66 @@ public class ProductIDTest {
             new ProductID("1234 5678 9012"); // Contains spaces
         });
     }
-}
\ No newline at end of file
+
+    // ---------- INTERNING ------------
+    @Test
+    @DisplayName("of - Returns the same instance for the same code")
+    void testOfReturnsCachedInstance() throws IncorrectParametersException {
+        // Act
+        ProductID first = ProductID.of("123456789012");
+        ProductID second = ProductID.of("123456789012");
+
+        // Assert
+        assertSame(first, second);
+        assertEquals(new ProductID("123456789012"), first);
+    }
+
+    @Test
+    @DisplayName("of - Throws exception for an invalid code")
+    void testOfInvalidCodeThrowsException() {
+        // Assert
+        assertThrows(IncorrectParametersException.class, () -> ProductID.of("123456-78901"));
+        assertThrows(IncorrectParametersException.class, () -> ProductID.of(null));
+    }
+
+    @Test
+    @DisplayName("equals - Codes differing only after the 10th character are not equal")
+    void testEqualsDifferentHighCharacters() throws IncorrectParametersException {
+        // Arrange
+        ProductID productID1 = new ProductID("abcdeFGHIJ123456");
+        ProductID productID2 = new ProductID("abcdeFGHIJ123457");
+        ProductID productID3 = new ProductID("abcdeFGHIJ12345");
+
+        // Assert
+        assertNotEquals(productID1, productID2);
+        assertNotEquals(productID1, productID3);
+    }
+
+    @Test
+    @DisplayName("Packed code - Unpacks back to the original code")
+    void testPackedCodeRoundTrip() throws IncorrectParametersException {
+        // Arrange
+        ProductID productID = new ProductID("abcdeFGHIJ123456");
+
+        // Act
+        String unpacked = IdCodec.unpack(productID.getPackedHigh(), productID.getPackedLow());
+
+        // Assert
+        assertEquals("abcdeFGHIJ123456", unpacked);
+    }
+
+    @Test
+    @DisplayName("Constructor - Invalid codes are reported without stack trace")
+    void testInvalidCodeStackless() {
+        // Act
+        IncorrectParametersException invalid = assertThrows(IncorrectParametersException.class,
+                () -> new ProductID("12-34"));
+        IncorrectParametersException empty = assertThrows(IncorrectParametersException.class,
+                () -> new ProductID(""));
+
+        // Assert
+        assertTrue(invalid.getMessage().contains("12-34"));
+        assertEquals(0, invalid.getStackTrace().length);
+        assertEquals(0, empty.getStackTrace().length);
+    }
+}
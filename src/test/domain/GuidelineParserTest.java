@@ -0,0 +1,93 @@
+package test.domain;
+
+import medicalconsultation.FqUnit;
+import medicalconsultation.GuidelineParser;
+import medicalconsultation.GuidelineParser.FieldError;
+import medicalconsultation.TakingGuideline;
+import medicalconsultation.dayMoment;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for GuidelineParser.
+ */
+@DisplayName("GuidelineParser - Unit Tests")
+public class GuidelineParserTest {
+
+    private static GuidelineParser.Result parse(String... instruc) {
+        return GuidelineParser.parse(instruc);
+    }
+
+    @Test
+    @DisplayName("parse - Valid guidelines produce the guideline")
+    void testParseValid() {
+        GuidelineParser.Result result = parse("BEFORELUNCH", "15", "0.5", " 3 ", "DAY", "Take with water");
+
+        assertTrue(result.isValid());
+        assertNull(result.getError());
+        TakingGuideline guideline = result.getGuideline();
+        assertEquals(dayMoment.BEFORELUNCH, guideline.getdMoment());
+        assertEquals(15f, guideline.getDuration());
+        assertEquals(0.5f, guideline.getPosology().getDose());
+        assertEquals(3f, guideline.getPosology().getFreq());
+        assertEquals(FqUnit.DAY, guideline.getPosology().getFreqUnit());
+        assertEquals("Take with water", guideline.getInstructions());
+    }
+
+    @Test
+    @DisplayName("parse - Numbers match Float.parseFloat")
+    void testParseNumbers() {
+        String[] numbers = {"1", "0.1", "2.25", ".5", "+7", "12345.678", "0.000001", "16777217", "3.14159265358979"};
+        for (String number : numbers) {
+            GuidelineParser.Result result = parse("BEFORELUNCH", number, "1", "1", "DAY", "Take");
+            assertTrue(result.isValid(), number);
+            assertEquals(Float.parseFloat(number), result.getGuideline().getDuration(), number);
+        }
+    }
+
+    @Test
+    @DisplayName("parse - Reports the wrong field")
+    void testParseErrors() {
+        assertSame(FieldError.MISSING_FIELDS, parse("BEFORELUNCH", "15", "1", "1", "DAY").getError());
+        assertSame(FieldError.MISSING_FIELDS, GuidelineParser.parse(null).getError());
+        assertSame(FieldError.INVALID_DAY_MOMENT, parse("NOON", "15", "1", "1", "DAY", "Take").getError());
+        assertSame(FieldError.INVALID_DURATION, parse("BEFORELUNCH", "ABC", "1", "1", "DAY", "Take").getError());
+        assertSame(FieldError.NON_POSITIVE_DURATION, parse("BEFORELUNCH", "-5", "1", "1", "DAY", "Take").getError());
+        assertSame(FieldError.INVALID_DOSE, parse("BEFORELUNCH", "15", "1e3", "1", "DAY", "Take").getError());
+        assertSame(FieldError.NON_POSITIVE_DOSE, parse("BEFORELUNCH", "15", "0", "1", "DAY", "Take").getError());
+        assertSame(FieldError.INVALID_FREQUENCY, parse("BEFORELUNCH", "15", "1", "NaN", "DAY", "Take").getError());
+        assertSame(FieldError.INVALID_FREQUENCY_UNIT, parse("BEFORELUNCH", "15", "1", "1", "YEAR", "Take").getError());
+        assertSame(FieldError.EMPTY_INSTRUCTIONS, parse("BEFORELUNCH", "15", "1", "1", "DAY", "  ").getError());
+        assertEquals(2, FieldError.INVALID_DOSE.getField());
+    }
+
+    @Test
+    @DisplayName("parse - Failed results carry no guideline")
+    void testParseFailureHasNoGuideline() {
+        GuidelineParser.Result result = parse("BEFORELUNCH", "", "1", "1", "DAY", "Take");
+
+        assertFalse(result.isValid());
+        assertNull(result.getGuideline());
+        assertSame(FieldError.INVALID_DURATION, result.getError());
+    }
+
+    @Test
+    @DisplayName("parseModification - Empty fields keep the base values")
+    void testParseModification() {
+        TakingGuideline base = new TakingGuideline(dayMoment.BEFORELUNCH, 15f, 1f, 1f, FqUnit.DAY, "Take");
+
+        GuidelineParser.Result result = GuidelineParser.parseModification(base, new String[]{"", "", "3", "", "", ""});
+
+        assertTrue(result.isValid());
+        assertNotSame(base, result.getGuideline());
+        assertEquals(3f, result.getGuideline().getPosology().getDose());
+        assertEquals(15f, result.getGuideline().getDuration());
+        assertEquals("Take", result.getGuideline().getInstructions());
+        assertEquals(1f, base.getPosology().getDose());
+        assertSame(FieldError.NON_POSITIVE_FREQUENCY,
+                GuidelineParser.parseModification(base, new String[]{"", "", "", "0", "", ""}).getError());
+    }
+}
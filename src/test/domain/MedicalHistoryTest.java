@@ -2,10 +2,16 @@ package test.domain;
 
 import data.HealthCardID;
 import exceptions.IncorrectParametersException;
+import medicalconsultation.HistoryAnnotation;
 import medicalconsultation.MedicalHistory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Date;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @DisplayName("MedicalHistory - Unit Tests")
@@ -179,4 +185,109 @@ public class MedicalHistoryTest {
         assertTrue(history.contains("Prescribed aspirin"));
         assertTrue(history.contains("Follow-up visit"));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("getHistoryView - Matches the materialized history")
+    public void testHistoryViewMatchesHistory() throws IncorrectParametersException {
+        HealthCardID cip = new HealthCardID("1234567890ABCDEF");
+        MedicalHistory medicalHistory = new MedicalHistory(cip, 12345);
+        CharSequence view = medicalHistory.getHistoryView();
+
+        medicalHistory.addMedicalHistoryAnnotations("Initial consultation");
+        medicalHistory.addMedicalHistoryAnnotations("Prescribed aspirin");
+
+        String history = medicalHistory.getHistory();
+        assertEquals(history.length(), view.length());
+        assertEquals(history.length(), medicalHistory.getHistoryLength());
+        for (int i = 0; i < history.length(); i++) {
+            assertEquals(history.charAt(i), view.charAt(i));
+        }
+        assertEquals(history.substring(5, 30), view.subSequence(5, 30).toString());
+        assertEquals(history, view.toString());
+        assertEquals(2, medicalHistory.getAnnotationCount());
+    }
+
+    @Test
+    @DisplayName("openHistoryReader - Streams the history text")
+    public void testHistoryReader() throws IncorrectParametersException, IOException {
+        HealthCardID cip = new HealthCardID("1234567890ABCDEF");
+        MedicalHistory medicalHistory = new MedicalHistory(cip, 12345);
+        medicalHistory.addMedicalHistoryAnnotations("Initial consultation");
+        medicalHistory.addMedicalHistoryAnnotations("Follow-up visit");
+
+        StringBuilder read = new StringBuilder();
+        try (Reader reader = medicalHistory.openHistoryReader()) {
+            char[] buffer = new char[7];
+            int n;
+            while ((n = reader.read(buffer, 0, buffer.length)) != -1) {
+                read.append(buffer, 0, n);
+            }
+        }
+
+        assertEquals(medicalHistory.getHistory(), read.toString());
+    }
+
+    @Test
+    @DisplayName("addMedicalHistoryAnnotations - Stamps date and current doctor")
+    public void testAnnotationIsStamped() throws IncorrectParametersException {
+        HealthCardID cip = new HealthCardID("1234567890ABCDEF");
+        MedicalHistory medicalHistory = new MedicalHistory(cip, 11111);
+        long before = System.currentTimeMillis();
+
+        medicalHistory.addMedicalHistoryAnnotations("Initial consultation");
+
+        HistoryAnnotation annotation = medicalHistory.getAnnotations().get(0);
+        assertEquals(11111, annotation.getMembShipNumb());
+        assertEquals("Initial consultation", annotation.getText());
+        assertTrue(annotation.getTimestampMillis() >= before);
+    }
+
+    @Test
+    @DisplayName("getAnnotationsBetween - Returns only the annotations in the range")
+    public void testAnnotationsBetween() throws IncorrectParametersException {
+        HealthCardID cip = new HealthCardID("1234567890ABCDEF");
+        MedicalHistory medicalHistory = new MedicalHistory(cip, 11111);
+        medicalHistory.addAnnotation(new HistoryAnnotation(new Date(1000), 11111, "First"));
+        medicalHistory.addAnnotation(new HistoryAnnotation(new Date(2000), 22222, "Second"));
+        medicalHistory.addAnnotation(new HistoryAnnotation(new Date(3000), 11111, "Third"));
+
+        List<HistoryAnnotation> range = medicalHistory.getAnnotationsBetween(new Date(1500), new Date(3000));
+
+        assertEquals(2, range.size());
+        assertEquals("Second", range.get(0).getText());
+        assertEquals("Third", range.get(1).getText());
+        assertEquals(0, medicalHistory.getAnnotationsBetween(new Date(3001), new Date(4000)).size());
+        assertEquals("Second\nThird\n", medicalHistory.getHistorySince(new Date(2000)));
+    }
+
+    @Test
+    @DisplayName("getAnnotationsByDoctor - Returns only the doctor's annotations")
+    public void testAnnotationsByDoctor() throws IncorrectParametersException {
+        HealthCardID cip = new HealthCardID("1234567890ABCDEF");
+        MedicalHistory medicalHistory = new MedicalHistory(cip, 11111);
+        medicalHistory.addMedicalHistoryAnnotations("Initial consultation");
+        medicalHistory.setNewDoctor(22222);
+        medicalHistory.addMedicalHistoryAnnotations("Follow-up visit");
+        medicalHistory.setNewDoctor(11111);
+        medicalHistory.addMedicalHistoryAnnotations("Prescribed aspirin");
+
+        List<HistoryAnnotation> byDoctor = medicalHistory.getAnnotationsByDoctor(11111);
+
+        assertEquals(2, byDoctor.size());
+        assertEquals("Prescribed aspirin", byDoctor.get(1).getText());
+        assertEquals(1, medicalHistory.getAnnotationsByDoctor(22222).size());
+        assertEquals(0, medicalHistory.getAnnotationsByDoctor(33333).size());
+    }
+
+    @Test
+    @DisplayName("addAnnotation - Throws exception for out of order annotation")
+    public void testAddAnnotationOutOfOrderThrowsException() throws IncorrectParametersException {
+        HealthCardID cip = new HealthCardID("1234567890ABCDEF");
+        MedicalHistory medicalHistory = new MedicalHistory(cip, 11111);
+        medicalHistory.addAnnotation(new HistoryAnnotation(new Date(2000), 11111, "Second"));
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            medicalHistory.addAnnotation(new HistoryAnnotation(new Date(1000), 11111, "First"));
+        });
+    }
+}
@@ -7,7 +7,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -303,4 +307,80 @@ public class MedicalPrescriptionTest {
         prescription.seteSign(signature);
         assertEquals(signature, prescription.geteSign());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("addValidatedLine - Accepts a guideline built with the builder")
+    public void testAddValidatedLine() throws Exception {
+        TakingGuideline guideline = TakingGuideline.builder()
+                .dayMoment(dayMoment.BEFORELUNCH).duration(15f).dose(1f)
+                .frequency(1f, FqUnit.DAY).instructions("Take with water").build();
+
+        prescription.addValidatedLine(productID1, guideline);
+
+        assertSame(guideline, prescription.getLines().get(productID1).getTakingGuideline());
+        assertThrows(ProductAlreadyInPrescriptionException.class,
+                () -> prescription.addValidatedLine(productID1, guideline));
+        assertThrows(IncorrectTakingGuidelinesException.class,
+                () -> prescription.addValidatedLine(productID2, null));
+    }
+
+    @Test
+    @DisplayName("addValidatedLine - Rejects a guideline with invalid values")
+    public void testAddValidatedLineRejectsInvalidGuideline() {
+        TakingGuideline negativeDose = new TakingGuideline(dayMoment.BEFORELUNCH, 15f, -1f, 1f, FqUnit.DAY, "Take with water");
+        TakingGuideline noInstructions = new TakingGuideline(dayMoment.BEFORELUNCH, 15f, 1f, 1f, FqUnit.DAY, "");
+
+        assertThrows(IncorrectTakingGuidelinesException.class,
+                () -> prescription.addValidatedLine(productID1, negativeDose));
+        assertThrows(IncorrectTakingGuidelinesException.class,
+                () -> prescription.addValidatedLine(productID1, noInstructions));
+        assertTrue(prescription.getLines().isEmpty());
+    }
+
+    @Test
+    @DisplayName("getLines - Iterates in the order the lines were entered")
+    public void testLinesKeepInsertionOrder() throws Exception {
+        String[] guidelines = {"BEFORELUNCH", "15", "1", "1", "DAY", "Take with water"};
+        prescription.addLine(productID2, guidelines);
+        prescription.addLine(productID1, guidelines);
+
+        Iterator<ProductID> keys = prescription.getLines().keySet().iterator();
+        assertEquals(productID2, keys.next());
+        assertEquals(productID1, keys.next());
+        assertFalse(keys.hasNext());
+    }
+
+    @Test
+    @DisplayName("getLines - Stays consistent over many additions and removals")
+    public void testManyAdditionsAndRemovals() throws Exception {
+        String[] guidelines = {"BEFORELUNCH", "15", "1", "1", "DAY", "Take with water"};
+        Map<ProductID, Boolean> expected = new LinkedHashMap<>();
+        for (int i = 0; i < 500; i++) {
+            ProductID prodID = new ProductID(String.format("P%011d", i));
+            prescription.addLine(prodID, guidelines);
+            expected.put(prodID, true);
+            if (i % 3 == 0) {
+                ProductID removed = new ProductID(String.format("P%011d", i / 2));
+                if (expected.remove(removed) != null) {
+                    prescription.removeLine(removed);
+                }
+            }
+        }
+
+        assertEquals(expected.size(), prescription.getLines().size());
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(prescription.getLines().keySet()));
+        for (ProductID prodID : expected.keySet()) {
+            assertTrue(prescription.getLines().containsKey(prodID));
+            assertEquals(prodID, prescription.getLines().get(prodID).getProductID());
+        }
+        assertThrows(ProductNotInPrescriptionException.class,
+                () -> prescription.removeLine(new ProductID("P00000000000")));
+    }
+
+    @Test
+    @DisplayName("getLines - View is read-only")
+    public void testLinesViewIsReadOnly() {
+        assertThrows(UnsupportedOperationException.class,
+                () -> prescription.getLines().put(productID1, null));
+    }
+}
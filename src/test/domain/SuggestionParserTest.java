@@ -0,0 +1,99 @@
+package test.domain;
+
+import data.ProductID;
+import medicalconsultation.Suggestion;
+import medicalconsultation.SuggestionParser;
+import medicalconsultation.SuggestionParser.Reason;
+import services.DecisionMakingAI;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SuggestionParser - Unit Tests")
+public class SuggestionParserTest {
+
+    @Test
+    @DisplayName("parse - Reads every action of the grammar")
+    public void testParseActions() throws Exception {
+        // Arrange
+        String answer = "Adjustments:\n"
+                + "1. <I, 243516578917, BEFORELUNCH, 15, 1, 1, DAY, Take with water, not juice>\n"
+                + "2. <MODIFY,640557143200,,,3,,,>\n"
+                + "3. < E , 789012345678 >";
+
+        // Act
+        SuggestionParser.Result result = SuggestionParser.parse(answer);
+
+        // Assert
+        assertFalse(result.hasErrors());
+        List<Suggestion> suggestions = result.getSuggestions();
+        assertEquals(3, suggestions.size());
+        assertEquals(Suggestion.Action.INSERT, suggestions.get(0).getAction());
+        assertEquals(new ProductID("243516578917"), suggestions.get(0).getProductID());
+        assertArrayEquals(new String[]{"BEFORELUNCH", "15", "1", "1", "DAY", "Take with water, not juice"},
+                suggestions.get(0).getGuidelines());
+        assertEquals(Suggestion.Action.MODIFY, suggestions.get(1).getAction());
+        assertArrayEquals(new String[]{"", "", "3", "", "", ""}, suggestions.get(1).getGuidelines());
+        assertEquals(Suggestion.Action.ELIMINATE, suggestions.get(2).getAction());
+        assertEquals(new ProductID("789012345678"), suggestions.get(2).getProductID());
+    }
+
+    @Test
+    @DisplayName("parse - Reports malformed fragments with their position")
+    public void testParseMalformed() {
+        // Arrange
+        String answer = "<X, 243516578917> <E, 12-34> <I, 243516578917, BEFORELUNCH> "
+                + "<E, 789012345678, extra> <E, 789012345678> <M, 640557143200";
+
+        // Act
+        SuggestionParser.Result result = SuggestionParser.parse(answer);
+
+        // Assert
+        assertEquals(1, result.getSuggestions().size());
+        List<SuggestionParser.Malformed> malformed = result.getMalformed();
+        assertEquals(5, malformed.size());
+        assertEquals(Reason.UNKNOWN_ACTION, malformed.get(0).getReason());
+        assertEquals(0, malformed.get(0).getStart());
+        assertEquals(answer.indexOf('>') + 1, malformed.get(0).getEnd());
+        assertEquals(Reason.INVALID_PRODUCT_ID, malformed.get(1).getReason());
+        assertEquals(Reason.WRONG_FIELD_COUNT, malformed.get(2).getReason());
+        assertEquals(Reason.WRONG_FIELD_COUNT, malformed.get(3).getReason());
+        assertEquals(Reason.UNTERMINATED, malformed.get(4).getReason());
+        assertEquals(answer.length(), malformed.get(4).getEnd());
+    }
+
+    @Test
+    @DisplayName("parse - Answers without suggestions give an empty result")
+    public void testParseEmpty() {
+        assertTrue(SuggestionParser.parse("No changes are needed.").getSuggestions().isEmpty());
+        assertTrue(SuggestionParser.parse(null).getSuggestions().isEmpty());
+        assertFalse(SuggestionParser.parse(null).hasErrors());
+    }
+
+    @Test
+    @DisplayName("parseSuggest - Default implementation skips malformed fragments")
+    public void testDefaultParseSuggest() {
+        // Arrange
+        DecisionMakingAI ai = new DecisionMakingAI() {
+            @Override
+            public void initDecisionMakingAI() {
+            }
+
+            @Override
+            public String getSuggestions(String prompt) {
+                return "";
+            }
+        };
+
+        // Act
+        List<Suggestion> suggestions = ai.parseSuggest("<E, 789012345678> <X, 789012345678>");
+
+        // Assert
+        assertEquals(1, suggestions.size());
+        assertEquals(Suggestion.Action.ELIMINATE, suggestions.get(0).getAction());
+    }
+}
@@ -0,0 +1,126 @@
+package test.domain;
+
+import data.ProductID;
+import exceptions.BadPromptException;
+import medicalconsultation.Suggestion;
+import medicalconsultation.SuggestionStreamParser;
+import services.DecisionMakingAI;
+import test.doubles.DecisionMakingAIStubSuccess;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SuggestionStreamParser - Unit Tests")
+public class SuggestionStreamParserTest {
+
+    private static final String ANSWER = "I recommend: <I, 243516578917, BEFORELUNCH, 15, 1, 1, DAY, Take with water, not juice>"
+            + " then <M, 640557143200, , , 3, , , > and finally <E, 789012345678>.";
+
+    /**
+     * Collects every suggestion and the moment each one arrived, in chunks.
+     */
+    private static class Collector implements Flow.Subscriber<Suggestion> {
+        final List<Suggestion> suggestions = new ArrayList<>();
+        final CompletableFuture<List<Suggestion>> done = new CompletableFuture<>();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) { subscription.request(Long.MAX_VALUE); }
+
+        @Override
+        public void onNext(Suggestion item) { suggestions.add(item); }
+
+        @Override
+        public void onError(Throwable throwable) { done.completeExceptionally(throwable); }
+
+        @Override
+        public void onComplete() { done.complete(suggestions); }
+    }
+
+    @Test
+    @DisplayName("Suggestions split across chunks are parsed as soon as they are complete")
+    public void testChunkedAnswer() throws Exception {
+        SuggestionStreamParser parser = new SuggestionStreamParser();
+        List<Suggestion> received = new ArrayList<>();
+        CompletableFuture<Void> done = parser.consume(received::add);
+
+        try (SubmissionPublisher<String> source = new SubmissionPublisher<>()) {
+            source.subscribe(parser);
+            for (int i = 0; i < ANSWER.length(); i += 7) {
+                source.submit(ANSWER.substring(i, Math.min(ANSWER.length(), i + 7)));
+            }
+        }
+        done.get(5, TimeUnit.SECONDS);
+
+        assertEquals(3, received.size());
+        Suggestion insert = received.get(0);
+        assertEquals(Suggestion.Action.INSERT, insert.getAction());
+        assertEquals(new ProductID("243516578917"), insert.getProductID());
+        assertEquals("Take with water, not juice", insert.getGuidelines()[5]);
+        Suggestion modify = received.get(1);
+        assertEquals(Suggestion.Action.MODIFY, modify.getAction());
+        assertArrayEquals(new String[]{"", "", "3", "", "", ""}, modify.getGuidelines());
+        assertEquals(Suggestion.Action.ELIMINATE, received.get(2).getAction());
+        assertNull(received.get(2).getGuidelines());
+        assertEquals(0, parser.getRejectedCount());
+    }
+
+    @Test
+    @DisplayName("Malformed and unfinished records are skipped and counted")
+    public void testMalformedRecords() throws Exception {
+        SuggestionStreamParser parser = new SuggestionStreamParser();
+        List<Suggestion> received = new ArrayList<>();
+        CompletableFuture<Void> done = parser.consume(received::add);
+
+        try (SubmissionPublisher<String> source = new SubmissionPublisher<>()) {
+            source.subscribe(parser);
+            source.submit("<X, 243516578917> <E, bad-id> <I, 243516578917, BEFORELUNCH> <E, 789012345678> <E, 7890");
+        }
+        done.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, received.size());
+        assertEquals(4, parser.getRejectedCount());
+    }
+
+    @Test
+    @DisplayName("parse - Single chunk answers of non-streaming AIs are parsed")
+    public void testDefaultStreamingOfAI() throws Exception {
+        DecisionMakingAI ai = new DecisionMakingAIStubSuccess() {
+            @Override
+            public String getSuggestions(String prompt) {
+                return ANSWER;
+            }
+        };
+
+        Collector collector = new Collector();
+        SuggestionStreamParser.parse(ai.streamSuggestions("Adjust?", null)).subscribe(collector);
+
+        assertEquals(3, collector.done.get(5, TimeUnit.SECONDS).size());
+    }
+
+    @Test
+    @DisplayName("parse - Bad prompts are delivered through onError")
+    public void testBadPromptError() {
+        DecisionMakingAI ai = new DecisionMakingAIStubSuccess() {
+            @Override
+            public String getSuggestions(String prompt) throws BadPromptException {
+                throw new BadPromptException("Unclear prompt");
+            }
+        };
+
+        Collector collector = new Collector();
+        SuggestionStreamParser.parse(ai.streamSuggestions("???", null)).subscribe(collector);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> collector.done.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof BadPromptException);
+    }
+}
@@ -5,6 +5,7 @@ import medicalconsultation.Posology;
 import medicalconsultation.FqUnit;
 import medicalconsultation.dayMoment;
 
+import exceptions.IncorrectTakingGuidelinesException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -114,4 +115,37 @@ public class TakingGuidelineTest {
         assertEquals(posology, guideline.getPosology());
         assertEquals("Updated instructions", guideline.getInstructions());
     }
+
+    // ------------- BUILDER ---------------
+    @Test
+    @DisplayName("Builder creates a guideline with all fields")
+    void testBuilder() throws IncorrectTakingGuidelinesException {
+        TakingGuideline guideline = TakingGuideline.builder()
+                .dayMoment(dayMoment.AFTERDINNER)
+                .duration(10f)
+                .dose(2f)
+                .frequency(8f, FqUnit.HOUR)
+                .instructions("Take with water")
+                .build();
+
+        assertEquals(dayMoment.AFTERDINNER, guideline.getdMoment());
+        assertEquals(10f, guideline.getDuration());
+        assertEquals(2f, guideline.getPosology().getDose());
+        assertEquals(8f, guideline.getPosology().getFreq());
+        assertEquals(FqUnit.HOUR, guideline.getPosology().getFreqUnit());
+        assertEquals("Take with water", guideline.getInstructions());
+    }
+
+    @Test
+    @DisplayName("Builder rejects missing or invalid values")
+    void testBuilderRejectsInvalidValues() {
+        assertThrows(IncorrectTakingGuidelinesException.class, () -> TakingGuideline.builder()
+                .duration(10f).dose(2f).frequency(8f, FqUnit.HOUR).instructions("Take").build());
+        assertThrows(IncorrectTakingGuidelinesException.class, () -> TakingGuideline.builder()
+                .dayMoment(dayMoment.AFTERDINNER).duration(10f).dose(0f)
+                .frequency(8f, FqUnit.HOUR).instructions("Take").build());
+        assertThrows(IncorrectTakingGuidelinesException.class, () -> TakingGuideline.builder()
+                .dayMoment(dayMoment.AFTERDINNER).duration(10f).dose(2f)
+                .frequency(8f, FqUnit.HOUR).instructions(" ").build());
+    }
 }
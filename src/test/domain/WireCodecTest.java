@@ -0,0 +1,198 @@
+package test.domain;
+
+import data.*;
+import exceptions.*;
+import medicalconsultation.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("WireCodec - Unit Tests")
+public class WireCodecTest {
+
+    private HealthCardID cip;
+    private ProductID productID1;
+    private ProductID productID2;
+
+    @BeforeEach
+    public void setUp() throws IncorrectParametersException {
+        cip = new HealthCardID("1234567890ABCDEF");
+        productID1 = new ProductID("243516578917");
+        productID2 = new ProductID("ABCdef1234567890");
+    }
+
+    @Test
+    @DisplayName("Prescription - Round trip keeps every field")
+    public void testPrescriptionRoundTrip() throws Exception {
+        MedicalPrescription prescription = new MedicalPrescription(cip, 12345, "Diabetes tipus 2");
+        prescription.addLine(productID1, new String[]{"BEFORELUNCH", "15", "1", "1", "DAY", "Tomar con abundante agua"});
+        prescription.addLine(productID2, new String[]{"AFTERDINNER", "30", "0.5", "8", "HOUR", "Amb àpat"});
+        prescription.setPrescCode(new ePrescripCode("EP00000000000123"));
+        prescription.setPrescDate(new Date(1_700_000_000_000L));
+        prescription.setEndDate(new Date(1_710_000_000_000L));
+        prescription.seteSign(new DigitalSignature(new byte[]{1, 2, 3, -4}));
+
+        MedicalPrescription decoded = WireCodec.decodePrescription(WireCodec.encode(prescription));
+
+        assertEquals(cip, decoded.getCip());
+        assertEquals(12345, decoded.getMembShipNumb());
+        assertEquals("Diabetes tipus 2", decoded.getIllness());
+        assertEquals(prescription.getPrescCode(), decoded.getPrescCode());
+        assertEquals(prescription.getPrescDate(), decoded.getPrescDate());
+        assertEquals(prescription.getEndDate(), decoded.getEndDate());
+        assertEquals(prescription.geteSign(), decoded.geteSign());
+        assertEquals(2, decoded.getLines().size());
+
+        TakingGuideline guideline = decoded.getLines().get(productID2).getTakingGuideline();
+        assertEquals(dayMoment.AFTERDINNER, guideline.getdMoment());
+        assertEquals(30f, guideline.getDuration());
+        assertEquals(0.5f, guideline.getPosology().getDose());
+        assertEquals(8f, guideline.getPosology().getFreq());
+        assertEquals(FqUnit.HOUR, guideline.getPosology().getFreqUnit());
+        assertEquals("Amb àpat", guideline.getInstructions());
+    }
+
+    @Test
+    @DisplayName("Prescription - Round trip without optional fields")
+    public void testPrescriptionRoundTripWithoutOptionalFields() throws Exception {
+        MedicalPrescription prescription = new MedicalPrescription(cip, 0, "Asma");
+
+        MedicalPrescription decoded = WireCodec.decodePrescription(WireCodec.encode(prescription));
+
+        assertNull(decoded.getPrescCode());
+        assertNull(decoded.getPrescDate());
+        assertNull(decoded.getEndDate());
+        assertNull(decoded.geteSign());
+        assertEquals(0, decoded.getLines().size());
+    }
+
+    @Test
+    @DisplayName("History - Round trip keeps annotations, dates and authors")
+    public void testHistoryRoundTrip() throws Exception {
+        MedicalHistory history = new MedicalHistory(cip, 11111);
+        history.addAnnotation(new HistoryAnnotation(new Date(1_700_000_000_000L), 11111, "Initial consultation"));
+        history.addAnnotation(new HistoryAnnotation(new Date(1_700_000_360_000L), 22222, "Follow-up visit"));
+
+        MedicalHistory decoded = WireCodec.decodeHistory(WireCodec.encode(history));
+
+        assertEquals(cip, decoded.getCip());
+        assertEquals(11111, decoded.getMembShipNumb());
+        assertEquals(history.getAnnotations(), decoded.getAnnotations());
+        assertEquals(history.getHistory(), decoded.getHistory());
+    }
+
+    @Test
+    @DisplayName("History - Round trip keeps annotations dated before 1970")
+    public void testHistoryRoundTripBeforeEpoch() throws Exception {
+        MedicalHistory history = new MedicalHistory(cip, 11111);
+        history.addAnnotation(new HistoryAnnotation(new Date(-86_400_000L), 11111, "Birth record"));
+        history.addAnnotation(new HistoryAnnotation(new Date(-1_000L), 11111, "Vaccination"));
+        history.addAnnotation(new HistoryAnnotation(new Date(1_700_000_000_000L), 22222, "Follow-up visit"));
+
+        MedicalHistory decoded = WireCodec.decodeHistory(WireCodec.encode(history));
+
+        assertEquals(history.getAnnotations(), decoded.getAnnotations());
+    }
+
+    @Test
+    @DisplayName("Streaming - Several messages share one buffer")
+    public void testStreamingOverSharedBuffer() throws Exception {
+        MedicalPrescription prescription = new MedicalPrescription(cip, 12345, "Diabetes");
+        MedicalHistory history = new MedicalHistory(cip, 12345);
+        history.addMedicalHistoryAnnotations("Initial consultation");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+
+        WireCodec.encode(prescription, buffer);
+        WireCodec.encode(history, buffer);
+        buffer.flip();
+
+        assertEquals("Diabetes", WireCodec.decodePrescription(buffer).getIllness());
+        assertEquals(history.getHistory(), WireCodec.decodeHistory(buffer).getHistory());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    @DisplayName("Decode - Incomplete message throws BufferUnderflowException")
+    public void testIncompleteMessage() throws Exception {
+        MedicalPrescription prescription = new MedicalPrescription(cip, 12345, "Diabetes");
+        byte[] data = WireCodec.encode(prescription);
+
+        assertThrows(BufferUnderflowException.class, () -> {
+            WireCodec.decodePrescription(Arrays.copyOf(data, data.length - 1));
+        });
+    }
+
+    @Test
+    @DisplayName("Decode - Signature longer than the message throws IncorrectParametersException")
+    public void testSignatureLengthExceedsMessage() throws Exception {
+        MedicalPrescription prescription = new MedicalPrescription(cip, 12345, "Diabetes");
+        prescription.seteSign(new DigitalSignature(new byte[]{1, 2, 3}));
+        byte[] data = WireCodec.encode(prescription);
+        // The signature length follows the flags byte, right before the signature bytes
+        int lengthAt = data.length - 1 - 3 - 1;
+        assertEquals(3, data[lengthAt]);
+        data[lengthAt] = 0x7F;
+
+        assertThrows(IncorrectParametersException.class, () -> {
+            WireCodec.decodePrescription(data);
+        });
+    }
+
+    @Test
+    @DisplayName("Encode - Empty signature is rejected")
+    public void testEmptySignatureRejected() throws Exception {
+        MedicalPrescription prescription = new MedicalPrescription(cip, 12345, "Diabetes");
+        prescription.seteSign(new DigitalSignature(new byte[0]));
+
+        assertThrows(IllegalArgumentException.class, () -> WireCodec.encode(prescription));
+    }
+
+    @Test
+    @DisplayName("Decode - Unknown version throws IncorrectParametersException")
+    public void testUnknownVersion() throws Exception {
+        byte[] data = WireCodec.encode(new MedicalPrescription(cip, 12345, "Diabetes"));
+        data[0] = 99;
+
+        assertThrows(IncorrectParametersException.class, () -> {
+            WireCodec.decodePrescription(data);
+        });
+    }
+
+    @Test
+    @DisplayName("Decode - History message is not a prescription")
+    public void testWrongMessageType() throws Exception {
+        byte[] data = WireCodec.encode(new MedicalHistory(cip, 12345));
+
+        assertThrows(IncorrectParametersException.class, () -> {
+            WireCodec.decodePrescription(data);
+        });
+    }
+
+    @Test
+    @DisplayName("Signed content - Independent of line order, treatment code and signature")
+    public void testSignedContentCanonical() throws Exception {
+        String[] guidelines1 = {"BEFORELUNCH", "15", "1", "1", "DAY", "Take with water"};
+        String[] guidelines2 = {"AFTERDINNER", "30", "0.5", "8", "HOUR", "With food"};
+        MedicalPrescription prescription = new MedicalPrescription(cip, 12345, "Diabetes");
+        prescription.addLine(productID1, guidelines1);
+        prescription.addLine(productID2, guidelines2);
+        MedicalPrescription reordered = new MedicalPrescription(cip, 12345, "Diabetes");
+        reordered.addLine(productID2, guidelines2);
+        reordered.addLine(productID1, guidelines1);
+        reordered.setPrescCode(new ePrescripCode("EP00000000000123"));
+        reordered.seteSign(new DigitalSignature(new byte[]{1, 2, 3}));
+
+        assertArrayEquals(WireCodec.encodeSignedContent(prescription), WireCodec.encodeSignedContent(reordered));
+
+        reordered.setEndDate(new Date(1_710_000_000_000L));
+        assertFalse(Arrays.equals(WireCodec.encodeSignedContent(prescription),
+                WireCodec.encodeSignedContent(reordered)));
+    }
+}
@@ -5,10 +5,16 @@ import data.ePrescripCode;
 import exceptions.*;
 import medicalconsultation.MedicalHistory;
 import medicalconsultation.MedicalPrescription;
+import medicalconsultation.PrescriptionRequest;
+import medicalconsultation.PrescriptionUpload;
+import services.BatchResult;
 import services.HealthNationalService;
+import services.TreatmentCodeGenerator;
 
 import java.net.ConnectException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -22,8 +28,11 @@ public class HealthNationalServiceStubSuccess implements HealthNationalService {
     private Map<String, MedicalHistory> medicalHistories;
     private Map<String, MedicalPrescription> prescriptions;
 
-    // Counter for generating unique prescription codes
-    private static int codeCounter = 1;
+    // Generator of unique prescription codes, shared by every stub instance
+    private static final TreatmentCodeGenerator codeGenerator = new TreatmentCodeGenerator();
+
+    // Number of batch calls received, each one a single simulated round trip
+    private int batchCalls;
 
     public HealthNationalServiceStubSuccess() {
         this.medicalHistories = new HashMap<>();
@@ -100,14 +109,7 @@ public class HealthNationalServiceStubSuccess implements HealthNationalService {
         // Generate a valid 16-character alphanumeric code
         // Format: EP + 14 digits (padded with zeros)
         // Example: EP00000000000001, EP00000000000002, etc.
-        String newCode = String.format("EP%014d", codeCounter++);
-
-        // Verify the code is exactly 16 characters
-        if (newCode.length() != 16) {
-            throw new RuntimeException("Generated code has invalid length: " + newCode.length() + " - Code: " + newCode);
-        }
-
-        ePrescripCode prescCode = new ePrescripCode(newCode);
+        ePrescripCode prescCode = codeGenerator.nextCode();
 
         // Set the code on the prescription
         ePresc.setPrescCode(prescCode);
@@ -119,4 +121,38 @@ public class HealthNationalServiceStubSuccess implements HealthNationalService {
         // Return the updated prescription
         return ePresc;
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<BatchResult<MedicalPrescription>> getMedicalPrescriptions(List<PrescriptionRequest> requests) {
+        batchCalls++;
+        List<BatchResult<MedicalPrescription>> results = new ArrayList<>(requests.size());
+        for (PrescriptionRequest request : requests) {
+            try {
+                results.add(BatchResult.success(getMedicalPrescription(request.getCip(), request.getIllness())));
+            } catch (ConnectException | HealthCardIDException | AnyCurrentPrescriptionException e) {
+                results.add(BatchResult.failure(e));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public List<BatchResult<MedicalPrescription>> sendHistoriesAndPrescriptions(List<PrescriptionUpload> uploads) {
+        batchCalls++;
+        List<BatchResult<MedicalPrescription>> results = new ArrayList<>(uploads.size());
+        for (PrescriptionUpload upload : uploads) {
+            try {
+                results.add(BatchResult.success(sendHistoryAndPrescription(
+                        upload.getCip(), upload.getHistory(), upload.getIllness(), upload.getPrescription())));
+            } catch (ConnectException | HealthCardIDException | AnyCurrentPrescriptionException
+                     | NotCompletedMedicalPrescriptionException | IncorrectParametersException e) {
+                results.add(BatchResult.failure(e));
+            }
+        }
+        return results;
+    }
+
+    public int getBatchCalls() {
+        return batchCalls;
+    }
+}
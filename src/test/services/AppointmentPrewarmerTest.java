@@ -0,0 +1,172 @@
+package test.services;
+
+import data.HealthCardID;
+import exceptions.*;
+import medicalconsultation.Appointment;
+import medicalconsultation.ConsultationTerminal;
+import medicalconsultation.MedicalHistory;
+import medicalconsultation.MedicalPrescription;
+import medicalconsultation.PrescriptionRequest;
+import services.AppointmentPrewarmer;
+import services.BatchResult;
+import services.CachingHealthNationalService;
+import test.doubles.HealthNationalServiceStubSuccess;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AppointmentPrewarmer - Unit Tests")
+public class AppointmentPrewarmerTest {
+
+    /**
+     * HNS that counts its calls and how many history downloads overlap.
+     */
+    private static class CountingHNS extends HealthNationalServiceStubSuccess {
+        final AtomicInteger historyCalls = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        volatile Runnable duringBatch = () -> { };
+
+        @Override
+        public List<BatchResult<MedicalPrescription>> getMedicalPrescriptions(List<PrescriptionRequest> requests) {
+            duringBatch.run();
+            return super.getMedicalPrescriptions(requests);
+        }
+
+        @Override
+        public MedicalHistory getMedicalHistory(HealthCardID cip)
+                throws ConnectException, HealthCardIDException, IncorrectParametersException {
+            historyCalls.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(30);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return new MedicalHistory(cip, 12345);
+        }
+    }
+
+    private CountingHNS hns;
+    private CachingHealthNationalService cache;
+    private List<HealthCardID> patients;
+
+    @BeforeEach
+    public void setUp() throws IncorrectParametersException {
+        hns = new CountingHNS();
+        cache = new CachingHealthNationalService(hns, 64, 60_000);
+        patients = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            patients.add(new HealthCardID("123456789012345" + i));
+        }
+    }
+
+    private List<Appointment> appointments(long inMillis) {
+        List<Appointment> appointments = new ArrayList<>();
+        for (HealthCardID cip : patients) {
+            appointments.add(new Appointment(cip, "Diabetes", new Date(System.currentTimeMillis() + inMillis)));
+        }
+        return appointments;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the warm-up");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    @DisplayName("schedule - initRevision finds the appointment's data warm")
+    public void testWarmRevision() throws Exception {
+        // Arrange
+        try (AppointmentPrewarmer prewarmer = new AppointmentPrewarmer(cache, 4, 1000, 60_000)) {
+
+            // Act
+            assertEquals(6, prewarmer.schedule(appointments(30_000)));
+            awaitTrue(() -> prewarmer.getPrescriptionsWarmed() == 6 && prewarmer.getHistoriesWarmed() == 6);
+            ConsultationTerminal terminal = new ConsultationTerminal();
+            terminal.setHealthNationalService(cache);
+            terminal.initRevision(patients.get(0), "Diabetes");
+
+            // Assert
+            assertEquals(6, hns.historyCalls.get());
+            assertEquals(1, hns.getBatchCalls());
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getPrescriptionHits());
+            assertEquals(0, prewarmer.getFailures());
+        }
+    }
+
+    @Test
+    @DisplayName("schedule - Downloads respect the concurrency and rate limits")
+    public void testLimits() throws Exception {
+        // Arrange
+        try (AppointmentPrewarmer prewarmer = new AppointmentPrewarmer(cache, 2, 20, 60_000)) {
+            long start = System.nanoTime();
+
+            // Act
+            prewarmer.schedule(appointments(30_000));
+            awaitTrue(() -> prewarmer.getPrescriptionsWarmed() == 6 && prewarmer.getHistoriesWarmed() == 6);
+
+            // Assert
+            // 7 calls at 20 per second: the last one starts 300 ms after the first
+            assertTrue(System.nanoTime() - start >= 300_000_000L);
+            assertTrue(hns.maxInFlight.get() <= 2);
+        }
+    }
+
+    @Test
+    @DisplayName("schedule - Data uploaded during the warm-up is not counted as warmed")
+    public void testUploadDuringWarmUp() throws Exception {
+        // Arrange
+        hns.duringBatch = () -> cache.invalidate(patients.get(0));
+        // A single download at a time: the histories are warmed before the batch
+        try (AppointmentPrewarmer prewarmer = new AppointmentPrewarmer(cache, 1, 1000, 60_000)) {
+
+            // Act
+            prewarmer.schedule(appointments(30_000));
+            awaitTrue(() -> prewarmer.getPrescriptionsWarmed() == 5 && hns.getBatchCalls() == 1);
+
+            // Assert
+            assertEquals(6, prewarmer.getHistoriesWarmed());
+            assertEquals(5, cache.getWarmPrescriptionCount());
+            assertFalse(cache.containsHistory(patients.get(0)));
+            assertTrue(cache.containsHistory(patients.get(1)));
+            assertEquals(0, prewarmer.getFailures());
+        }
+    }
+
+    @Test
+    @DisplayName("schedule - Appointments are warmed only within the lead time")
+    public void testLeadTime() throws Exception {
+        // Arrange
+        try (AppointmentPrewarmer prewarmer = new AppointmentPrewarmer(cache, 2, 1000, 1000)) {
+
+            // Act
+            int planned = prewarmer.schedule(appointments(60_000));
+            int past = prewarmer.schedule(appointments(-1000));
+            Thread.sleep(100);
+
+            // Assert
+            assertEquals(6, planned);
+            assertEquals(0, past);
+            assertEquals(6, prewarmer.getPendingCount());
+            assertEquals(0, hns.historyCalls.get());
+            assertThrows(IllegalArgumentException.class, () -> new AppointmentPrewarmer(cache, 0, 10, 0));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package test.services;
+
+import data.HealthCardID;
+import data.ProductID;
+import exceptions.BadPromptException;
+import exceptions.IncorrectParametersException;
+import medicalconsultation.MedicalPrescription;
+import medicalconsultation.Suggestion;
+import services.CachingDecisionMakingAI;
+import test.doubles.DecisionMakingAIStubSuccess;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CachingDecisionMakingAI - Unit Tests")
+public class CachingDecisionMakingAITest {
+
+    /**
+     * Delegate that counts how many prompts and answers reach the AI.
+     */
+    private static class CountingAI extends DecisionMakingAIStubSuccess {
+        int promptCalls;
+        int parseCalls;
+
+        @Override
+        public String getSuggestions(String prompt) throws BadPromptException {
+            promptCalls++;
+            if (prompt.contains("unclear")) {
+                throw new BadPromptException("Unclear prompt");
+            }
+            return super.getSuggestions(prompt);
+        }
+
+        @Override
+        public List<Suggestion> parseSuggest(String aiAnswer) {
+            parseCalls++;
+            return super.parseSuggest(aiAnswer);
+        }
+    }
+
+    /**
+     * Clock that only moves when told to.
+     */
+    private static class ManualClock extends Clock {
+        long millis;
+
+        @Override
+        public ZoneOffset getZone() { return ZoneOffset.UTC; }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) { return this; }
+
+        @Override
+        public Instant instant() { return Instant.ofEpochMilli(millis); }
+    }
+
+    private CountingAI delegate;
+    private ManualClock clock;
+    private CachingDecisionMakingAI cache;
+    private MedicalPrescription prescription;
+    private String[] guidelines;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        delegate = new CountingAI();
+        clock = new ManualClock();
+        cache = new CachingDecisionMakingAI(delegate, 2, 1000, clock);
+        cache.initDecisionMakingAI();
+        prescription = new MedicalPrescription(new HealthCardID("1234567890ABCDEF"), 12345, "Diabetes");
+        guidelines = new String[]{"BEFORELUNCH", "15", "1", "1", "DAY", "Take with water"};
+    }
+
+    @Test
+    @DisplayName("getSuggestions - Same prompt about the same prescription is answered from the cache")
+    public void testCacheHit() throws Exception {
+        String first = cache.getSuggestions("Should I adjust the treatment?", prescription);
+        String second = cache.getSuggestions("  Should I   adjust the treatment? ", prescription);
+
+        assertSame(first, second);
+        assertEquals(1, delegate.promptCalls);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    @DisplayName("getSuggestions - Prompts differing in case are different questions")
+    public void testCaseSensitive() throws Exception {
+        cache.getSuggestions("Remove product 24351657891a", prescription);
+        cache.getSuggestions("Remove product 24351657891A", prescription);
+
+        assertEquals(2, delegate.promptCalls);
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    @DisplayName("getSuggestions - Prompts without a prescription are not cached")
+    public void testNoContextNotCached() throws Exception {
+        cache.getSuggestions("Should I adjust the treatment?");
+        cache.getSuggestions("Should I adjust the treatment?", null);
+
+        assertEquals(2, delegate.promptCalls);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("getSuggestions - Changing the prescription asks the AI again")
+    public void testPrescriptionChangeMisses() throws Exception {
+        cache.getSuggestions("Should I adjust the treatment?", prescription);
+        prescription.addLine(new ProductID("243516578917"), guidelines);
+        cache.getSuggestions("Should I adjust the treatment?", prescription);
+        prescription.modifyDoseInLine(new ProductID("243516578917"), 2f);
+        cache.getSuggestions("Should I adjust the treatment?", prescription);
+
+        assertEquals(3, delegate.promptCalls);
+    }
+
+    @Test
+    @DisplayName("getSuggestions - Entries expire after the time to live")
+    public void testExpiration() throws Exception {
+        cache.getSuggestions("Should I adjust the treatment?", prescription);
+        clock.millis = 1000;
+        cache.getSuggestions("Should I adjust the treatment?", prescription);
+
+        assertEquals(2, delegate.promptCalls);
+    }
+
+    @Test
+    @DisplayName("getSuggestions - Least recently used entry is evicted")
+    public void testEviction() throws Exception {
+        cache.getSuggestions("prompt one", prescription);
+        cache.getSuggestions("prompt two", prescription);
+        cache.getSuggestions("prompt one", prescription);
+        cache.getSuggestions("prompt three", prescription);
+        cache.getSuggestions("prompt one", prescription);
+        cache.getSuggestions("prompt two", prescription);
+
+        assertEquals(2, cache.size());
+        assertEquals(4, delegate.promptCalls);
+    }
+
+    @Test
+    @DisplayName("getSuggestions - Failed prompts are not cached")
+    public void testFailureNotCached() {
+        assertThrows(BadPromptException.class, () -> cache.getSuggestions("unclear", prescription));
+        assertThrows(BadPromptException.class, () -> cache.getSuggestions("unclear", prescription));
+
+        assertEquals(2, delegate.promptCalls);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("parseSuggest - Parsing of an answer is memoized")
+    public void testParseMemoized() throws IncorrectParametersException {
+        List<Suggestion> first = cache.parseSuggest("answer");
+        String original = first.get(0).getGuidelines()[2];
+        first.get(0).getGuidelines()[2] = "99";
+        first.clear();
+        List<Suggestion> second = cache.parseSuggest("answer");
+
+        assertEquals(1, delegate.parseCalls);
+        assertEquals(3, second.size());
+        assertEquals(original, second.get(0).getGuidelines()[2]);
+    }
+}
@@ -0,0 +1,197 @@
+package test.services;
+
+import data.HealthCardID;
+import exceptions.IncorrectParametersException;
+import medicalconsultation.MedicalHistory;
+import medicalconsultation.MedicalPrescription;
+import medicalconsultation.PrescriptionRequest;
+import services.BatchResult;
+import services.CachingHealthNationalService;
+import test.doubles.HealthNationalServiceStubSuccess;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CachingHealthNationalService - Unit Tests")
+public class CachingHealthNationalServiceTest {
+
+    /**
+     * Delegate that counts how many histories are downloaded.
+     */
+    private static class CountingHNS extends HealthNationalServiceStubSuccess {
+        int historyCalls;
+        Runnable duringDownload = () -> { };
+
+        @Override
+        public MedicalHistory getMedicalHistory(HealthCardID cip)
+                throws java.net.ConnectException, exceptions.HealthCardIDException, IncorrectParametersException {
+            historyCalls++;
+            duringDownload.run();
+            return new MedicalHistory(cip, 12345);
+        }
+    }
+
+    /**
+     * Clock that only moves when told to.
+     */
+    private static class ManualClock extends Clock {
+        long millis;
+
+        @Override
+        public ZoneOffset getZone() { return ZoneOffset.UTC; }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) { return this; }
+
+        @Override
+        public Instant instant() { return Instant.ofEpochMilli(millis); }
+    }
+
+    private CountingHNS delegate;
+    private ManualClock clock;
+    private CachingHealthNationalService cache;
+    private HealthCardID cip1;
+    private HealthCardID cip2;
+    private HealthCardID cip3;
+
+    @BeforeEach
+    public void setUp() throws IncorrectParametersException {
+        delegate = new CountingHNS();
+        clock = new ManualClock();
+        cache = new CachingHealthNationalService(delegate, 2, 1000, clock);
+        cip1 = new HealthCardID("1234567890ABCDEF");
+        cip2 = new HealthCardID("ABCDEF1234567890");
+        cip3 = new HealthCardID("0000111122223333");
+    }
+
+    @Test
+    @DisplayName("getMedicalHistory - Second call is served from the cache")
+    public void testCacheHit() throws Exception {
+        MedicalHistory first = cache.getMedicalHistory(cip1);
+        MedicalHistory second = cache.getMedicalHistory(cip1);
+
+        assertEquals(first.getCip(), second.getCip());
+        assertEquals(first.getMembShipNumb(), second.getMembShipNumb());
+        assertEquals(1, delegate.historyCalls);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    @DisplayName("getMedicalHistory - Every hit gets its own copy of the history")
+    public void testCacheHitCopies() throws Exception {
+        MedicalHistory downloaded = cache.getMedicalHistory(cip1);
+        downloaded.addMedicalHistoryAnnotations("Not uploaded");
+        MedicalHistory first = cache.getMedicalHistory(cip1);
+        first.addMedicalHistoryAnnotations("Not uploaded either");
+        MedicalHistory second = cache.getMedicalHistory(cip1);
+
+        assertNotSame(first, second);
+        assertEquals(0, second.getAnnotationCount());
+        assertEquals(1, delegate.historyCalls);
+    }
+
+    @Test
+    @DisplayName("getMedicalHistory - Expired entries are downloaded again")
+    public void testTimeToLive() throws Exception {
+        cache.getMedicalHistory(cip1);
+        clock.millis += 1000;
+        cache.getMedicalHistory(cip1);
+
+        assertEquals(2, delegate.historyCalls);
+    }
+
+    @Test
+    @DisplayName("getMedicalHistory - Least recently used entry is evicted")
+    public void testLruEviction() throws Exception {
+        cache.getMedicalHistory(cip1);
+        cache.getMedicalHistory(cip2);
+        cache.getMedicalHistory(cip1); // cip2 becomes the eldest
+        cache.getMedicalHistory(cip3);
+
+        assertEquals(2, cache.size());
+        cache.getMedicalHistory(cip1);
+        assertEquals(3, delegate.historyCalls);
+        cache.getMedicalHistory(cip2);
+        assertEquals(4, delegate.historyCalls);
+    }
+
+    @Test
+    @DisplayName("sendHistoryAndPrescription - Invalidates the patient's entry")
+    public void testInvalidationOnUpload() throws Exception {
+        MedicalHistory history = cache.getMedicalHistory(cip1);
+        MedicalPrescription prescription = cache.getMedicalPrescription(cip1, "Diabetes");
+        prescription.seteSign(new data.DigitalSignature(new byte[]{1}));
+        prescription.setPrescDate(new java.util.Date());
+        prescription.setEndDate(new java.util.Date());
+
+        cache.sendHistoryAndPrescription(cip1, history, "Diabetes", prescription);
+        cache.getMedicalHistory(cip1);
+
+        assertEquals(2, delegate.historyCalls);
+    }
+
+    @Test
+    @DisplayName("warmPrescriptions - Warmed prescriptions are served once")
+    public void testWarmPrescriptions() throws Exception {
+        List<BatchResult<Boolean>> warmed = cache.warmPrescriptions(List.of(
+                new PrescriptionRequest(cip1, "Diabetes"), new PrescriptionRequest(cip2, "Asthma")));
+
+        assertTrue(warmed.get(0).getValue());
+        assertTrue(warmed.get(1).getValue());
+        assertEquals(2, cache.getWarmPrescriptionCount());
+        assertEquals("Diabetes", cache.getMedicalPrescription(cip1, "Diabetes").getIllness());
+        assertEquals(1, cache.getPrescriptionHits());
+        cache.getMedicalPrescription(cip1, "Diabetes");
+        assertEquals(1, cache.getPrescriptionHits());
+
+        cache.invalidate(cip2);
+        assertEquals(0, cache.getWarmPrescriptionCount());
+    }
+
+    @Test
+    @DisplayName("warmPrescriptions - Expired prescriptions are downloaded again")
+    public void testWarmPrescriptionsTimeToLive() throws Exception {
+        cache.warmPrescriptions(List.of(new PrescriptionRequest(cip1, "Diabetes")));
+        clock.millis += 1000;
+        cache.getMedicalPrescription(cip1, "Diabetes");
+
+        assertEquals(0, cache.getPrescriptionHits());
+        assertEquals(0, cache.getWarmPrescriptionCount());
+    }
+
+    @Test
+    @DisplayName("warmHistory - Only an upload of the same patient drops a download in progress")
+    public void testWarmHistoryInvalidatedPerPatient() throws Exception {
+        delegate.duringDownload = () -> cache.invalidate(cip2);
+        assertTrue(cache.warmHistory(cip1));
+
+        delegate.duringDownload = () -> cache.invalidate(cip1);
+        cache.invalidateAll();
+        assertFalse(cache.warmHistory(cip1));
+        assertFalse(cache.containsHistory(cip1));
+
+        delegate.duringDownload = () -> { };
+        assertTrue(cache.warmHistory(cip1));
+        assertTrue(cache.containsHistory(cip1));
+    }
+
+    @Test
+    @DisplayName("Constructor - Rejects invalid bounds")
+    public void testConstructorRejectsInvalidBounds() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new CachingHealthNationalService(delegate, 0, 1000);
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            new CachingHealthNationalService(delegate, 10, 0);
+        });
+    }
+}
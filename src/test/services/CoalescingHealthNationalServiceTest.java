@@ -0,0 +1,239 @@
+package test.services;
+
+import data.HealthCardID;
+import exceptions.*;
+import medicalconsultation.MedicalHistory;
+import medicalconsultation.MedicalPrescription;
+import services.CoalescingHealthNationalService;
+import test.doubles.HealthNationalServiceStubSuccess;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CoalescingHealthNationalService - Unit Tests")
+public class CoalescingHealthNationalServiceTest {
+
+    /**
+     * Delegate whose history downloads block until released.
+     */
+    private static class BlockingHNS extends HealthNationalServiceStubSuccess {
+        final AtomicInteger historyCalls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean fail;
+
+        @Override
+        public MedicalHistory getMedicalHistory(HealthCardID cip)
+                throws ConnectException, HealthCardIDException, IncorrectParametersException {
+            historyCalls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (fail) {
+                throw new ConnectException("Simulated network failure");
+            }
+            return new MedicalHistory(cip, 12345);
+        }
+    }
+
+    /**
+     * Delegate whose prescription downloads block until released.
+     */
+    private static class BlockingPrescriptionHNS extends HealthNationalServiceStubSuccess {
+        final AtomicInteger prescriptionCalls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean emptySign;
+
+        @Override
+        public MedicalPrescription getMedicalPrescription(HealthCardID cip, String illness)
+                throws ConnectException, HealthCardIDException, AnyCurrentPrescriptionException {
+            prescriptionCalls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                MedicalPrescription prescription = new MedicalPrescription(cip, 12345, illness);
+                if (emptySign) {
+                    // Cannot be encoded by WireCodec
+                    prescription.seteSign(new data.DigitalSignature(new byte[0]));
+                }
+                return prescription;
+            } catch (IncorrectParametersException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private BlockingHNS delegate;
+    private CoalescingHealthNationalService service;
+    private HealthCardID cip;
+
+    @BeforeEach
+    public void setUp() throws IncorrectParametersException {
+        delegate = new BlockingHNS();
+        service = new CoalescingHealthNationalService(delegate);
+        cip = new HealthCardID("1234567890ABCDEF");
+    }
+
+    @Test
+    @DisplayName("getMedicalHistory - Concurrent requests share one download")
+    public void testConcurrentRequestsShareDownload() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<MedicalHistory>> results = new ArrayList<>();
+            results.add(executor.submit(() -> service.getMedicalHistory(cip)));
+            assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> service.getMedicalHistory(cip)));
+            }
+            // Let followers reach the in-flight call before it completes
+            Thread.sleep(100);
+            delegate.release.countDown();
+
+            MedicalHistory first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<MedicalHistory> result : results.subList(1, results.size())) {
+                MedicalHistory copy = result.get(5, TimeUnit.SECONDS);
+                assertNotSame(first, copy);
+                assertEquals(first.getCip(), copy.getCip());
+            }
+            assertEquals(1, delegate.historyCalls.get());
+            assertEquals(0, service.getInFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("getMedicalHistory - Failure is shared with its original type")
+    public void testFailureIsShared() throws Exception {
+        delegate.fail = true;
+        delegate.release.countDown();
+
+        assertThrows(ConnectException.class, () -> {
+            service.getMedicalHistory(cip);
+        });
+        assertEquals(0, service.getInFlightCount());
+    }
+
+    @Test
+    @DisplayName("getMedicalPrescription - Sequential requests are not cached")
+    public void testSequentialRequestsDelegate() throws Exception {
+        MedicalPrescription prescription = service.getMedicalPrescription(cip, "Diabetes");
+
+        assertNotNull(prescription);
+        assertEquals(0, service.getInFlightCount());
+    }
+
+    @Test
+    @DisplayName("getMedicalPrescription - Edits of one caller are not seen by another")
+    public void testSharedDownloadIsCopied() throws Exception {
+        BlockingPrescriptionHNS prescriptions = new BlockingPrescriptionHNS();
+        CoalescingHealthNationalService shared = new CoalescingHealthNationalService(prescriptions);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<MedicalPrescription> leader = executor.submit(() -> shared.getMedicalPrescription(cip, "Diabetes"));
+            assertTrue(prescriptions.started.await(5, TimeUnit.SECONDS));
+            Future<MedicalPrescription> follower = executor.submit(() -> shared.getMedicalPrescription(cip, "Diabetes"));
+            // Let the follower reach the in-flight call before it completes
+            Thread.sleep(100);
+            prescriptions.release.countDown();
+
+            MedicalPrescription first = leader.get(5, TimeUnit.SECONDS);
+            first.addLine(new data.ProductID("243516578917"),
+                    new String[]{"BEFORELUNCH", "15", "1", "1", "DAY", "Take with water"});
+            first.seteSign(new data.DigitalSignature(new byte[]{1}));
+            MedicalPrescription second = follower.get(5, TimeUnit.SECONDS);
+
+            assertEquals(1, prescriptions.prescriptionCalls.get());
+            assertNotSame(first, second);
+            assertTrue(second.getLines().isEmpty());
+            assertNull(second.geteSign());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("getMedicalHistory - An interrupted follower stops waiting for the leader")
+    public void testInterruptedFollower() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<MedicalHistory> leader = executor.submit(() -> service.getMedicalHistory(cip));
+            assertTrue(delegate.started.await(5, TimeUnit.SECONDS));
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            AtomicBoolean interrupted = new AtomicBoolean();
+            Thread follower = new Thread(() -> {
+                try {
+                    service.getMedicalHistory(cip);
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+                interrupted.set(Thread.currentThread().isInterrupted());
+            });
+            follower.start();
+            // Let the follower reach the in-flight call before interrupting it
+            Thread.sleep(100);
+            follower.interrupt();
+            follower.join(5000);
+
+            assertFalse(follower.isAlive());
+            assertTrue(failure.get() instanceof ConnectException);
+            assertTrue(interrupted.get());
+            delegate.release.countDown();
+            assertNotNull(leader.get(5, TimeUnit.SECONDS));
+            assertEquals(1, delegate.historyCalls.get());
+        } finally {
+            delegate.release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("getMedicalPrescription - Data that cannot be encoded is downloaded by each follower")
+    public void testUnencodableDownload() throws Exception {
+        BlockingPrescriptionHNS prescriptions = new BlockingPrescriptionHNS();
+        prescriptions.emptySign = true;
+        CoalescingHealthNationalService shared = new CoalescingHealthNationalService(prescriptions);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<MedicalPrescription> leader = executor.submit(() -> shared.getMedicalPrescription(cip, "Diabetes"));
+            assertTrue(prescriptions.started.await(5, TimeUnit.SECONDS));
+            Future<MedicalPrescription> follower = executor.submit(() -> shared.getMedicalPrescription(cip, "Diabetes"));
+            // Let the follower reach the in-flight call before it completes
+            Thread.sleep(100);
+            prescriptions.release.countDown();
+
+            MedicalPrescription first = leader.get(5, TimeUnit.SECONDS);
+            MedicalPrescription second = follower.get(5, TimeUnit.SECONDS);
+
+            assertNotSame(first, second);
+            assertEquals("Diabetes", second.getIllness());
+            assertEquals(2, prescriptions.prescriptionCalls.get());
+            assertEquals(0, shared.getInFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package test.services;
+
+import exceptions.AIException;
+import services.DecisionMakingAI;
+import services.DecisionMakingAIPool;
+import test.doubles.DecisionMakingAIStubSuccess;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DecisionMakingAIPool - Unit Tests")
+public class DecisionMakingAIPoolTest {
+
+    /**
+     * Clock that only moves when told to.
+     */
+    private static class ManualClock extends Clock {
+        volatile long millis;
+
+        @Override
+        public ZoneOffset getZone() { return ZoneOffset.UTC; }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) { return this; }
+
+        @Override
+        public Instant instant() { return Instant.ofEpochMilli(millis); }
+    }
+
+    private final AtomicInteger created = new AtomicInteger();
+    private DecisionMakingAIPool pool;
+
+    private DecisionMakingAI newAI() {
+        created.incrementAndGet();
+        return new DecisionMakingAIStubSuccess();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not reached in time");
+            Thread.sleep(5);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Core sessions are initialized in the background and leased ready to use")
+    public void testWarmUpAndLease() throws Exception {
+        pool = new DecisionMakingAIPool(this::newAI, 2, 4, 2, 60_000);
+        awaitTrue(() -> pool.getIdleCount() == 2);
+
+        DecisionMakingAI ai = pool.lease(1000);
+
+        // An initialized stub answers prompts
+        assertNotNull(ai.getSuggestions("Adjust the treatment?"));
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(1, pool.getLeaseCount());
+        assertTrue(pool.getMaxLeaseWaitNanos() >= 0);
+
+        pool.release(ai);
+        assertEquals(2, pool.getIdleCount());
+        assertSame(ai, pool.lease(1000));
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    @DisplayName("Sessions are started on demand up to the maximum, then leases time out")
+    public void testGrowthAndTimeout() throws Exception {
+        pool = new DecisionMakingAIPool(this::newAI, 0, 1, 1, 60_000);
+
+        DecisionMakingAI ai = pool.lease(5000);
+        assertThrows(AIException.class, () -> pool.lease(20));
+        assertEquals(1, pool.getLeaseTimeouts());
+
+        pool.release(ai);
+        assertSame(ai, pool.lease(20));
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    @DisplayName("Sessions failing to initialize with AIException are replaced")
+    public void testFailedInitializationIsRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        pool = new DecisionMakingAIPool(() -> new DecisionMakingAIStubSuccess() {
+            @Override
+            public void initDecisionMakingAI() throws AIException {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new AIException("Simulated AI initialization failure");
+                }
+                super.initDecisionMakingAI();
+            }
+        }, 1, 1, 1, 60_000);
+
+        assertNotNull(pool.lease(5000));
+        assertEquals(1, pool.getInitFailures());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    @DisplayName("Invalidated sessions are replaced")
+    public void testInvalidate() throws Exception {
+        pool = new DecisionMakingAIPool(this::newAI, 1, 1, 1, 60_000);
+        DecisionMakingAI broken = pool.lease(5000);
+
+        pool.invalidate(broken);
+
+        assertNotSame(broken, pool.lease(5000));
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    @DisplayName("Surplus sessions idle longer than the timeout are evicted")
+    public void testIdleEviction() throws Exception {
+        ManualClock clock = new ManualClock();
+        pool = new DecisionMakingAIPool(this::newAI, 1, 3, 1, 60_000, clock);
+        DecisionMakingAI first = pool.lease(5000);
+        DecisionMakingAI second = pool.lease(5000);
+        DecisionMakingAI third = pool.lease(5000);
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+
+        clock.millis = 30_000;
+        pool.evictIdle();
+        assertEquals(3, pool.getTotalCount());
+
+        clock.millis = 60_000;
+        pool.evictIdle();
+        assertEquals(1, pool.getTotalCount());
+        assertEquals(2, pool.getEvictionCount());
+        // The most recently used session is kept
+        assertSame(third, pool.lease(20));
+    }
+}
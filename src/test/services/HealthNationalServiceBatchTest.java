@@ -0,0 +1,156 @@
+package test.services;
+
+import data.*;
+import exceptions.*;
+import medicalconsultation.MedicalHistory;
+import medicalconsultation.MedicalPrescription;
+import medicalconsultation.PrescriptionRequest;
+import medicalconsultation.PrescriptionUpload;
+import services.BatchResult;
+import services.CachingHealthNationalService;
+import test.doubles.HealthNationalServiceStubSuccess;
+import test.doubles.HealthNationalServiceStubWithErrors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("HealthNationalService batch methods - Unit Tests")
+public class HealthNationalServiceBatchTest {
+
+    /**
+     * Service with only the single-item methods, so the default batch methods loop over
+     * them; downloads of one illness fail on the network.
+     */
+    private static class LoopingHNS extends HealthNationalServiceStubWithErrors {
+        int prescriptionCalls;
+
+        @Override
+        public MedicalPrescription getMedicalPrescription(HealthCardID cip, String illness)
+                throws ConnectException, HealthCardIDException, AnyCurrentPrescriptionException {
+            prescriptionCalls++;
+            if ("Offline".equals(illness)) {
+                throw new ConnectException("Simulated network failure");
+            }
+            if ("None".equals(illness)) {
+                throw new AnyCurrentPrescriptionException("No prescription for " + illness);
+            }
+            return super.getMedicalPrescription(cip, illness);
+        }
+    }
+
+    private HealthCardID cip1;
+    private HealthCardID cip2;
+
+    @BeforeEach
+    public void setUp() throws IncorrectParametersException {
+        cip1 = new HealthCardID("1234567890123456");
+        cip2 = new HealthCardID("ABCDEF1234567890");
+    }
+
+    private PrescriptionUpload upload(HealthCardID cip, boolean signed) throws Exception {
+        MedicalPrescription prescription = new MedicalPrescription(cip, 12345, "Diabetes");
+        prescription.setPrescDate(new Date());
+        prescription.setEndDate(new Date(System.currentTimeMillis() + 30L * 24 * 60 * 60 * 1000));
+        if (signed) {
+            prescription.seteSign(new DigitalSignature(new byte[]{1, 2, 3}));
+        }
+        return new PrescriptionUpload(cip, new MedicalHistory(cip, 12345), "Diabetes", prescription);
+    }
+
+    @Test
+    @DisplayName("getMedicalPrescriptions - Default loop reports failures per item")
+    public void testDefaultDownloads() {
+        // Arrange
+        LoopingHNS hns = new LoopingHNS();
+        List<PrescriptionRequest> requests = List.of(
+                new PrescriptionRequest(cip1, "Diabetes"),
+                new PrescriptionRequest(cip1, "None"),
+                new PrescriptionRequest(cip2, "Asthma"),
+                new PrescriptionRequest(cip2, "Offline"),
+                new PrescriptionRequest(cip1, "Hypertension"));
+
+        // Act
+        List<BatchResult<MedicalPrescription>> results = hns.getMedicalPrescriptions(requests);
+
+        // Assert
+        assertEquals(5, results.size());
+        assertEquals("Diabetes", results.get(0).getValue().getIllness());
+        assertTrue(results.get(1).getError() instanceof AnyCurrentPrescriptionException);
+        assertEquals(cip2, results.get(2).getValue().getCip());
+        assertTrue(results.get(3).getError() instanceof ConnectException);
+        // Nothing is attempted after a network failure
+        assertSame(results.get(3).getError(), results.get(4).getError());
+        assertEquals(4, hns.prescriptionCalls);
+    }
+
+    @Test
+    @DisplayName("sendHistoriesAndPrescriptions - Default loop uploads each item")
+    public void testDefaultUploads() throws Exception {
+        // Arrange
+        HealthNationalServiceStubWithErrors hns = new HealthNationalServiceStubWithErrors();
+        List<PrescriptionUpload> uploads = List.of(upload(cip1, true), upload(cip2, true));
+
+        // Act
+        List<BatchResult<MedicalPrescription>> sent = hns.sendHistoriesAndPrescriptions(uploads);
+        hns.setThrowConnectException(true);
+        List<BatchResult<MedicalPrescription>> failed = hns.sendHistoriesAndPrescriptions(uploads);
+
+        // Assert
+        assertTrue(sent.get(0).isSuccess());
+        assertTrue(sent.get(1).isSuccess());
+        assertSame(uploads.get(1).getPrescription(), sent.get(1).getValue());
+        assertFalse(failed.get(0).isSuccess());
+        assertTrue(failed.get(1).getError() instanceof ConnectException);
+    }
+
+    @Test
+    @DisplayName("Local stand-in - Serves a batch in a single call")
+    public void testNativeBatch() throws Exception {
+        // Arrange
+        HealthNationalServiceStubSuccess hns = new HealthNationalServiceStubSuccess();
+        List<PrescriptionRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            requests.add(new PrescriptionRequest(i % 2 == 0 ? cip1 : cip2, "Chronic" + i));
+        }
+
+        // Act
+        List<BatchResult<MedicalPrescription>> downloaded = hns.getMedicalPrescriptions(requests);
+        List<BatchResult<MedicalPrescription>> sent =
+                hns.sendHistoriesAndPrescriptions(List.of(upload(cip1, true), upload(cip2, false)));
+
+        // Assert
+        assertEquals(30, downloaded.size());
+        for (int i = 0; i < 30; i++) {
+            assertEquals("Chronic" + i, downloaded.get(i).getValue().getIllness());
+        }
+        assertNotNull(sent.get(0).getValue().getPrescCode());
+        assertTrue(sent.get(1).getError() instanceof NotCompletedMedicalPrescriptionException);
+        assertEquals(2, hns.getBatchCalls());
+    }
+
+    @Test
+    @DisplayName("CachingHealthNationalService - Batch uploads go through and invalidate histories")
+    public void testCachingForwardsBatch() throws Exception {
+        // Arrange
+        HealthNationalServiceStubSuccess hns = new HealthNationalServiceStubSuccess();
+        CachingHealthNationalService cache = new CachingHealthNationalService(hns, 8, 60_000);
+        cache.getMedicalHistory(cip1);
+        cache.getMedicalHistory(cip2);
+
+        // Act
+        cache.sendHistoriesAndPrescriptions(List.of(upload(cip1, true)));
+
+        // Assert
+        assertEquals(1, hns.getBatchCalls());
+        assertEquals(1, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> new PrescriptionRequest(cip1, " "));
+    }
+}
@@ -0,0 +1,271 @@
+package test.services;
+
+import data.*;
+import exceptions.*;
+import medicalconsultation.MedicalHistory;
+import medicalconsultation.MedicalPrescription;
+import medicalconsultation.PrescriptionUpload;
+import services.BatchResult;
+import services.PrescriptionOutbox;
+import test.doubles.HealthNationalServiceStubSuccess;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PrescriptionOutbox - Unit Tests")
+public class PrescriptionOutboxTest {
+
+    /**
+     * HNS whose uploads fail with a network error while it is down.
+     */
+    private static class FlakyHNS extends HealthNationalServiceStubSuccess {
+        final AtomicInteger attempts = new AtomicInteger();
+        volatile int failuresLeft;
+        volatile boolean down;
+        volatile boolean reject;
+        volatile int brokenBatches;
+        volatile String poisonIllness;
+
+        @Override
+        public List<BatchResult<MedicalPrescription>> sendHistoriesAndPrescriptions(List<PrescriptionUpload> uploads) {
+            for (PrescriptionUpload upload : uploads) {
+                if (upload.getIllness().equals(poisonIllness)) {
+                    throw new IllegalArgumentException("Simulated malformed upload");
+                }
+            }
+            if (brokenBatches > 0) {
+                // Alternates a failed call with an incomplete answer
+                if (brokenBatches-- % 2 == 0) {
+                    throw new IllegalStateException("Simulated service error");
+                }
+                return new ArrayList<>();
+            }
+            return super.sendHistoriesAndPrescriptions(uploads);
+        }
+
+        @Override
+        public MedicalPrescription sendHistoryAndPrescription(
+                HealthCardID cip, MedicalHistory hce, String illness, MedicalPrescription mPresc)
+                throws ConnectException, HealthCardIDException, AnyCurrentPrescriptionException,
+                NotCompletedMedicalPrescriptionException, IncorrectParametersException {
+            attempts.incrementAndGet();
+            if (down || failuresLeft > 0) {
+                failuresLeft--;
+                throw new ConnectException("Simulated network failure");
+            }
+            if (reject) {
+                throw new NotCompletedMedicalPrescriptionException("Simulated rejection");
+            }
+            return super.sendHistoryAndPrescription(cip, hce, illness, mPresc);
+        }
+    }
+
+    private Path dir;
+    private FlakyHNS hns;
+    private MedicalHistory history;
+    private MedicalPrescription prescription;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("outbox");
+        hns = new FlakyHNS();
+        HealthCardID cip = new HealthCardID("1234567890123456");
+        history = new MedicalHistory(cip, 12345);
+        history.addMedicalHistoryAnnotations("Stable, keep treatment");
+        prescription = new MedicalPrescription(cip, 12345, "Diabetes");
+        prescription.addLine(new ProductID("243516578917"),
+                new String[]{"BEFORELUNCH", "15", "1", "1", "DAY", "Take with water"});
+        prescription.setPrescDate(new Date());
+        prescription.setEndDate(new Date(System.currentTimeMillis() + 30L * 24 * 60 * 60 * 1000));
+        prescription.seteSign(new DigitalSignature(new byte[]{1, 2, 3}));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private List<String> files() throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                names.add(file.getFileName().toString());
+            }
+        }
+        return names;
+    }
+
+    @Test
+    @DisplayName("submit - Completes with the treatment code and empties the outbox")
+    public void testSubmit() throws Exception {
+        // Arrange
+        try (PrescriptionOutbox outbox = new PrescriptionOutbox(hns, dir, 8, 10, 100)) {
+
+            // Act
+            List<CompletableFuture<ePrescripCode>> codes = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                codes.add(outbox.submit(history, prescription));
+            }
+
+            // Assert
+            for (CompletableFuture<ePrescripCode> code : codes) {
+                assertNotNull(code.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(0, outbox.size());
+            assertTrue(files().isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("submit - Network failures are retried with backoff")
+    public void testRetry() throws Exception {
+        // Arrange
+        hns.failuresLeft = 3;
+
+        try (PrescriptionOutbox outbox = new PrescriptionOutbox(hns, dir, 8, 5, 20)) {
+
+            // Act
+            CompletableFuture<ePrescripCode> code = outbox.submit(history, prescription);
+
+            // Assert
+            assertNotNull(code.get(5, TimeUnit.SECONDS));
+            assertEquals(4, hns.attempts.get());
+        }
+    }
+
+    @Test
+    @DisplayName("submit - A failed or incomplete batch call is retried, the sender keeps running")
+    public void testBrokenBatch() throws Exception {
+        // Arrange
+        // Fewer broken calls in a row than needed to set the upload aside
+        hns.brokenBatches = 2;
+
+        try (PrescriptionOutbox outbox = new PrescriptionOutbox(hns, dir, 8, 5, 20)) {
+
+            // Act
+            CompletableFuture<ePrescripCode> code = outbox.submit(history, prescription);
+
+            // Assert
+            assertNotNull(code.get(5, TimeUnit.SECONDS));
+            assertEquals(1, hns.attempts.get());
+            assertEquals(0, outbox.size());
+            assertTrue(files().isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("submit - An upload that always breaks the call is set aside, the others are sent")
+    public void testPoisonUpload() throws Exception {
+        // Arrange
+        hns.poisonIllness = "Asthma";
+        MedicalPrescription poison = new MedicalPrescription(prescription.getCip(), 12345, "Asthma");
+        poison.setPrescDate(prescription.getPrescDate());
+        poison.setEndDate(prescription.getEndDate());
+        poison.seteSign(prescription.geteSign());
+
+        try (PrescriptionOutbox outbox = new PrescriptionOutbox(hns, dir, 8, 1, 5)) {
+
+            // Act
+            List<CompletableFuture<ePrescripCode>> codes = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                codes.add(outbox.submit(history, i == 2 ? poison : prescription));
+            }
+
+            // Assert
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> codes.get(2).get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+            for (int i : new int[]{0, 1, 3, 4}) {
+                assertNotNull(codes.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(0, outbox.size());
+            assertEquals(List.of("0000000000000000002.msg.failed"), files());
+        }
+    }
+
+    @Test
+    @DisplayName("submit - Rejected uploads fail and are set aside")
+    public void testRejected() throws Exception {
+        // Arrange
+        hns.reject = true;
+
+        try (PrescriptionOutbox outbox = new PrescriptionOutbox(hns, dir, 8, 10, 100)) {
+
+            // Act
+            CompletableFuture<ePrescripCode> code = outbox.submit(history, prescription);
+
+            // Assert
+            ExecutionException e = assertThrows(ExecutionException.class, () -> code.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof NotCompletedMedicalPrescriptionException);
+            assertEquals(1, hns.attempts.get());
+            assertEquals(List.of("0000000000000000000.msg.failed"), files());
+        }
+    }
+
+    @Test
+    @DisplayName("Constructor - Uploads left by a closed outbox are sent on reopening")
+    public void testRecovery() throws Exception {
+        // Arrange
+        hns.down = true;
+        PrescriptionOutbox first = new PrescriptionOutbox(hns, dir, 8, 10, 100);
+        CompletableFuture<ePrescripCode> lost = first.submit(history, prescription);
+        first.submit(history, prescription);
+        first.close();
+        assertThrows(ExecutionException.class, () -> lost.get(5, TimeUnit.SECONDS));
+        Files.write(dir.resolve("0000000000000000009.tmp"), new byte[]{1, 2});
+        hns.down = false;
+
+        // Act
+        try (PrescriptionOutbox second = new PrescriptionOutbox(hns, dir, 8, 10, 100)) {
+
+            // Assert
+            assertEquals(2, second.recovered().size());
+            for (CompletableFuture<ePrescripCode> code : second.recovered()) {
+                assertNotNull(code.get(5, TimeUnit.SECONDS));
+            }
+            assertNotNull(second.submit(history, prescription).get(5, TimeUnit.SECONDS));
+            assertTrue(files().isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("submit - Later changes to the submitted objects are not uploaded")
+    public void testSubmitCopies() throws Exception {
+        // Arrange
+        hns.down = true;
+
+        try (PrescriptionOutbox outbox = new PrescriptionOutbox(hns, dir, 8, 5, 5)) {
+            CompletableFuture<ePrescripCode> code = outbox.submit(history, prescription);
+
+            // Act
+            prescription.seteSign(null);
+            hns.down = false;
+
+            // Assert
+            assertNotNull(code.get(5, TimeUnit.SECONDS));
+            assertThrows(IllegalArgumentException.class, () -> outbox.submit(null, prescription));
+        }
+    }
+}
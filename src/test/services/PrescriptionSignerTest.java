@@ -0,0 +1,216 @@
+package test.services;
+
+import data.*;
+import exceptions.eSignatureException;
+import medicalconsultation.MedicalPrescription;
+import services.PrescriptionSigner;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PrescriptionSigner - Unit Tests")
+public class PrescriptionSignerTest {
+
+    private static final String[] GUIDELINES = {"BEFORELUNCH", "15", "1", "1", "DAY", "Take with water"};
+    private static final String[] OTHER_GUIDELINES = {"AFTERDINNER", "30", "0.5", "8", "HOUR", "With food"};
+
+    private KeyPair keys;
+    private ProductID productID1;
+    private ProductID productID2;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        keys = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        productID1 = new ProductID("243516578917");
+        productID2 = new ProductID("640557143200");
+    }
+
+    private MedicalPrescription prescription(ProductID first, String[] firstGuidelines,
+                                             ProductID second, String[] secondGuidelines) throws Exception {
+        MedicalPrescription prescription = new MedicalPrescription(new HealthCardID("1234567890123456"), 7, "Diabetes");
+        prescription.addLine(first, firstGuidelines);
+        prescription.addLine(second, secondGuidelines);
+        prescription.setPrescDate(new Date(1_700_000_000_000L));
+        prescription.setEndDate(new Date(1_710_000_000_000L));
+        return prescription;
+    }
+
+    @Test
+    @DisplayName("sign - Signature verifies and covers the prescription content")
+    public void testSignAndVerify() throws Exception {
+        // Arrange
+        PrescriptionSigner signer = new PrescriptionSigner(keys.getPrivate(), keys.getPublic(), 2);
+        MedicalPrescription prescription = prescription(productID1, GUIDELINES, productID2, OTHER_GUIDELINES);
+
+        // Act
+        DigitalSignature signature = signer.sign(prescription);
+
+        // Assert
+        assertEquals("Ed25519", signer.getAlgorithm());
+        assertEquals(PrescriptionSigner.TAG_SINGLE, signature.getSignature()[0]);
+        assertTrue(signer.verify(prescription, signature));
+
+        prescription.modifyDoseInLine(productID1, 3);
+        assertFalse(signer.verify(prescription, signature));
+        assertFalse(signer.verify(prescription, new DigitalSignature(new byte[]{PrescriptionSigner.TAG_SINGLE, 1, 2})));
+        assertFalse(signer.verify(prescription, null));
+    }
+
+    @Test
+    @DisplayName("sign - Line order and treatment code are not signed")
+    public void testSignCanonicalContent() throws Exception {
+        // Arrange
+        PrescriptionSigner signer = new PrescriptionSigner(keys.getPrivate(), keys.getPublic(), 1);
+        MedicalPrescription prescription = prescription(productID1, GUIDELINES, productID2, OTHER_GUIDELINES);
+        MedicalPrescription reordered = prescription(productID2, OTHER_GUIDELINES, productID1, GUIDELINES);
+
+        // Act
+        DigitalSignature signature = signer.sign(prescription);
+        reordered.setPrescCode(new ePrescripCode("EP00000000000123"));
+
+        // Assert
+        assertTrue(signer.verify(reordered, signature));
+    }
+
+    @Test
+    @DisplayName("Constructor - Supports ECDSA and rejects other key types")
+    public void testKeyTypes() throws Exception {
+        // Arrange
+        KeyPair ec = KeyPairGenerator.getInstance("EC").generateKeyPair();
+        KeyPair rsa = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        MedicalPrescription prescription = prescription(productID1, GUIDELINES, productID2, OTHER_GUIDELINES);
+
+        // Act
+        PrescriptionSigner signer = new PrescriptionSigner(ec.getPrivate(), ec.getPublic(), 1);
+
+        // Assert
+        assertEquals("SHA256withECDSA", signer.getAlgorithm());
+        assertTrue(signer.verify(prescription, signer.sign(prescription)));
+        assertThrows(eSignatureException.class,
+                () -> new PrescriptionSigner(rsa.getPrivate(), rsa.getPublic(), 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PrescriptionSigner(keys.getPrivate(), keys.getPublic(), 0));
+    }
+
+    @Test
+    @DisplayName("sign - Concurrent signing beyond the pool size")
+    public void testConcurrentSigning() throws Exception {
+        // Arrange
+        PrescriptionSigner signer = new PrescriptionSigner(keys.getPrivate(), keys.getPublic(), 2);
+        MedicalPrescription prescription = prescription(productID1, GUIDELINES, productID2, OTHER_GUIDELINES);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            // Act
+            List<Future<DigitalSignature>> signatures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                signatures.add(executor.submit(() -> signer.sign(prescription)));
+            }
+
+            // Assert
+            for (Future<DigitalSignature> signature : signatures) {
+                assertTrue(signer.verify(prescription, signature.get()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("fromKeyStore - Loads the key from a PKCS#12 keystore")
+    public void testFromKeyStore() throws Exception {
+        // Arrange
+        Path dir = Files.createTempDirectory("signer");
+        Path keystore = dir.resolve("doctor.p12");
+        String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-keyalg", "Ed25519",
+                "-alias", "doctor", "-dname", "CN=Doctor", "-validity", "1",
+                "-storetype", "PKCS12", "-keystore", keystore.toString(),
+                "-storepass", "changeit", "-keypass", "changeit")
+                .redirectErrorStream(true).start();
+        process.getInputStream().readAllBytes();
+        assertEquals(0, process.waitFor());
+        MedicalPrescription prescription = prescription(productID1, GUIDELINES, productID2, OTHER_GUIDELINES);
+
+        try {
+            // Act
+            PrescriptionSigner signer = PrescriptionSigner.fromKeyStore(keystore, "changeit".toCharArray(), "doctor", 1);
+
+            // Assert
+            assertTrue(signer.verify(prescription, signer.sign(prescription)));
+            assertThrows(eSignatureException.class,
+                    () -> PrescriptionSigner.fromKeyStore(keystore, "wrong".toCharArray(), "doctor", 1));
+            assertThrows(eSignatureException.class,
+                    () -> PrescriptionSigner.fromKeyStore(keystore, "changeit".toCharArray(), "nobody", 1));
+        } finally {
+            Files.deleteIfExists(keystore);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    @DisplayName("signBatch - Every prescription verifies with its inclusion proof")
+    public void testSignBatch() throws Exception {
+        // Arrange
+        PrescriptionSigner signer = new PrescriptionSigner(keys.getPrivate(), keys.getPublic(), 1);
+        List<MedicalPrescription> batch = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            MedicalPrescription prescription = prescription(productID1, GUIDELINES, productID2, OTHER_GUIDELINES);
+            prescription.modifyDoseInLine(productID1, i + 1);
+            batch.add(prescription);
+        }
+
+        // Act
+        List<DigitalSignature> signatures = signer.signBatch(batch);
+
+        // Assert
+        assertEquals(7, signatures.size());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(PrescriptionSigner.TAG_BATCH, signatures.get(i).getSignature()[0]);
+            assertTrue(signer.verify(batch.get(i), signatures.get(i)));
+            assertFalse(signer.verify(batch.get((i + 1) % 7), signatures.get(i)));
+        }
+        assertTrue(signer.verify(batch.get(0), signer.signBatch(List.of(batch.get(0))).get(0)));
+    }
+
+    @Test
+    @DisplayName("signBatch - Tampered proofs and positions are rejected")
+    public void testSignBatchTampered() throws Exception {
+        // Arrange
+        PrescriptionSigner signer = new PrescriptionSigner(keys.getPrivate(), keys.getPublic(), 1);
+        MedicalPrescription first = prescription(productID1, GUIDELINES, productID2, OTHER_GUIDELINES);
+        MedicalPrescription second = prescription(productID1, OTHER_GUIDELINES, productID2, GUIDELINES);
+        MedicalPrescription third = prescription(productID2, GUIDELINES, productID1, GUIDELINES);
+        byte[] signature = signer.signBatch(List.of(first, second, third)).get(0).getSignature();
+
+        // Act
+        byte[] wrongIndex = signature.clone();
+        wrongIndex[4] = 1;
+        byte[] wrongProof = signature.clone();
+        wrongProof[10] ^= 1;
+        byte[] truncated = Arrays.copyOf(signature, 12);
+
+        // Assert
+        assertTrue(signer.verify(first, new DigitalSignature(signature)));
+        assertFalse(signer.verify(first, new DigitalSignature(wrongIndex)));
+        assertFalse(signer.verify(first, new DigitalSignature(wrongProof)));
+        assertFalse(signer.verify(first, new DigitalSignature(truncated)));
+        assertThrows(IllegalArgumentException.class, () -> signer.signBatch(new ArrayList<>()));
+    }
+}
@@ -0,0 +1,100 @@
+package test.services;
+
+import data.*;
+import medicalconsultation.MedicalPrescription;
+import services.PrescriptionSigner;
+import services.PrescriptionVerificationService;
+import services.PrescriptionVerifier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PrescriptionVerificationService - Unit Tests")
+public class PrescriptionVerificationServiceTest {
+
+    private PrescriptionSigner signer;
+    private PrescriptionVerificationService service;
+    private ForkJoinPool pool;
+    private ProductID productID;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        KeyPair keys = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        signer = new PrescriptionSigner(keys.getPrivate(), keys.getPublic(), 1);
+        pool = new ForkJoinPool(4);
+        service = new PrescriptionVerificationService(new PrescriptionVerifier(keys.getPublic(), 4), pool, 100);
+        productID = new ProductID("243516578917");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private MedicalPrescription prescription(float dose) throws Exception {
+        MedicalPrescription prescription = new MedicalPrescription(new HealthCardID("1234567890123456"), 7, "Diabetes");
+        prescription.addLine(productID, new String[]{"BEFORELUNCH", "15", String.valueOf(dose), "1", "DAY", "Take with water"});
+        prescription.setPrescDate(new Date(1_700_000_000_000L));
+        prescription.setEndDate(new Date(1_710_000_000_000L));
+        return prescription;
+    }
+
+    @Test
+    @DisplayName("verifyAll - Verifies single and batch signatures in parallel")
+    public void testVerifyAll() throws Exception {
+        // Arrange
+        List<MedicalPrescription> prescriptions = new ArrayList<>();
+        for (int i = 1; i <= 9; i++) {
+            prescriptions.add(prescription(i));
+        }
+        List<DigitalSignature> batch = signer.signBatch(prescriptions.subList(0, 5));
+        for (int i = 0; i < 9; i++) {
+            prescriptions.get(i).seteSign(i < 5 ? batch.get(i) : signer.sign(prescriptions.get(i)));
+        }
+        prescriptions.get(2).modifyDoseInLine(productID, 42);
+        prescriptions.get(7).modifyDoseInLine(productID, 42);
+        prescriptions.get(8).seteSign(null);
+
+        // Act
+        boolean[] valid = service.verifyAll(prescriptions);
+
+        // Assert
+        assertArrayEquals(new boolean[]{true, true, false, true, true, true, true, false, false}, valid);
+        assertEquals(0, service.verifyAll(new ArrayList<>()).length);
+    }
+
+    @Test
+    @DisplayName("verify - Results are cached by signature and content")
+    public void testVerifyCached() throws Exception {
+        // Arrange
+        MedicalPrescription prescription = prescription(1);
+        prescription.seteSign(signer.sign(prescription));
+
+        // Act
+        boolean first = service.verify(prescription);
+        boolean second = service.verify(prescription);
+        prescription.modifyDoseInLine(productID, 2);
+        boolean changed = service.verify(prescription);
+
+        // Assert
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(changed);
+        assertEquals(1, service.getHits());
+        assertEquals(2, service.getMisses());
+        assertEquals(2, service.size());
+        service.invalidateAll();
+        assertEquals(0, service.size());
+    }
+}
@@ -0,0 +1,84 @@
+package test.services;
+
+import data.ePrescripCode;
+import services.TreatmentCodeGenerator;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TreatmentCodeGenerator - Unit Tests")
+public class TreatmentCodeGeneratorTest {
+
+    @Test
+    @DisplayName("nextCode - Formats prefix and zero-padded sequence")
+    public void testNextCodeFormat() {
+        TreatmentCodeGenerator generator = new TreatmentCodeGenerator("EP", 1, 16);
+
+        ePrescripCode first = generator.nextCode();
+        ePrescripCode second = generator.nextCode();
+
+        assertEquals("EP00000000000001", first.getCode());
+        assertEquals("EP00000000000002", second.getCode());
+        assertEquals("XY99999999999999", new TreatmentCodeGenerator("XY", 0, 1).format(99_999_999_999_999L));
+    }
+
+    @Test
+    @DisplayName("nextSequence - No duplicates across millions of concurrent codes")
+    public void testNoDuplicatesUnderConcurrency() throws Exception {
+        int threads = 8;
+        int perThread = 250_000;
+        TreatmentCodeGenerator generator = new TreatmentCodeGenerator("EP", 0, 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    long[] sequences = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        sequences[i] = generator.nextSequence();
+                    }
+                    return sequences;
+                }));
+            }
+
+            BitSet seen = new BitSet();
+            int total = 0;
+            for (Future<long[]> result : results) {
+                for (long sequence : result.get()) {
+                    assertFalse(seen.get((int) sequence), "Duplicated sequence " + sequence);
+                    seen.set((int) sequence);
+                    total++;
+                }
+            }
+            assertEquals(threads * perThread, total);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("nextSequence - Throws when the sequence is exhausted")
+    public void testSequenceExhausted() {
+        TreatmentCodeGenerator generator = new TreatmentCodeGenerator("EP", 99_999_999_999_999L, 10);
+
+        assertEquals(99_999_999_999_999L, generator.nextSequence());
+        assertThrows(IllegalStateException.class, generator::nextSequence);
+    }
+
+    @Test
+    @DisplayName("Constructor - Rejects invalid prefix")
+    public void testInvalidPrefix() {
+        assertThrows(IllegalArgumentException.class, () -> new TreatmentCodeGenerator("E-", 1, 10));
+        assertThrows(IllegalArgumentException.class, () -> new TreatmentCodeGenerator("EPX", 1, 10));
+    }
+}